@@ -38,4 +38,16 @@ public interface BlockAction extends CustomData {
      */
     @Nullable
     BlockContainer replacedBlockContainer();
+
+    /**
+     * How far, in blocks on any axis, this action reaches from its activity's coordinate.
+     *
+     * <p>Zero for a single block. A block group stores its centre as the
+     * coordinate and the distance to its furthest member here.</p>
+     *
+     * @return The extent
+     */
+    default int extent() {
+        return 0;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.api.activities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The position of an activity in a lookup's (timestamp, activity id) order.
+ *
+ * <p>Lookups given a cursor seek past it rather than skipping an offset, so
+ * later pages cost the same as the first. Cursors are passed around encoded,
+ * callers should treat them as opaque.</p>
+ *
+ * @param timestamp The activity timestamp
+ * @param activityId The activity id
+ */
+public record ActivityCursor(long timestamp, long activityId) {
+    /**
+     * Decode a cursor.
+     *
+     * @param encoded The encoded cursor
+     * @return The cursor
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public static ActivityCursor decode(String encoded) {
+        String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed activity cursor: " + encoded);
+        }
+
+        try {
+            return new ActivityCursor(
+                Long.parseLong(decoded.substring(0, separator)),
+                Long.parseLong(decoded.substring(separator + 1))
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed activity cursor: " + encoded, e);
+        }
+    }
+
+    /**
+     * Get the cursor of the page after a page of results.
+     *
+     * <p>Lookups fetch one row more than the limit, the extra row only
+     * signals that there's a next page.</p>
+     *
+     * @param results The results, up to one more than the limit
+     * @param limit The page limit
+     * @return The encoded cursor of the last activity on the page, or null if there's no next page
+     */
+    public static String nextCursor(List<? extends AbstractActivity> results, int limit) {
+        if (limit <= 0 || results.size() <= limit || !(results.get(limit - 1) instanceof Activity activity)) {
+            return null;
+        }
+
+        if (!(activity.primaryKey() instanceof Number primaryKey)) {
+            return null;
+        }
+
+        return new ActivityCursor(activity.timestamp(), primaryKey.longValue()).encode();
+    }
+
+    /**
+     * Encode this cursor.
+     *
+     * @return The encoded cursor
+     */
+    public String encode() {
+        return Base64.getUrlEncoder()
+            .withoutPadding()
+            .encodeToString((timestamp + ":" + activityId).getBytes(StandardCharsets.UTF_8));
+    }
+}
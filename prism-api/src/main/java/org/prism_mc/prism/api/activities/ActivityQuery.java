@@ -136,6 +136,18 @@ public class ActivityQuery {
     @Singular("causeEntityTypeExcluded")
     private Collection<String> causeEntityTypesExcluded;
 
+    /**
+     * Whether to count the total results of a paginated lookup. Pages after the
+     * first usually reuse the total counted for the first.
+     */
+    @Builder.Default
+    private boolean countTotal = true;
+
+    /**
+     * The encoded cursor an ungrouped lookup seeks past, instead of skipping the offset.
+     */
+    private String cursor;
+
     /**
      * Count only.
      */
@@ -296,6 +308,74 @@ public class ActivityQuery {
         return !lookup && !grouped;
     }
 
+    /**
+     * Get the cursor to seek past.
+     *
+     * <p>Only ungrouped lookups are ordered by timestamp and activity id, others
+     * page by offset even when given a cursor.</p>
+     *
+     * @return The decoded cursor, or null if this query pages by offset
+     * @throws IllegalArgumentException If the cursor is malformed
+     */
+    public ActivityCursor seekCursor() {
+        if (cursor == null || !lookup || grouped) {
+            return null;
+        }
+
+        return ActivityCursor.decode(cursor);
+    }
+
+    /**
+     * Get whether this query matches activities by nothing but an upper time bound.
+     *
+     * <p>Such queries match every activity before a point in time, so storage
+     * may remove them in bulk rather than by filtering rows.</p>
+     *
+     * @return True if before is the only condition
+     */
+    public boolean onlyBoundedByTime() {
+        return (
+            before != null &&
+            after == null &&
+            isEmpty(actionTypeKeys) &&
+            isEmpty(actionTypeKeysExcluded) &&
+            isEmpty(actionTypes) &&
+            isEmpty(activityIds) &&
+            isEmpty(affectedBlocks) &&
+            isEmpty(affectedBlocksExcluded) &&
+            isEmpty(causeBlocks) &&
+            isEmpty(causeBlocksExcluded) &&
+            namedCause == null &&
+            namedCauseExcluded == null &&
+            isEmpty(affectedEntityTypes) &&
+            isEmpty(affectedEntityTypesExcluded) &&
+            isEmpty(causeEntityTypes) &&
+            isEmpty(causeEntityTypesExcluded) &&
+            coordinate == null &&
+            isEmpty(affectedMaterials) &&
+            isEmpty(affectedMaterialsExcluded) &&
+            minCoordinate == null &&
+            maxCoordinate == null &&
+            isEmpty(affectedPlayerNames) &&
+            isEmpty(affectedPlayerNamesExcluded) &&
+            isEmpty(causePlayerNames) &&
+            isEmpty(causePlayerNamesExcluded) &&
+            descriptor == null &&
+            airtag == null &&
+            reversed == null &&
+            above == null &&
+            below == null &&
+            worldUuid == null &&
+            worldUuidExcluded == null &&
+            worldId == null &&
+            worldIdExcluded == null
+        );
+    }
+
+    private static boolean isEmpty(Collection<?> collection) {
+        return collection == null || collection.isEmpty();
+    }
+
     /**
      * Get all action type keys for this query.
      *
@@ -50,4 +50,9 @@ public enum ModificationSkipReason {
      * The action has no implementation for the modification.
      */
     NOT_IMPLEMENTED,
+
+    /**
+     * The activity stands for many blocks and only some are inside the modification's area.
+     */
+    PARTLY_OUTSIDE_AREA,
 }
@@ -21,9 +21,21 @@
 package org.prism_mc.prism.api.services.pagination;
 
 import java.util.List;
+import lombok.Getter;
 
 public class PartialListPaginationResult<T> extends ListPaginationResult<T> {
 
+    /**
+     * The total results of a result that wasn't counted.
+     */
+    public static final int UNCOUNTED = -1;
+
+    /**
+     * The encoded cursor of the next page, or null if there is no next page or it can't be seeked to.
+     */
+    @Getter
+    private final String nextCursor;
+
     /**
      * Constructor.
      *
@@ -33,11 +45,58 @@ public class PartialListPaginationResult<T> extends ListPaginationResult<T> {
      * @param currentPage The current page
      */
     public PartialListPaginationResult(List<T> results, int totalResults, int perPage, int currentPage) {
+        this(results, totalResults, perPage, currentPage, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param results The partial results, up to one more than the per-page limit
+     * @param totalResults The total result count, or {@link #UNCOUNTED}
+     * @param perPage The per-page limit
+     * @param currentPage The current page
+     * @param nextCursor The encoded cursor of the next page, or null
+     */
+    public PartialListPaginationResult(
+        List<T> results,
+        int totalResults,
+        int perPage,
+        int currentPage,
+        String nextCursor
+    ) {
         super(results, totalResults, perPage, currentPage);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Check if the total results were counted.
+     *
+     * @return True if counted
+     */
+    public boolean counted() {
+        return totalResults != UNCOUNTED;
     }
 
     @Override
     public Iterable<T> currentPageResults() {
         return results.subList(0, Math.min(results.size(), perPage));
     }
+
+    @Override
+    public boolean hasNextPage() {
+        if (!counted()) {
+            return results.size() > perPage;
+        }
+
+        return super.hasNextPage();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (!counted()) {
+            return results.isEmpty();
+        }
+
+        return super.isEmpty();
+    }
 }
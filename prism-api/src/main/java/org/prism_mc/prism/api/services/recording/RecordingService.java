@@ -20,7 +20,7 @@
 
 package org.prism_mc.prism.api.services.recording;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Queue;
 import org.prism_mc.prism.api.activities.Activity;
 
 public interface RecordingService {
@@ -56,12 +56,26 @@ public interface RecordingService {
      */
     int resetDroppedCount();
 
+    /**
+     * Get the number of activities spilled to disk because the queue was full.
+     *
+     * @return The number of activities spilled since startup
+     */
+    long spilledCount();
+
+    /**
+     * Get the number of spilled activities that have been recorded.
+     *
+     * @return The number of spilled activities drained since startup
+     */
+    long spillDrainedCount();
+
     /**
      * Get the queue.
      *
      * @return the queue
      */
-    LinkedBlockingQueue<Activity> queue();
+    Queue<Activity> queue();
 
     /**
      * Schedule the next recording task.
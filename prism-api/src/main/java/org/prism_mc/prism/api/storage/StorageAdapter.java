@@ -54,6 +54,18 @@ public interface StorageAdapter {
      */
     int deleteActivities(ActivityQuery query, int cycleMinPrimaryKey, int cycleMaxPrimaryKey);
 
+    /**
+     * Purge activities matched by a query in bulk, ahead of the primary key windows of {@link #deleteActivities}.
+     *
+     * <p>Storage purges only what it can purge cheaply, such as whole partitions
+     * entirely before a {@link ActivityQuery#onlyBoundedByTime() time-only} query's
+     * bound. Anything left is deleted by the windows.</p>
+     *
+     * @param query The query
+     * @return The (possibly estimated) number of purged records, or zero if nothing was purged
+     */
+    int purgeActivities(ActivityQuery query);
+
     /**
      * Get the min/max primary keys for the activities table.
      *
@@ -100,6 +112,10 @@ public interface StorageAdapter {
     /**
      * Query activities in a format intended for information display.
      *
+     * <p>Results hold up to one activity more than the limit, which only tells
+     * there's a next page. Ungrouped results carry the cursor of the next page,
+     * and the total is counted only if the query asks for it.</p>
+     *
      * @param query The activity query
      * @return Paginated list of activities
      * @throws Exception Storage layer exception
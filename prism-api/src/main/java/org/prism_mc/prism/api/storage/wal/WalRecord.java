@@ -78,6 +78,7 @@ public class WalRecord {
     private String blockName;
     private String blockData;
     private String blockTranslationKey;
+    private int extent;
 
     // Replaced block fields
     private String replacedBlockNamespace;
@@ -0,0 +1,82 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.api.activities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ActivityCursorTest {
+
+    private static Activity activity(long primaryKey, long timestamp) {
+        return Activity.builder().primaryKey(primaryKey).timestamp(timestamp).coordinate(0, 64, 0).build();
+    }
+
+    @Test
+    void roundTrips() {
+        for (var cursor : List.of(
+            new ActivityCursor(1_700_000_000L, 42L),
+            new ActivityCursor(0L, 0L),
+            new ActivityCursor(-1L, Long.MAX_VALUE),
+            new ActivityCursor(Long.MIN_VALUE, Long.MIN_VALUE)
+        )) {
+            assertEquals(cursor, ActivityCursor.decode(cursor.encode()));
+        }
+    }
+
+    @Test
+    void encodesUrlSafelyWithoutPadding() {
+        String encoded = new ActivityCursor(Long.MIN_VALUE, Long.MAX_VALUE).encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String noSeparator = Base64.getUrlEncoder().encodeToString("12345".getBytes(StandardCharsets.UTF_8));
+        String notNumbers = Base64.getUrlEncoder().encodeToString("a:b".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> ActivityCursor.decode(noSeparator));
+        assertThrows(IllegalArgumentException.class, () -> ActivityCursor.decode(notNumbers));
+        assertThrows(IllegalArgumentException.class, () -> ActivityCursor.decode("not base64!"));
+    }
+
+    @Test
+    void pointsTheNextCursorAtTheLastActivityOnThePage() {
+        var results = List.of(activity(3, 300), activity(2, 200), activity(1, 100));
+
+        assertEquals(new ActivityCursor(200, 2).encode(), ActivityCursor.nextCursor(results, 2));
+    }
+
+    @Test
+    void hasNoNextCursorOnTheLastPage() {
+        var results = List.of(activity(3, 300), activity(2, 200));
+
+        assertNull(ActivityCursor.nextCursor(results, 2));
+        assertNull(ActivityCursor.nextCursor(results, 0));
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.postgres;
+
+import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.jooq.DSLContext;
+import org.jooq.Index;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.types.UInteger;
+import org.jooq.types.UShort;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter;
+import org.prism_mc.prism.core.storage.dbo.records.PrismActivitiesRecord;
+
+/**
+ * Measures activity insert throughput into postgres.
+ *
+ * <p>Compares the binary COPY used by {@link PostgresActivityCopyBatch} against
+ * the jOOQ batch insert every other SQL adapter uses. Both write the same
+ * records into a table created with the real columns, primary key and indexes.
+ * Foreign keys are left off because the dimension tables are not populated.</p>
+ *
+ * <p>The table is truncated before every trial so each starts from an empty
+ * table and a cold identity sequence.</p>
+ *
+ * <p>Run with {@code ./gradlew :prism-core:benchmarkPostgresCopy --args='<jdbc url>'}.
+ * Arguments are the JDBC url, the trials per case and the row counts.</p>
+ */
+public final class PostgresCopyBenchmark {
+
+    /**
+     * The table prefix, kept apart from a real prism install.
+     */
+    private static final String PREFIX = "prism_benchmark_";
+
+    /**
+     * One in this many rows carries serialized data, roughly a block break mix.
+     */
+    private static final int SERIALIZED_DATA_INTERVAL = 10;
+
+    private PostgresCopyBenchmark() {}
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The JDBC url, the trials per case, then the row counts
+     * @throws SQLException If the database fails
+     */
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : "jdbc:postgresql://localhost:5432/postgres?user=postgres";
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] rowCounts = args.length > 2
+            ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 1_000, 10_000, 100_000 };
+
+        System.setProperty("org.jooq.no-logo", "true");
+        System.setProperty("org.jooq.no-tips", "true");
+
+        var dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(url);
+
+        AbstractSqlStorageAdapter.initializeDataObjects(PREFIX, null, "public");
+        DSLContext dslContext = DSL.using(dataSource, SQLDialect.POSTGRES);
+        createTable(dslContext);
+
+        var copyBatch = new PostgresActivityCopyBatch(
+            null,
+            dslContext,
+            dataSource,
+            PostgresActivityCopyBatch.resolveTarget(dslContext),
+            (short) 1,
+            null,
+            false,
+            false
+        );
+
+        // Warm up both paths so class loading and jit don't land in the first case
+        for (int i = 0; i < 3; i++) {
+            timeBatchInsert(dslContext, records(dslContext, 10_000));
+            timeCopy(dslContext, copyBatch, records(dslContext, 10_000));
+        }
+
+        System.out.printf("best of %d trials, %s%n", trials, url.replaceAll("\\?.*", ""));
+        System.out.printf("%-8s %20s %20s %8s%n", "rows", "batch (rows/s)", "copy (rows/s)", "speedup");
+
+        for (int rows : rowCounts) {
+            long batchNanos = Long.MAX_VALUE;
+            long copyNanos = Long.MAX_VALUE;
+            for (int trial = 0; trial < trials; trial++) {
+                batchNanos = Math.min(batchNanos, timeBatchInsert(dslContext, records(dslContext, rows)));
+                copyNanos = Math.min(copyNanos, timeCopy(dslContext, copyBatch, records(dslContext, rows)));
+            }
+
+            double batchRate = rows / (batchNanos / 1e9);
+            double copyRate = rows / (copyNanos / 1e9);
+            System.out.printf(
+                "%-8d %20.0f %20.0f %7.2fx%n",
+                rows,
+                batchRate,
+                copyRate,
+                copyRate / batchRate
+            );
+        }
+
+        dslContext.dropTable(PRISM_ACTIVITIES).execute();
+    }
+
+    /**
+     * Create the activities table with its real columns, primary key and indexes.
+     *
+     * @param dslContext The DSL context
+     */
+    private static void createTable(DSLContext dslContext) {
+        dslContext.dropTableIfExists(PRISM_ACTIVITIES).execute();
+        dslContext
+            .createTable(PRISM_ACTIVITIES)
+            .columns(PRISM_ACTIVITIES.fields())
+            .primaryKey(PRISM_ACTIVITIES.ACTIVITY_ID)
+            .execute();
+
+        for (Index index : PRISM_ACTIVITIES.getIndexes()) {
+            dslContext.createIndexIfNotExists(index).on(PRISM_ACTIVITIES, index.getFields()).execute();
+        }
+    }
+
+    /**
+     * Time the jOOQ batch insert, the same call {@code SqlActivityBatch} makes.
+     *
+     * @param dslContext The DSL context
+     * @param records The records
+     * @return The elapsed nanos
+     */
+    private static long timeBatchInsert(DSLContext dslContext, List<PrismActivitiesRecord> records) {
+        dslContext.truncate(PRISM_ACTIVITIES).restartIdentity().execute();
+
+        long start = System.nanoTime();
+        dslContext.batchInsert(records).execute();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Time the binary copy.
+     *
+     * @param dslContext The DSL context
+     * @param copyBatch The copy batch
+     * @param records The records
+     * @return The elapsed nanos
+     * @throws SQLException If the copy fails
+     */
+    private static long timeCopy(
+        DSLContext dslContext,
+        PostgresActivityCopyBatch copyBatch,
+        List<PrismActivitiesRecord> records
+    ) throws SQLException {
+        dslContext.truncate(PRISM_ACTIVITIES).restartIdentity().execute();
+
+        long start = System.nanoTime();
+        copyBatch.insertRecords(records);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Build records shaped like the ones a batch flushes.
+     *
+     * @param dslContext The DSL context
+     * @param count The number of records
+     * @return The records
+     */
+    private static List<PrismActivitiesRecord> records(DSLContext dslContext, int count) {
+        var random = new Random(count);
+        long now = System.currentTimeMillis() / 1000;
+
+        List<PrismActivitiesRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            var record = dslContext.newRecord(PRISM_ACTIVITIES);
+            int x = random.nextInt(4096) - 2048;
+            int z = random.nextInt(4096) - 2048;
+
+            record.setTimestamp(UInteger.valueOf(now - random.nextInt(86_400)));
+            record.setWorldId(UInteger.valueOf(1));
+            record.setX(x);
+            record.setY(random.nextInt(384) - 64);
+            record.setZ(z);
+            record.setActionId(UInteger.valueOf(1 + random.nextInt(40)));
+            record.setBlockId(UInteger.valueOf(1 + random.nextInt(1000)));
+            record.setReplacedBlockId(UInteger.valueOf(1));
+            record.setCauseId(UInteger.valueOf(1 + random.nextInt(50)));
+            record.setCausePlayerId(UInteger.valueOf(1 + random.nextInt(20)));
+            record.setDescriptor("stone");
+            record.setSerializerVersion(UShort.valueOf(1));
+            record.setSpatialKey(((long) (x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL));
+
+            if (i % SERIALIZED_DATA_INTERVAL == 0) {
+                record.setSerializedData("{Items:[{Slot:0b,id:\"minecraft:diamond\",count:" + (1 + random.nextInt(64)) + "}]}");
+            }
+
+            records.add(record);
+        }
+
+        return records;
+    }
+}
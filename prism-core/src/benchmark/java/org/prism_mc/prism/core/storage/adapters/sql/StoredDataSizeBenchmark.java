@@ -0,0 +1,355 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.sql;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.prism_mc.prism.core.storage.LongArrayBuilder;
+
+/**
+ * Measures how much {@link StoredDataCodec} shrinks serialized data.
+ *
+ * <p>For each sample this reports the plain UTF-8 size, the deflated size a
+ * binary column would hold and the base64 text the codec actually stores.
+ * Given a postgres JDBC url it also stores every sample both ways and reports
+ * the bytes postgres keeps for them after its own TOAST compression, and the
+ * bytes read back when fetching them by primary key the way
+ * {@code queryActivitiesByPks} does.</p>
+ *
+ * <p>Run with {@code ./gradlew :prism-core:benchmarkStoredDataSize --args='[jdbc url]'}.</p>
+ */
+public final class StoredDataSizeBenchmark {
+
+    /**
+     * The rows stored per sample.
+     */
+    private static final int ROWS = 1000;
+
+    /**
+     * The primary keys fetched per query, a modification chunk.
+     */
+    private static final int FETCH_SIZE = 500;
+
+    private StoredDataSizeBenchmark() {}
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args An optional postgres JDBC url
+     * @throws SQLException If the database fails
+     */
+    public static void main(String[] args) throws SQLException {
+        Map<String, String> samples = samples();
+
+        System.out.printf(
+            "%-22s %8s %9s %9s %8s %9s%n",
+            "sample",
+            "plain",
+            "deflated",
+            "stored",
+            "base64",
+            "saved"
+        );
+        for (var entry : samples.entrySet()) {
+            String plain = entry.getValue();
+            String stored = StoredDataCodec.encode(plain);
+            int plainBytes = plain.getBytes(StandardCharsets.UTF_8).length;
+            int storedBytes = stored.getBytes(StandardCharsets.UTF_8).length;
+            int deflatedBytes = stored.startsWith(StoredDataCodec.DEFLATE_MARKER)
+                ? Base64.getDecoder().decode(stored.substring(StoredDataCodec.DEFLATE_MARKER.length())).length
+                : plainBytes;
+
+            System.out.printf(
+                "%-22s %8d %9d %9d %7.0f%% %8.0f%%%n",
+                entry.getKey(),
+                plainBytes,
+                deflatedBytes,
+                storedBytes,
+                100.0 * (storedBytes - deflatedBytes) / deflatedBytes,
+                100.0 * (plainBytes - storedBytes) / plainBytes
+            );
+        }
+
+        if (args.length > 0) {
+            measurePostgres(args[0], samples);
+        }
+    }
+
+    /**
+     * Store every sample plain and encoded, then report stored and fetched bytes.
+     *
+     * @param url The JDBC url
+     * @param samples The samples
+     * @throws SQLException If the database fails
+     */
+    private static void measurePostgres(String url, Map<String, String> samples) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS prism_benchmark_stored_data");
+                statement.execute(
+                    "CREATE TABLE prism_benchmark_stored_data " +
+                    "(id serial PRIMARY KEY, sample text NOT NULL, encoded boolean NOT NULL, serialized_data text)"
+                );
+            }
+
+            try (
+                PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO prism_benchmark_stored_data (sample, encoded, serialized_data) VALUES (?, ?, ?)"
+                )
+            ) {
+                for (var entry : samples.entrySet()) {
+                    for (boolean encoded : new boolean[] { false, true }) {
+                        String value = encoded ? StoredDataCodec.encode(entry.getValue()) : entry.getValue();
+                        for (int i = 0; i < ROWS; i++) {
+                            insert.setString(1, entry.getKey());
+                            insert.setBoolean(2, encoded);
+                            insert.setString(3, value);
+                            insert.addBatch();
+                        }
+                    }
+                }
+
+                insert.executeBatch();
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("VACUUM ANALYZE prism_benchmark_stored_data");
+            }
+
+            System.out.printf(
+                "%npostgres, %d rows per sample, bytes per row (pg_column_size after TOAST compression)%n",
+                ROWS
+            );
+            System.out.printf("%-22s %9s %9s %8s%n", "sample", "plain", "stored", "saved");
+            long plainTotal = 0;
+            long storedTotal = 0;
+            for (String sample : samples.keySet()) {
+                long plain = columnSize(connection, sample, false);
+                long stored = columnSize(connection, sample, true);
+                plainTotal += plain;
+                storedTotal += stored;
+                System.out.printf(
+                    "%-22s %9d %9d %7.0f%%%n",
+                    sample,
+                    plain / ROWS,
+                    stored / ROWS,
+                    100.0 * (plain - stored) / plain
+                );
+            }
+            System.out.printf(
+                "%-22s %9d %9d %7.0f%%%n",
+                "all",
+                plainTotal / ROWS,
+                storedTotal / ROWS,
+                100.0 * (plainTotal - storedTotal) / plainTotal
+            );
+
+            long plainRead = fetch(connection, false);
+            long storedRead = fetch(connection, true);
+            System.out.printf(
+                "%nfetched by primary key in chunks of %d: plain %d bytes, stored %d bytes, %.0f%% fewer%n",
+                FETCH_SIZE,
+                plainRead,
+                storedRead,
+                100.0 * (plainRead - storedRead) / plainRead
+            );
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE prism_benchmark_stored_data");
+            }
+        }
+    }
+
+    /**
+     * Sum the stored size of one sample's rows.
+     *
+     * @param connection The connection
+     * @param sample The sample
+     * @param encoded Whether to sum the encoded rows
+     * @return The total bytes
+     * @throws SQLException If the query fails
+     */
+    private static long columnSize(Connection connection, String sample, boolean encoded) throws SQLException {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT sum(pg_column_size(serialized_data)) FROM prism_benchmark_stored_data " +
+                "WHERE sample = ? AND encoded = ?"
+            )
+        ) {
+            statement.setString(1, sample);
+            statement.setBoolean(2, encoded);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Fetch every row of one kind by primary key and count the bytes received.
+     *
+     * @param connection The connection
+     * @param encoded Whether to fetch the encoded rows
+     * @return The bytes received for the serialized data column
+     * @throws SQLException If the query fails
+     */
+    private static long fetch(Connection connection, boolean encoded) throws SQLException {
+        long[] ids;
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT id FROM prism_benchmark_stored_data WHERE encoded = ? ORDER BY id"
+            )
+        ) {
+            statement.setBoolean(1, encoded);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                var builder = new LongArrayBuilder();
+                while (resultSet.next()) {
+                    builder.add(resultSet.getLong(1));
+                }
+                ids = builder.toArray();
+            }
+        }
+
+        long bytes = 0;
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT serialized_data FROM prism_benchmark_stored_data WHERE id = ANY(?)"
+            )
+        ) {
+            for (int start = 0; start < ids.length; start += FETCH_SIZE) {
+                Long[] chunk = new Long[Math.min(FETCH_SIZE, ids.length - start)];
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = ids[start + i];
+                }
+
+                statement.setArray(1, connection.createArrayOf("bigint", chunk));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        byte[] value = resultSet.getBytes(1);
+                        bytes += value.length;
+                        StoredDataCodec.decode(new String(value, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Build serialized data shaped like what the paper module records.
+     *
+     * @return The samples by name
+     */
+    private static Map<String, String> samples() {
+        Map<String, String> samples = new LinkedHashMap<>();
+
+        samples.put(
+            "enchanted sword",
+            "{DataVersion:4189,count:1,id:\"minecraft:netherite_sword\",components:{" +
+            "\"minecraft:custom_name\":\"{\\\"text\\\":\\\"Dawnbreaker\\\",\\\"italic\\\":false}\"," +
+            "\"minecraft:lore\":[\"{\\\"text\\\":\\\"Forged in the nether\\\"}\",\"{\\\"text\\\":\\\"Kills: 42\\\"}\"]," +
+            "\"minecraft:damage\":117,\"minecraft:repair_cost\":7," +
+            "\"minecraft:enchantments\":{\"minecraft:sharpness\":5,\"minecraft:unbreaking\":3," +
+            "\"minecraft:mending\":1,\"minecraft:looting\":3,\"minecraft:sweeping_edge\":3}}}"
+        );
+
+        var chest = new StringBuilder("{Items:[");
+        String[] materials = { "cobblestone", "oak_log", "iron_ingot", "redstone", "torch", "bread", "coal", "dirt" };
+        for (int slot = 0; slot < 27; slot++) {
+            if (slot > 0) {
+                chest.append(',');
+            }
+            chest
+                .append("{Slot:")
+                .append(slot)
+                .append("b,count:")
+                .append(1 + ((slot * 37) % 64))
+                .append(",id:\"minecraft:")
+                .append(materials[slot % materials.length])
+                .append("\"}");
+        }
+        chest.append("],id:\"minecraft:chest\",x:-1204,y:71,z:388}");
+        samples.put("chest of stacks", chest.toString());
+
+        var shulker = new StringBuilder(
+            "{DataVersion:4189,count:1,id:\"minecraft:shulker_box\",components:{\"minecraft:container\":["
+        );
+        String[] tools = { "diamond_pickaxe", "diamond_shovel", "diamond_axe", "bow", "shield" };
+        for (int slot = 0; slot < 27; slot++) {
+            if (slot > 0) {
+                shulker.append(',');
+            }
+            if (slot % 3 == 0) {
+                shulker
+                    .append("{item:{count:1,id:\"minecraft:")
+                    .append(tools[slot % tools.length])
+                    .append("\",components:{\"minecraft:damage\":")
+                    .append(slot * 11)
+                    .append(",\"minecraft:enchantments\":{\"minecraft:efficiency\":")
+                    .append(1 + slot % 5)
+                    .append(",\"minecraft:unbreaking\":3,\"minecraft:mending\":1}}},slot:")
+                    .append(slot)
+                    .append('}');
+            } else {
+                shulker
+                    .append("{item:{count:64,id:\"minecraft:")
+                    .append(materials[slot % materials.length])
+                    .append("\"},slot:")
+                    .append(slot)
+                    .append('}');
+            }
+        }
+        shulker.append("]}}");
+        samples.put("shulker box of tools", shulker.toString());
+
+        var book = new StringBuilder(
+            "{DataVersion:4189,count:1,id:\"minecraft:written_book\",components:{" +
+            "\"minecraft:written_book_content\":{pages:["
+        );
+        String[] words = {
+            "the", "village", "north", "of", "spawn", "has", "a", "farm", "that", "needs", "water", "and",
+            "we", "should", "build", "walls", "before", "night", "falls", "again", "creepers", "came",
+        };
+        for (int page = 0; page < 12; page++) {
+            if (page > 0) {
+                book.append(',');
+            }
+            book.append("{raw:\"");
+            for (int word = 0; word < 45; word++) {
+                book.append(words[(page * 7 + word * 5) % words.length]).append(' ');
+            }
+            book.append("\"}");
+        }
+        book.append("],title:{raw:\"Notes\"},author:\"Steve\",generation:0}}}");
+        samples.put("written book", book.toString());
+
+        return samples;
+    }
+}
@@ -63,9 +63,9 @@ public class CacheService {
     private final Cache<String, Integer> entityTypePkMap;
 
     /**
-     * A cache of items to primary keys.
+     * A cache of item data hashes to primary keys.
      */
-    private final Cache<String, Integer> itemDataPkMap;
+    private final Cache<Long, Integer> itemDataPkMap;
 
     /**
      * A cache of named causes to primary keys.
@@ -191,7 +191,7 @@ public class CacheService {
         primaryKeyCaches.put("entityTypePkMap", entityTypePkMap);
 
         // Build the item data cache
-        Caffeine<String, Integer> itemBuilder = Caffeine.newBuilder()
+        Caffeine<Long, Integer> itemBuilder = Caffeine.newBuilder()
             .maximumSize(cacheConfiguration.pkCacheItemData().maxSize())
             .evictionListener((key, value, cause) -> {
                 String msg = "Evicting item data from PK cache: Key: {0}, Value: {1}, Removal Cause: {2}";
@@ -335,4 +335,36 @@ public class CacheService {
         worldNamePkMap = worldNameBuilder.build();
         primaryKeyCaches.put("worldNamePkMap", worldNamePkMap);
     }
+
+    /**
+     * Snapshot the primary keys of the hottest block, item, named cause and player cache entries.
+     *
+     * @return The snapshot
+     */
+    public PrimaryKeySnapshot primaryKeySnapshot() {
+        return new PrimaryKeySnapshot(
+            hottestPrimaryKeys(blockDataPkMap),
+            hottestPrimaryKeys(itemDataPkMap),
+            hottestPrimaryKeys(namedCausePkMap),
+            hottestPrimaryKeys(playerUuidPkMap)
+        );
+    }
+
+    /**
+     * Get the primary keys of a cache, hottest first.
+     *
+     * @param cache The cache
+     * @param <K> The key type
+     * @param <V> The primary key type
+     * @return The primary keys
+     */
+    private static <K, V extends Number> long[] hottestPrimaryKeys(Cache<K, V> cache) {
+        Map<K, V> entries = cache
+            .policy()
+            .eviction()
+            .map(eviction -> eviction.hottest((int) Math.min(Integer.MAX_VALUE, eviction.getMaximum())))
+            .orElseGet(cache::asMap);
+
+        return entries.values().stream().mapToLong(Number::longValue).toArray();
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.services.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The primary keys of the hottest block, item, named cause and player cache entries.
+ *
+ * <p>Only primary keys are kept. The cache keys are read back from the
+ * database by primary key on startup, so rows that were purged or changed
+ * while the server was down can never warm a cache with a wrong key.</p>
+ *
+ * @param blockIds The block primary keys
+ * @param itemIds The item primary keys
+ * @param causeIds The named cause primary keys
+ * @param playerIds The player primary keys
+ */
+public record PrimaryKeySnapshot(long[] blockIds, long[] itemIds, long[] causeIds, long[] playerIds) {
+    /**
+     * The file signature, "PKSN".
+     */
+    private static final int MAGIC = 0x504B534E;
+
+    /**
+     * The file format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The most primary keys read per cache, far above any sensible cache size.
+     */
+    private static final int MAX_IDS = 1 << 20;
+
+    /**
+     * Read a snapshot.
+     *
+     * @param file The snapshot file
+     * @param fingerprint The fingerprint of the database the snapshot must have been taken from
+     * @return The snapshot, or null if there is none or it was taken from another database
+     * @throws IOException If the file can't be read or is corrupt
+     */
+    public static PrimaryKeySnapshot read(Path file, String fingerprint) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(fingerprint)) {
+                return null;
+            }
+
+            return new PrimaryKeySnapshot(readIds(in), readIds(in), readIds(in), readIds(in));
+        }
+    }
+
+    /**
+     * Write the snapshot, replacing any existing one.
+     *
+     * @param file The snapshot file
+     * @param fingerprint The fingerprint of the database the snapshot was taken from
+     * @throws IOException If the file can't be written
+     */
+    public void write(Path file, String fingerprint) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+
+            writeIds(out, blockIds);
+            writeIds(out, itemIds);
+            writeIds(out, causeIds);
+            writeIds(out, playerIds);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The total number of primary keys.
+     *
+     * @return The size
+     */
+    public int size() {
+        return blockIds.length + itemIds.length + causeIds.length + playerIds.length;
+    }
+
+    private static long[] readIds(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_IDS) {
+            throw new IOException("Corrupt primary key snapshot");
+        }
+
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.readLong();
+        }
+
+        return ids;
+    }
+
+    private static void writeIds(DataOutputStream out, long[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (long id : ids) {
+            out.writeLong(id);
+        }
+    }
+}
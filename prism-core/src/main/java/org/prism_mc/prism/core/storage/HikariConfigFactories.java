@@ -154,6 +154,10 @@ public class HikariConfigFactories {
 
         if (storageConfiguration.mariadb().useHikariOptimizations()) applyHikariOptimizations(hikariConfig);
 
+        if ("load-data".equalsIgnoreCase(storageConfiguration.mariadb().bulkInsertMode())) {
+            hikariConfig.addDataSourceProperty("allowLocalInfile", true);
+        }
+
         hikariConfig.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
 
         return hikariConfig;
@@ -193,6 +197,10 @@ public class HikariConfigFactories {
 
         if (storageConfiguration.mysql().useHikariOptimizations()) applyHikariOptimizations(hikariConfig);
 
+        if ("load-data".equalsIgnoreCase(storageConfiguration.mysql().bulkInsertMode())) {
+            hikariConfig.addDataSourceProperty("allowLoadLocalInfile", true);
+        }
+
         hikariConfig.setTransactionIsolation("TRANSACTION_READ_COMMITTED");
 
         return hikariConfig;
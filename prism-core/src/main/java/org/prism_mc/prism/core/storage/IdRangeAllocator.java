@@ -0,0 +1,92 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage;
+
+import java.sql.SQLException;
+
+/**
+ * Hands out ids from ranges leased from the database.
+ *
+ * <p>Each lease reserves a range of ids for this server alone, so ids are
+ * handed out locally without touching the database until the range runs
+ * out. Servers sharing a database never hand out the same id, and writers
+ * know ids before rows are inserted. Ids left in a range on shutdown are
+ * never used.</p>
+ */
+public abstract class IdRangeAllocator {
+
+    /**
+     * A leased range of ids.
+     *
+     * @param first The first id
+     * @param last The last id, inclusive
+     */
+    public record IdRange(long first, long last) {}
+
+    /**
+     * The number of ids per lease.
+     */
+    private final int leaseSize;
+
+    /**
+     * The next id to hand out.
+     */
+    private long nextId = 1;
+
+    /**
+     * The last id of the current range.
+     */
+    private long lastId = 0;
+
+    /**
+     * Construct an allocator.
+     *
+     * @param leaseSize The number of ids per lease
+     */
+    protected IdRangeAllocator(int leaseSize) {
+        this.leaseSize = Math.max(1, leaseSize);
+    }
+
+    /**
+     * Get the next id, leasing a new range if the current one is used up.
+     *
+     * @return The id
+     * @throws SQLException If a new range couldn't be leased
+     */
+    public synchronized long nextId() throws SQLException {
+        if (nextId > lastId) {
+            IdRange range = lease(leaseSize);
+            nextId = range.first();
+            lastId = range.last();
+        }
+
+        return nextId++;
+    }
+
+    /**
+     * Lease a range of ids no other server holds.
+     *
+     * @param size The number of ids
+     * @return The range
+     * @throws SQLException The database exception
+     */
+    protected abstract IdRange lease(int size) throws SQLException;
+}
@@ -0,0 +1,92 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage;
+
+import java.util.Arrays;
+
+/**
+ * Collects longs into a growable primitive array, so large sets of primary
+ * keys aren't held as boxed values.
+ */
+public final class LongArrayBuilder {
+
+    /**
+     * The initial capacity.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The values, only the first size are set.
+     */
+    private long[] values;
+
+    /**
+     * The number of values.
+     */
+    private int size;
+
+    /**
+     * Construct a new builder.
+     */
+    public LongArrayBuilder() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Construct a new builder.
+     *
+     * @param capacity The expected number of values
+     */
+    public LongArrayBuilder(int capacity) {
+        this.values = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value The value
+     */
+    public void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length + 1, values.length + (values.length >> 1)));
+        }
+
+        values[size++] = value;
+    }
+
+    /**
+     * The number of values.
+     *
+     * @return The size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy the values into an array of exactly their size.
+     *
+     * @return The values
+     */
+    public long[] toArray() {
+        return values.length == size ? values : Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the chunk of an activity into a single sortable key.
+ *
+ * <p>The key is the chunk x in the high bits and the chunk z in the low
+ * bits, each offset so it's never negative. Keys of a column of chunks are
+ * contiguous, so any box of blocks is covered exactly by one key range per
+ * chunk column it spans. The stored procedures, the schema backfill and the
+ * ClickHouse table compute the same key in SQL, changing the layout
+ * requires updating all of them.</p>
+ */
+public final class SpatialKey {
+
+    /**
+     * The number of blocks along each side of a chunk.
+     */
+    public static final int CHUNK_SIZE = 16;
+
+    /**
+     * The number of bits of each chunk coordinate.
+     */
+    private static final int AXIS_BITS = 22;
+
+    /**
+     * Added to chunk coordinates so they're never negative. Covers well past the world border.
+     */
+    public static final long AXIS_OFFSET = 1L << (AXIS_BITS - 1);
+
+    /**
+     * The multiplier that shifts the chunk x above the chunk z.
+     */
+    public static final long AXIS_MULTIPLIER = 1L << AXIS_BITS;
+
+    /**
+     * The most ranges a box is split into. Larger boxes are covered by a single
+     * range from their first to their last chunk, still narrower than the x range.
+     */
+    public static final int MAX_RANGES = 64;
+
+    /**
+     * The furthest, on any axis, a block group reaches from its stored coordinate.
+     * Location queries widen their box by this so groups centred just outside
+     * it are still found, then compare against each row's own extent.
+     */
+    public static final int MAX_EXTENT = 8;
+
+    /**
+     * An inclusive range of keys.
+     *
+     * @param from The first key
+     * @param to The last key
+     */
+    public record Range(long from, long to) {}
+
+    private SpatialKey() {}
+
+    /**
+     * Get the key of a block coordinate.
+     *
+     * @param x The x coordinate
+     * @param z The z coordinate
+     * @return The key
+     */
+    public static long of(int x, int z) {
+        return ofChunk(Math.floorDiv(x, CHUNK_SIZE), Math.floorDiv(z, CHUNK_SIZE));
+    }
+
+    /**
+     * Get the key of a chunk.
+     *
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return The key
+     */
+    private static long ofChunk(int chunkX, int chunkZ) {
+        return (chunkX + AXIS_OFFSET) * AXIS_MULTIPLIER + (chunkZ + AXIS_OFFSET);
+    }
+
+    /**
+     * Get the key ranges covering a box of blocks.
+     *
+     * @param minX The min x coordinate
+     * @param minZ The min z coordinate
+     * @param maxX The max x coordinate
+     * @param maxZ The max z coordinate
+     * @return The ranges, one per chunk column
+     */
+    public static List<Range> ranges(int minX, int minZ, int maxX, int maxZ) {
+        int minChunkX = Math.floorDiv(minX, CHUNK_SIZE);
+        int minChunkZ = Math.floorDiv(minZ, CHUNK_SIZE);
+        int maxChunkX = Math.floorDiv(maxX, CHUNK_SIZE);
+        int maxChunkZ = Math.floorDiv(maxZ, CHUNK_SIZE);
+
+        if ((long) maxChunkX - minChunkX >= MAX_RANGES) {
+            return List.of(new Range(ofChunk(minChunkX, minChunkZ), ofChunk(maxChunkX, maxChunkZ)));
+        }
+
+        List<Range> ranges = new ArrayList<>(maxChunkX - minChunkX + 1);
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            ranges.add(new Range(ofChunk(chunkX, minChunkZ), ofChunk(chunkX, maxChunkZ)));
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Get the key of every chunk in a box of blocks.
+     *
+     * @param minX The min x coordinate
+     * @param minZ The min z coordinate
+     * @param maxX The max x coordinate
+     * @param maxZ The max z coordinate
+     * @param limit The most keys to return
+     * @return The keys, or an empty list if the box spans more than the limit
+     */
+    public static List<Long> keys(int minX, int minZ, int maxX, int maxZ, int limit) {
+        int minChunkX = Math.floorDiv(minX, CHUNK_SIZE);
+        int minChunkZ = Math.floorDiv(minZ, CHUNK_SIZE);
+        int maxChunkX = Math.floorDiv(maxX, CHUNK_SIZE);
+        int maxChunkZ = Math.floorDiv(maxZ, CHUNK_SIZE);
+
+        long count = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+        if (count > limit) {
+            return List.of();
+        }
+
+        List<Long> keys = new ArrayList<>((int) count);
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                keys.add(ofChunk(chunkX, chunkZ));
+            }
+        }
+
+        return keys;
+    }
+}
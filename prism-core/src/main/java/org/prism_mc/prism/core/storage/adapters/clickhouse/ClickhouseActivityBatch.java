@@ -27,7 +27,6 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 import org.prism_mc.prism.api.actions.BlockAction;
 import org.prism_mc.prism.api.actions.CustomData;
 import org.prism_mc.prism.api.actions.EntityAction;
@@ -41,11 +40,79 @@ import org.prism_mc.prism.api.containers.StringContainer;
 import org.prism_mc.prism.api.storage.ActivityBatch;
 import org.prism_mc.prism.api.storage.wal.WalRecord;
 import org.prism_mc.prism.api.util.TextUtils;
+import org.prism_mc.prism.core.storage.IdRangeAllocator;
 import org.prism_mc.prism.core.storage.adapters.sql.SqlActivityBatch;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 
+/**
+ * Writes activities to the flat ClickHouse activities table.
+ *
+ * <p>Each activity is gathered into a row of column values, then either
+ * encoded as RowBinary and posted over the HTTP interface in one request, or
+ * bound to a JDBC batch insert when no HTTP inserter is available.</p>
+ */
 public class ClickhouseActivityBatch implements ActivityBatch {
 
+    /**
+     * The ClickHouse types of the inserted columns, in insert statement order.
+     */
+    private enum ColumnType {
+        UINT64,
+        DATE_TIME,
+        INT32,
+        STRING,
+        NULLABLE_UINT16,
+        UINT8,
+    }
+
+    /**
+     * The column types, in the order of {@code prism_activities_insert} and
+     * {@code prism_activities_insert_rowbinary}.
+     */
+    private static final ColumnType[] COLUMN_TYPES = {
+        ColumnType.UINT64, // activity_id
+        ColumnType.DATE_TIME, // timestamp
+        ColumnType.STRING, // world
+        ColumnType.STRING, // world_uuid
+        ColumnType.INT32, // x
+        ColumnType.INT32, // y
+        ColumnType.INT32, // z
+        ColumnType.STRING, // action
+        ColumnType.STRING, // affected_material
+        ColumnType.STRING, // affected_item_data
+        ColumnType.STRING, // affected_item_airtag
+        ColumnType.NULLABLE_UINT16, // affected_item_quantity
+        ColumnType.STRING, // affected_block_ns
+        ColumnType.STRING, // affected_block_name
+        ColumnType.STRING, // affected_block_data
+        ColumnType.STRING, // affected_block_translation_key
+        ColumnType.STRING, // replaced_block_ns
+        ColumnType.STRING, // replaced_block_name
+        ColumnType.STRING, // replaced_block_data
+        ColumnType.STRING, // affected_entity_type
+        ColumnType.STRING, // affected_player
+        ColumnType.STRING, // affected_player_uuid
+        ColumnType.STRING, // cause
+        ColumnType.STRING, // cause_player
+        ColumnType.STRING, // cause_player_uuid
+        ColumnType.STRING, // cause_entity_type
+        ColumnType.STRING, // cause_entity_type_translation_key
+        ColumnType.STRING, // cause_block_ns
+        ColumnType.STRING, // cause_block_name
+        ColumnType.STRING, // cause_block_translation_key
+        ColumnType.STRING, // descriptor
+        ColumnType.STRING, // metadata
+        ColumnType.NULLABLE_UINT16, // serializer_version
+        ColumnType.STRING, // serialized_data
+        ColumnType.UINT8, // reversed
+        ColumnType.UINT8, // extent
+    };
+
+    /**
+     * The initial size of the RowBinary buffer.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
     /**
      * The parameterized insert statement for the activities table, with the prefix already resolved.
      */
@@ -72,9 +139,19 @@ public class ClickhouseActivityBatch implements ActivityBatch {
     private final String prefix;
 
     /**
-     * The activity id sequence, shared with the adapter.
+     * The activity id allocator, shared with the adapter.
      */
-    private final AtomicLong activityIdSequence;
+    private final IdRangeAllocator activityIds;
+
+    /**
+     * The RowBinary http inserter, or null to insert through JDBC.
+     */
+    private final ClickhouseHttpInserter httpInserter;
+
+    /**
+     * The column values of the row being added, indexed from one like JDBC parameters.
+     */
+    private final Object[] row = new Object[COLUMN_TYPES.length + 1];
 
     /**
      * The newest airtagged item seen in this batch, keyed by airtag id.
@@ -91,15 +168,25 @@ public class ClickhouseActivityBatch implements ActivityBatch {
     private record ClickhouseAirtagPointer(String material, String data, long timestampSeconds) {}
 
     /**
-     * The connection.
+     * The connection, when inserting through JDBC.
      */
     private Connection connection;
 
     /**
-     * The statement.
+     * The statement, when inserting through JDBC.
      */
     private PreparedStatement statement;
 
+    /**
+     * The encoded rows, when inserting over http.
+     */
+    private RowBinaryBuffer rows;
+
+    /**
+     * The number of rows added.
+     */
+    private int rowCount;
+
     /**
      * Construct a new batch handler.
      *
@@ -108,7 +195,8 @@ public class ClickhouseActivityBatch implements ActivityBatch {
      * @param serializerVersion The serializer version
      * @param prefix The schema/table prefix
      * @param insertSql The parameterized activities insert statement, with the prefix already resolved
-     * @param activityIdSequence The activity id sequence
+     * @param activityIds The activity id allocator
+     * @param httpInserter The RowBinary http inserter, or null to insert through JDBC
      */
     public ClickhouseActivityBatch(
         LoggingService loggingService,
@@ -116,40 +204,48 @@ public class ClickhouseActivityBatch implements ActivityBatch {
         short serializerVersion,
         String prefix,
         String insertSql,
-        AtomicLong activityIdSequence
+        IdRangeAllocator activityIds,
+        ClickhouseHttpInserter httpInserter
     ) {
         this.loggingService = loggingService;
         this.hikariDataSource = hikariDataSource;
         this.serializerVersion = serializerVersion;
         this.prefix = prefix;
         this.insertSql = insertSql;
-        this.activityIdSequence = activityIdSequence;
+        this.activityIds = activityIds;
+        this.httpInserter = httpInserter;
     }
 
     @Override
     public void startBatch() throws SQLException {
-        connection = hikariDataSource.getConnection();
-        statement = connection.prepareStatement(insertSql);
         pendingAirtagPointers.clear();
+        rowCount = 0;
+
+        if (httpInserter != null) {
+            rows = new RowBinaryBuffer(INITIAL_BUFFER_SIZE);
+        } else {
+            connection = hikariDataSource.getConnection();
+            statement = connection.prepareStatement(insertSql);
+        }
     }
 
     @Override
     public void add(Activity activity) throws SQLException {
-        statement.setLong(1, activityIdSequence.incrementAndGet());
-        statement.setLong(2, activity.timestamp() / 1000);
-        statement.setString(3, activity.world().value());
-        statement.setString(4, activity.world().key().toString());
-        statement.setInt(5, activity.coordinate().intX());
-        statement.setInt(6, activity.coordinate().intY());
-        statement.setInt(7, activity.coordinate().intZ());
-        statement.setString(8, activity.action().type().key());
+        set(1, activityIds.nextId());
+        set(2, activity.timestamp() / 1000);
+        set(3, activity.world().value());
+        set(4, activity.world().key().toString());
+        set(5, activity.coordinate().intX());
+        set(6, activity.coordinate().intY());
+        set(7, activity.coordinate().intZ());
+        set(8, activity.action().type().key());
 
         // Affected item
         if (activity.action() instanceof ItemAction itemAction) {
-            setStringOrEmpty(9, itemAction.serializeMaterial());
-            setStringOrEmpty(10, itemAction.serializeItemData());
-            setStringOrEmpty(11, itemAction.itemAirtag());
-            statement.setShort(12, (short) itemAction.quantity());
+            set(9, itemAction.serializeMaterial());
+            set(10, itemAction.serializeItemData());
+            set(11, itemAction.itemAirtag());
+            set(12, itemAction.quantity());
 
             trackAirtagPointer(
                 itemAction.itemAirtag(),
@@ -158,84 +254,84 @@ public class ClickhouseActivityBatch implements ActivityBatch {
                 activity.timestamp() / 1000
             );
         } else {
-            statement.setString(9, "");
-            statement.setString(10, "");
-            statement.setString(11, "");
-            statement.setNull(12, Types.SMALLINT);
+            set(9, "");
+            set(10, "");
+            set(11, "");
+            set(12, null);
         }
 
         // Affected block
         if (activity.action() instanceof BlockAction blockAction) {
-            setStringOrEmpty(13, blockAction.blockContainer().blockNamespace());
-            setStringOrEmpty(14, blockAction.blockContainer().blockName());
-            setStringOrEmpty(15, blockAction.blockContainer().serializeBlockData());
-            setStringOrEmpty(16, blockAction.blockContainer().translationKey());
+            set(13, blockAction.blockContainer().blockNamespace());
+            set(14, blockAction.blockContainer().blockName());
+            set(15, blockAction.blockContainer().serializeBlockData());
+            set(16, blockAction.blockContainer().translationKey());
         } else {
-            statement.setString(13, "");
-            statement.setString(14, "");
-            statement.setString(15, "");
-            statement.setString(16, "");
+            set(13, "");
+            set(14, "");
+            set(15, "");
+            set(16, "");
         }
 
         // Replaced block
         if (activity.action() instanceof BlockAction blockAction && blockAction.replacedBlockContainer() != null) {
-            setStringOrEmpty(17, blockAction.replacedBlockContainer().blockNamespace());
-            setStringOrEmpty(18, blockAction.replacedBlockContainer().blockName());
-            setStringOrEmpty(19, blockAction.replacedBlockContainer().serializeBlockData());
+            set(17, blockAction.replacedBlockContainer().blockNamespace());
+            set(18, blockAction.replacedBlockContainer().blockName());
+            set(19, blockAction.replacedBlockContainer().serializeBlockData());
         } else {
-            statement.setString(17, "");
-            statement.setString(18, "");
-            statement.setString(19, "");
+            set(17, "");
+            set(18, "");
+            set(19, "");
         }
 
         // Affected entity
         if (activity.action() instanceof EntityAction entityAction) {
-            setStringOrEmpty(20, entityAction.entityContainer().serializeEntityType());
+            set(20, entityAction.entityContainer().serializeEntityType());
         } else {
-            statement.setString(20, "");
+            set(20, "");
         }
 
         // Affected player
         if (activity.action() instanceof PlayerAction playerAction) {
-            setStringOrEmpty(21, playerAction.playerContainer().name());
-            setStringOrEmpty(22, playerAction.playerContainer().uuid().toString());
+            set(21, playerAction.playerContainer().name());
+            set(22, playerAction.playerContainer().uuid().toString());
         } else {
-            statement.setString(21, "");
-            statement.setString(22, "");
+            set(21, "");
+            set(22, "");
         }
 
         // Cause (default all empty, then set the matching container)
         for (int i = 23; i <= 30; i++) {
-            statement.setString(i, "");
+            set(i, "");
         }
         if (activity.cause().container() instanceof StringContainer stringContainer) {
-            setStringOrEmpty(23, stringContainer.value());
+            set(23, stringContainer.value());
         } else if (activity.cause().container() instanceof PlayerContainer playerContainer) {
-            setStringOrEmpty(24, playerContainer.name());
-            setStringOrEmpty(25, playerContainer.uuid().toString());
+            set(24, playerContainer.name());
+            set(25, playerContainer.uuid().toString());
         } else if (activity.cause().container() instanceof EntityContainer entityContainer) {
-            setStringOrEmpty(26, entityContainer.serializeEntityType());
-            setStringOrEmpty(27, entityContainer.translationKey());
+            set(26, entityContainer.serializeEntityType());
+            set(27, entityContainer.translationKey());
         } else if (activity.cause().container() instanceof BlockContainer blockContainer) {
-            setStringOrEmpty(28, blockContainer.blockNamespace());
-            setStringOrEmpty(29, blockContainer.blockName());
-            setStringOrEmpty(30, blockContainer.translationKey());
+            set(28, blockContainer.blockNamespace());
+            set(29, blockContainer.blockName());
+            set(30, blockContainer.translationKey());
         }
 
         // Descriptor
         if (activity.action().descriptor() != null) {
-            statement.setString(31, TextUtils.truncateWithEllipsis(activity.action().descriptor(), 255));
+            set(31, TextUtils.truncateWithEllipsis(activity.action().descriptor(), 255));
         } else {
-            statement.setString(31, "");
+            set(31, "");
         }
 
         // Metadata
-        statement.setString(32, "");
+        set(32, "");
         if (activity.action().metadata() != null) {
             try {
                 String metadata = activity.action().serializeMetadata();
                 if (metadata != null) {
-                    statement.setString(32, metadata);
+                    set(32, metadata);
                 }
             } catch (Exception e) {
                 loggingService.handleException(e);
@@ -251,42 +347,45 @@ public class ClickhouseActivityBatch implements ActivityBatch {
             );
 
             if (customData != null) {
-                statement.setInt(33, serializerVersion);
-                statement.setString(34, customData);
+                set(33, (int) serializerVersion);
+                set(34, customData);
             } else {
-                statement.setNull(33, Types.SMALLINT);
-                statement.setString(34, "");
+                set(33, null);
+                set(34, "");
             }
         } else {
-            statement.setNull(33, Types.SMALLINT);
-            statement.setString(34, "");
+            set(33, null);
+            set(34, "");
         }
 
         // Reversed (freshly recorded activities are never reversed)
-        statement.setInt(35, activity.reversed() ? 1 : 0);
+        set(35, activity.reversed() ? 1 : 0);
 
-        statement.addBatch();
+        // Extent
+        set(36, activity.action() instanceof BlockAction blockAction ? blockAction.extent() : 0);
+
+        writeRow();
     }
 
     @Override
     public void addFromWalRecord(WalRecord walRecord) throws SQLException {
-        statement.setLong(1, activityIdSequence.incrementAndGet());
-        statement.setLong(2, walRecord.getTimestamp() / 1000);
-        setStringOrEmpty(3, walRecord.getWorldName());
-        setStringOrEmpty(4, walRecord.getWorldUuid());
-        statement.setInt(5, walRecord.getX());
-        statement.setInt(6, walRecord.getY());
-        statement.setInt(7, walRecord.getZ());
-        setStringOrEmpty(8, walRecord.getActionKey());
+        set(1, activityIds.nextId());
+        set(2, walRecord.getTimestamp() / 1000);
+        set(3, walRecord.getWorldName());
+        set(4, walRecord.getWorldUuid());
+        set(5, walRecord.getX());
+        set(6, walRecord.getY());
+        set(7, walRecord.getZ());
+        set(8, walRecord.getActionKey());
 
         // Affected item
-        setStringOrEmpty(9, walRecord.getItemMaterial());
-        setStringOrEmpty(10, walRecord.getItemData());
-        setStringOrEmpty(11, walRecord.getItemAirtag());
+        set(9, walRecord.getItemMaterial());
+        set(10, walRecord.getItemData());
+        set(11, walRecord.getItemAirtag());
         if (walRecord.getItemMaterial() != null) {
-            statement.setShort(12, (short) walRecord.getItemQuantity());
+            set(12, walRecord.getItemQuantity());
         } else {
-            statement.setNull(12, Types.SMALLINT);
+            set(12, null);
         }
 
         trackAirtagPointer(
@@ -297,47 +396,47 @@ public class ClickhouseActivityBatch implements ActivityBatch {
         );
 
         // Affected block
-        setStringOrEmpty(13, walRecord.getBlockNamespace());
-        setStringOrEmpty(14, walRecord.getBlockName());
-        setStringOrEmpty(15, walRecord.getBlockData());
-        setStringOrEmpty(16, walRecord.getBlockTranslationKey());
+        set(13, walRecord.getBlockNamespace());
+        set(14, walRecord.getBlockName());
+        set(15, walRecord.getBlockData());
+        set(16, walRecord.getBlockTranslationKey());
 
         // Replaced block
-        setStringOrEmpty(17, walRecord.getReplacedBlockNamespace());
-        setStringOrEmpty(18, walRecord.getReplacedBlockName());
-        setStringOrEmpty(19, walRecord.getReplacedBlockData());
+        set(17, walRecord.getReplacedBlockNamespace());
+        set(18, walRecord.getReplacedBlockName());
+        set(19, walRecord.getReplacedBlockData());
 
         // Affected entity
-        setStringOrEmpty(20, walRecord.getEntityType());
+        set(20, walRecord.getEntityType());
 
         // Affected player
-        setStringOrEmpty(21, walRecord.getAffectedPlayerName());
-        setStringOrEmpty(22, walRecord.getAffectedPlayerUuid());
+        set(21, walRecord.getAffectedPlayerName());
+        set(22, walRecord.getAffectedPlayerUuid());
 
         // Cause (default all empty, then set the matching type)
         for (int i = 23; i <= 30; i++) {
-            statement.setString(i, "");
+            set(i, "");
         }
         String causeType = walRecord.getCauseType();
         if ("string".equals(causeType)) {
-            setStringOrEmpty(23, walRecord.getCauseString());
+            set(23, walRecord.getCauseString());
         } else if ("player".equals(causeType)) {
-            setStringOrEmpty(24, walRecord.getCausePlayerName());
-            setStringOrEmpty(25, walRecord.getCausePlayerUuid());
+            set(24, walRecord.getCausePlayerName());
+            set(25, walRecord.getCausePlayerUuid());
         } else if ("entity".equals(causeType)) {
-            setStringOrEmpty(26, walRecord.getCauseEntityType());
-            setStringOrEmpty(27, walRecord.getCauseEntityTranslationKey());
+            set(26, walRecord.getCauseEntityType());
+            set(27, walRecord.getCauseEntityTranslationKey());
         } else if ("block".equals(causeType)) {
-            setStringOrEmpty(28, walRecord.getCauseBlockNamespace());
-            setStringOrEmpty(29, walRecord.getCauseBlockName());
-            setStringOrEmpty(30, walRecord.getCauseBlockTranslationKey());
+            set(28, walRecord.getCauseBlockNamespace());
+            set(29, walRecord.getCauseBlockName());
+            set(30, walRecord.getCauseBlockTranslationKey());
         }
 
         // Descriptor
-        setStringOrEmpty(31, TextUtils.truncateWithEllipsis(walRecord.getDescriptor(), 255));
+        set(31, TextUtils.truncateWithEllipsis(walRecord.getDescriptor(), 255));
 
         // Metadata
-        setStringOrEmpty(32, walRecord.getMetadata());
+        set(32, walRecord.getMetadata());
 
         // Custom data
         String customData = SqlActivityBatch.guardSerializedDataSize(
@@ -346,31 +445,55 @@ public class ClickhouseActivityBatch implements ActivityBatch {
             loggingService
         );
         if (customData != null) {
-            statement.setInt(33, walRecord.getSerializerVersion());
-            statement.setString(34, customData);
+            set(33, (int) walRecord.getSerializerVersion());
+            set(34, customData);
         } else {
-            statement.setNull(33, Types.SMALLINT);
-            statement.setString(34, "");
+            set(33, null);
+            set(34, "");
         }
 
         // Reversed
-        statement.setInt(35, 0);
+        set(35, 0);
+
+        // Extent
+        set(36, walRecord.getExtent());
 
-        statement.addBatch();
+        writeRow();
     }
 
     @Override
     public void commitBatch() throws SQLException {
         try {
-            statement.executeBatch();
-            flushAirtagPointers();
+            if (httpInserter != null) {
+                if (rowCount > 0) {
+                    httpInserter.insert(rows);
+                }
+
+                if (!pendingAirtagPointers.isEmpty()) {
+                    try (Connection pointerConnection = hikariDataSource.getConnection()) {
+                        flushAirtagPointers(pointerConnection);
+                    }
+                }
+            } else {
+                statement.executeBatch();
+                flushAirtagPointers(connection);
+            }
         } finally {
-            try {
-                statement.close();
-            } catch (SQLException e) {
-                loggingService.handleException(e);
+            rows = null;
+
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    loggingService.handleException(e);
+                }
+                statement = null;
+            }
+
+            if (connection != null) {
+                connection.close();
+                connection = null;
             }
-            connection.close();
         }
     }
 
@@ -406,9 +529,10 @@ public class ClickhouseActivityBatch implements ActivityBatch {
      * so a pointer only advances when the batch's item is newer than the stored one. When no airtag
      * row exists yet the update simply matches nothing.</p>
      *
+     * @param connection The connection
      * @throws SQLException On error
      */
-    private void flushAirtagPointers() throws SQLException {
+    private void flushAirtagPointers(Connection connection) throws SQLException {
         if (pendingAirtagPointers.isEmpty()) {
             return;
         }
@@ -434,14 +558,58 @@ public class ClickhouseActivityBatch implements ActivityBatch {
     }
 
     /**
-     * Set a string parameter, substituting an empty string for null. The flat table's string
-     * columns are non-nullable, so absent values are stored as empty strings.
+     * Set a column value of the row being added.
+     *
+     * @param index The column index, from one
+     * @param value The value, null only for nullable columns. Null strings are stored as empty strings,
+     *     the flat table's string columns are non-nullable.
+     */
+    private void set(int index, Object value) {
+        row[index] = value;
+    }
+
+    /**
+     * Write the row being added, either to the RowBinary buffer or to the JDBC batch.
      *
-     * @param index The parameter index
-     * @param value The value
      * @throws SQLException On error
      */
-    private void setStringOrEmpty(int index, String value) throws SQLException {
-        statement.setString(index, value != null ? value : "");
+    private void writeRow() throws SQLException {
+        for (int i = 1; i < row.length; i++) {
+            Object value = row[i];
+
+            if (httpInserter != null) {
+                switch (COLUMN_TYPES[i - 1]) {
+                    case UINT64 -> rows.writeUInt64(((Number) value).longValue());
+                    case DATE_TIME -> rows.writeDateTime(((Number) value).longValue());
+                    case INT32 -> rows.writeInt32(((Number) value).intValue());
+                    case STRING -> rows.writeString((String) value);
+                    case NULLABLE_UINT16 -> rows.writeNullableUInt16(
+                        value != null ? ((Number) value).intValue() : null
+                    );
+                    case UINT8 -> rows.writeUInt8(((Number) value).intValue());
+                }
+            } else {
+                switch (COLUMN_TYPES[i - 1]) {
+                    case UINT64, DATE_TIME -> statement.setLong(i, ((Number) value).longValue());
+                    case INT32, UINT8 -> statement.setInt(i, ((Number) value).intValue());
+                    case STRING -> statement.setString(i, value != null ? (String) value : "");
+                    case NULLABLE_UINT16 -> {
+                        if (value != null) {
+                            statement.setInt(i, ((Number) value).intValue());
+                        } else {
+                            statement.setNull(i, Types.SMALLINT);
+                        }
+                    }
+                }
+            }
+
+            row[i] = null;
+        }
+
+        if (httpInserter == null) {
+            statement.addBatch();
+        }
+
+        rowCount++;
     }
 }
@@ -27,7 +27,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
@@ -35,6 +37,7 @@ import org.prism_mc.prism.api.actions.ActionData;
 import org.prism_mc.prism.api.actions.types.ActionTypeRegistry;
 import org.prism_mc.prism.api.activities.AbstractActivity;
 import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.activities.ActivityCursor;
 import org.prism_mc.prism.api.activities.ActivityQuery;
 import org.prism_mc.prism.api.activities.Cause;
 import org.prism_mc.prism.api.activities.GroupedActivity;
@@ -47,6 +50,8 @@ import org.prism_mc.prism.api.services.pagination.PartialListPaginationResult;
 import org.prism_mc.prism.api.storage.World;
 import org.prism_mc.prism.api.util.Coordinate;
 import org.prism_mc.prism.api.util.Pair;
+import org.prism_mc.prism.core.storage.LongArrayBuilder;
+import org.prism_mc.prism.core.storage.SpatialKey;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 
 public class ClickhouseActivityQueryBuilder {
@@ -78,6 +83,16 @@ public class ClickhouseActivityQueryBuilder {
      */
     private static final int MARK_REVERSED_CHUNK_SIZE = 1000;
 
+    /**
+     * The most chunk keys a bounding box query lists, larger areas rely on the coordinate indexes alone.
+     */
+    private static final int MAX_SPATIAL_KEYS = 256;
+
+    /**
+     * The number of rows fetched at a time while reading activity ids.
+     */
+    private static final int PK_FETCH_SIZE = 10000;
+
     /**
      * The hikari data source.
      */
@@ -125,12 +140,58 @@ public class ClickhouseActivityQueryBuilder {
      * @return The paginated activity results
      */
     public PartialListPaginationResult<AbstractActivity> queryActivitiesPaginated(ActivityQuery query) {
-        long[] totalResults = new long[] { 0 };
-        List<AbstractActivity> activities = execute(query, totalResults);
+        // One extra row tells whether there's a next page without counting
+        List<AbstractActivity> activities = execute(
+            query.limit() > 0 ? query.toBuilder().limit(query.limit() + 1).build() : query
+        );
+
+        int totalResults = query.countTotal() ? countResults(query) : PartialListPaginationResult.UNCOUNTED;
 
         int currentPage = query.limit() > 0 ? (query.offset() / query.limit()) + 1 : 1;
 
-        return new PartialListPaginationResult<>(activities, (int) totalResults[0], query.limit(), currentPage);
+        return new PartialListPaginationResult<>(
+            activities,
+            totalResults,
+            query.limit(),
+            currentPage,
+            query.grouped() ? null : ActivityCursor.nextCursor(activities, query.limit())
+        );
+    }
+
+    /**
+     * Count the results of a lookup: activities, or groups of activities for grouped lookups.
+     *
+     * @param query The activity query
+     * @return The count of results
+     */
+    public int countResults(ActivityQuery query) {
+        if (!query.grouped()) {
+            return countActivities(query);
+        }
+
+        List<Object> parameters = new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder("SELECT count() AS total FROM (SELECT 1 FROM ");
+        sql.append(tableName());
+        appendWhere(query, sql, parameters);
+        sql.append(" GROUP BY ").append(BASE_COLUMNS).append(")");
+
+        try (
+            Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(sql.toString())
+        ) {
+            bindParameters(statement, parameters);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return (int) resultSet.getLong("total");
+                }
+            }
+        } catch (SQLException e) {
+            loggingService.handleException(e);
+        }
+
+        return 0;
     }
 
     /**
@@ -171,7 +232,7 @@ public class ClickhouseActivityQueryBuilder {
      * @return The list of activities
      */
     public List<Activity> queryActivities(ActivityQuery query) {
-        List<AbstractActivity> mapped = execute(query, null);
+        List<AbstractActivity> mapped = execute(query);
 
         List<Activity> activities = new ArrayList<>();
         for (AbstractActivity abstractActivity : mapped) {
@@ -202,18 +263,19 @@ public class ClickhouseActivityQueryBuilder {
             effectiveQuery = query.toBuilder().limit(maxPerOperation).build();
         }
 
-        List<Long> pks = queryActivityPks(effectiveQuery);
+        long[] pks = queryActivityPks(effectiveQuery);
 
         return new ClickhouseBatchedActivityStream(pks, query);
     }
 
     /**
      * Fetch only the {@code activity_id}s matching a modification query, in rollback ordering.
+     * The driver streams the rows, and the ids are collected into a primitive array.
      *
      * @param query The activity query
      * @return The activity ids in modification ordering
      */
-    private List<Long> queryActivityPks(ActivityQuery query) {
+    private long[] queryActivityPks(ActivityQuery query) {
         List<Object> parameters = new ArrayList<>();
         List<String> clauses = collectConditions(query, parameters);
 
@@ -226,24 +288,25 @@ public class ClickhouseActivityQueryBuilder {
         appendModificationOrdering(sql);
         appendLimitOffset(query, sql);
 
-        List<Long> pks = new ArrayList<>();
+        LongArrayBuilder pks = new LongArrayBuilder();
 
         try (
             Connection connection = dataSource.getConnection();
             PreparedStatement statement = connection.prepareStatement(sql.toString())
         ) {
             bindParameters(statement, parameters);
+            statement.setFetchSize(PK_FETCH_SIZE);
 
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    pks.add(resultSet.getLong("activity_id"));
+                    pks.add(resultSet.getLong(1));
                 }
             }
         } catch (SQLException e) {
             loggingService.handleException(e);
         }
 
-        return pks;
+        return pks.toArray();
     }
 
     /**
@@ -253,18 +316,21 @@ public class ClickhouseActivityQueryBuilder {
      * @param query The original modification query
      * @return The fully-reconstructed activities
      */
-    private List<Activity> queryActivitiesByPks(Collection<Long> pks, ActivityQuery query) {
+    private List<Activity> queryActivitiesByPks(long[] pks, ActivityQuery query) {
         List<Activity> activities = new ArrayList<>();
-        if (pks == null || pks.isEmpty()) {
+        if (pks == null || pks.length == 0) {
             return activities;
         }
 
-        List<Object> parameters = new ArrayList<>(pks);
+        List<Object> parameters = new ArrayList<>(pks.length);
+        for (long pk : pks) {
+            parameters.add(pk);
+        }
 
         StringBuilder sql = new StringBuilder("SELECT ");
         sql.append(MODIFICATION_COLUMNS);
         sql.append(" FROM ").append(tableName());
-        sql.append(" WHERE activity_id IN (").append(placeholders(pks.size())).append(")");
+        sql.append(" WHERE activity_id IN (").append(placeholders(pks.length)).append(")");
         appendModificationOrdering(sql);
 
         try (
@@ -438,16 +504,16 @@ public class ClickhouseActivityQueryBuilder {
     }
 
     /**
-     * A pull-based activity stream that holds only the matching activity ids in memory, re-fetching
-     * full modification rows per batch. Mirrors the normalized adapter's batched stream so preview →
-     * apply replay and progress reporting behave identically.
+     * A pull-based activity stream that holds only the matching activity ids in memory, as a primitive
+     * array, re-fetching full modification rows per batch. Mirrors the normalized adapter's batched
+     * stream so preview → apply replay and progress reporting behave identically.
      */
     private final class ClickhouseBatchedActivityStream implements ActivityStream {
 
         /**
          * The activity ids to stream, in modification ordering.
          */
-        private final List<Long> pks;
+        private long[] pks;
 
         /**
          * The original modification query, reused for per-batch row mapping.
@@ -475,22 +541,22 @@ public class ClickhouseActivityQueryBuilder {
          * @param pks The activity ids in modification ordering
          * @param query The original modification query
          */
-        ClickhouseBatchedActivityStream(List<Long> pks, ActivityQuery query) {
+        ClickhouseBatchedActivityStream(long[] pks, ActivityQuery query) {
             this.pks = pks;
             this.query = query;
-            this.total = pks.size();
+            this.total = pks.length;
         }
 
         @Override
         public List<Activity> next(int limit) {
-            List<Long> batchPks;
+            long[] batchPks;
             synchronized (this) {
-                if (closed || cursor >= pks.size() || limit <= 0) {
+                if (closed || cursor >= pks.length || limit <= 0) {
                     return List.of();
                 }
 
-                int end = Math.min(cursor + limit, pks.size());
-                batchPks = List.copyOf(pks.subList(cursor, end));
+                int end = Math.min(cursor + limit, pks.length);
+                batchPks = Arrays.copyOfRange(pks, cursor, end);
                 cursor = end;
             }
 
@@ -500,7 +566,7 @@ public class ClickhouseActivityQueryBuilder {
         @Override
         public synchronized void close() {
             closed = true;
-            pks.clear();
+            pks = new long[0];
         }
 
         @Override
@@ -622,21 +688,138 @@ public class ClickhouseActivityQueryBuilder {
                 }
             }
 
+            // Every delete is a mutation, even when nothing matches
+            if (deleted > 0) {
+                try (
+                    PreparedStatement deleteStatement = connection.prepareStatement(
+                        String.format("DELETE FROM %s%s", tableName(), where)
+                    )
+                ) {
+                    bindParameters(deleteStatement, parameters);
+                    deleteStatement.executeUpdate();
+                }
+            }
+
+            return deleted;
+        } catch (SQLException e) {
+            loggingService.handleException(e);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Purge every activity matching a query at once.
+     *
+     * <p>Queries bounded only by time first drop each monthly partition whose
+     * activities are all older than the bound, which removes whole parts
+     * without rewriting anything. What's left, the partial month or every
+     * match of a filtered query, is removed by a single lightweight delete
+     * instead of one mutation per primary key window. The windows that
+     * follow then find nothing left to delete.</p>
+     *
+     * @param query The activity query
+     * @return The number of purged rows
+     */
+    public int purgeActivities(ActivityQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        List<String> clauses = collectConditions(query, parameters);
+        if (clauses.isEmpty()) {
+            return 0;
+        }
+
+        String where = " WHERE " + String.join(" AND ", clauses);
+
+        long purged = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            if (query.onlyBoundedByTime()) {
+                purged += dropPartitionsBefore(connection, query.before());
+            }
+
+            long matching = 0;
             try (
-                PreparedStatement deleteStatement = connection.prepareStatement(
-                    String.format("DELETE FROM %s%s", tableName(), where)
+                PreparedStatement countStatement = connection.prepareStatement(
+                    String.format("SELECT count() AS total FROM %s%s", tableName(), where)
                 )
             ) {
-                bindParameters(deleteStatement, parameters);
-                deleteStatement.executeUpdate();
+                bindParameters(countStatement, parameters);
+
+                try (ResultSet resultSet = countStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        matching = resultSet.getLong("total");
+                    }
+                }
             }
 
-            return deleted;
+            if (matching > 0) {
+                try (
+                    PreparedStatement deleteStatement = connection.prepareStatement(
+                        String.format("DELETE FROM %s%s", tableName(), where)
+                    )
+                ) {
+                    bindParameters(deleteStatement, parameters);
+                    deleteStatement.executeUpdate();
+                }
+
+                purged += matching;
+            }
         } catch (SQLException e) {
             loggingService.handleException(e);
         }
 
-        return 0;
+        return (int) Math.min(Integer.MAX_VALUE, purged);
+    }
+
+    /**
+     * Drop every partition whose activities are all older than a timestamp.
+     *
+     * <p>Parts record the time range of their rows, so partitions are chosen
+     * without reading the table. The current month is never dropped because
+     * activities are still being written to it.</p>
+     *
+     * @param connection The connection
+     * @param before The timestamp, in epoch seconds
+     * @return The number of dropped rows, including any already hidden by lightweight deletes
+     * @throws SQLException The database exception
+     */
+    private long dropPartitionsBefore(Connection connection, long before) throws SQLException {
+        List<String> partitionIds = new ArrayList<>();
+        long rows = 0;
+
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT partition_id, sum(rows) AS total FROM system.parts " +
+                "WHERE database = currentDatabase() AND table = ? AND active " +
+                "GROUP BY partition_id " +
+                "HAVING max(max_time) < fromUnixTimestamp(?) AND partition_id != toString(toYYYYMM(now()))"
+            )
+        ) {
+            statement.setString(1, tableName());
+            statement.setLong(2, before);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    partitionIds.add(resultSet.getString("partition_id"));
+                    rows += resultSet.getLong("total");
+                }
+            }
+        }
+
+        for (String partitionId : partitionIds) {
+            try (
+                PreparedStatement statement = connection.prepareStatement(
+                    String.format("ALTER TABLE %s DROP PARTITION ID '%s'", tableName(), partitionId)
+                )
+            ) {
+                statement.execute();
+            }
+        }
+
+        if (!partitionIds.isEmpty()) {
+            loggingService.debug("Dropped activities partitions {0}, {1} activities", partitionIds, rows);
+        }
+
+        return rows;
     }
 
     /**
@@ -876,10 +1059,9 @@ public class ClickhouseActivityQueryBuilder {
      * Execute an activity query and map each result row to an activity.
      *
      * @param query The activity query
-     * @param totalResultsOut A single-element array populated with the {@code totalrows} value, or null
      * @return The mapped activities
      */
-    private List<AbstractActivity> execute(ActivityQuery query, long[] totalResultsOut) {
+    private List<AbstractActivity> execute(ActivityQuery query) {
         List<Object> parameters = new ArrayList<>();
         String sql = query.grouped() ? buildGroupedSql(query, parameters) : buildUngroupedSql(query, parameters);
 
@@ -892,16 +1074,7 @@ public class ClickhouseActivityQueryBuilder {
             bindParameters(statement, parameters);
 
             try (ResultSet resultSet = statement.executeQuery()) {
-                boolean first = true;
                 while (resultSet.next()) {
-                    if (first) {
-                        if (totalResultsOut != null) {
-                            totalResultsOut[0] = resultSet.getLong("totalrows");
-                        }
-
-                        first = false;
-                    }
-
                     AbstractActivity activity = mapRow(resultSet, query);
                     if (activity != null) {
                         activities.add(activity);
@@ -925,7 +1098,6 @@ public class ClickhouseActivityQueryBuilder {
     private String buildGroupedSql(ActivityQuery query, List<Object> parameters) {
         StringBuilder sql = new StringBuilder("SELECT ");
         sql.append(BASE_COLUMNS);
-        sql.append(", count() OVER () AS totalrows");
         sql.append(", avg(toUnixTimestamp(`timestamp`)) AS avgtime");
         sql.append(", count() AS groupcount");
         sql.append(" FROM ").append(tableName());
@@ -947,10 +1119,23 @@ public class ClickhouseActivityQueryBuilder {
     private String buildUngroupedSql(ActivityQuery query, List<Object> parameters) {
         StringBuilder sql = new StringBuilder("SELECT ");
         sql.append(BASE_COLUMNS);
-        sql.append(", count() OVER () AS totalrows");
         sql.append(", activity_id, toUnixTimestamp(`timestamp`) AS ts, x, y, z");
         sql.append(" FROM ").append(tableName());
-        appendWhere(query, sql, parameters);
+
+        List<String> clauses = collectConditions(query, parameters);
+
+        ActivityCursor seekCursor = query.seekCursor();
+        if (seekCursor != null) {
+            String comparison = query.sort().equals(ActivityQuery.Sort.ASCENDING) ? ">" : "<";
+            clauses.add(String.format("(`timestamp`, activity_id) %s (fromUnixTimestamp(?), ?)", comparison));
+            parameters.add(seekCursor.timestamp());
+            parameters.add(seekCursor.activityId());
+        }
+
+        if (!clauses.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", clauses));
+        }
+
         sql.append(" ORDER BY ts ").append(direction(query)).append(", activity_id ").append(direction(query));
         appendLimitOffset(query, sql);
 
@@ -1056,22 +1241,9 @@ public class ClickhouseActivityQueryBuilder {
 
         // Locations
         if (query.coordinate() != null) {
-            clauses.add("x = ?");
-            parameters.add(query.coordinate().intX());
-            clauses.add("y = ?");
-            parameters.add(query.coordinate().intY());
-            clauses.add("z = ?");
-            parameters.add(query.coordinate().intZ());
+            addLocationClauses(clauses, parameters, query.coordinate(), query.coordinate());
         } else if (query.minCoordinate() != null && query.maxCoordinate() != null) {
-            clauses.add("x BETWEEN ? AND ?");
-            parameters.add(query.minCoordinate().intX());
-            parameters.add(query.maxCoordinate().intX());
-            clauses.add("y BETWEEN ? AND ?");
-            parameters.add(query.minCoordinate().intY());
-            parameters.add(query.maxCoordinate().intY());
-            clauses.add("z BETWEEN ? AND ?");
-            parameters.add(query.minCoordinate().intZ());
-            parameters.add(query.maxCoordinate().intZ());
+            addLocationClauses(clauses, parameters, query.minCoordinate(), query.maxCoordinate());
         }
 
         // Y coordinate (above)
@@ -1103,6 +1275,51 @@ public class ClickhouseActivityQueryBuilder {
         return clauses;
     }
 
+    /**
+     * Add the clauses matching activities that reach into a box. Single blocks match by their
+     * coordinate, block groups by their coordinate widened by their extent. The ranges are widened by
+     * the most any group reaches, so the minmax and spatial key skip indexes still prune granules.
+     *
+     * @param clauses The clause list
+     * @param parameters The ordered parameter list to populate
+     * @param minCoordinate The min coordinate
+     * @param maxCoordinate The max coordinate
+     */
+    private void addLocationClauses(
+        List<String> clauses,
+        List<Object> parameters,
+        Coordinate minCoordinate,
+        Coordinate maxCoordinate
+    ) {
+        int reach = SpatialKey.MAX_EXTENT;
+        int[] min = { minCoordinate.intX(), minCoordinate.intY(), minCoordinate.intZ() };
+        int[] max = { maxCoordinate.intX(), maxCoordinate.intY(), maxCoordinate.intZ() };
+        String[] axes = { "x", "y", "z" };
+
+        for (int i = 0; i < axes.length; i++) {
+            clauses.add(axes[i] + " BETWEEN ? AND ?");
+            parameters.add(min[i] - reach);
+            parameters.add(max[i] + reach);
+            clauses.add(axes[i] + " + extent >= ?");
+            parameters.add(min[i]);
+            clauses.add(axes[i] + " - extent <= ?");
+            parameters.add(max[i]);
+        }
+
+        // Lets the spatial key skip index prune granules for small areas
+        List<Long> spatialKeys = SpatialKey.keys(
+            min[0] - reach,
+            min[2] - reach,
+            max[0] + reach,
+            max[2] + reach,
+            MAX_SPATIAL_KEYS
+        );
+        if (!spatialKeys.isEmpty()) {
+            clauses.add("spatial_key IN (" + String.join(", ", Collections.nCopies(spatialKeys.size(), "?")) + ")");
+            parameters.addAll(spatialKeys);
+        }
+    }
+
     /**
      * Add an inclusive {@code IN} clause for a column and append its bound values.
      *
@@ -1170,14 +1387,19 @@ public class ClickhouseActivityQueryBuilder {
     }
 
     /**
-     * Append a {@code LIMIT}/{@code OFFSET} clause when the query defines a positive limit.
+     * Append a {@code LIMIT}/{@code OFFSET} clause when the query defines a positive limit. Queries
+     * seeking past a cursor have already skipped everything before the page.
      *
      * @param query The activity query
      * @param sql The SQL builder
      */
     private void appendLimitOffset(ActivityQuery query, StringBuilder sql) {
         if (query.limit() > 0) {
-            sql.append(" LIMIT ").append(query.limit()).append(" OFFSET ").append(query.offset());
+            sql.append(" LIMIT ").append(query.limit());
+
+            if (query.seekCursor() == null) {
+                sql.append(" OFFSET ").append(query.offset());
+            }
         }
     }
 
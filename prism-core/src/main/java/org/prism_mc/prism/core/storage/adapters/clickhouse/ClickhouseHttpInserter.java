@@ -0,0 +1,142 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.clickhouse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import org.prism_mc.prism.loader.services.configuration.storage.ClickhouseDataSourceConfiguration;
+
+/**
+ * Posts RowBinary encoded rows to the ClickHouse HTTP interface.
+ *
+ * <p>Rows skip the JDBC driver's per-value binding entirely, the body is
+ * sent exactly as it was encoded. Inserts are atomic per request, so a failed
+ * batch can be retried as a whole.</p>
+ */
+public class ClickhouseHttpInserter {
+
+    /**
+     * How long to wait for a connection.
+     */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * How long to wait for an insert to be written.
+     */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * The http client.
+     */
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(CONNECT_TIMEOUT)
+        .version(HttpClient.Version.HTTP_1_1)
+        .build();
+
+    /**
+     * The insert endpoint, with the database, query and settings resolved.
+     */
+    private final URI uri;
+
+    /**
+     * The username.
+     */
+    private final String username;
+
+    /**
+     * The password.
+     */
+    private final String password;
+
+    /**
+     * Construct an inserter.
+     *
+     * @param configuration The ClickHouse configuration
+     * @param insertSql The insert statement, ending in {@code FORMAT RowBinary}
+     * @param asyncInsert Whether to use asynchronous inserts, waiting until they're written
+     */
+    public ClickhouseHttpInserter(
+        ClickhouseDataSourceConfiguration configuration,
+        String insertSql,
+        boolean asyncInsert
+    ) {
+        var query = new StringBuilder()
+            .append("database=")
+            .append(URLEncoder.encode(configuration.database(), StandardCharsets.UTF_8))
+            .append("&query=")
+            .append(URLEncoder.encode(insertSql.strip(), StandardCharsets.UTF_8));
+
+        if (asyncInsert) {
+            query.append("&async_insert=1&wait_for_async_insert=1");
+        }
+
+        this.uri = URI.create(String.format("http://%s:%s/?%s", configuration.host(), configuration.port(), query));
+        this.username = configuration.username();
+        this.password = configuration.password();
+    }
+
+    /**
+     * Insert the buffered rows.
+     *
+     * @param rows The rows
+     * @throws SQLException If the server rejects the rows or can't be reached
+     */
+    public void insert(RowBinaryBuffer rows) throws SQLException {
+        var request = HttpRequest.newBuilder(uri)
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/octet-stream")
+            .POST(rows.bodyPublisher());
+
+        if (username != null && !username.isEmpty()) {
+            request.header("X-ClickHouse-User", username);
+        }
+
+        if (password != null && !password.isEmpty()) {
+            request.header("X-ClickHouse-Key", password);
+        }
+
+        try {
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new SQLException(
+                    String.format(
+                        "ClickHouse rejected the insert (%d): %s",
+                        response.statusCode(),
+                        response.body().strip()
+                    )
+                );
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to send the insert to ClickHouse", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new SQLException("Interrupted while inserting into ClickHouse", e);
+        }
+    }
+}
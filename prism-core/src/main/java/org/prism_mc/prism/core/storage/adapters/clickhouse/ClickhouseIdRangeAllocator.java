@@ -0,0 +1,187 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.clickhouse;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.prism_mc.prism.core.storage.IdRangeAllocator;
+
+/**
+ * Leases id ranges from the ClickHouse id leases table.
+ *
+ * <p>ClickHouse has no transactions or conditional updates, so a lease is
+ * claimed optimistically: the next free range is inserted as a claim, then
+ * the claims overlapping it are read back. The claim inserted first wins,
+ * ordered by the block number ClickHouse assigns each insert, and losers
+ * retry past it. Losing claims are left in the table and are skipped by
+ * later leases like any other.</p>
+ */
+public class ClickhouseIdRangeAllocator extends IdRangeAllocator {
+
+    /**
+     * The most claims made for one lease before giving up.
+     */
+    private static final int MAX_CLAIM_ATTEMPTS = 10;
+
+    /**
+     * The data source.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The schema/table prefix.
+     */
+    private final String prefix;
+
+    /**
+     * The name of the sequence the ids belong to.
+     */
+    private final String sequence;
+
+    /**
+     * The highest id already in use outside any lease.
+     */
+    private final long floor;
+
+    /**
+     * Construct an allocator.
+     *
+     * @param dataSource The data source
+     * @param prefix The schema/table prefix
+     * @param sequence The name of the sequence the ids belong to
+     * @param leaseSize The number of ids per lease
+     * @param floor The highest id already in use outside any lease, e.g. ids written before leases existed
+     */
+    public ClickhouseIdRangeAllocator(
+        DataSource dataSource,
+        String prefix,
+        String sequence,
+        int leaseSize,
+        long floor
+    ) {
+        super(leaseSize);
+        this.dataSource = dataSource;
+        this.prefix = prefix;
+        this.sequence = sequence;
+        this.floor = floor;
+    }
+
+    @Override
+    protected IdRange lease(int size) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+                long first = Math.max(highestLeasedId(connection), floor) + 1;
+                long last = first + size - 1;
+                String claim = UUID.randomUUID().toString();
+
+                insertClaim(connection, first, last, claim);
+
+                if (claim.equals(winningClaim(connection, first, last))) {
+                    return new IdRange(first, last);
+                }
+            }
+        }
+
+        throw new SQLException(
+            String.format("Failed to lease %d %s ids after %d attempts", size, sequence, MAX_CLAIM_ATTEMPTS)
+        );
+    }
+
+    /**
+     * Get the highest id claimed so far, whether or not the claim won.
+     *
+     * @param connection The connection
+     * @return The highest claimed id, or 0 if there are no claims
+     * @throws SQLException The database exception
+     */
+    private long highestLeasedId(Connection connection) throws SQLException {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                String.format("SELECT max(last_id) FROM %sid_leases WHERE sequence = ?", prefix)
+            )
+        ) {
+            statement.setString(1, sequence);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Insert a claim on a range.
+     *
+     * @param connection The connection
+     * @param first The first id
+     * @param last The last id
+     * @param claim The claim id
+     * @throws SQLException The database exception
+     */
+    private void insertClaim(Connection connection, long first, long last, String claim) throws SQLException {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                String.format(
+                    "INSERT INTO %sid_leases (sequence, first_id, last_id, claim) VALUES (?, ?, ?, ?)",
+                    prefix
+                )
+            )
+        ) {
+            statement.setString(1, sequence);
+            statement.setLong(2, first);
+            statement.setLong(3, last);
+            statement.setString(4, claim);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Get the earliest claim overlapping a range.
+     *
+     * @param connection The connection
+     * @param first The first id
+     * @param last The last id
+     * @return The claim id
+     * @throws SQLException The database exception
+     */
+    private String winningClaim(Connection connection, long first, long last) throws SQLException {
+        try (
+            PreparedStatement statement = connection.prepareStatement(
+                String.format(
+                    "SELECT claim FROM %sid_leases WHERE sequence = ? AND first_id <= ? AND last_id >= ? " +
+                    "ORDER BY _block_number, _block_offset LIMIT 1",
+                    prefix
+                )
+            )
+        ) {
+            statement.setString(1, sequence);
+            statement.setLong(2, last);
+            statement.setLong(3, first);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+}
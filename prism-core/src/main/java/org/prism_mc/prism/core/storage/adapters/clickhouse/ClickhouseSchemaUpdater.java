@@ -33,7 +33,7 @@ public class ClickhouseSchemaUpdater {
      * The current/latest ClickHouse schema version for fresh installations. Uses the same 4xx numbering
      * as the normalized {@code SqlSchemaUpdater} so schema versions read consistently across backends.
      */
-    public static final String CURRENT_SCHEMA_VERSION = "400";
+    public static final String CURRENT_SCHEMA_VERSION = "402";
 
     /**
      * The logging service.
@@ -150,6 +150,69 @@ public class ClickhouseSchemaUpdater {
     private void migrate(Connection connection, String prefix, int fromVersion, int toVersion) throws SQLException {
         for (int version = fromVersion + 1; version <= toVersion; version++) {
             loggingService.info("Applying schema migration for version {0}", version);
+
+            if (version == 401) {
+                addSpatialKey(connection, prefix);
+            }
+
+            if (version == 402) {
+                addExtent(connection, prefix);
+            }
+        }
+    }
+
+    /**
+     * Add the spatial key column and its skip index.
+     *
+     * <p>The column is materialized, so only parts written from now on hold it. Existing
+     * parts compute it on read until they're merged or materialized by hand, which can
+     * take a long time on large tables, so it isn't done here.</p>
+     *
+     * @param connection The database connection
+     * @param prefix The schema/table prefix
+     * @throws SQLException The database exception
+     */
+    private void addSpatialKey(Connection connection, String prefix) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                String.format(
+                    "ALTER TABLE %sactivities ADD COLUMN IF NOT EXISTS spatial_key Int64 MATERIALIZED " +
+                    "(toInt64(floor(x / 16)) + 2097152) * 4194304 + toInt64(floor(z / 16)) + 2097152 AFTER z",
+                    prefix
+                )
+            );
+            statement.execute(
+                String.format(
+                    "ALTER TABLE %sactivities ADD INDEX IF NOT EXISTS idx_spatial_key spatial_key " +
+                    "TYPE bloom_filter GRANULARITY 4",
+                    prefix
+                )
+            );
+        }
+
+        loggingService.info(
+            "Added the spatial key to {0}activities. To index existing rows, run: " +
+            "ALTER TABLE {0}activities MATERIALIZE COLUMN spatial_key, " +
+            "then ALTER TABLE {0}activities MATERIALIZE INDEX idx_spatial_key",
+            prefix
+        );
+    }
+
+    /**
+     * Add the extent of block groups. Existing rows default to zero.
+     *
+     * @param connection The database connection
+     * @param prefix The schema/table prefix
+     * @throws SQLException The database exception
+     */
+    private void addExtent(Connection connection, String prefix) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                String.format(
+                    "ALTER TABLE %sactivities ADD COLUMN IF NOT EXISTS extent UInt8 DEFAULT 0 AFTER spatial_key",
+                    prefix
+                )
+            );
         }
     }
 }
@@ -31,7 +31,6 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicLong;
 import org.jooq.SQLDialect;
 import org.prism_mc.prism.api.actions.types.ActionTypeRegistry;
 import org.prism_mc.prism.api.activities.AbstractActivity;
@@ -55,9 +54,9 @@ import org.prism_mc.prism.loader.services.logging.LoggingService;
 public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
 
     /**
-     * The activity id sequence.
+     * Allocates activity ids from ranges leased by this server.
      */
-    private final AtomicLong activityIdSequence = new AtomicLong(0);
+    private ClickhouseIdRangeAllocator activityIds;
 
     /**
      * The denormalized read/lookup query builder for the flat ClickHouse fact table.
@@ -69,6 +68,16 @@ public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
      */
     private String activityInsertSql;
 
+    /**
+     * The RowBinary http inserter, or null when activities are inserted through JDBC.
+     */
+    private ClickhouseHttpInserter httpInserter;
+
+    /**
+     * Whether the connection is configured by a hikari.properties file.
+     */
+    private boolean usingHikariProperties;
+
     /**
      * Constructor.
      *
@@ -104,7 +113,6 @@ public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
         );
         try {
             var hikariConfig = HikariConfigFactories.clickhouse(configurationService.storageConfig());
-            var usingHikariProperties = false;
 
             if (hikariPropertiesFile.exists()) {
                 loggingService.info("Using hikari.properties");
@@ -139,6 +147,7 @@ public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
             try (Statement stmt = connection.createStatement()) {
                 stmt.execute(loadSqlFromResourceFile("clickhouse", "prism_activities", prefix));
                 stmt.execute(loadSqlFromResourceFile("clickhouse", "prism_airtags", prefix));
+                stmt.execute(loadSqlFromResourceFile("clickhouse", "prism_id_leases", prefix));
             }
 
             new ClickhouseSchemaUpdater(loggingService).update(connection, prefix);
@@ -146,23 +155,43 @@ public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
 
         activityInsertSql = loadSqlFromResourceFile("clickhouse", "prism_activities_insert", prefix);
 
-        seedActivityIdSequence();
+        var clickhouseConfig = configurationService.storageConfig().clickhouse();
+        if (clickhouseConfig.rowBinaryInserts() && !usingHikariProperties) {
+            httpInserter = new ClickhouseHttpInserter(
+                clickhouseConfig,
+                loadSqlFromResourceFile("clickhouse", "prism_activities_insert_rowbinary", prefix),
+                clickhouseConfig.asyncInserts()
+            );
+        }
+
+        loggingService.info(
+            "row binary inserts: {0}, async inserts: {1}",
+            httpInserter != null,
+            httpInserter != null && clickhouseConfig.asyncInserts()
+        );
+
+        activityIds = new ClickhouseIdRangeAllocator(
+            dataSource,
+            prefix,
+            "activity",
+            clickhouseConfig.idLeaseSize(),
+            highestActivityId()
+        );
     }
 
     /**
-     * Seed the activity id sequence from the highest id already stored so ids stay monotonic across restarts.
+     * Get the highest activity id already stored, so leased ids stay above ids written before leases existed.
      *
+     * @return The highest activity id, or 0 if there are none
      * @throws SQLException The database exception
      */
-    private void seedActivityIdSequence() throws SQLException {
+    private long highestActivityId() throws SQLException {
         try (
             Connection connection = dataSource.getConnection();
             Statement stmt = connection.createStatement();
             ResultSet rs = stmt.executeQuery(String.format("SELECT max(activity_id) FROM %sactivities", prefix))
         ) {
-            if (rs.next()) {
-                activityIdSequence.set(rs.getLong(1));
-            }
+            return rs.next() ? rs.getLong(1) : 0;
         }
     }
 
@@ -250,6 +279,11 @@ public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
         return clickhouseQueryBuilder.deleteActivities(query, cycleMinPrimaryKey, cycleMaxPrimaryKey);
     }
 
+    @Override
+    public int purgeActivities(ActivityQuery query) {
+        return clickhouseQueryBuilder.purgeActivities(query);
+    }
+
     @Override
     public void markReversed(List<Long> activityIds, boolean reversed) {
         clickhouseQueryBuilder.markReversed(activityIds, reversed);
@@ -288,7 +322,8 @@ public class ClickhouseStorageAdapter extends AbstractSqlStorageAdapter {
             serializerVersion,
             prefix,
             activityInsertSql,
-            activityIdSequence
+            activityIds,
+            httpInserter
         );
     }
 }
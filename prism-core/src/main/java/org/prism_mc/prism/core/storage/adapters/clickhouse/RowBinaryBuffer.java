@@ -0,0 +1,170 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.clickhouse;
+
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A buffer of rows encoded in ClickHouse's RowBinary format.
+ *
+ * <p>Values are written in column order with no delimiters: numbers are
+ * little-endian, strings are prefixed with their length as a LEB128 varint,
+ * and nullable values are prefixed with a byte that is 1 for null.</p>
+ */
+public final class RowBinaryBuffer {
+
+    /**
+     * The encoded rows.
+     */
+    private byte[] buf;
+
+    /**
+     * The number of bytes written.
+     */
+    private int count;
+
+    /**
+     * Construct a buffer.
+     *
+     * @param size The initial size, in bytes
+     */
+    public RowBinaryBuffer(int size) {
+        this.buf = new byte[Math.max(16, size)];
+    }
+
+    /**
+     * The number of bytes written.
+     *
+     * @return The size
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Write a UInt8.
+     *
+     * @param value The value
+     */
+    public void writeUInt8(int value) {
+        write(value);
+    }
+
+    /**
+     * Write a Nullable(UInt16).
+     *
+     * @param value The value, or null
+     */
+    public void writeNullableUInt16(Integer value) {
+        if (value == null) {
+            write(1);
+            return;
+        }
+
+        write(0);
+        write(value);
+        write(value >>> 8);
+    }
+
+    /**
+     * Write an Int32.
+     *
+     * @param value The value
+     */
+    public void writeInt32(int value) {
+        write(value);
+        write(value >>> 8);
+        write(value >>> 16);
+        write(value >>> 24);
+    }
+
+    /**
+     * Write a DateTime, which is a UInt32 of epoch seconds.
+     *
+     * @param epochSeconds The epoch seconds
+     */
+    public void writeDateTime(long epochSeconds) {
+        writeInt32((int) epochSeconds);
+    }
+
+    /**
+     * Write a UInt64.
+     *
+     * @param value The value
+     */
+    public void writeUInt64(long value) {
+        for (int i = 0; i < 8; i++) {
+            write((int) (value >>> (i * 8)));
+        }
+    }
+
+    /**
+     * Write a String, or LowCardinality(String), substituting an empty string for null.
+     *
+     * @param value The value
+     */
+    public void writeString(String value) {
+        if (value == null || value.isEmpty()) {
+            write(0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        write(length);
+
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Publish the buffered rows as a request body, without copying them.
+     *
+     * @return The body publisher
+     */
+    HttpRequest.BodyPublisher bodyPublisher() {
+        return HttpRequest.BodyPublishers.ofByteArray(buf, 0, count);
+    }
+
+    /**
+     * Write the low byte of a value.
+     *
+     * @param value The value
+     */
+    private void write(int value) {
+        ensureCapacity(1);
+        buf[count++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.mysql;
+
+import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.prism_mc.prism.core.services.cache.CacheService;
+import org.prism_mc.prism.core.storage.adapters.sql.SqlActivityBatch;
+import org.prism_mc.prism.core.storage.dbo.records.PrismActivitiesRecord;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+
+/**
+ * An activity batch that writes rows to MySQL/MariaDB in bulk.
+ *
+ * <p>Foreign keys are resolved exactly as they are for batch inserts, only the
+ * final insert of the activity rows differs. Rows are written either as
+ * multi-row inserts sized to fit max_allowed_packet, or streamed from memory
+ * with a single {@code LOAD DATA LOCAL INFILE}.</p>
+ *
+ * <p>LOAD DATA turns row errors into warnings, so a load that writes fewer
+ * rows than were sent or raises any warning is rolled back and written again
+ * as multi-row inserts, which fail outright in strict mode.</p>
+ */
+public class MysqlActivityBulkBatch extends SqlActivityBatch {
+
+    /**
+     * The most bind values a single prepared statement can carry.
+     */
+    private static final int MAX_BIND_VALUES = 65535;
+
+    /**
+     * Space left in each packet for the statement text and protocol overhead.
+     */
+    private static final int PACKET_HEADROOM = 64 * 1024;
+
+    /**
+     * The estimated size of a bound number.
+     */
+    private static final int NUMBER_BYTES = 9;
+
+    /**
+     * How rows are written.
+     */
+    public enum Mode {
+        /**
+         * Multi-row inserts sized to max_allowed_packet.
+         */
+        INSERT("multi-row insert"),
+
+        /**
+         * A single LOAD DATA LOCAL INFILE streamed from memory.
+         */
+        LOAD_DATA("load data");
+
+        private final String description;
+
+        Mode(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Get the description, used in logs.
+         *
+         * @return The description
+         */
+        public String description() {
+            return description;
+        }
+
+        /**
+         * Get a mode by its configured name.
+         *
+         * @param name The name
+         * @return The mode, or null if bulk writes are disabled
+         */
+        public static Mode forName(String name) {
+            if ("insert".equalsIgnoreCase(name)) {
+                return INSERT;
+            } else if ("load-data".equalsIgnoreCase(name)) {
+                return LOAD_DATA;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * The data source.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The write mode.
+     */
+    private final Mode mode;
+
+    /**
+     * The server's max_allowed_packet, in bytes.
+     */
+    private final long maxAllowedPacket;
+
+    /**
+     * Construct a new bulk batch.
+     *
+     * @param loggingService The logging service
+     * @param dslContext The DSL context
+     * @param dataSource The data source
+     * @param mode The write mode
+     * @param maxAllowedPacket The server's max_allowed_packet, in bytes
+     * @param serializerVersion The serializer version
+     * @param cacheService The cache service
+     * @param identifyWorldsByName Whether to identify worlds by name
+     * @param compressData Whether to compress item data and custom data
+     */
+    public MysqlActivityBulkBatch(
+        LoggingService loggingService,
+        DSLContext dslContext,
+        DataSource dataSource,
+        Mode mode,
+        long maxAllowedPacket,
+        short serializerVersion,
+        CacheService cacheService,
+        boolean identifyWorldsByName,
+        boolean compressData
+    ) {
+        super(loggingService, dslContext, serializerVersion, cacheService, identifyWorldsByName, compressData);
+        this.dataSource = dataSource;
+        this.mode = mode;
+        this.maxAllowedPacket = maxAllowedPacket;
+    }
+
+    /**
+     * The fields written for each row. The primary key and reversed flag use their defaults.
+     *
+     * @return The fields
+     */
+    private static List<Field<?>> fields() {
+        List<Field<?>> fields = new ArrayList<>();
+        for (Field<?> field : PRISM_ACTIVITIES.fields()) {
+            if (!field.equals(PRISM_ACTIVITIES.ACTIVITY_ID) && !field.equals(PRISM_ACTIVITIES.REVERSED)) {
+                fields.add(field);
+            }
+        }
+
+        return fields;
+    }
+
+    @Override
+    protected void insertRecords(List<PrismActivitiesRecord> records) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        if (mode == Mode.LOAD_DATA) {
+            loadData(records);
+        } else {
+            insertMultiRow(records);
+        }
+    }
+
+    /**
+     * Write rows as multi-row inserts, in one transaction so a failed batch can be retried.
+     *
+     * @param records The records
+     */
+    private void insertMultiRow(List<PrismActivitiesRecord> records) {
+        List<Field<?>> fields = fields();
+        int maxRows = Math.max(1, MAX_BIND_VALUES / fields.size());
+        long maxBytes = Math.max(PACKET_HEADROOM, maxAllowedPacket - PACKET_HEADROOM);
+
+        dslContext.transaction(configuration -> {
+            DSLContext transaction = DSL.using(configuration);
+
+            List<List<Object>> rows = new ArrayList<>();
+            long bytes = 0;
+
+            for (PrismActivitiesRecord record : records) {
+                List<Object> row = new ArrayList<>(fields.size());
+                long rowBytes = 0;
+                for (Field<?> field : fields) {
+                    Object value = record.get(field);
+                    row.add(value);
+                    rowBytes += estimateBytes(value);
+                }
+
+                if (!rows.isEmpty() && (rows.size() >= maxRows || bytes + rowBytes > maxBytes)) {
+                    insertRows(transaction, fields, rows);
+                    rows.clear();
+                    bytes = 0;
+                }
+
+                rows.add(row);
+                bytes += rowBytes;
+            }
+
+            insertRows(transaction, fields, rows);
+        });
+    }
+
+    /**
+     * Insert rows with a single statement.
+     *
+     * @param dslContext The DSL context
+     * @param fields The fields
+     * @param rows The rows
+     */
+    private static void insertRows(DSLContext dslContext, List<Field<?>> fields, List<List<Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        var insert = dslContext.insertInto(PRISM_ACTIVITIES, fields);
+        for (List<Object> row : rows) {
+            insert = insert.values(row);
+        }
+
+        insert.execute();
+    }
+
+    /**
+     * Estimate the bytes a value takes on the wire, erring high.
+     *
+     * @param value The value
+     * @return The estimated size
+     */
+    private static long estimateBytes(Object value) {
+        if (value == null) {
+            return 1;
+        } else if (value instanceof String string) {
+            // A UTF-8 encoded char never takes more than three bytes
+            return 4L + string.length() * 3L;
+        }
+
+        return NUMBER_BYTES;
+    }
+
+    /**
+     * Write rows with a single LOAD DATA LOCAL INFILE, streamed from an in-memory buffer,
+     * falling back to multi-row inserts if the server skipped or altered any row.
+     *
+     * @param records The records
+     * @throws SQLException The database exception
+     */
+    private void loadData(List<PrismActivitiesRecord> records) throws SQLException {
+        List<Field<?>> fields = fields();
+
+        var buffer = new ByteArrayOutputStream(records.size() * 128);
+        var line = new StringBuilder();
+        for (PrismActivitiesRecord record : records) {
+            line.setLength(0);
+
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    line.append('\t');
+                }
+
+                appendValue(line, record.get(fields.get(i)));
+            }
+
+            line.append('\n');
+            buffer.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        String columns = fields
+            .stream()
+            .map(field -> dslContext.render(field.getUnqualifiedName()))
+            .collect(Collectors.joining(", "));
+
+        String sql = String.format(
+            "LOAD DATA LOCAL INFILE 'prism-activities.tsv' INTO TABLE %s CHARACTER SET utf8mb4 " +
+            "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (%s)",
+            dslContext.render(PRISM_ACTIVITIES),
+            columns
+        );
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try {
+                setLocalInfileInputStream(statement, new ByteArrayInputStream(buffer.toByteArray()));
+                statement.execute(sql);
+
+                // LOCAL implies IGNORE, so rows the server rejects or alters are only warnings
+                long loaded = statement.getLargeUpdateCount();
+                String warning = firstWarning(statement);
+                if (loaded == records.size() && warning == null) {
+                    connection.commit();
+                    return;
+                }
+
+                connection.rollback();
+                loggingService.warn(
+                    "Load data wrote {0} of {1} activities ({2}), retrying as multi-row inserts",
+                    loaded,
+                    records.size(),
+                    warning != null ? warning : "no warnings"
+                );
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+
+        insertMultiRow(records);
+    }
+
+    /**
+     * Get the first warning raised by the last statement.
+     *
+     * @param statement The statement
+     * @return The warning message, or null if there were none
+     * @throws SQLException The database exception
+     */
+    private static String firstWarning(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SHOW WARNINGS LIMIT 1")) {
+            return resultSet.next() ? resultSet.getString("Message") : null;
+        }
+    }
+
+    /**
+     * Append a value in LOAD DATA's default escaped text format.
+     *
+     * @param line The line
+     * @param value The value
+     */
+    private static void appendValue(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("\\N");
+            return;
+        }
+
+        if (!(value instanceof String string)) {
+            line.append(value);
+            return;
+        }
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '\\' -> line.append("\\\\");
+                case '\t' -> line.append("\\t");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\0' -> line.append("\\0");
+                default -> line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Hand the driver the stream to read instead of a local file.
+     *
+     * @param statement The statement
+     * @param inputStream The rows
+     * @throws SQLException If the driver doesn't support streaming local data
+     */
+    private void setLocalInfileInputStream(Statement statement, InputStream inputStream) throws SQLException {
+        if (dslContext.dialect().family() == SQLDialect.MARIADB) {
+            statement.unwrap(org.mariadb.jdbc.Statement.class).setLocalInfileInputStream(inputStream);
+        } else {
+            statement.unwrap(com.mysql.cj.jdbc.JdbcStatement.class).setLocalInfileInputStream(inputStream);
+        }
+    }
+
+    @Override
+    protected String insertMode() {
+        return mode.description;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.mysql;
+
+import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jooq.Constraint;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.conf.ParamType;
+import org.prism_mc.prism.core.storage.adapters.sql.SqlActivityPartitions;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+
+/**
+ * Manages RANGE partitions of the MySQL/MariaDB activities table.
+ *
+ * <p>MySQL requires the partitioning column in every unique key, so the
+ * primary key is the activity id and timestamp. Partitioned tables can't
+ * have foreign keys, so the table is created without them.</p>
+ */
+public class MysqlActivityPartitions extends SqlActivityPartitions {
+
+    /**
+     * The name of the catch-all partition.
+     */
+    private static final String MAX_PARTITION = "pmax";
+
+    /**
+     * Construct the partition manager.
+     *
+     * @param dslContext The DSL context
+     * @param loggingService The logging service
+     */
+    public MysqlActivityPartitions(DSLContext dslContext, LoggingService loggingService) {
+        super(dslContext, loggingService);
+    }
+
+    @Override
+    public boolean isPartitioned() {
+        return dslContext.fetchExists(
+            dslContext
+                .selectOne()
+                .from("information_schema.PARTITIONS")
+                .where("TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL", tableName())
+        );
+    }
+
+    @Override
+    public void createTable(Collection<Constraint> foreignKeys) {
+        String createTable = dslContext
+            .createTable(PRISM_ACTIVITIES)
+            .columns(PRISM_ACTIVITIES.fields())
+            .primaryKey(PRISM_ACTIVITIES.ACTIVITY_ID, PRISM_ACTIVITIES.TIMESTAMP)
+            .getSQL(ParamType.INLINED);
+
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        List<String> partitions = new ArrayList<>();
+        for (int i = 0; i <= MONTHS_AHEAD; i++) {
+            partitions.add(partitionDefinition(current.plusMonths(i)));
+        }
+
+        partitions.add(String.format("PARTITION %s VALUES LESS THAN MAXVALUE", MAX_PARTITION));
+
+        dslContext.execute(
+            String.format(
+                "%s PARTITION BY RANGE (%s) (%s)",
+                createTable,
+                dslContext.render(PRISM_ACTIVITIES.TIMESTAMP.getUnqualifiedName()),
+                String.join(", ", partitions)
+            )
+        );
+    }
+
+    @Override
+    protected List<Partition> partitions() {
+        List<Partition> partitions = new ArrayList<>();
+        for (Record record : dslContext.fetch(
+            "SELECT PARTITION_NAME, TABLE_ROWS FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+            tableName()
+        )) {
+            String name = record.get(0, String.class);
+            Long rows = record.get(1, Long.class);
+
+            partitions.add(new Partition(name, parseMonth(name), rows != null ? rows : 0));
+        }
+
+        return partitions;
+    }
+
+    @Override
+    protected void addPartition(YearMonth month) {
+        // Rows can only be in the catch-all partition if inserted after it was due, this moves them
+        dslContext.execute(
+            String.format(
+                "ALTER TABLE %s REORGANIZE PARTITION %s INTO (%s, PARTITION %s VALUES LESS THAN MAXVALUE)",
+                dslContext.render(PRISM_ACTIVITIES),
+                MAX_PARTITION,
+                partitionDefinition(month),
+                MAX_PARTITION
+            )
+        );
+    }
+
+    @Override
+    protected void dropPartitions(List<Partition> partitions) {
+        dslContext.execute(
+            String.format(
+                "ALTER TABLE %s DROP PARTITION %s",
+                dslContext.render(PRISM_ACTIVITIES),
+                partitions.stream().map(Partition::name).collect(Collectors.joining(", "))
+            )
+        );
+    }
+
+    /**
+     * The definition of a month partition.
+     *
+     * @param month The month
+     * @return The partition definition
+     */
+    private static String partitionDefinition(YearMonth month) {
+        return String.format("PARTITION %s VALUES LESS THAN (%d)", monthSuffix(month), upperBound(month));
+    }
+
+    /**
+     * The unqualified activities table name.
+     *
+     * @return The table name
+     */
+    private static String tableName() {
+        return PRISM_ACTIVITIES.getName();
+    }
+}
@@ -53,6 +53,16 @@ public class MysqlStorageAdapter extends AbstractSqlStorageAdapter {
 
     private final MysqlDataSourceConfiguration dataSourceConfiguration;
 
+    /**
+     * The bulk write mode, or null if bulk writes are disabled.
+     */
+    private MysqlActivityBulkBatch.Mode bulkMode;
+
+    /**
+     * The server's max_allowed_packet, in bytes.
+     */
+    private long maxAllowedPacket;
+
     /**
      * Constructor.
      *
@@ -146,7 +156,7 @@ public class MysqlStorageAdapter extends AbstractSqlStorageAdapter {
                 describeDatabase(hikariConfig, usingHikariProperties);
                 prepareSchema();
 
-                if (!dataSourceConfiguration.useStoredProcedures()) {
+                if (bulkMode != null || !dataSourceConfiguration.useStoredProcedures()) {
                     prepareCache();
                 }
 
@@ -223,8 +233,25 @@ public class MysqlStorageAdapter extends AbstractSqlStorageAdapter {
 
             loggingService.info("sql_mode: {0}", dbVars.get("sql_mode"));
 
-            long maxAllowedPacketMb = Long.parseLong(dbVars.get("max_allowed_packet")) / 1024 / 1024;
-            loggingService.info("max_allowed_packet: {0}MB", maxAllowedPacketMb);
+            maxAllowedPacket = Long.parseLong(dbVars.get("max_allowed_packet"));
+            loggingService.info("max_allowed_packet: {0}MB", maxAllowedPacket / 1024 / 1024);
+
+            bulkMode = MysqlActivityBulkBatch.Mode.forName(dataSourceConfiguration.bulkInsertMode());
+            if (
+                bulkMode == MysqlActivityBulkBatch.Mode.LOAD_DATA &&
+                !"ON".equalsIgnoreCase(dbVars.get("local_infile"))
+            ) {
+                loggingService.warn("Bulk insert mode load-data requires local_infile=ON, falling back to insert.");
+                bulkMode = MysqlActivityBulkBatch.Mode.INSERT;
+            }
+
+            if (bulkMode != null) {
+                loggingService.info("writing activities with bulk {0}", bulkMode.description());
+            } else if (dataSourceConfiguration.useStoredProcedures()) {
+                loggingService.info("writing activities with stored procedures");
+            } else {
+                loggingService.info("writing activities with batched inserts");
+            }
 
             var waitTimeout = Long.parseLong(dbVars.get("wait_timeout"));
             if (hikariConfig.getMaxLifetime() / 1000 >= waitTimeout) {
@@ -272,6 +299,10 @@ public class MysqlStorageAdapter extends AbstractSqlStorageAdapter {
             );
         }
 
+        if (dataSourceConfiguration.partitionActivities()) {
+            activityPartitions = new MysqlActivityPartitions(dslContext, loggingService);
+        }
+
         super.prepareSchema();
 
         if (dataSourceConfiguration.useStoredProcedures()) {
@@ -333,8 +364,28 @@ public class MysqlStorageAdapter extends AbstractSqlStorageAdapter {
 
     @Override
     public ActivityBatch createActivityBatch() {
+        if (bulkMode != null) {
+            return new MysqlActivityBulkBatch(
+                loggingService,
+                dslContext,
+                dataSource,
+                bulkMode,
+                maxAllowedPacket,
+                serializerVersion,
+                cacheService,
+                configurationService.storageConfig().identifyWorldsByName(),
+                configurationService.storageConfig().compressData()
+            );
+        }
+
         if (dataSourceConfiguration.useStoredProcedures()) {
-            return new SqlActivityProcedureBatch(loggingService, dataSource, serializerVersion, prefix);
+            return new SqlActivityProcedureBatch(
+                loggingService,
+                dataSource,
+                serializerVersion,
+                prefix,
+                configurationService.storageConfig().compressData()
+            );
         }
 
         return super.createActivityBatch();
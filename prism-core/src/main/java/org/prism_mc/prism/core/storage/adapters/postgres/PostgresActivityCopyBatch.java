@@ -0,0 +1,252 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.postgres;
+
+import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.prism_mc.prism.core.services.cache.CacheService;
+import org.prism_mc.prism.core.storage.adapters.sql.SqlActivityBatch;
+import org.prism_mc.prism.core.storage.dbo.records.PrismActivitiesRecord;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+
+/**
+ * An activity batch that streams rows into postgres with {@code COPY ... FROM STDIN (FORMAT binary)}.
+ *
+ * <p>Foreign keys are resolved exactly as they are for batch inserts, only the
+ * final insert of the activity rows differs.</p>
+ */
+public class PostgresActivityCopyBatch extends SqlActivityBatch {
+
+    /**
+     * The binary copy signature, flags and header extension length.
+     */
+    private static final byte[] HEADER = {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+
+    /**
+     * The size of the buffer rows are written through.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The columns a copy writes and the statement that writes them.
+     *
+     * @param sql The copy statement
+     * @param fields The fields, in column order
+     * @param types The postgres type of each field
+     */
+    public record CopyTarget(String sql, List<Field<?>> fields, List<String> types) {}
+
+    /**
+     * The data source.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The copy target.
+     */
+    private final CopyTarget target;
+
+    /**
+     * Construct a new copy batch.
+     *
+     * @param loggingService The logging service
+     * @param dslContext The DSL context
+     * @param dataSource The data source
+     * @param target The copy target
+     * @param serializerVersion The serializer version
+     * @param cacheService The cache service
+     * @param identifyWorldsByName Whether to identify worlds by name
+     * @param compressData Whether to compress item data and custom data
+     */
+    public PostgresActivityCopyBatch(
+        LoggingService loggingService,
+        DSLContext dslContext,
+        DataSource dataSource,
+        CopyTarget target,
+        short serializerVersion,
+        CacheService cacheService,
+        boolean identifyWorldsByName,
+        boolean compressData
+    ) {
+        super(loggingService, dslContext, serializerVersion, cacheService, identifyWorldsByName, compressData);
+        this.dataSource = dataSource;
+        this.target = target;
+    }
+
+    /**
+     * Read the column types of the activities table and build the copy target.
+     *
+     * <p>Every column but the primary key and the reversed flag is written.
+     * Binary copies must match the column types exactly, so the types are
+     * read from the database rather than assumed.</p>
+     *
+     * @param dslContext The DSL context
+     * @return The copy target
+     * @throws SQLException If a column has a type the copy can't write
+     */
+    public static CopyTarget resolveTarget(DSLContext dslContext) throws SQLException {
+        String table = dslContext.render(PRISM_ACTIVITIES);
+
+        Map<String, String> columnTypes = new HashMap<>();
+        for (Record record : dslContext.fetch(
+            "SELECT a.attname, t.typname FROM pg_attribute a JOIN pg_type t ON t.oid = a.atttypid " +
+            "WHERE a.attrelid = ?::regclass AND a.attnum > 0 AND NOT a.attisdropped",
+            table
+        )) {
+            columnTypes.put(record.get(0, String.class), record.get(1, String.class));
+        }
+
+        List<Field<?>> fields = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (Field<?> field : PRISM_ACTIVITIES.fields()) {
+            if (field.equals(PRISM_ACTIVITIES.ACTIVITY_ID) || field.equals(PRISM_ACTIVITIES.REVERSED)) {
+                continue;
+            }
+
+            String type = columnTypes.get(field.getName());
+            if (type == null || !isSupported(type)) {
+                throw new SQLException(
+                    String.format("Cannot copy column %s of type %s into %s", field.getName(), type, table)
+                );
+            }
+
+            fields.add(field);
+            types.add(type);
+        }
+
+        String columns = fields
+            .stream()
+            .map(field -> dslContext.render(field.getUnqualifiedName()))
+            .collect(Collectors.joining(", "));
+
+        return new CopyTarget(
+            String.format("COPY %s (%s) FROM STDIN (FORMAT binary)", table, columns),
+            fields,
+            types
+        );
+    }
+
+    private static boolean isSupported(String type) {
+        return switch (type) {
+            case "int2", "int4", "int8", "bool", "text", "varchar", "bpchar" -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    protected void insertRecords(List<PrismActivitiesRecord> records) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            var copyStream = new PGCopyOutputStream(connection.unwrap(PGConnection.class), target.sql(), BUFFER_SIZE);
+
+            try {
+                var out = new DataOutputStream(copyStream);
+                out.write(HEADER);
+
+                for (PrismActivitiesRecord record : records) {
+                    out.writeShort(target.fields().size());
+
+                    for (int i = 0; i < target.fields().size(); i++) {
+                        writeValue(out, target.types().get(i), record.get(target.fields().get(i)));
+                    }
+                }
+
+                // File trailer
+                out.writeShort(-1);
+                out.flush();
+                copyStream.endCopy();
+            } catch (IOException | SQLException e) {
+                if (copyStream.isActive()) {
+                    copyStream.cancelCopy();
+                }
+
+                throw e instanceof SQLException sqlException
+                    ? sqlException
+                    : new SQLException("Failed to copy activities", e);
+            }
+        }
+    }
+
+    /**
+     * Write a single field in the binary copy format: its length, then its value.
+     *
+     * @param out The output stream
+     * @param type The postgres type
+     * @param value The value
+     * @throws IOException If the stream fails
+     */
+    private static void writeValue(DataOutputStream out, String type, Object value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        switch (type) {
+            case "int2" -> {
+                out.writeInt(2);
+                out.writeShort(((Number) value).shortValue());
+            }
+            case "int4" -> {
+                out.writeInt(4);
+                out.writeInt(((Number) value).intValue());
+            }
+            case "int8" -> {
+                out.writeInt(8);
+                out.writeLong(((Number) value).longValue());
+            }
+            case "bool" -> {
+                out.writeInt(1);
+                out.writeByte(Boolean.TRUE.equals(value) ? 1 : 0);
+            }
+            default -> {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    @Override
+    protected String insertMode() {
+        return "copy";
+    }
+}
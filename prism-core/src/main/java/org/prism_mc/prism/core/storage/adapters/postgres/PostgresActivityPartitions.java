@@ -0,0 +1,240 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.postgres;
+
+import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jooq.Constraint;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.conf.ParamType;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.prism_mc.prism.core.storage.adapters.sql.SqlActivityPartitions;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+
+/**
+ * Manages declarative range partitions of the postgres activities table.
+ *
+ * <p>Postgres requires the partitioning column in the primary key, so it's
+ * the activity id and timestamp. Identity columns aren't supported on
+ * partitioned tables before postgres 17, so activity ids come from a plain
+ * sequence instead.</p>
+ */
+public class PostgresActivityPartitions extends SqlActivityPartitions {
+
+    /**
+     * Construct the partition manager.
+     *
+     * @param dslContext The DSL context
+     * @param loggingService The logging service
+     */
+    public PostgresActivityPartitions(DSLContext dslContext, LoggingService loggingService) {
+        super(dslContext, loggingService);
+    }
+
+    @Override
+    public boolean isPartitioned() {
+        return dslContext.fetchExists(
+            dslContext.selectOne().from("pg_class").where("oid = to_regclass(?) AND relkind = 'p'", tableName())
+        );
+    }
+
+    @Override
+    public void createTable(Collection<Constraint> foreignKeys) {
+        String sequence = String.format("%s_activity_id_seq", tableName());
+
+        List<Field<?>> columns = new ArrayList<>();
+        for (Field<?> field : PRISM_ACTIVITIES.fields()) {
+            if (field.equals(PRISM_ACTIVITIES.ACTIVITY_ID)) {
+                columns.add(
+                    DSL.field(
+                        PRISM_ACTIVITIES.ACTIVITY_ID.getUnqualifiedName(),
+                        SQLDataType.BIGINT.nullable(false).defaultValue(
+                            DSL.field("nextval({0})", Long.class, DSL.inline(sequence))
+                        )
+                    )
+                );
+            } else {
+                columns.add(field);
+            }
+        }
+
+        String createTable = dslContext
+            .createTable(PRISM_ACTIVITIES)
+            .columns(columns)
+            .primaryKey(PRISM_ACTIVITIES.ACTIVITY_ID, PRISM_ACTIVITIES.TIMESTAMP)
+            .constraints(foreignKeys)
+            .getSQL(ParamType.INLINED);
+
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+
+        dslContext.transaction(configuration -> {
+            DSLContext transaction = DSL.using(configuration);
+
+            transaction.execute(String.format("CREATE SEQUENCE IF NOT EXISTS %s", DSL.name(sequence)));
+            transaction.execute(
+                String.format("%s PARTITION BY RANGE (%s)", createTable, render(PRISM_ACTIVITIES.TIMESTAMP))
+            );
+            transaction.execute(
+                String.format("ALTER SEQUENCE %s OWNED BY %s.%s", DSL.name(sequence), table(), idColumn())
+            );
+
+            // The first month also takes anything older, so backdated activities always have a home
+            transaction.execute(
+                String.format(
+                    "CREATE TABLE %s PARTITION OF %s FOR VALUES FROM (MINVALUE) TO (%d)",
+                    DSL.name(partitionName(current)),
+                    table(),
+                    upperBound(current)
+                )
+            );
+
+            for (int i = 1; i <= MONTHS_AHEAD; i++) {
+                YearMonth month = current.plusMonths(i);
+                transaction.execute(
+                    String.format(
+                        "CREATE TABLE %s PARTITION OF %s FOR VALUES FROM (%d) TO (%d)",
+                        DSL.name(partitionName(month)),
+                        table(),
+                        lowerBound(month),
+                        upperBound(month)
+                    )
+                );
+            }
+
+            transaction.execute(
+                String.format("CREATE TABLE %s PARTITION OF %s DEFAULT", DSL.name(defaultPartitionName()), table())
+            );
+        });
+    }
+
+    @Override
+    protected List<Partition> partitions() {
+        List<Partition> partitions = new ArrayList<>();
+        for (Record record : dslContext.fetch(
+            "SELECT c.relname, c.reltuples FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass(?)",
+            tableName()
+        )) {
+            String name = record.get(0, String.class);
+            Double rows = record.get(1, Double.class);
+
+            // Tables never analyzed report -1 tuples
+            partitions.add(new Partition(name, parseMonth(name), rows != null ? Math.max(0, rows.longValue()) : 0));
+        }
+
+        return partitions;
+    }
+
+    @Override
+    protected void addPartition(YearMonth month) {
+        String partition = DSL.name(partitionName(month)).toString();
+        String defaultPartition = DSL.name(defaultPartitionName()).toString();
+        String timestamp = render(PRISM_ACTIVITIES.TIMESTAMP);
+
+        // Postgres won't add a partition while the default partition holds rows that belong in it,
+        // so they're moved into the new table before it's attached
+        dslContext.transaction(configuration -> {
+            DSLContext transaction = DSL.using(configuration);
+
+            transaction.execute(String.format("CREATE TABLE %s (LIKE %s INCLUDING DEFAULTS)", partition, table()));
+            transaction.execute(
+                String.format(
+                    "WITH moved AS (DELETE FROM %s WHERE %s >= %d AND %s < %d RETURNING *) " +
+                    "INSERT INTO %s SELECT * FROM moved",
+                    defaultPartition,
+                    timestamp,
+                    lowerBound(month),
+                    timestamp,
+                    upperBound(month),
+                    partition
+                )
+            );
+            transaction.execute(
+                String.format(
+                    "ALTER TABLE %s ATTACH PARTITION %s FOR VALUES FROM (%d) TO (%d)",
+                    table(),
+                    partition,
+                    lowerBound(month),
+                    upperBound(month)
+                )
+            );
+        });
+    }
+
+    @Override
+    protected void dropPartitions(List<Partition> partitions) {
+        dslContext.execute(
+            String.format(
+                "DROP TABLE %s",
+                partitions.stream().map(p -> DSL.name(p.name()).toString()).collect(Collectors.joining(", "))
+            )
+        );
+    }
+
+    /**
+     * The name of a month partition.
+     *
+     * @param month The month
+     * @return The partition name
+     */
+    private static String partitionName(YearMonth month) {
+        return String.format("%s_%s", tableName(), monthSuffix(month));
+    }
+
+    /**
+     * The name of the catch-all partition.
+     *
+     * @return The partition name
+     */
+    private static String defaultPartitionName() {
+        return String.format("%s_default", tableName());
+    }
+
+    /**
+     * The unqualified activities table name.
+     *
+     * @return The table name
+     */
+    private static String tableName() {
+        return PRISM_ACTIVITIES.getName();
+    }
+
+    private String table() {
+        return dslContext.render(PRISM_ACTIVITIES);
+    }
+
+    private String idColumn() {
+        return render(PRISM_ACTIVITIES.ACTIVITY_ID);
+    }
+
+    private String render(Field<?> field) {
+        return dslContext.render(field.getUnqualifiedName());
+    }
+}
@@ -29,6 +29,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 import org.jooq.SQLDialect;
 import org.prism_mc.prism.api.actions.types.ActionTypeRegistry;
 import org.prism_mc.prism.api.storage.ActivityBatch;
@@ -49,6 +50,11 @@ public class PostgresStorageAdapter extends AbstractSqlStorageAdapter {
      */
     private String prefix;
 
+    /**
+     * The copy target, or null if activities can't be copied.
+     */
+    private PostgresActivityCopyBatch.CopyTarget copyTarget;
+
     /**
      * Constructor.
      *
@@ -98,8 +104,9 @@ public class PostgresStorageAdapter extends AbstractSqlStorageAdapter {
             if (connect(hikariConfig, SQLDialect.POSTGRES)) {
                 describeDatabase(hikariConfig, usingHikariProperties);
                 prepareSchema();
+                prepareCopy();
 
-                if (!configurationService.storageConfig().postgres().useStoredProcedures()) {
+                if (copyTarget != null || !configurationService.storageConfig().postgres().useStoredProcedures()) {
                     prepareCache();
                 }
 
@@ -156,6 +163,10 @@ public class PostgresStorageAdapter extends AbstractSqlStorageAdapter {
     protected void prepareSchema() throws Exception {
         dslContext.setSchema(configurationService.storageConfig().postgres().schema()).execute();
 
+        if (configurationService.storageConfig().postgres().partitionActivities()) {
+            activityPartitions = new PostgresActivityPartitions(dslContext, loggingService);
+        }
+
         super.prepareSchema();
 
         if (configurationService.storageConfig().postgres().useStoredProcedures()) {
@@ -185,10 +196,63 @@ public class PostgresStorageAdapter extends AbstractSqlStorageAdapter {
         }
     }
 
+    /**
+     * Query the index names of a table.
+     *
+     * <p>Reads pg_indexes rather than JDBC metadata, which doesn't list the
+     * indexes of partitioned tables.</p>
+     *
+     * @param tableName The table name
+     * @return A list of index names
+     * @throws SQLException The database exception
+     */
+    @Override
+    protected List<String> queryIndexNames(String tableName) throws SQLException {
+        return dslContext
+            .fetch("SELECT indexname FROM pg_indexes WHERE schemaname = current_schema() AND tablename = ?", tableName)
+            .getValues(0, String.class);
+    }
+
+    /**
+     * Resolve the copy target, if copying is enabled.
+     */
+    protected void prepareCopy() {
+        if (!configurationService.storageConfig().postgres().useCopy()) {
+            return;
+        }
+
+        try {
+            copyTarget = PostgresActivityCopyBatch.resolveTarget(dslContext);
+        } catch (Exception e) {
+            loggingService.warn("Activities can't be written with COPY, falling back to inserts: {0}", e.getMessage());
+        }
+
+        loggingService.info("using copy: {0}", copyTarget != null);
+    }
+
     @Override
     public ActivityBatch createActivityBatch() {
+        if (copyTarget != null) {
+            return new PostgresActivityCopyBatch(
+                loggingService,
+                dslContext,
+                dataSource,
+                copyTarget,
+                serializerVersion,
+                cacheService,
+                configurationService.storageConfig().identifyWorldsByName(),
+                configurationService.storageConfig().compressData()
+            );
+        }
+
         if (configurationService.storageConfig().postgres().useStoredProcedures()) {
-            return new SqlActivityProcedureBatch(loggingService, dataSource, serializerVersion, prefix);
+            return new SqlActivityProcedureBatch(
+                loggingService,
+                dataSource,
+                serializerVersion,
+                prefix,
+                configurationService.storageConfig().compressData()
+            );
         }
 
         return super.createActivityBatch();
@@ -33,6 +33,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Driver;
@@ -43,23 +45,32 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jooq.Constraint;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.Result;
 import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
 import org.jooq.types.UInteger;
 import org.jooq.types.UShort;
 import org.prism_mc.prism.api.actions.ActionData;
 import org.prism_mc.prism.api.actions.types.ActionTypeRegistry;
 import org.prism_mc.prism.api.activities.AbstractActivity;
 import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.activities.ActivityCursor;
 import org.prism_mc.prism.api.activities.ActivityQuery;
 import org.prism_mc.prism.api.activities.Cause;
 import org.prism_mc.prism.api.activities.GroupedActivity;
@@ -77,6 +88,7 @@ import org.prism_mc.prism.api.util.Coordinate;
 import org.prism_mc.prism.api.util.Pair;
 import org.prism_mc.prism.core.injection.factories.SqlActivityQueryBuilderFactory;
 import org.prism_mc.prism.core.services.cache.CacheService;
+import org.prism_mc.prism.core.services.cache.PrimaryKeySnapshot;
 import org.prism_mc.prism.core.storage.HikariConfigFactories;
 import org.prism_mc.prism.core.storage.dbo.DefaultCatalog;
 import org.prism_mc.prism.core.storage.dbo.Indexes;
@@ -199,11 +211,31 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
      */
     protected File hikariPropertiesFile;
 
+    /**
+     * The primary key cache snapshot file.
+     */
+    protected File primaryKeySnapshotFile;
+
+    /**
+     * Whether the primary key caches are used and were prepared, so they're worth snapshotting.
+     */
+    private boolean primaryKeyCachesPrepared = false;
+
     /**
      * The serializer version.
      */
     protected final short serializerVersion;
 
+    /**
+     * The activities partition manager, or null if the activities table isn't partitioned.
+     */
+    protected SqlActivityPartitions activityPartitions;
+
+    /**
+     * Runs the daily activities partition check, or null if the activities table isn't partitioned.
+     */
+    private ScheduledExecutorService partitionScheduler;
+
     /**
      * The logging service.
      */
@@ -291,6 +323,7 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
         this.serializerVersion = serializerVersion;
 
         this.hikariPropertiesFile = new File(dataPath.toFile(), "hikari.properties");
+        this.primaryKeySnapshotFile = new File(dataPath.toFile(), "primary-keys.snapshot");
 
         this.prefix = configurationService.storageConfig().primaryDataSource().prefix();
         loggingService.info(
@@ -541,6 +574,7 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             .column(PRISM_ITEMS.MATERIAL)
             .column(PRISM_ITEMS.DATA)
             .column(PRISM_ITEMS.AIRTAG_ID)
+            .column(PRISM_ITEMS.DATA_HASH)
             .primaryKey(PRISM_ITEMS.ITEM_ID)
             .execute();
 
@@ -573,78 +607,54 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             .execute();
 
         // Create the activities table. This one's the fatso.
-        dslContext
-            .createTableIfNotExists(PRISM_ACTIVITIES)
-            .column(PRISM_ACTIVITIES.ACTIVITY_ID)
-            .column(PRISM_ACTIVITIES.TIMESTAMP)
-            .column(PRISM_ACTIVITIES.WORLD_ID)
-            .column(PRISM_ACTIVITIES.X)
-            .column(PRISM_ACTIVITIES.Y)
-            .column(PRISM_ACTIVITIES.Z)
-            .column(PRISM_ACTIVITIES.ACTION_ID)
-            .column(PRISM_ACTIVITIES.AFFECTED_ITEM_ID)
-            .column(PRISM_ACTIVITIES.AFFECTED_ITEM_QUANTITY)
-            .column(PRISM_ACTIVITIES.AFFECTED_BLOCK_ID)
-            .column(PRISM_ACTIVITIES.REPLACED_BLOCK_ID)
-            .column(PRISM_ACTIVITIES.AFFECTED_ENTITY_TYPE_ID)
-            .column(PRISM_ACTIVITIES.AFFECTED_PLAYER_ID)
-            .column(PRISM_ACTIVITIES.CAUSE_ID)
-            .column(PRISM_ACTIVITIES.CAUSE_PLAYER_ID)
-            .column(PRISM_ACTIVITIES.CAUSE_ENTITY_TYPE_ID)
-            .column(PRISM_ACTIVITIES.CAUSE_BLOCK_ID)
-            .column(PRISM_ACTIVITIES.DESCRIPTOR)
-            .column(PRISM_ACTIVITIES.METADATA)
-            .column(PRISM_ACTIVITIES.SERIALIZER_VERSION)
-            .column(PRISM_ACTIVITIES.SERIALIZED_DATA)
-            .column(PRISM_ACTIVITIES.REVERSED)
-            .primaryKey(PRISM_ACTIVITIES.ACTIVITY_ID)
-            .constraints(
-                constraint(String.format("%s_actionId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.ACTION_ID)
-                    .references(PRISM_ACTIONS, PRISM_ACTIONS.ACTION_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_affectedEntityTypeId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.AFFECTED_ENTITY_TYPE_ID)
-                    .references(PRISM_ENTITY_TYPES, PRISM_ENTITY_TYPES.ENTITY_TYPE_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_affectedItemId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.AFFECTED_ITEM_ID)
-                    .references(PRISM_ITEMS, PRISM_ITEMS.ITEM_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_affectedBlockId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.AFFECTED_BLOCK_ID)
-                    .references(PRISM_BLOCKS, PRISM_BLOCKS.BLOCK_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_replacedBlockId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.REPLACED_BLOCK_ID)
-                    .references(PRISM_BLOCKS, PRISM_BLOCKS.BLOCK_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_affectedPlayerId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.AFFECTED_PLAYER_ID)
-                    .references(PRISM_PLAYERS, PRISM_PLAYERS.PLAYER_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_causeId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.CAUSE_ID)
-                    .references(PRISM_CAUSES, PRISM_CAUSES.CAUSE_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_causePlayerId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.CAUSE_PLAYER_ID)
-                    .references(PRISM_PLAYERS, PRISM_PLAYERS.PLAYER_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_causeEntityTypeId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.CAUSE_ENTITY_TYPE_ID)
-                    .references(PRISM_ENTITY_TYPES, PRISM_ENTITY_TYPES.ENTITY_TYPE_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_causeBlockId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.CAUSE_BLOCK_ID)
-                    .references(PRISM_BLOCKS, PRISM_BLOCKS.BLOCK_ID)
-                    .onDeleteCascade(),
-                constraint(String.format("%s_worldId", prefix))
-                    .foreignKey(PRISM_ACTIVITIES.WORLD_ID)
-                    .references(PRISM_WORLDS, PRISM_WORLDS.WORLD_ID)
-                    .onDeleteCascade()
-            )
-            .execute();
+        if (activityPartitions != null && !activityPartitions.isPartitioned()) {
+            if (tableExists(PRISM_ACTIVITIES.getName())) {
+                loggingService.warn(
+                    "The activities table already exists and isn't partitioned. Partitioning is only applied " +
+                    "when the table is first created, purges will delete rows instead."
+                );
+
+                activityPartitions = null;
+            } else {
+                activityPartitions.createTable(activityForeignKeys());
+            }
+        }
+
+        if (activityPartitions != null) {
+            activityPartitions.ensurePartitions();
+
+            schedulePartitionChecks();
+        } else {
+            dslContext
+                .createTableIfNotExists(PRISM_ACTIVITIES)
+                .column(PRISM_ACTIVITIES.ACTIVITY_ID)
+                .column(PRISM_ACTIVITIES.TIMESTAMP)
+                .column(PRISM_ACTIVITIES.WORLD_ID)
+                .column(PRISM_ACTIVITIES.X)
+                .column(PRISM_ACTIVITIES.Y)
+                .column(PRISM_ACTIVITIES.Z)
+                .column(PRISM_ACTIVITIES.ACTION_ID)
+                .column(PRISM_ACTIVITIES.AFFECTED_ITEM_ID)
+                .column(PRISM_ACTIVITIES.AFFECTED_ITEM_QUANTITY)
+                .column(PRISM_ACTIVITIES.AFFECTED_BLOCK_ID)
+                .column(PRISM_ACTIVITIES.REPLACED_BLOCK_ID)
+                .column(PRISM_ACTIVITIES.AFFECTED_ENTITY_TYPE_ID)
+                .column(PRISM_ACTIVITIES.AFFECTED_PLAYER_ID)
+                .column(PRISM_ACTIVITIES.CAUSE_ID)
+                .column(PRISM_ACTIVITIES.CAUSE_PLAYER_ID)
+                .column(PRISM_ACTIVITIES.CAUSE_ENTITY_TYPE_ID)
+                .column(PRISM_ACTIVITIES.CAUSE_BLOCK_ID)
+                .column(PRISM_ACTIVITIES.DESCRIPTOR)
+                .column(PRISM_ACTIVITIES.METADATA)
+                .column(PRISM_ACTIVITIES.SERIALIZER_VERSION)
+                .column(PRISM_ACTIVITIES.SERIALIZED_DATA)
+                .column(PRISM_ACTIVITIES.REVERSED)
+                .column(PRISM_ACTIVITIES.SPATIAL_KEY)
+                .column(PRISM_ACTIVITIES.EXTENT)
+                .primaryKey(PRISM_ACTIVITIES.ACTIVITY_ID)
+                .constraints(activityForeignKeys())
+                .execute();
+        }
 
         // Sqlite doesn't support creating indexes inline with create table and
         // MySQL doesn't support IF NOT EXISTS for indexes
@@ -751,6 +761,19 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
                 .execute();
         }
 
+        // Create a composite index for world, chunk, timestamp
+        if (!indexNames.contains(Indexes.PRISM_ACTIVITIES_WORLD_SPATIAL_TIME.getName())) {
+            dslContext
+                .createIndex(Indexes.PRISM_ACTIVITIES_WORLD_SPATIAL_TIME)
+                .on(
+                    PRISM_ACTIVITIES,
+                    PRISM_ACTIVITIES.WORLD_ID,
+                    PRISM_ACTIVITIES.SPATIAL_KEY,
+                    PRISM_ACTIVITIES.TIMESTAMP
+                )
+                .execute();
+        }
+
         var playerIndexNames = queryIndexNames(PRISM_PLAYERS.getName());
         if (!playerIndexNames.contains(Indexes.PRISM_PLAYERS_PLAYER.getName())) {
             dslContext.createIndex(Indexes.PRISM_PLAYERS_PLAYER).on(PRISM_PLAYERS, PRISM_PLAYERS.PLAYER).execute();
@@ -765,6 +788,13 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             dslContext.createIndex(Indexes.PRISM_ITEMS_AIRTAG).on(PRISM_ITEMS, PRISM_ITEMS.AIRTAG_ID).execute();
         }
 
+        if (!itemIndexNames.contains(Indexes.PRISM_ITEMS_DATA_HASH.getName())) {
+            dslContext
+                .createUniqueIndex(Indexes.PRISM_ITEMS_DATA_HASH)
+                .on(PRISM_ITEMS, PRISM_ITEMS.DATA_HASH)
+                .execute();
+        }
+
         var airtagIndexNames = queryIndexNames(PRISM_AIRTAGS.getName());
         if (!airtagIndexNames.contains(Indexes.PRISM_AIRTAGS_PLAYER_ID.getName())) {
             dslContext
@@ -774,6 +804,76 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
         }
     }
 
+    /**
+     * The foreign keys of the activities table.
+     *
+     * @return The foreign key constraints
+     */
+    protected List<Constraint> activityForeignKeys() {
+        return List.of(
+            constraint(String.format("%s_actionId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.ACTION_ID)
+                .references(PRISM_ACTIONS, PRISM_ACTIONS.ACTION_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_affectedEntityTypeId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.AFFECTED_ENTITY_TYPE_ID)
+                .references(PRISM_ENTITY_TYPES, PRISM_ENTITY_TYPES.ENTITY_TYPE_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_affectedItemId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.AFFECTED_ITEM_ID)
+                .references(PRISM_ITEMS, PRISM_ITEMS.ITEM_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_affectedBlockId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.AFFECTED_BLOCK_ID)
+                .references(PRISM_BLOCKS, PRISM_BLOCKS.BLOCK_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_replacedBlockId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.REPLACED_BLOCK_ID)
+                .references(PRISM_BLOCKS, PRISM_BLOCKS.BLOCK_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_affectedPlayerId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.AFFECTED_PLAYER_ID)
+                .references(PRISM_PLAYERS, PRISM_PLAYERS.PLAYER_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_causeId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.CAUSE_ID)
+                .references(PRISM_CAUSES, PRISM_CAUSES.CAUSE_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_causePlayerId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.CAUSE_PLAYER_ID)
+                .references(PRISM_PLAYERS, PRISM_PLAYERS.PLAYER_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_causeEntityTypeId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.CAUSE_ENTITY_TYPE_ID)
+                .references(PRISM_ENTITY_TYPES, PRISM_ENTITY_TYPES.ENTITY_TYPE_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_causeBlockId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.CAUSE_BLOCK_ID)
+                .references(PRISM_BLOCKS, PRISM_BLOCKS.BLOCK_ID)
+                .onDeleteCascade(),
+            constraint(String.format("%s_worldId", prefix))
+                .foreignKey(PRISM_ACTIVITIES.WORLD_ID)
+                .references(PRISM_WORLDS, PRISM_WORLDS.WORLD_ID)
+                .onDeleteCascade()
+        );
+    }
+
+    /**
+     * Check whether a table exists.
+     *
+     * @param tableName The table name
+     * @return True if the table exists
+     * @throws SQLException The database exception
+     */
+    protected boolean tableExists(String tableName) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (var rs = metaData.getTables(connection.getCatalog(), connection.getSchema(), tableName, null)) {
+                return rs.next();
+            }
+        }
+    }
+
     /**
      * Query the database for index names on a specific table, scoped to the current catalog.
      *
@@ -840,6 +940,259 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             cacheService.worldNamePkMap().put(worldsRecord.getWorld(), worldId);
             cacheService.worldNameUuidMap().put(worldsRecord.getWorld(), worldUuid);
         }
+
+        if (configurationService.prismConfig().cache().pkCacheWarmStart()) {
+            warmPrimaryKeyCaches();
+            primaryKeyCachesPrepared = true;
+        }
+    }
+
+    /**
+     * The number of most recent activities counted to find the most referenced rows
+     * when there's no primary key snapshot.
+     */
+    private static final long WARM_START_ACTIVITIES = 100_000;
+
+    /**
+     * Maximum number of primary keys per IN list when warming the caches.
+     */
+    private static final int WARM_START_CHUNK_SIZE = 500;
+
+    /**
+     * Warm the block data, item data, named cause and player caches.
+     *
+     * <p>Loads the primary keys saved on the last shutdown, or when there's no
+     * usable snapshot, the rows most referenced by recent activities. Rows are
+     * always read back by primary key, so the cache keys come from the database.
+     * Failures only leave the caches cold.</p>
+     */
+    protected void warmPrimaryKeyCaches() {
+        long start = System.nanoTime();
+
+        try {
+            String source = "snapshot";
+            PrimaryKeySnapshot snapshot = null;
+            try {
+                snapshot = PrimaryKeySnapshot.read(primaryKeySnapshotFile.toPath(), primaryKeySnapshotFingerprint());
+            } catch (IOException e) {
+                loggingService.warn("Ignoring unreadable primary key snapshot: {0}", e.getMessage());
+            }
+
+            if (snapshot == null) {
+                source = "recent activities";
+                snapshot = mostReferencedPrimaryKeys();
+            }
+
+            int loaded =
+                loadBlockPrimaryKeys(snapshot.blockIds()) +
+                loadItemPrimaryKeys(snapshot.itemIds()) +
+                loadCausePrimaryKeys(snapshot.causeIds()) +
+                loadPlayerPrimaryKeys(snapshot.playerIds());
+
+            loggingService.info(
+                "Warmed {0} of {1} cached primary keys from {2} in {3}ms",
+                loaded,
+                snapshot.size(),
+                source,
+                (System.nanoTime() - start) / 1_000_000
+            );
+        } catch (DataAccessException | IllegalArgumentException e) {
+            loggingService.warn("Failed to warm the primary key caches: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Identify the database and prefix, so a snapshot is never loaded into another database.
+     *
+     * <p>The JDBC url can carry credentials, so only its SHA-256 digest is written to disk.</p>
+     *
+     * @return The fingerprint
+     */
+    private String primaryKeySnapshotFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        String input = dslContext.dialect().name() + "|" + dataSource.getJdbcUrl() + "|" + prefix;
+        return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Find the blocks, items, named causes and players most referenced by recent activities,
+     * up to each cache's maximum size.
+     *
+     * @return The primary keys
+     */
+    private PrimaryKeySnapshot mostReferencedPrimaryKeys() {
+        UInteger highestActivityId = dslContext
+            .select(DSL.max(PRISM_ACTIVITIES.ACTIVITY_ID))
+            .from(PRISM_ACTIVITIES)
+            .fetchOne(0, UInteger.class);
+
+        if (highestActivityId == null) {
+            return new PrimaryKeySnapshot(new long[0], new long[0], new long[0], new long[0]);
+        }
+
+        UInteger floor = UInteger.valueOf(Math.max(0, highestActivityId.longValue() - WARM_START_ACTIVITIES));
+        var cacheConfig = configurationService.prismConfig().cache();
+
+        return new PrimaryKeySnapshot(
+            mostReferencedIds(PRISM_ACTIVITIES.AFFECTED_BLOCK_ID, floor, cacheConfig.pkCacheBlockData().maxSize()),
+            mostReferencedIds(PRISM_ACTIVITIES.AFFECTED_ITEM_ID, floor, cacheConfig.pkCacheItemData().maxSize()),
+            mostReferencedIds(PRISM_ACTIVITIES.CAUSE_ID, floor, cacheConfig.pkCacheNamedCause().maxSize()),
+            mostReferencedIds(PRISM_ACTIVITIES.CAUSE_PLAYER_ID, floor, cacheConfig.pkCachePlayer().maxSize())
+        );
+    }
+
+    /**
+     * Find the ids most referenced by a column of recent activities.
+     *
+     * @param column The activities column
+     * @param floor Only activities above this id are counted
+     * @param limit The most ids to return
+     * @return The ids, most referenced first
+     */
+    private long[] mostReferencedIds(Field<UInteger> column, UInteger floor, long limit) {
+        return dslContext
+            .select(column)
+            .from(PRISM_ACTIVITIES)
+            .where(PRISM_ACTIVITIES.ACTIVITY_ID.gt(floor), column.isNotNull())
+            .groupBy(column)
+            .orderBy(DSL.count().desc())
+            .limit(limit)
+            .fetch()
+            .stream()
+            .mapToLong(record -> record.value1().longValue())
+            .toArray();
+    }
+
+    /**
+     * Load block primary keys into the block data cache.
+     *
+     * @param ids The block primary keys
+     * @return The number loaded
+     */
+    private int loadBlockPrimaryKeys(long[] ids) {
+        int loaded = 0;
+        for (List<UInteger> chunk : primaryKeyChunks(ids)) {
+            for (var result : dslContext
+                .select(PRISM_BLOCKS.NS, PRISM_BLOCKS.NAME, PRISM_BLOCKS.DATA, PRISM_BLOCKS.BLOCK_ID)
+                .from(PRISM_BLOCKS)
+                .where(PRISM_BLOCKS.BLOCK_ID.in(chunk))
+                .fetch()) {
+                String cacheKey = SqlActivityBatch.blockCacheKey(result.value1(), result.value2(), result.value3());
+                cacheService.blockDataPkMap().put(cacheKey, result.value4().intValue());
+                loaded++;
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Load item primary keys into the item data cache. Items without a data
+     * hash are never cached, they're duplicates of a hashed item.
+     *
+     * @param ids The item primary keys
+     * @return The number loaded
+     */
+    private int loadItemPrimaryKeys(long[] ids) {
+        int loaded = 0;
+        for (List<UInteger> chunk : primaryKeyChunks(ids)) {
+            for (var result : dslContext
+                .select(PRISM_ITEMS.DATA_HASH, PRISM_ITEMS.ITEM_ID)
+                .from(PRISM_ITEMS)
+                .where(PRISM_ITEMS.ITEM_ID.in(chunk), PRISM_ITEMS.DATA_HASH.isNotNull())
+                .fetch()) {
+                cacheService.itemDataPkMap().put(result.value1(), result.value2().intValue());
+                loaded++;
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Load named cause primary keys into the named cause cache.
+     *
+     * @param ids The cause primary keys
+     * @return The number loaded
+     */
+    private int loadCausePrimaryKeys(long[] ids) {
+        int loaded = 0;
+        for (List<UInteger> chunk : primaryKeyChunks(ids)) {
+            for (var result : dslContext
+                .select(PRISM_CAUSES.CAUSE, PRISM_CAUSES.CAUSE_ID)
+                .from(PRISM_CAUSES)
+                .where(PRISM_CAUSES.CAUSE_ID.in(chunk), PRISM_CAUSES.CAUSE.isNotNull())
+                .fetch()) {
+                cacheService.namedCausePkMap().put(result.value1(), result.value2().longValue());
+                loaded++;
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Load player primary keys into the player cache.
+     *
+     * @param ids The player primary keys
+     * @return The number loaded
+     */
+    private int loadPlayerPrimaryKeys(long[] ids) {
+        int loaded = 0;
+        for (List<UInteger> chunk : primaryKeyChunks(ids)) {
+            for (var result : dslContext
+                .select(PRISM_PLAYERS.PLAYER_UUID, PRISM_PLAYERS.PLAYER_ID)
+                .from(PRISM_PLAYERS)
+                .where(PRISM_PLAYERS.PLAYER_ID.in(chunk))
+                .fetch()) {
+                cacheService.playerUuidPkMap().put(UUID.fromString(result.value1()), result.value2().longValue());
+                loaded++;
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Split primary keys into chunks small enough for an IN list.
+     *
+     * @param ids The primary keys
+     * @return The chunks
+     */
+    private static List<List<UInteger>> primaryKeyChunks(long[] ids) {
+        List<List<UInteger>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.length; start += WARM_START_CHUNK_SIZE) {
+            int end = Math.min(start + WARM_START_CHUNK_SIZE, ids.length);
+
+            List<UInteger> chunk = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                chunk.add(UInteger.valueOf(ids[i]));
+            }
+
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Save the primary keys of the hottest cache entries, for the next startup.
+     */
+    protected void writePrimaryKeySnapshot() {
+        try {
+            PrimaryKeySnapshot snapshot = cacheService.primaryKeySnapshot();
+            snapshot.write(primaryKeySnapshotFile.toPath(), primaryKeySnapshotFingerprint());
+
+            loggingService.debug("Saved {0} cached primary keys", snapshot.size());
+        } catch (IOException e) {
+            loggingService.warn("Failed to save the primary key snapshot: {0}", e.getMessage());
+        }
     }
 
     /**
@@ -884,37 +1237,37 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             effectiveQuery = query.toBuilder().limit(maxPerOperation).build();
         }
 
-        List<Long> pks = queryBuilder.queryActivityPks(effectiveQuery);
+        long[] pks = queryBuilder.queryActivityPks(effectiveQuery);
         return new SqlBatchedActivityStream(pks, query);
     }
 
     /**
-     * Streams activities by holding only the matching primary keys in memory.
+     * Streams activities by holding only the matching primary keys in memory, as a primitive array.
      */
     private final class SqlBatchedActivityStream implements ActivityStream {
 
-        private final List<Long> pks;
+        private long[] pks;
         private final ActivityQuery query;
         private final int total;
         private int cursor;
         private boolean closed;
 
-        SqlBatchedActivityStream(List<Long> pks, ActivityQuery query) {
+        SqlBatchedActivityStream(long[] pks, ActivityQuery query) {
             this.pks = pks;
             this.query = query;
-            this.total = pks.size();
+            this.total = pks.length;
         }
 
         @Override
         public List<Activity> next(int limit) {
-            List<Long> batchPks;
+            long[] batchPks;
             synchronized (this) {
-                if (closed || cursor >= pks.size() || limit <= 0) {
+                if (closed || cursor >= pks.length || limit <= 0) {
                     return List.of();
                 }
 
-                int end = Math.min(cursor + limit, pks.size());
-                batchPks = List.copyOf(pks.subList(cursor, end));
+                int end = Math.min(cursor + limit, pks.length);
+                batchPks = Arrays.copyOfRange(pks, cursor, end);
                 cursor = end;
             }
 
@@ -933,7 +1286,7 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
         @Override
         public synchronized void close() {
             closed = true;
-            pks.clear();
+            pks = new long[0];
         }
 
         @Override
@@ -952,20 +1305,24 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
 
     @Override
     public PartialListPaginationResult<AbstractActivity> queryActivitiesPaginated(ActivityQuery query) {
-        Result<org.jooq.Record> result = queryBuilder.queryActivities(query);
+        // One extra row tells whether there's a next page without counting
+        List<AbstractActivity> results = activityMapper(
+            queryBuilder.queryActivities(query.toBuilder().limit(query.limit() + 1).build()),
+            query
+        );
 
-        int totalResults = result.size();
-        if (!result.isEmpty()) {
-            totalResults = result.get(0).getValue("totalrows", Integer.class);
-        }
+        int totalResults = query.countTotal()
+            ? queryBuilder.countResults(query)
+            : PartialListPaginationResult.UNCOUNTED;
 
         int currentPage = (query.offset() / query.limit()) + 1;
 
         return new PartialListPaginationResult<>(
-            activityMapper(result, query),
+            results,
             totalResults,
             query.limit(),
-            currentPage
+            currentPage,
+            query.grouped() ? null : ActivityCursor.nextCursor(results, query.limit())
         );
     }
 
@@ -1017,7 +1374,7 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
                 material = materialName.toUpperCase(Locale.ENGLISH);
             }
 
-            String itemData = r.getValue(PRISM_ITEMS.DATA);
+            String itemData = StoredDataCodec.decode(r.getValue(PRISM_ITEMS.DATA));
 
             // Item quantity
             UShort affectedItemQuantity = r.getValue(PRISM_ACTIVITIES.AFFECTED_ITEM_QUANTITY);
@@ -1064,7 +1421,7 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             if (!query.grouped() && query.modification()) {
                 long activityId = r.getValue(PRISM_ACTIVITIES.ACTIVITY_ID).longValue();
 
-                String customData = r.getValue(PRISM_ACTIVITIES.SERIALIZED_DATA);
+                String customData = StoredDataCodec.decode(r.getValue(PRISM_ACTIVITIES.SERIALIZED_DATA));
                 UShort customDataVersion = r.getValue(PRISM_ACTIVITIES.SERIALIZER_VERSION);
                 String blockData = r.getValue(PRISM_BLOCKS.DATA);
                 String replacedBlockNamespace = r.getValue(REPLACED_BLOCKS.NS);
@@ -1208,7 +1565,8 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             dslContext,
             serializerVersion,
             cacheService,
-            configurationService.storageConfig().identifyWorldsByName()
+            configurationService.storageConfig().identifyWorldsByName(),
+            configurationService.storageConfig().compressData()
         );
     }
 
@@ -1217,6 +1575,17 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
         return queryBuilder.deleteActivities(query, cycleMinPrimaryKey, cycleMaxPrimaryKey);
     }
 
+    @Override
+    public int purgeActivities(ActivityQuery query) {
+        if (activityPartitions == null || !query.onlyBoundedByTime()) {
+            return 0;
+        }
+
+        activityPartitions.ensurePartitions();
+
+        return (int) Math.min(Integer.MAX_VALUE, activityPartitions.dropBefore(query.before()));
+    }
+
     @Override
     public Pair<Integer, Integer> getActivitiesPkBounds(ActivityQuery query) {
         return queryBuilder.queryActivitiesPkBounds(query);
@@ -1238,12 +1607,11 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
     }
 
     /**
-     * Maximum number of activity ids per {@code markReversed} statement. Chunking
-     * keeps the generated SQL well under SQLite's statement size limit and below
-     * the bind-parameter ceilings of every supported driver, regardless of how
-     * jOOQ chooses to render the IN list. 1000 is a comfortable headroom value.
+     * Above this many activity ids, {@code markReversed} loads them into a temporary
+     * table and updates with a single join instead of one statement per chunk. Postgres
+     * binds ids as arrays and doesn't need it.
      */
-    private static final int MARK_REVERSED_CHUNK_SIZE = 1000;
+    private static final int MARK_REVERSED_TEMP_TABLE_THRESHOLD = 10000;
 
     @Override
     public List<AirtagSummary> queryAirtagsForPlayer(UUID playerUuid, int limit) {
@@ -1262,7 +1630,7 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
                 new AirtagSummary(
                     r.get(PRISM_AIRTAGS.AIRTAG),
                     r.get(PRISM_ITEMS.MATERIAL),
-                    r.get(PRISM_ITEMS.DATA),
+                    StoredDataCodec.decode(r.get(PRISM_ITEMS.DATA)),
                     r.get(PRISM_AIRTAGS.CREATED_AT).longValue()
                 )
             );
@@ -1338,20 +1706,101 @@ public abstract class AbstractSqlStorageAdapter implements StorageAdapter {
             return;
         }
 
-        for (int start = 0; start < activityIds.size(); start += MARK_REVERSED_CHUNK_SIZE) {
-            int end = Math.min(start + MARK_REVERSED_CHUNK_SIZE, activityIds.size());
-            List<Long> chunk = activityIds.subList(start, end);
+        long[] ids = activityIds.stream().mapToLong(Long::longValue).toArray();
+        SQLDialect dialect = dslContext.dialect();
+
+        if (dialect.family() != SQLDialect.POSTGRES && ids.length > MARK_REVERSED_TEMP_TABLE_THRESHOLD) {
+            markReversedWithTemporaryTable(ids, reversed);
+            return;
+        }
 
+        int chunkSize = ActivityIdConditions.chunkSize(dialect);
+        for (int start = 0; start < ids.length; start += chunkSize) {
             dslContext
                 .update(PRISM_ACTIVITIES)
                 .set(PRISM_ACTIVITIES.REVERSED, reversed)
-                .where(PRISM_ACTIVITIES.ACTIVITY_ID.in(chunk.stream().map(DSL::inline).toList()))
+                .where(ActivityIdConditions.in(dialect, ids, start, Math.min(start + chunkSize, ids.length)))
                 .execute();
         }
     }
 
+    /**
+     * Set the reversed flag by joining against a temporary table of the ids.
+     *
+     * <p>The ids are written with one batched prepared statement, and the table
+     * lives only on the connection of the transaction.</p>
+     *
+     * @param ids The activity ids
+     * @param reversed The reversed flag
+     */
+    private void markReversedWithTemporaryTable(long[] ids, boolean reversed) {
+        Table<org.jooq.Record> table = DSL.table(DSL.name("prism_reversed_ids"));
+        Field<UInteger> activityId = DSL.field(DSL.name("activity_id"), SQLDataType.INTEGERUNSIGNED);
+
+        dslContext.transaction(configuration -> {
+            DSLContext transaction = DSL.using(configuration);
+
+            // A failed transaction leaves the table behind on pooled MySQL connections
+            transaction.dropTemporaryTableIfExists(table).execute();
+            transaction.createTemporaryTable(table).column(activityId).execute();
+
+            var batch = transaction.batch(transaction.insertInto(table, activityId).values((UInteger) null));
+            for (long id : ids) {
+                batch.bind(UInteger.valueOf(id));
+            }
+
+            batch.execute();
+
+            transaction
+                .update(PRISM_ACTIVITIES)
+                .set(PRISM_ACTIVITIES.REVERSED, reversed)
+                .where(PRISM_ACTIVITIES.ACTIVITY_ID.in(transaction.select(activityId).from(table)))
+                .execute();
+
+            transaction.dropTemporaryTableIfExists(table).execute();
+        });
+    }
+
+    /**
+     * Check the activities partitions once a day, so the months ahead are
+     * created while the server stays up instead of only at startup or on a
+     * purge. The check runs on its own daemon thread and failures are only
+     * logged, the catch-all partition takes activities meanwhile.
+     */
+    private void schedulePartitionChecks() {
+        if (partitionScheduler != null) {
+            return;
+        }
+
+        partitionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prism-activity-partitions");
+            t.setDaemon(true);
+            return t;
+        });
+        partitionScheduler.scheduleAtFixedRate(
+            () -> {
+                try {
+                    activityPartitions.ensurePartitions();
+                } catch (Exception e) {
+                    loggingService.handleException(e);
+                }
+            },
+            1,
+            1,
+            TimeUnit.DAYS
+        );
+    }
+
     @Override
     public void close() {
+        if (partitionScheduler != null) {
+            partitionScheduler.shutdownNow();
+        }
+
+        if (primaryKeyCachesPrepared) {
+            writePrimaryKeySnapshot();
+        }
+
         if (dataSource != null) {
             dataSource.close();
         }
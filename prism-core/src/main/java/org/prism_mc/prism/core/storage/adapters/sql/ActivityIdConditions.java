@@ -0,0 +1,127 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.sql;
+
+import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jooq.Condition;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.types.UInteger;
+
+/**
+ * Builds conditions that match activities by primary key with bound values.
+ *
+ * <p>Inlined id lists give every statement unique text, so the database parses
+ * and plans each one again and statement caches never hit. Postgres binds the
+ * ids as a single array. Other dialects bind an IN list padded with repeats of
+ * its last id up to one of a few bucket sizes, so only a handful of distinct
+ * statements are ever prepared.</p>
+ */
+public final class ActivityIdConditions {
+
+    /**
+     * The sizes IN lists are padded to. The largest stays under SQLite's
+     * default limit of 999 bind values, with room for the other parameters.
+     */
+    private static final int[] BUCKET_SIZES = { 8, 32, 128, 512 };
+
+    /**
+     * The most ids bound as a single postgres array.
+     */
+    private static final int MAX_ARRAY_SIZE = 10000;
+
+    private ActivityIdConditions() {}
+
+    /**
+     * The most ids a single condition can match.
+     *
+     * @param dialect The SQL dialect
+     * @return The chunk size callers should split ids into
+     */
+    public static int chunkSize(SQLDialect dialect) {
+        return dialect.family() == SQLDialect.POSTGRES ? MAX_ARRAY_SIZE : BUCKET_SIZES[BUCKET_SIZES.length - 1];
+    }
+
+    /**
+     * Build a condition matching a range of ids.
+     *
+     * @param dialect The SQL dialect
+     * @param ids The ids
+     * @param from The index of the first id, inclusive
+     * @param to The index of the last id, exclusive. At most {@link #chunkSize(SQLDialect)} past from
+     * @return The condition
+     */
+    public static Condition in(SQLDialect dialect, long[] ids, int from, int to) {
+        int size = to - from;
+        if (size <= 0) {
+            return DSL.falseCondition();
+        } else if (size > chunkSize(dialect)) {
+            throw new IllegalArgumentException(
+                String.format("Cannot match %d ids in one condition, the limit is %d", size, chunkSize(dialect))
+            );
+        }
+
+        if (dialect.family() == SQLDialect.POSTGRES) {
+            Long[] values = new Long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = ids[from + i];
+            }
+
+            return PRISM_ACTIVITIES.ACTIVITY_ID.coerce(SQLDataType.BIGINT).eq(
+                DSL.any(DSL.val(values, SQLDataType.BIGINT.array()))
+            );
+        }
+
+        int bucketSize = bucketSize(size);
+        List<UInteger> values = new ArrayList<>(bucketSize);
+        for (int i = from; i < to; i++) {
+            values.add(UInteger.valueOf(ids[i]));
+        }
+
+        // Repeats don't change what matches
+        UInteger last = values.getLast();
+        while (values.size() < bucketSize) {
+            values.add(last);
+        }
+
+        return PRISM_ACTIVITIES.ACTIVITY_ID.in(values);
+    }
+
+    /**
+     * Get the smallest bucket a list of ids fits in.
+     *
+     * @param size The number of ids
+     * @return The bucket size
+     */
+    private static int bucketSize(int size) {
+        for (int bucketSize : BUCKET_SIZES) {
+            if (size <= bucketSize) {
+                return bucketSize;
+            }
+        }
+
+        return size;
+    }
+}
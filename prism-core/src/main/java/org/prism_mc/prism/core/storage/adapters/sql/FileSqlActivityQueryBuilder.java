@@ -171,17 +171,9 @@ public class FileSqlActivityQueryBuilder extends SqlActivityQueryBuilder {
 
         // Locations
         if (query.coordinate() != null) {
-            queryBuilder.addConditions(
-                PRISM_ACTIVITIES.X.equal(query.coordinate().intX())
-                    .and(PRISM_ACTIVITIES.Y.equal(query.coordinate().intY()))
-                    .and(PRISM_ACTIVITIES.Z.equal(query.coordinate().intZ()))
-            );
+            queryBuilder.addConditions(locationCondition(query.coordinate(), query.coordinate()));
         } else if (query.minCoordinate() != null && query.maxCoordinate() != null) {
-            queryBuilder.addConditions(
-                PRISM_ACTIVITIES.X.between(query.minCoordinate().intX(), query.maxCoordinate().intX())
-                    .and(PRISM_ACTIVITIES.Y.between(query.minCoordinate().intY(), query.maxCoordinate().intY()))
-                    .and(PRISM_ACTIVITIES.Z.between(query.minCoordinate().intZ(), query.maxCoordinate().intZ()))
-            );
+            queryBuilder.addConditions(locationCondition(query.minCoordinate(), query.maxCoordinate()));
         }
 
         // Reversed
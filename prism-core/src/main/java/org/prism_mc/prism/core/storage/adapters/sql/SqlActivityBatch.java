@@ -30,14 +30,26 @@ import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAda
 import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_PLAYERS;
 import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_WORLDS;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.jooq.exception.SQLStateClass;
 import org.jooq.types.UInteger;
 import org.jooq.types.UShort;
 import org.prism_mc.prism.api.actions.BlockAction;
@@ -54,6 +66,7 @@ import org.prism_mc.prism.api.storage.ActivityBatch;
 import org.prism_mc.prism.api.storage.wal.WalRecord;
 import org.prism_mc.prism.api.util.TextUtils;
 import org.prism_mc.prism.core.services.cache.CacheService;
+import org.prism_mc.prism.core.storage.SpatialKey;
 import org.prism_mc.prism.core.storage.dbo.records.PrismActivitiesRecord;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 
@@ -108,7 +121,7 @@ public class SqlActivityBatch implements ActivityBatch {
     /**
      * The logging service.
      */
-    private final LoggingService loggingService;
+    protected final LoggingService loggingService;
 
     /**
      * The serializer version.
@@ -130,6 +143,21 @@ public class SqlActivityBatch implements ActivityBatch {
      */
     private final boolean identifyWorldsByName;
 
+    /**
+     * Whether to compress item data and custom data.
+     */
+    private final boolean compressData;
+
+    /**
+     * The most keys looked up or inserted by a single statement when resolving foreign keys.
+     */
+    private static final int KEY_CHUNK_SIZE = 500;
+
+    /**
+     * Activities whose foreign keys haven't been resolved yet.
+     */
+    private List<PendingActivity> pending = new ArrayList<>();
+
     /**
      * An array of records to batch insert.
      */
@@ -148,6 +176,101 @@ public class SqlActivityBatch implements ActivityBatch {
      */
     private record AirtagPointer(int itemId, long timestampSeconds) {}
 
+    /**
+     * The natural key of a block record.
+     *
+     * @param namespace The block namespace
+     * @param name The block name
+     * @param data The block data
+     * @param translationKey The translation key
+     */
+    private record BlockKey(String namespace, String name, String data, String translationKey) {
+        /**
+         * The block primary key cache key.
+         *
+         * @return The cache key
+         */
+        String cacheKey() {
+            return cacheKey(namespace, name, data);
+        }
+
+        /**
+         * Build a block primary key cache key.
+         *
+         * @param namespace The block namespace
+         * @param name The block name
+         * @param data The block data
+         * @return The cache key
+         */
+        static String cacheKey(String namespace, String name, String data) {
+            return namespace + ":" + name + (data == null ? "" : data);
+        }
+    }
+
+    /**
+     * Build a block primary key cache key.
+     *
+     * @param namespace The block namespace
+     * @param name The block name
+     * @param data The block data
+     * @return The cache key
+     */
+    static String blockCacheKey(String namespace, String name, String data) {
+        return BlockKey.cacheKey(namespace, name, data);
+    }
+
+    /**
+     * The natural key of an item record.
+     *
+     * @param material The material
+     * @param data The item data, as stored
+     * @param airtag The Prism airtag ID, or {@code null} if not airtagged
+     * @param hash The hash of the material and uncompressed item data
+     */
+    private record ItemKey(String material, String data, String airtag, long hash) {}
+
+    /**
+     * The natural key of an entity type record.
+     *
+     * @param entityType The entity type
+     * @param translationKey The translation key
+     */
+    private record EntityTypeKey(String entityType, String translationKey) {}
+
+    /**
+     * The natural key of a player record.
+     *
+     * @param uuid The player uuid
+     * @param name The player name
+     */
+    private record PlayerKey(UUID uuid, String name) {}
+
+    /**
+     * An activity record waiting for its foreign keys, with the keys to resolve.
+     */
+    private static final class PendingActivity {
+
+        final PrismActivitiesRecord record;
+        final long timestampSeconds;
+        String actionKey;
+        EntityTypeKey entityType;
+        ItemKey item;
+        BlockKey block;
+        BlockKey replacedBlock;
+        UUID worldUuid;
+        String worldName;
+        PlayerKey affectedPlayer;
+        PlayerKey causePlayer;
+        BlockKey causeBlock;
+        EntityTypeKey causeEntityType;
+        String cause;
+
+        PendingActivity(PrismActivitiesRecord record, long timestampSeconds) {
+            this.record = record;
+            this.timestampSeconds = timestampSeconds;
+        }
+    }
+
     /**
      * Construct a new batch handler.
      *
@@ -156,126 +279,97 @@ public class SqlActivityBatch implements ActivityBatch {
      * @param serializerVersion The serializer version
      * @param cacheService The cache service
      * @param identifyWorldsByName Whether to identify worlds by name
+     * @param compressData Whether to compress item data and custom data
      */
     public SqlActivityBatch(
         LoggingService loggingService,
         DSLContext dslContext,
         short serializerVersion,
         CacheService cacheService,
-        boolean identifyWorldsByName
+        boolean identifyWorldsByName,
+        boolean compressData
     ) {
         this.loggingService = loggingService;
         this.dslContext = dslContext;
         this.serializerVersion = serializerVersion;
         this.cacheService = cacheService;
         this.identifyWorldsByName = identifyWorldsByName;
+        this.compressData = compressData;
     }
 
     @Override
     public void startBatch() {
         records = new ArrayList<>();
+        pending = new ArrayList<>();
         pendingAirtagPointers = new HashMap<>();
     }
 
     @Override
-    public void add(Activity activity) throws SQLException {
+    public void add(Activity activity) {
         var record = dslContext.newRecord(PRISM_ACTIVITIES);
+        var row = new PendingActivity(record, activity.timestamp() / 1000);
 
-        record.setTimestamp(UInteger.valueOf(activity.timestamp() / 1000));
+        record.setTimestamp(UInteger.valueOf(row.timestampSeconds));
         record.setX(activity.coordinate().intX());
         record.setY(activity.coordinate().intY());
         record.setZ(activity.coordinate().intZ());
+        record.setSpatialKey(SpatialKey.of(activity.coordinate().intX(), activity.coordinate().intZ()));
 
         // Set the action relationship
-        record.setActionId(UInteger.valueOf(getOrCreateActionId(activity.action().type().key())));
+        row.actionKey = activity.action().type().key();
 
         // Set the entity relationship
         if (activity.action() instanceof EntityAction entityAction) {
-            var entityTypeId = UInteger.valueOf(
-                getOrCreateEntityTypeId(
-                    entityAction.entityContainer().serializeEntityType(),
-                    entityAction.entityContainer().translationKey()
-                )
+            row.entityType = new EntityTypeKey(
+                entityAction.entityContainer().serializeEntityType(),
+                entityAction.entityContainer().translationKey()
             );
-            record.setEntityTypeId(entityTypeId);
         }
 
         // Set the item relationship. The airtag, if any, links the item row to its airtag.
         if (activity.action() instanceof ItemAction itemAction) {
-            int itemId = getOrCreateItemId(
+            row.item = itemKey(
                 itemAction.serializeMaterial(),
                 itemAction.serializeItemData(),
                 itemAction.itemAirtag()
             );
-            record.setItemId(UInteger.valueOf(itemId));
             record.setItemQuantity(UShort.valueOf(itemAction.quantity()));
-            trackAirtagPointer(itemAction.itemAirtag(), itemId, activity.timestamp() / 1000);
         }
 
         // Set the block relationship
-        UInteger blockId = null;
         if (activity.action() instanceof BlockAction blockAction) {
-            blockId = UInteger.valueOf(
-                getOrCreateBlockId(
-                    blockAction.blockContainer().blockNamespace(),
-                    blockAction.blockContainer().blockName(),
-                    blockAction.blockContainer().serializeBlockData(),
-                    blockAction.blockContainer().translationKey()
-                )
-            );
-
-            record.setBlockId(blockId);
+            row.block = blockKey(blockAction.blockContainer());
+            record.setExtent(extentOrNull(blockAction.extent()));
 
             if (blockAction.replacedBlockContainer() != null) {
-                record.setReplacedBlockId(
-                    UInteger.valueOf(
-                        getOrCreateBlockId(
-                            blockAction.replacedBlockContainer().blockNamespace(),
-                            blockAction.replacedBlockContainer().blockName(),
-                            blockAction.replacedBlockContainer().serializeBlockData(),
-                            blockAction.replacedBlockContainer().translationKey()
-                        )
-                    )
-                );
+                row.replacedBlock = blockKey(blockAction.replacedBlockContainer());
             }
         }
 
         // Set the world relationship
-        record.setWorldId(UInteger.valueOf(getOrCreateWorldId(activity.world().key(), activity.world().value())));
+        row.worldUuid = activity.world().key();
+        row.worldName = activity.world().value();
 
         // Set the affected player relationship
         if (activity.action() instanceof PlayerAction playerAction) {
-            record.setAffectedPlayerId(
-                UInteger.valueOf(
-                    getOrCreatePlayerId(playerAction.playerContainer().uuid(), playerAction.playerContainer().name())
-                )
+            row.affectedPlayer = new PlayerKey(
+                playerAction.playerContainer().uuid(),
+                playerAction.playerContainer().name()
             );
         }
 
         // Set the cause
         if (activity.cause().container() instanceof PlayerContainer playerContainer) {
-            record.setCausePlayerId(
-                UInteger.valueOf(getOrCreatePlayerId(playerContainer.uuid(), playerContainer.name()))
-            );
+            row.causePlayer = new PlayerKey(playerContainer.uuid(), playerContainer.name());
         } else if (activity.cause().container() instanceof BlockContainer blockContainer) {
-            record.setCauseBlockId(
-                UInteger.valueOf(
-                    getOrCreateBlockId(
-                        blockContainer.blockNamespace(),
-                        blockContainer.blockName(),
-                        blockContainer.serializeBlockData(),
-                        blockContainer.translationKey()
-                    )
-                )
-            );
+            row.causeBlock = blockKey(blockContainer);
         } else if (activity.cause().container() instanceof EntityContainer entityContainer) {
-            record.setCauseEntityTypeId(
-                UInteger.valueOf(
-                    getOrCreateEntityTypeId(entityContainer.serializeEntityType(), entityContainer.translationKey())
-                )
+            row.causeEntityType = new EntityTypeKey(
+                entityContainer.serializeEntityType(),
+                entityContainer.translationKey()
             );
         } else if (activity.cause().container() instanceof StringContainer stringContainer) {
-            record.setCauseId(UInteger.valueOf(getOrCreateCauseId(stringContainer.value())));
+            row.cause = stringContainer.value();
         }
 
         // Set the descriptor
@@ -300,119 +394,93 @@ public class SqlActivityBatch implements ActivityBatch {
 
                 if (customData != null) {
                     record.setSerializerVersion(UShort.valueOf(serializerVersion));
-                    record.setSerializedData(customData);
+                    record.setSerializedData(encodeData(customData));
                 }
             }
         }
 
-        records.add(record);
+        pending.add(row);
     }
 
     @Override
-    public void addFromWalRecord(WalRecord walRecord) throws SQLException {
+    public void addFromWalRecord(WalRecord walRecord) {
         var record = dslContext.newRecord(PRISM_ACTIVITIES);
+        var row = new PendingActivity(record, walRecord.getTimestamp() / 1000);
 
-        record.setTimestamp(UInteger.valueOf(walRecord.getTimestamp() / 1000));
+        record.setTimestamp(UInteger.valueOf(row.timestampSeconds));
         record.setX(walRecord.getX());
         record.setY(walRecord.getY());
         record.setZ(walRecord.getZ());
+        record.setSpatialKey(SpatialKey.of(walRecord.getX(), walRecord.getZ()));
 
         // Action
-        record.setActionId(UInteger.valueOf(getOrCreateActionId(walRecord.getActionKey())));
+        row.actionKey = walRecord.getActionKey();
 
         // Entity
         if (walRecord.getEntityType() != null) {
-            record.setEntityTypeId(
-                UInteger.valueOf(
-                    getOrCreateEntityTypeId(walRecord.getEntityType(), walRecord.getEntityTranslationKey())
-                )
-            );
+            row.entityType = new EntityTypeKey(walRecord.getEntityType(), walRecord.getEntityTranslationKey());
         }
 
         // Item. The airtag, if any, links the item row to its airtag.
         if (walRecord.getItemMaterial() != null) {
-            int itemId = getOrCreateItemId(
-                walRecord.getItemMaterial(),
-                walRecord.getItemData(),
-                walRecord.getItemAirtag()
-            );
-            record.setItemId(UInteger.valueOf(itemId));
+            row.item = itemKey(walRecord.getItemMaterial(), walRecord.getItemData(), walRecord.getItemAirtag());
             record.setItemQuantity(UShort.valueOf(walRecord.getItemQuantity()));
-            trackAirtagPointer(walRecord.getItemAirtag(), itemId, walRecord.getTimestamp() / 1000);
         }
 
         // Block
         if (walRecord.getBlockNamespace() != null) {
-            record.setBlockId(
-                UInteger.valueOf(
-                    getOrCreateBlockId(
-                        walRecord.getBlockNamespace(),
-                        walRecord.getBlockName(),
-                        walRecord.getBlockData(),
-                        walRecord.getBlockTranslationKey()
-                    )
-                )
+            row.block = new BlockKey(
+                walRecord.getBlockNamespace(),
+                walRecord.getBlockName(),
+                walRecord.getBlockData(),
+                walRecord.getBlockTranslationKey()
             );
+            record.setExtent(extentOrNull(walRecord.getExtent()));
         }
 
         // Replaced block
         if (walRecord.getReplacedBlockNamespace() != null) {
-            record.setReplacedBlockId(
-                UInteger.valueOf(
-                    getOrCreateBlockId(
-                        walRecord.getReplacedBlockNamespace(),
-                        walRecord.getReplacedBlockName(),
-                        walRecord.getReplacedBlockData(),
-                        walRecord.getReplacedBlockTranslationKey()
-                    )
-                )
+            row.replacedBlock = new BlockKey(
+                walRecord.getReplacedBlockNamespace(),
+                walRecord.getReplacedBlockName(),
+                walRecord.getReplacedBlockData(),
+                walRecord.getReplacedBlockTranslationKey()
             );
         }
 
         // World
-        record.setWorldId(
-            UInteger.valueOf(getOrCreateWorldId(UUID.fromString(walRecord.getWorldUuid()), walRecord.getWorldName()))
-        );
+        row.worldUuid = UUID.fromString(walRecord.getWorldUuid());
+        row.worldName = walRecord.getWorldName();
 
         // Affected player
         if (walRecord.getAffectedPlayerUuid() != null) {
-            record.setAffectedPlayerId(
-                UInteger.valueOf(
-                    getOrCreatePlayerId(
-                        UUID.fromString(walRecord.getAffectedPlayerUuid()),
-                        walRecord.getAffectedPlayerName()
-                    )
-                )
+            row.affectedPlayer = new PlayerKey(
+                UUID.fromString(walRecord.getAffectedPlayerUuid()),
+                walRecord.getAffectedPlayerName()
             );
         }
 
         // Cause
         String causeType = walRecord.getCauseType();
         if ("player".equals(causeType)) {
-            record.setCausePlayerId(
-                UInteger.valueOf(
-                    getOrCreatePlayerId(UUID.fromString(walRecord.getCausePlayerUuid()), walRecord.getCausePlayerName())
-                )
+            row.causePlayer = new PlayerKey(
+                UUID.fromString(walRecord.getCausePlayerUuid()),
+                walRecord.getCausePlayerName()
             );
         } else if ("block".equals(causeType)) {
-            record.setCauseBlockId(
-                UInteger.valueOf(
-                    getOrCreateBlockId(
-                        walRecord.getCauseBlockNamespace(),
-                        walRecord.getCauseBlockName(),
-                        walRecord.getCauseBlockData(),
-                        walRecord.getCauseBlockTranslationKey()
-                    )
-                )
+            row.causeBlock = new BlockKey(
+                walRecord.getCauseBlockNamespace(),
+                walRecord.getCauseBlockName(),
+                walRecord.getCauseBlockData(),
+                walRecord.getCauseBlockTranslationKey()
             );
         } else if ("entity".equals(causeType)) {
-            record.setCauseEntityTypeId(
-                UInteger.valueOf(
-                    getOrCreateEntityTypeId(walRecord.getCauseEntityType(), walRecord.getCauseEntityTranslationKey())
-                )
+            row.causeEntityType = new EntityTypeKey(
+                walRecord.getCauseEntityType(),
+                walRecord.getCauseEntityTranslationKey()
             );
         } else if ("string".equals(causeType)) {
-            record.setCauseId(UInteger.valueOf(getOrCreateCauseId(walRecord.getCauseString())));
+            row.cause = walRecord.getCauseString();
         }
 
         // Descriptor
@@ -433,11 +501,623 @@ public class SqlActivityBatch implements ActivityBatch {
 
             if (customData != null) {
                 record.setSerializerVersion(UShort.valueOf(walRecord.getSerializerVersion()));
-                record.setSerializedData(customData);
+                record.setSerializedData(encodeData(customData));
+            }
+        }
+
+        pending.add(row);
+    }
+
+    /**
+     * Get the extent to store for a block action, null for a single block.
+     *
+     * @param extent The extent
+     * @return The extent, or null
+     */
+    static Short extentOrNull(int extent) {
+        return extent > 0 ? (short) extent : null;
+    }
+
+    /**
+     * Encode item data or custom data for storage.
+     *
+     * @param data The data
+     * @return The data, compressed if enabled
+     */
+    private String encodeData(String data) {
+        return compressData ? StoredDataCodec.encode(data) : data;
+    }
+
+    /**
+     * Build the key of an item. The hash is taken before the data is
+     * compressed, so an item keeps its key whether or not compression is
+     * enabled.
+     *
+     * @param material The material
+     * @param data The item data
+     * @param airtag The Prism airtag ID, or {@code null} if not airtagged
+     * @return The item key
+     */
+    private ItemKey itemKey(String material, String data, String airtag) {
+        return new ItemKey(material, encodeData(data), airtag, itemDataHash(material, data));
+    }
+
+    /**
+     * Whether stored item data holds the same item data as a key, whichever
+     * of them is compressed.
+     *
+     * @param stored The stored item data
+     * @param data The key's item data
+     * @return True if they hold the same data
+     */
+    private static boolean sameItemData(String stored, String data) {
+        return (
+            Objects.equals(stored, data) ||
+            Objects.equals(StoredDataCodec.decode(stored), StoredDataCodec.decode(data))
+        );
+    }
+
+    /**
+     * Build the key of a block container.
+     *
+     * @param blockContainer The block container
+     * @return The block key
+     */
+    private static BlockKey blockKey(BlockContainer blockContainer) {
+        return new BlockKey(
+            blockContainer.blockNamespace(),
+            blockContainer.blockName(),
+            blockContainer.serializeBlockData(),
+            blockContainer.translationKey()
+        );
+    }
+
+    /**
+     * Resolve the foreign keys of every pending activity and build its record.
+     *
+     * <p>Keys are resolved in two passes. The first collects every key of the
+     * batch that isn't cached, the second resolves them with one lookup and at
+     * most one multi-row insert per dimension table, instead of a lookup and an
+     * insert for each key. Worlds are few and always cached after first use, so
+     * they're still resolved one at a time.</p>
+     *
+     * @throws SQLException The database exception
+     */
+    private void resolvePending() throws SQLException {
+        Map<String, String> actionKeys = new HashMap<>();
+        Map<String, BlockKey> blockKeys = new HashMap<>();
+        Map<String, EntityTypeKey> entityTypeKeys = new HashMap<>();
+        Map<Long, ItemKey> itemKeys = new HashMap<>();
+        Map<String, String> causeKeys = new HashMap<>();
+        Map<UUID, PlayerKey> playerKeys = new HashMap<>();
+
+        for (PendingActivity row : pending) {
+            actionKeys.put(row.actionKey, row.actionKey);
+
+            for (EntityTypeKey entityType : new EntityTypeKey[] { row.entityType, row.causeEntityType }) {
+                if (entityType != null) {
+                    entityTypeKeys.putIfAbsent(entityType.entityType(), entityType);
+                }
+            }
+
+            for (BlockKey block : new BlockKey[] { row.block, row.replacedBlock, row.causeBlock }) {
+                if (block != null) {
+                    blockKeys.putIfAbsent(block.cacheKey(), block);
+                }
+            }
+
+            if (row.item != null) {
+                ItemKey existing = itemKeys.putIfAbsent(row.item.hash(), row.item);
+                if (existing != null && !Objects.equals(existing.data(), row.item.data())) {
+                    throw itemDataHashCollision(row.item);
+                }
+            }
+
+            if (row.cause != null) {
+                causeKeys.put(row.cause, row.cause);
+            }
+
+            for (PlayerKey player : new PlayerKey[] { row.affectedPlayer, row.causePlayer }) {
+                if (player != null) {
+                    playerKeys.putIfAbsent(player.uuid(), player);
+                }
+            }
+        }
+
+        Map<String, Integer> actionIds = resolveAll(
+            cacheService.actionKeyPkMap(),
+            actionKeys,
+            this::selectActionIds,
+            this::insertActions,
+            this::getOrCreateActionId
+        );
+        Map<String, Integer> blockIds = resolveAll(
+            cacheService.blockDataPkMap(),
+            blockKeys,
+            this::selectBlockIds,
+            this::insertBlocks,
+            key -> getOrCreateBlockId(key.namespace(), key.name(), key.data(), key.translationKey())
+        );
+        Map<String, Integer> entityTypeIds = resolveAll(
+            cacheService.entityTypePkMap(),
+            entityTypeKeys,
+            this::selectEntityTypeIds,
+            this::insertEntityTypes,
+            key -> getOrCreateEntityTypeId(key.entityType(), key.translationKey())
+        );
+        Map<Long, Integer> itemIds = resolveAll(
+            cacheService.itemDataPkMap(),
+            itemKeys,
+            this::selectItemIds,
+            this::insertItems,
+            this::getOrCreateItemId
+        );
+        Map<String, Long> causeIds = resolveAll(
+            cacheService.namedCausePkMap(),
+            causeKeys,
+            this::selectCauseIds,
+            this::insertCauses,
+            this::getOrCreateCauseId
+        );
+        Map<UUID, Long> playerIds = resolveAll(
+            cacheService.playerUuidPkMap(),
+            playerKeys,
+            this::selectPlayerIds,
+            this::insertPlayers,
+            key -> getOrCreatePlayerId(key.uuid(), key.name())
+        );
+
+        for (PendingActivity row : pending) {
+            var record = row.record;
+
+            record.setActionId(UInteger.valueOf(actionIds.get(row.actionKey)));
+            record.setWorldId(UInteger.valueOf(getOrCreateWorldId(row.worldUuid, row.worldName)));
+
+            if (row.entityType != null) {
+                record.setEntityTypeId(UInteger.valueOf(entityTypeIds.get(row.entityType.entityType())));
+            }
+
+            if (row.item != null) {
+                int itemId = itemIds.get(row.item.hash());
+                record.setItemId(UInteger.valueOf(itemId));
+                trackAirtagPointer(row.item.airtag(), itemId, row.timestampSeconds);
+            }
+
+            if (row.block != null) {
+                record.setBlockId(UInteger.valueOf(blockIds.get(row.block.cacheKey())));
+            }
+
+            if (row.replacedBlock != null) {
+                record.setReplacedBlockId(UInteger.valueOf(blockIds.get(row.replacedBlock.cacheKey())));
+            }
+
+            if (row.affectedPlayer != null) {
+                record.setAffectedPlayerId(UInteger.valueOf(playerIds.get(row.affectedPlayer.uuid())));
+            }
+
+            if (row.causePlayer != null) {
+                record.setCausePlayerId(UInteger.valueOf(playerIds.get(row.causePlayer.uuid())));
+            } else if (row.causeBlock != null) {
+                record.setCauseBlockId(UInteger.valueOf(blockIds.get(row.causeBlock.cacheKey())));
+            } else if (row.causeEntityType != null) {
+                record.setCauseEntityTypeId(UInteger.valueOf(entityTypeIds.get(row.causeEntityType.entityType())));
+            } else if (row.cause != null) {
+                record.setCauseId(UInteger.valueOf(causeIds.get(row.cause)));
+            }
+
+            records.add(record);
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Resolve the primary keys of a dimension table in bulk.
+     *
+     * <p>Cached keys are used as-is. The rest are looked up in chunks, then any
+     * still missing are inserted in chunks and looked up again. An insert that
+     * fails on a duplicate key (e.g. another server inserted one of the keys
+     * first) is not an error, whatever is still missing afterward is resolved
+     * one key at a time. Any other failure is logged and rethrown.</p>
+     *
+     * @param cache The primary key cache
+     * @param keys The keys, by cache key
+     * @param select Looks up the primary keys of a chunk of keys
+     * @param insert Inserts a chunk of keys
+     * @param fallback Resolves a single key
+     * @param <K> The cache key type
+     * @param <D> The key type
+     * @param <V> The primary key type
+     * @return The primary keys, by cache key
+     * @throws SQLException The database exception
+     */
+    private <K, D, V> Map<K, V> resolveAll(
+        com.github.benmanes.caffeine.cache.Cache<K, V> cache,
+        Map<K, D> keys,
+        SqlFunction<List<D>, Map<K, V>> select,
+        SqlConsumer<List<D>> insert,
+        SqlFunction<D, V> fallback
+    ) throws SQLException {
+        Map<K, V> resolved = new HashMap<>(keys.size());
+        Map<K, D> missing = new HashMap<>();
+
+        for (var entry : keys.entrySet()) {
+            V value = cache.getIfPresent(entry.getKey());
+            if (value != null) {
+                resolved.put(entry.getKey(), value);
+            } else {
+                missing.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+
+        Map<K, V> loaded = selectChunked(select, missing.values());
+        missing.keySet().removeAll(loaded.keySet());
+
+        if (!missing.isEmpty()) {
+            try {
+                for (List<D> chunk : chunk(missing.values())) {
+                    insert.accept(chunk);
+                }
+            } catch (SQLException | DataAccessException e) {
+                if (!isDuplicateKey(e)) {
+                    loggingService.warn("Bulk insert of new keys failed: {0}", e.getMessage());
+                    throw e;
+                }
+
+                loggingService.debug(
+                    "Bulk insert of new keys hit existing keys, resolving them individually: {0}",
+                    e.getMessage()
+                );
+            }
+
+            Map<K, V> inserted = selectChunked(select, missing.values());
+            loaded.putAll(inserted);
+            missing.keySet().removeAll(inserted.keySet());
+        }
+
+        cache.putAll(loaded);
+        resolved.putAll(loaded);
+
+        for (var entry : missing.entrySet()) {
+            resolved.put(entry.getKey(), fallback.apply(entry.getValue()));
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Whether an insert failed because a unique key already exists.
+     *
+     * @param e The exception
+     * @return True for a duplicate key
+     */
+    private static boolean isDuplicateKey(Exception e) {
+        if (e instanceof DataAccessException dataAccessException) {
+            return dataAccessException.sqlStateClass() == SQLStateClass.C23_INTEGRITY_CONSTRAINT_VIOLATION;
+        }
+
+        return (
+            e instanceof SQLIntegrityConstraintViolationException ||
+            (e instanceof SQLException sqlException &&
+                sqlException.getSQLState() != null &&
+                sqlException.getSQLState().startsWith("23"))
+        );
+    }
+
+    /**
+     * Look up the primary keys of keys in chunks.
+     *
+     * @param select Looks up the primary keys of a chunk of keys
+     * @param keys The keys
+     * @param <K> The cache key type
+     * @param <D> The key type
+     * @param <V> The primary key type
+     * @return The primary keys found, by cache key
+     * @throws SQLException The database exception
+     */
+    private static <K, D, V> Map<K, V> selectChunked(SqlFunction<List<D>, Map<K, V>> select, Collection<D> keys)
+        throws SQLException {
+        Map<K, V> found = new HashMap<>();
+        for (List<D> chunk : chunk(keys)) {
+            found.putAll(select.apply(chunk));
+        }
+
+        return found;
+    }
+
+    /**
+     * Split keys into chunks small enough for a single IN list or multi-row insert.
+     *
+     * @param keys The keys
+     * @param <D> The key type
+     * @return The chunks
+     */
+    private static <D> List<List<D>> chunk(Collection<D> keys) {
+        List<List<D>> chunks = new ArrayList<>();
+        List<D> chunk = new ArrayList<>(Math.min(keys.size(), KEY_CHUNK_SIZE));
+        for (D key : keys) {
+            if (chunk.size() == KEY_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(KEY_CHUNK_SIZE);
+            }
+
+            chunk.add(key);
+        }
+
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Look up action primary keys.
+     *
+     * @param actions The action keys
+     * @return The primary keys, by action key
+     */
+    private Map<String, Integer> selectActionIds(List<String> actions) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (var result : dslContext
+            .select(PRISM_ACTIONS.ACTION, PRISM_ACTIONS.ACTION_ID)
+            .from(PRISM_ACTIONS)
+            .where(PRISM_ACTIONS.ACTION.in(actions))
+            .fetch()) {
+            ids.putIfAbsent(result.value1(), result.value2().intValue());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert action records.
+     *
+     * @param actions The action keys
+     */
+    private void insertActions(List<String> actions) {
+        var insert = dslContext.insertInto(PRISM_ACTIONS, PRISM_ACTIONS.ACTION);
+        for (String action : actions) {
+            insert = insert.values(action);
+        }
+
+        insert.execute();
+    }
+
+    /**
+     * Look up block primary keys. Blocks are matched by name in the database,
+     * and by namespace and block data here, because block data may be null.
+     *
+     * @param blocks The block keys
+     * @return The primary keys, by cache key
+     */
+    private Map<String, Integer> selectBlockIds(List<BlockKey> blocks) {
+        Set<String> cacheKeys = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (BlockKey block : blocks) {
+            cacheKeys.add(block.cacheKey());
+            names.add(block.name());
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (var result : dslContext
+            .select(PRISM_BLOCKS.NS, PRISM_BLOCKS.NAME, PRISM_BLOCKS.DATA, PRISM_BLOCKS.BLOCK_ID)
+            .from(PRISM_BLOCKS)
+            .where(PRISM_BLOCKS.NAME.in(names))
+            .fetch()) {
+            String cacheKey = BlockKey.cacheKey(result.value1(), result.value2(), result.value3());
+            if (cacheKeys.contains(cacheKey)) {
+                ids.putIfAbsent(cacheKey, result.value4().intValue());
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert block records.
+     *
+     * @param blocks The block keys
+     */
+    private void insertBlocks(List<BlockKey> blocks) {
+        var insert = dslContext.insertInto(
+            PRISM_BLOCKS,
+            PRISM_BLOCKS.NS,
+            PRISM_BLOCKS.NAME,
+            PRISM_BLOCKS.DATA,
+            PRISM_BLOCKS.TRANSLATION_KEY
+        );
+        for (BlockKey block : blocks) {
+            insert = insert.values(block.namespace(), block.name(), block.data(), block.translationKey());
+        }
+
+        insert.execute();
+    }
+
+    /**
+     * Look up entity type primary keys.
+     *
+     * @param entityTypes The entity type keys
+     * @return The primary keys, by entity type
+     */
+    private Map<String, Integer> selectEntityTypeIds(List<EntityTypeKey> entityTypes) {
+        List<String> types = entityTypes.stream().map(EntityTypeKey::entityType).toList();
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (var result : dslContext
+            .select(PRISM_ENTITY_TYPES.ENTITY_TYPE, PRISM_ENTITY_TYPES.ENTITY_TYPE_ID)
+            .from(PRISM_ENTITY_TYPES)
+            .where(PRISM_ENTITY_TYPES.ENTITY_TYPE.in(types))
+            .fetch()) {
+            ids.putIfAbsent(result.value1(), result.value2().intValue());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert entity type records.
+     *
+     * @param entityTypes The entity type keys
+     */
+    private void insertEntityTypes(List<EntityTypeKey> entityTypes) {
+        var insert = dslContext.insertInto(
+            PRISM_ENTITY_TYPES,
+            PRISM_ENTITY_TYPES.ENTITY_TYPE,
+            PRISM_ENTITY_TYPES.TRANSLATION_KEY
+        );
+        for (EntityTypeKey entityType : entityTypes) {
+            insert = insert.values(entityType.entityType(), entityType.translationKey());
+        }
+
+        insert.execute();
+    }
+
+    /**
+     * Look up item primary keys by data hash. The material and data are compared
+     * only to rule out hash collisions.
+     *
+     * @param items The item keys
+     * @return The primary keys, by item data hash
+     * @throws SQLException If an item's hash is taken by a different material or data
+     */
+    private Map<Long, Integer> selectItemIds(List<ItemKey> items) throws SQLException {
+        Map<Long, ItemKey> byHash = new HashMap<>();
+        for (ItemKey item : items) {
+            byHash.put(item.hash(), item);
+        }
+
+        Map<Long, Integer> ids = new HashMap<>();
+        for (var result : dslContext
+            .select(PRISM_ITEMS.DATA_HASH, PRISM_ITEMS.MATERIAL, PRISM_ITEMS.DATA, PRISM_ITEMS.ITEM_ID)
+            .from(PRISM_ITEMS)
+            .where(PRISM_ITEMS.DATA_HASH.in(byHash.keySet()))
+            .fetch()) {
+            ItemKey item = byHash.get(result.value1());
+            if (!item.material().equals(result.value2()) || !sameItemData(result.value3(), item.data())) {
+                throw itemDataHashCollision(item);
+            }
+
+            ids.put(item.hash(), result.value4().intValue());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert item records.
+     *
+     * @param items The item keys
+     */
+    private void insertItems(List<ItemKey> items) {
+        var insert = dslContext.insertInto(
+            PRISM_ITEMS,
+            PRISM_ITEMS.MATERIAL,
+            PRISM_ITEMS.DATA,
+            PRISM_ITEMS.AIRTAG_ID,
+            PRISM_ITEMS.DATA_HASH
+        );
+        for (ItemKey item : items) {
+            insert = insert.values(item.material(), item.data(), resolveAirtagId(item.airtag()), item.hash());
+        }
+
+        insert.execute();
+    }
+
+    /**
+     * Look up named cause primary keys.
+     *
+     * @param causes The cause names
+     * @return The primary keys, by cause name
+     */
+    private Map<String, Long> selectCauseIds(List<String> causes) {
+        Map<String, Long> ids = new HashMap<>();
+        for (var result : dslContext
+            .select(PRISM_CAUSES.CAUSE, PRISM_CAUSES.CAUSE_ID)
+            .from(PRISM_CAUSES)
+            .where(PRISM_CAUSES.CAUSE.in(causes))
+            .fetch()) {
+            ids.putIfAbsent(result.value1(), result.value2().longValue());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert named cause records.
+     *
+     * @param causes The cause names
+     */
+    private void insertCauses(List<String> causes) {
+        var insert = dslContext.insertInto(PRISM_CAUSES, PRISM_CAUSES.CAUSE);
+        for (String cause : causes) {
+            insert = insert.values(cause);
+        }
+
+        insert.execute();
+    }
+
+    /**
+     * Look up player primary keys, updating any names that changed in a single batch.
+     *
+     * @param players The player keys
+     * @return The primary keys, by player uuid
+     */
+    private Map<UUID, Long> selectPlayerIds(List<PlayerKey> players) {
+        Map<String, PlayerKey> byUuid = new HashMap<>();
+        for (PlayerKey player : players) {
+            byUuid.put(player.uuid().toString(), player);
+        }
+
+        Map<UUID, Long> ids = new HashMap<>();
+        Map<UInteger, String> renamed = new HashMap<>();
+        for (var result : dslContext
+            .select(PRISM_PLAYERS.PLAYER_UUID, PRISM_PLAYERS.PLAYER_ID, PRISM_PLAYERS.PLAYER)
+            .from(PRISM_PLAYERS)
+            .where(PRISM_PLAYERS.PLAYER_UUID.in(byUuid.keySet()))
+            .fetch()) {
+            PlayerKey player = byUuid.get(result.value1());
+
+            if (player.name() != null && !player.name().equals(result.value3())) {
+                renamed.put(result.value2(), player.name());
+            }
+
+            ids.put(player.uuid(), result.value2().longValue());
+        }
+
+        if (!renamed.isEmpty()) {
+            var batch = dslContext.batch(
+                dslContext
+                    .update(PRISM_PLAYERS)
+                    .set(PRISM_PLAYERS.PLAYER, (String) null)
+                    .where(PRISM_PLAYERS.PLAYER_ID.eq((UInteger) null))
+            );
+            for (var entry : renamed.entrySet()) {
+                batch.bind(entry.getValue(), entry.getKey());
             }
+
+            batch.execute();
         }
 
-        records.add(record);
+        return ids;
+    }
+
+    /**
+     * Insert player records.
+     *
+     * @param players The player keys
+     */
+    private void insertPlayers(List<PlayerKey> players) {
+        var insert = dslContext.insertInto(PRISM_PLAYERS, PRISM_PLAYERS.PLAYER_UUID, PRISM_PLAYERS.PLAYER);
+        for (PlayerKey player : players) {
+            insert = insert.values(player.uuid().toString(), player.name());
+        }
+
+        insert.execute();
     }
 
     /**
@@ -485,6 +1165,27 @@ public class SqlActivityBatch implements ActivityBatch {
         T get() throws SQLException;
     }
 
+    /**
+     * A function that may throw SQLException.
+     *
+     * @param <T> The argument type
+     * @param <R> The return type
+     */
+    @FunctionalInterface
+    private interface SqlFunction<T, R> {
+        R apply(T value) throws SQLException;
+    }
+
+    /**
+     * A consumer that may throw SQLException.
+     *
+     * @param <T> The argument type
+     */
+    @FunctionalInterface
+    private interface SqlConsumer<T> {
+        void accept(T value) throws SQLException;
+    }
+
     /**
      * Get or create the action record and return the primary key.
      *
@@ -540,7 +1241,7 @@ public class SqlActivityBatch implements ActivityBatch {
      */
     private int getOrCreateBlockId(String namespace, String name, String blockData, String translationKey)
         throws SQLException {
-        String blockKey = namespace + ":" + name + (blockData == null ? "" : blockData);
+        String blockKey = BlockKey.cacheKey(namespace, name, blockData);
         return cachedGetOrCreate(cacheService.blockDataPkMap(), blockKey, () -> {
             UInteger intPk = dslContext
                 .select(PRISM_BLOCKS.BLOCK_ID)
@@ -686,50 +1387,106 @@ public class SqlActivityBatch implements ActivityBatch {
     /**
      * Get or create the item record and return the primary key.
      *
-     * @param material The material
-     * @param data The item data
-     * @param airtag The Prism airtag ID, or {@code null} if not airtagged
+     * @param item The item key
      * @return The primary key
      * @throws SQLException The database exception
      */
-    private int getOrCreateItemId(String material, String data, String airtag) throws SQLException {
-        return cachedGetOrCreate(cacheService.itemDataPkMap(), data, () -> {
-            UInteger intPk = dslContext
-                .select(PRISM_ITEMS.ITEM_ID)
-                .from(PRISM_ITEMS)
-                .where(PRISM_ITEMS.MATERIAL.equal(material), PRISM_ITEMS.DATA.equal(data))
-                .limit(1)
-                .fetchOne(PRISM_ITEMS.ITEM_ID);
+    private int getOrCreateItemId(ItemKey item) throws SQLException {
+        return cachedGetOrCreate(cacheService.itemDataPkMap(), item.hash(), () -> {
+            UInteger intPk = selectItemId(item);
 
             if (intPk != null) {
                 return intPk.intValue();
             }
 
-            UInteger airtagId = resolveAirtagId(airtag);
+            UInteger airtagId = resolveAirtagId(item.airtag());
 
             try {
                 intPk = dslContext
-                    .insertInto(PRISM_ITEMS, PRISM_ITEMS.MATERIAL, PRISM_ITEMS.DATA, PRISM_ITEMS.AIRTAG_ID)
-                    .values(material, data, airtagId)
+                    .insertInto(
+                        PRISM_ITEMS,
+                        PRISM_ITEMS.MATERIAL,
+                        PRISM_ITEMS.DATA,
+                        PRISM_ITEMS.AIRTAG_ID,
+                        PRISM_ITEMS.DATA_HASH
+                    )
+                    .values(item.material(), item.data(), airtagId, item.hash())
                     .returningResult(PRISM_ITEMS.ITEM_ID)
                     .fetchOne(PRISM_ITEMS.ITEM_ID);
             } catch (Exception e) {
-                intPk = dslContext
-                    .select(PRISM_ITEMS.ITEM_ID)
-                    .from(PRISM_ITEMS)
-                    .where(PRISM_ITEMS.MATERIAL.equal(material), PRISM_ITEMS.DATA.equal(data))
-                    .limit(1)
-                    .fetchOne(PRISM_ITEMS.ITEM_ID);
+                intPk = selectItemId(item);
             }
 
             if (intPk != null) {
                 return intPk.intValue();
             }
 
-            throw new SQLException(String.format("Failed to get or create an item record. Material: %s", material));
+            if (dslContext.fetchExists(PRISM_ITEMS, PRISM_ITEMS.DATA_HASH.eq(item.hash()))) {
+                throw itemDataHashCollision(item);
+            }
+
+            throw new SQLException(
+                String.format("Failed to get or create an item record. Material: %s", item.material())
+            );
         });
     }
 
+    /**
+     * Look up an item primary key by data hash. The material and data are
+     * compared only to rule out hash collisions.
+     *
+     * @param item The item key
+     * @return The primary key, or null if not recorded
+     */
+    private UInteger selectItemId(ItemKey item) {
+        var result = dslContext
+            .select(PRISM_ITEMS.ITEM_ID, PRISM_ITEMS.DATA)
+            .from(PRISM_ITEMS)
+            .where(PRISM_ITEMS.DATA_HASH.eq(item.hash()), PRISM_ITEMS.MATERIAL.eq(item.material()))
+            .limit(1)
+            .fetchOne();
+
+        return result != null && sameItemData(result.value2(), item.data()) ? result.value1() : null;
+    }
+
+    /**
+     * Hash an item's material and data for the item data hash column and the item primary key cache.
+     *
+     * <p>The hash is the first 63 bits of the SHA-256 digest of the UTF-8
+     * encoded material, a space and the data, or the material alone when
+     * there is no data. Materials never contain spaces, so no two items share
+     * an input, and it always fits a signed bigint. The data is hashed before
+     * it's compressed, and the stored procedures are handed the hash.</p>
+     *
+     * @param material The material
+     * @param data The uncompressed item data, or null
+     * @return The hash
+     */
+    public static long itemDataHash(String material, String data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        String input = Stream.of(material, data).filter(Objects::nonNull).collect(Collectors.joining(" "));
+        byte[] bytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(bytes).getLong() & Long.MAX_VALUE;
+    }
+
+    /**
+     * Build the exception thrown when different item data share a hash.
+     *
+     * @param item The item key
+     * @return The exception
+     */
+    private static SQLException itemDataHashCollision(ItemKey item) {
+        return new SQLException(
+            String.format("Item data hash collision. Material: %s, Hash: %d", item.material(), item.hash())
+        );
+    }
+
     /**
      * Resolve the primary key of an airtag row by its airtag id, or null.
      *
@@ -972,9 +1729,43 @@ public class SqlActivityBatch implements ActivityBatch {
         }
     }
 
-    @Override
-    public void commitBatch() {
+    /**
+     * Insert the activity records.
+     *
+     * @param records The records
+     * @throws SQLException The database exception
+     */
+    protected void insertRecords(List<PrismActivitiesRecord> records) throws SQLException {
         dslContext.batchInsert(records).execute();
+    }
+
+    /**
+     * Describe how records are inserted, for throughput reporting.
+     *
+     * @return The insert mode
+     */
+    protected String insertMode() {
+        return "batch insert";
+    }
+
+    @Override
+    public void commitBatch() throws SQLException {
+        resolvePending();
+
+        long start = System.nanoTime();
+        insertRecords(records);
+        long elapsedNanos = System.nanoTime() - start;
+
         flushAirtagPointers();
+
+        if (!records.isEmpty()) {
+            loggingService.debug(
+                "Inserted {0} activities via {1} in {2}ms ({3} rows/s)",
+                records.size(),
+                insertMode(),
+                elapsedNanos / 1_000_000,
+                records.size() * 1_000_000_000L / Math.max(1, elapsedNanos)
+            );
+        }
     }
 }
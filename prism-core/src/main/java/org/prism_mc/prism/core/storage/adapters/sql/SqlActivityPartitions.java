@@ -0,0 +1,220 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.sql;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jooq.Constraint;
+import org.jooq.DSLContext;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+
+/**
+ * Manages monthly range partitions of the activities table, by timestamp.
+ *
+ * <p>Each month is a partition named for the month, covering timestamps up
+ * to the start of the next month in UTC. The first partition also takes
+ * anything older. A catch-all partition takes anything past the newest
+ * month, so inserts never fail when partitions weren't created ahead in
+ * time. Purges of everything before a date drop whole partitions instead
+ * of deleting rows.</p>
+ */
+public abstract class SqlActivityPartitions {
+
+    /**
+     * The number of months partitions are created ahead of the current month.
+     * Partitions are checked daily, so there's always at least a month ahead
+     * even if a check fails for weeks.
+     */
+    protected static final int MONTHS_AHEAD = 3;
+
+    /**
+     * Matches the month at the end of a partition name.
+     */
+    private static final Pattern MONTH_PATTERN = Pattern.compile("p(\\d{4})(\\d{2})$");
+
+    /**
+     * A partition of the activities table.
+     *
+     * @param name The partition name
+     * @param month The month, or null for the catch-all partition
+     * @param estimatedRows The estimated number of rows
+     */
+    public record Partition(String name, YearMonth month, long estimatedRows) {}
+
+    /**
+     * The DSL context.
+     */
+    protected final DSLContext dslContext;
+
+    /**
+     * The logging service.
+     */
+    protected final LoggingService loggingService;
+
+    /**
+     * Construct the partition manager.
+     *
+     * @param dslContext The DSL context
+     * @param loggingService The logging service
+     */
+    protected SqlActivityPartitions(DSLContext dslContext, LoggingService loggingService) {
+        this.dslContext = dslContext;
+        this.loggingService = loggingService;
+    }
+
+    /**
+     * Whether the existing activities table is partitioned.
+     *
+     * @return True if partitioned
+     */
+    public abstract boolean isPartitioned();
+
+    /**
+     * Create the partitioned activities table with partitions for the current
+     * month and the months ahead.
+     *
+     * @param foreignKeys The activities foreign keys, if the database supports them on partitioned tables
+     */
+    public abstract void createTable(Collection<Constraint> foreignKeys);
+
+    /**
+     * List the partitions.
+     *
+     * @return The partitions
+     */
+    protected abstract List<Partition> partitions();
+
+    /**
+     * Add a partition for a month newer than every existing month.
+     *
+     * @param month The month
+     */
+    protected abstract void addPartition(YearMonth month);
+
+    /**
+     * Drop partitions.
+     *
+     * @param partitions The partitions
+     */
+    protected abstract void dropPartitions(List<Partition> partitions);
+
+    /**
+     * Create partitions for the current month and the months ahead, if they don't exist yet.
+     *
+     * <p>Synchronized, the daily check and a purge may run it at once.</p>
+     */
+    public synchronized void ensurePartitions() {
+        YearMonth newest = null;
+        for (Partition partition : partitions()) {
+            if (partition.month() != null && (newest == null || partition.month().isAfter(newest))) {
+                newest = partition.month();
+            }
+        }
+
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= MONTHS_AHEAD; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (newest == null || month.isAfter(newest)) {
+                addPartition(month);
+                newest = month;
+
+                loggingService.debug("Created activities partition for {0}", month);
+            }
+        }
+    }
+
+    /**
+     * Drop every partition holding only activities older than a timestamp.
+     *
+     * @param before The timestamp, in epoch seconds. Only activities before it are dropped.
+     * @return The estimated number of activities dropped
+     */
+    public long dropBefore(long before) {
+        List<Partition> droppable = new ArrayList<>();
+        long rows = 0;
+        for (Partition partition : partitions()) {
+            if (partition.month() != null && upperBound(partition.month()) <= before) {
+                droppable.add(partition);
+                rows += partition.estimatedRows();
+            }
+        }
+
+        if (droppable.isEmpty()) {
+            return 0;
+        }
+
+        dropPartitions(droppable);
+
+        loggingService.debug("Dropped {0} activities partitions, about {1} activities", droppable.size(), rows);
+
+        return rows;
+    }
+
+    /**
+     * The first timestamp of a month.
+     *
+     * @param month The month
+     * @return The epoch seconds
+     */
+    protected static long lowerBound(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    /**
+     * The first timestamp after a month.
+     *
+     * @param month The month
+     * @return The epoch seconds
+     */
+    protected static long upperBound(YearMonth month) {
+        return lowerBound(month.plusMonths(1));
+    }
+
+    /**
+     * The partition name suffix of a month.
+     *
+     * @param month The month
+     * @return The suffix, e.g. p202601
+     */
+    protected static String monthSuffix(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Read the month from a partition name.
+     *
+     * @param name The partition name
+     * @return The month, or null if the partition isn't a month partition
+     */
+    protected static YearMonth parseMonth(String name) {
+        Matcher matcher = MONTH_PATTERN.matcher(name);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
@@ -67,6 +67,11 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
      */
     private final String prefix;
 
+    /**
+     * Whether to compress item data and custom data.
+     */
+    private final boolean compressData;
+
     /**
      * The statement.
      */
@@ -79,17 +84,20 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
      * @param hikariDataSource The hikari datasource
      * @param serializerVersion The serializer version
      * @param prefix The schema/table prefix
+     * @param compressData Whether to compress item data and custom data
      */
     public SqlActivityProcedureBatch(
         LoggingService loggingService,
         HikariDataSource hikariDataSource,
         short serializerVersion,
-        String prefix
+        String prefix,
+        boolean compressData
     ) {
         this.loggingService = loggingService;
         this.hikariDataSource = hikariDataSource;
         this.serializerVersion = serializerVersion;
         this.prefix = prefix;
+        this.compressData = compressData;
     }
 
     @Override
@@ -98,7 +106,7 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
 
         statement = connection.prepareCall(
             String.format(
-                "{ CALL %screate_activity(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) }",
+                "{ CALL %screate_activity(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) }",
                 prefix
             )
         );
@@ -142,6 +150,8 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
         int descriptorIndex = 34;
         int metadataIndex = 35;
         int affectedItemAirtagIndex = 36;
+        int extentIndex = 37;
+        int affectedItemDataHashIndex = 38;
 
         statement.setLong(timestampIndex, activity.timestamp() / 1000);
         statement.setInt(xIndex, activity.coordinate().intX());
@@ -197,13 +207,19 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
         if (activity.action() instanceof ItemAction itemAction) {
             statement.setString(affectedItemMaterialIndex, itemAction.serializeMaterial());
             statement.setShort(affectedItemQuantityIndex, (short) itemAction.quantity());
-            statement.setString(affectedItemDataIndex, itemAction.serializeItemData());
+            String itemData = itemAction.serializeItemData();
+            statement.setString(affectedItemDataIndex, encodeData(itemData));
+            statement.setLong(
+                affectedItemDataHashIndex,
+                SqlActivityBatch.itemDataHash(itemAction.serializeMaterial(), itemData)
+            );
             setStringOrNull(statement, affectedItemAirtagIndex, itemAction.itemAirtag());
         } else {
             statement.setNull(affectedItemMaterialIndex, Types.VARCHAR);
             statement.setNull(affectedItemQuantityIndex, Types.SMALLINT);
             statement.setNull(affectedItemDataIndex, Types.VARCHAR);
             statement.setNull(affectedItemAirtagIndex, Types.VARCHAR);
+            statement.setNull(affectedItemDataHashIndex, Types.BIGINT);
         }
 
         // Block data
@@ -212,11 +228,13 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
             statement.setString(affectedBlockNameIndex, blockAction.blockContainer().blockName());
             statement.setString(affectedBlockDataIndex, blockAction.blockContainer().serializeBlockData());
             statement.setString(affectedBlockTranslationKeyIndex, blockAction.blockContainer().translationKey());
+            setShortOrNull(statement, extentIndex, SqlActivityBatch.extentOrNull(blockAction.extent()));
         } else {
             statement.setNull(affectedBlockNamespaceIndex, Types.VARCHAR);
             statement.setNull(affectedBlockNameIndex, Types.VARCHAR);
             statement.setNull(affectedBlockDataIndex, Types.VARCHAR);
             statement.setNull(affectedBlockTranslationKeyIndex, Types.VARCHAR);
+            statement.setNull(extentIndex, Types.SMALLINT);
         }
 
         // Replaced block data
@@ -249,7 +267,7 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
 
             if (customData != null) {
                 statement.setInt(serializerVersionIndex, serializerVersion);
-                statement.setString(serializedDataIndex, customData);
+                statement.setString(serializedDataIndex, encodeData(customData));
             } else {
                 statement.setNull(serializerVersionIndex, Types.SMALLINT);
                 statement.setNull(serializedDataIndex, Types.VARCHAR);
@@ -292,10 +310,12 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
         setStringOrNull(statement, 8, walRecord.getItemMaterial());
         if (walRecord.getItemMaterial() != null) {
             statement.setShort(9, (short) walRecord.getItemQuantity());
+            statement.setLong(38, SqlActivityBatch.itemDataHash(walRecord.getItemMaterial(), walRecord.getItemData()));
         } else {
             statement.setNull(9, Types.SMALLINT);
+            statement.setNull(38, Types.BIGINT);
         }
-        setStringOrNull(statement, 10, walRecord.getItemData());
+        setStringOrNull(statement, 10, encodeData(walRecord.getItemData()));
 
         setStringOrNull(statement, 11, walRecord.getBlockNamespace());
         setStringOrNull(statement, 12, walRecord.getBlockName());
@@ -341,7 +361,7 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
 
         if (customData != null) {
             statement.setInt(32, walRecord.getSerializerVersion());
-            statement.setString(33, customData);
+            statement.setString(33, encodeData(customData));
         } else {
             statement.setNull(32, Types.SMALLINT);
             statement.setNull(33, Types.VARCHAR);
@@ -350,10 +370,21 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
         setStringOrNull(statement, 34, TextUtils.truncateWithEllipsis(walRecord.getDescriptor(), 255));
         setStringOrNull(statement, 35, walRecord.getMetadata());
         setStringOrNull(statement, 36, walRecord.getItemAirtag());
+        setShortOrNull(statement, 37, SqlActivityBatch.extentOrNull(walRecord.getExtent()));
 
         statement.addBatch();
     }
 
+    /**
+     * Encode item data or custom data for storage.
+     *
+     * @param data The data
+     * @return The data, compressed if enabled
+     */
+    private String encodeData(String data) {
+        return compressData ? StoredDataCodec.encode(data) : data;
+    }
+
     /**
      * Set a string parameter or null.
      *
@@ -370,6 +401,22 @@ public class SqlActivityProcedureBatch implements ActivityBatch {
         }
     }
 
+    /**
+     * Set a short parameter or null.
+     *
+     * @param stmt The statement
+     * @param index The parameter index
+     * @param value The value
+     * @throws SQLException On error
+     */
+    private void setShortOrNull(CallableStatement stmt, int index, Short value) throws SQLException {
+        if (value != null) {
+            stmt.setShort(index, value);
+        } else {
+            stmt.setNull(index, Types.SMALLINT);
+        }
+    }
+
     @Override
     public void commitBatch() throws SQLException {
         try {
@@ -25,6 +25,7 @@ import static org.jooq.impl.DSL.coalesce;
 import static org.jooq.impl.DSL.count;
 import static org.jooq.impl.DSL.max;
 import static org.jooq.impl.DSL.min;
+import static org.jooq.impl.DSL.row;
 import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.AFFECTED_PLAYERS;
 import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.CAUSE_BLOCKS;
 import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.CAUSE_BLOCKS_TRANSLATION_KEY;
@@ -48,6 +49,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.jooq.Condition;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
 import org.jooq.DeleteQuery;
 import org.jooq.Field;
@@ -58,14 +60,23 @@ import org.jooq.SelectQuery;
 import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.jooq.types.UInteger;
+import org.prism_mc.prism.api.activities.ActivityCursor;
 import org.prism_mc.prism.api.activities.ActivityQuery;
+import org.prism_mc.prism.api.util.Coordinate;
 import org.prism_mc.prism.api.util.Pair;
+import org.prism_mc.prism.core.storage.LongArrayBuilder;
+import org.prism_mc.prism.core.storage.SpatialKey;
 import org.prism_mc.prism.core.storage.dbo.records.PrismActivitiesRecord;
 import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
 import org.prism_mc.prism.loader.services.configuration.storage.StorageConfiguration;
 
 public class SqlActivityQueryBuilder {
 
+    /**
+     * The number of rows fetched at a time while reading primary keys.
+     */
+    private static final int PK_FETCH_SIZE = 10000;
+
     /**
      * The configuration service.
      */
@@ -154,7 +165,6 @@ public class SqlActivityQueryBuilder {
             queryBuilder.addSelect(CAUSE_BLOCKS_TRANSLATION_KEY);
             queryBuilder.addSelect(PRISM_CAUSES.CAUSE);
             queryBuilder.addSelect(PRISM_ACTIVITIES.REVERSED);
-            queryBuilder.addSelect(count().over().as("totalrows"));
         }
 
         if (query.grouped()) {
@@ -198,30 +208,13 @@ public class SqlActivityQueryBuilder {
 
         queryBuilder.addConditions(conditions(query));
 
+        ActivityCursor seekCursor = query.seekCursor();
+        if (seekCursor != null) {
+            queryBuilder.addConditions(seekCondition(query, seekCursor));
+        }
+
         if (query.grouped()) {
-            queryBuilder.addGroupBy(
-                PRISM_ACTIONS.ACTION,
-                PRISM_WORLDS.WORLD_UUID,
-                PRISM_WORLDS.WORLD,
-                PRISM_ACTIVITIES.ACTION_ID,
-                PRISM_ITEMS.MATERIAL,
-                PRISM_ITEMS.DATA,
-                PRISM_ACTIVITIES.AFFECTED_ITEM_QUANTITY,
-                PRISM_BLOCKS.NS,
-                PRISM_BLOCKS.NAME,
-                PRISM_BLOCKS.TRANSLATION_KEY,
-                PRISM_ENTITY_TYPES.ENTITY_TYPE,
-                AFFECTED_PLAYERS.PLAYER,
-                AFFECTED_PLAYERS.PLAYER_UUID,
-                PRISM_CAUSES.CAUSE,
-                PRISM_PLAYERS.PLAYER,
-                PRISM_PLAYERS.PLAYER_UUID,
-                PRISM_ACTIVITIES.DESCRIPTOR,
-                PRISM_ACTIVITIES.METADATA,
-                PRISM_ACTIVITIES.REVERSED,
-                CAUSE_ENTITY_TYPES_TRANSLATION_KEY,
-                CAUSE_BLOCKS_TRANSLATION_KEY
-            );
+            queryBuilder.addGroupBy(groupByFields());
         }
 
         // Order by
@@ -245,14 +238,68 @@ public class SqlActivityQueryBuilder {
             addModificationOrdering(queryBuilder);
         }
 
-        // Limits
+        // Limits. A cursor already skips everything before the page
         if (query.limit() > 0) {
-            queryBuilder.addLimit(query.offset(), query.limit());
+            if (seekCursor != null) {
+                queryBuilder.addLimit(query.limit());
+            } else {
+                queryBuilder.addLimit(query.offset(), query.limit());
+            }
         }
 
         return queryBuilder.fetch();
     }
 
+    /**
+     * The fields grouped lookups group by.
+     *
+     * @return The fields
+     */
+    private List<Field<?>> groupByFields() {
+        return List.of(
+            PRISM_ACTIONS.ACTION,
+            PRISM_WORLDS.WORLD_UUID,
+            PRISM_WORLDS.WORLD,
+            PRISM_ACTIVITIES.ACTION_ID,
+            PRISM_ITEMS.MATERIAL,
+            PRISM_ITEMS.DATA,
+            PRISM_ACTIVITIES.AFFECTED_ITEM_QUANTITY,
+            PRISM_BLOCKS.NS,
+            PRISM_BLOCKS.NAME,
+            PRISM_BLOCKS.TRANSLATION_KEY,
+            PRISM_ENTITY_TYPES.ENTITY_TYPE,
+            AFFECTED_PLAYERS.PLAYER,
+            AFFECTED_PLAYERS.PLAYER_UUID,
+            PRISM_CAUSES.CAUSE,
+            PRISM_PLAYERS.PLAYER,
+            PRISM_PLAYERS.PLAYER_UUID,
+            PRISM_ACTIVITIES.DESCRIPTOR,
+            PRISM_ACTIVITIES.METADATA,
+            PRISM_ACTIVITIES.REVERSED,
+            CAUSE_ENTITY_TYPES_TRANSLATION_KEY,
+            CAUSE_BLOCKS_TRANSLATION_KEY
+        );
+    }
+
+    /**
+     * The condition that seeks past a cursor, in the lookup's (timestamp, activity id) order.
+     *
+     * @param query The activity query
+     * @param cursor The cursor
+     * @return The condition
+     */
+    private Condition seekCondition(ActivityQuery query, ActivityCursor cursor) {
+        var position = row(PRISM_ACTIVITIES.TIMESTAMP, PRISM_ACTIVITIES.ACTIVITY_ID);
+        var timestamp = UInteger.valueOf(cursor.timestamp());
+        var activityId = UInteger.valueOf(cursor.activityId());
+
+        if (query.sort().equals(ActivityQuery.Sort.ASCENDING)) {
+            return position.gt(timestamp, activityId);
+        }
+
+        return position.lt(timestamp, activityId);
+    }
+
     /**
      * Apply the rollback/restore-specific ordering: hanging blocks last, then
      * build columns x/z ascending with a per-block y direction depending on
@@ -289,10 +336,14 @@ public class SqlActivityQueryBuilder {
     /**
      * Fetch only primary keys for a modification query.
      *
+     * <p>Rows are read through a lazy cursor with a fetch size, inside a transaction
+     * so that postgres streams them with a server-side cursor rather than buffering
+     * the whole result, and the keys are collected into a primitive array.</p>
+     *
      * @param query The activity query
      * @return The activity primary keys in rollback ordering
      */
-    public List<Long> queryActivityPks(ActivityQuery query) {
+    public long[] queryActivityPks(ActivityQuery query) {
         SelectQuery<Record> queryBuilder = dslContext.selectQuery();
         queryBuilder.addSelect(PRISM_ACTIVITIES.ACTIVITY_ID);
         queryBuilder.addFrom(PRISM_ACTIVITIES);
@@ -323,38 +374,57 @@ public class SqlActivityQueryBuilder {
             queryBuilder.addLimit(query.offset(), query.limit());
         }
 
-        List<Long> pks = new ArrayList<>();
-        for (Record r : queryBuilder.fetch()) {
-            UInteger pk = r.get(PRISM_ACTIVITIES.ACTIVITY_ID);
-            if (pk != null) {
-                pks.add(pk.longValue());
+        return dslContext.transactionResult(configuration -> {
+            queryBuilder.attach(configuration);
+
+            LongArrayBuilder pks = new LongArrayBuilder();
+            try (Cursor<Record> cursor = queryBuilder.fetchSize(PK_FETCH_SIZE).fetchLazy()) {
+                for (Record r : cursor) {
+                    UInteger pk = r.get(PRISM_ACTIVITIES.ACTIVITY_ID);
+                    if (pk != null) {
+                        pks.add(pk.longValue());
+                    }
+                }
             }
-        }
-        return pks;
+
+            return pks.toArray();
+        });
     }
 
     /**
      * Fetch full activity records for a specific set of primary keys, preserving modification ordering.
      *
+     * <p>The keys are bound rather than inlined, in chunks of at most
+     * {@link ActivityIdConditions#chunkSize}. The keys are already in modification
+     * ordering, so ordering each chunk and appending them keeps the overall order.</p>
+     *
      * @param pks The primary keys to fetch
      * @param query The original activity query (provides join shape, conditions)
      * @return A jOOQ result for the requested PKs
      */
-    public Result<Record> queryActivitiesByPks(Collection<Long> pks, ActivityQuery query) {
-        SelectQuery<Record> queryBuilder = buildModificationSelect(query);
+    public Result<Record> queryActivitiesByPks(long[] pks, ActivityQuery query) {
+        int chunkSize = ActivityIdConditions.chunkSize(dslContext.dialect());
 
-        List<UInteger> pkValues = new ArrayList<>(pks.size());
-        for (Long pk : pks) {
-            pkValues.add(UInteger.valueOf(pk));
-        }
+        Result<Record> results = null;
+        for (int start = 0; start < pks.length; start += chunkSize) {
+            SelectQuery<Record> queryBuilder = buildModificationSelect(query);
+            queryBuilder.addConditions(
+                ActivityIdConditions.in(dslContext.dialect(), pks, start, Math.min(start + chunkSize, pks.length))
+            );
 
-        queryBuilder.addConditions(PRISM_ACTIVITIES.ACTIVITY_ID.in(pkValues.stream().map(DSL::inline).toList()));
+            if (query.modification()) {
+                addModificationOrdering(queryBuilder);
+            }
 
-        if (query.modification()) {
-            addModificationOrdering(queryBuilder);
+            Result<Record> chunk = queryBuilder.fetch();
+            if (results == null) {
+                results = chunk;
+            } else {
+                results.addAll(chunk);
+            }
         }
 
-        return queryBuilder.fetch();
+        return results != null ? results : dslContext.newResult();
     }
 
     /**
@@ -427,6 +497,32 @@ public class SqlActivityQueryBuilder {
         return result != null ? result.getValue("total", Integer.class) : 0;
     }
 
+    /**
+     * Count the results of a lookup: activities, or groups of activities for grouped lookups.
+     *
+     * @param query The activity query
+     * @return The count of results
+     */
+    public int countResults(ActivityQuery query) {
+        if (!query.grouped()) {
+            return countActivities(query);
+        }
+
+        SelectQuery<Record> queryBuilder = dslContext.selectQuery();
+
+        queryBuilder.addSelect(PRISM_ACTIVITIES.ACTION_ID);
+
+        queryBuilder.addFrom(PRISM_ACTIVITIES);
+
+        joins(queryBuilder, query);
+
+        queryBuilder.addConditions(conditions(query));
+
+        queryBuilder.addGroupBy(groupByFields());
+
+        return dslContext.fetchCount(queryBuilder);
+    }
+
     /**
      * Query the primary key bounds for the given conditions.
      *
@@ -769,6 +865,61 @@ public class SqlActivityQueryBuilder {
         }
     }
 
+    /**
+     * Get the condition matching activities that reach into a box.
+     *
+     * <p>Single blocks match by their coordinate, block groups by their
+     * coordinate widened by their extent. The range conditions are widened by
+     * the most any group reaches, so the indexes still narrow the scan before
+     * each row's own extent is compared.</p>
+     *
+     * @param minCoordinate The min coordinate
+     * @param maxCoordinate The max coordinate
+     * @return The condition
+     */
+    protected Condition locationCondition(Coordinate minCoordinate, Coordinate maxCoordinate) {
+        int reach = SpatialKey.MAX_EXTENT;
+        Field<Short> extent = coalesce(PRISM_ACTIVITIES.EXTENT, (short) 0);
+
+        return PRISM_ACTIVITIES.X.between(minCoordinate.intX() - reach, maxCoordinate.intX() + reach)
+            .and(PRISM_ACTIVITIES.Y.between(minCoordinate.intY() - reach, maxCoordinate.intY() + reach))
+            .and(PRISM_ACTIVITIES.Z.between(minCoordinate.intZ() - reach, maxCoordinate.intZ() + reach))
+            .and(
+                spatialKeyCondition(
+                    minCoordinate.intX() - reach,
+                    minCoordinate.intZ() - reach,
+                    maxCoordinate.intX() + reach,
+                    maxCoordinate.intZ() + reach
+                )
+            )
+            .and(PRISM_ACTIVITIES.X.plus(extent).greaterOrEqual(minCoordinate.intX()))
+            .and(PRISM_ACTIVITIES.X.minus(extent).lessOrEqual(maxCoordinate.intX()))
+            .and(PRISM_ACTIVITIES.Y.plus(extent).greaterOrEqual(minCoordinate.intY()))
+            .and(PRISM_ACTIVITIES.Y.minus(extent).lessOrEqual(maxCoordinate.intY()))
+            .and(PRISM_ACTIVITIES.Z.plus(extent).greaterOrEqual(minCoordinate.intZ()))
+            .and(PRISM_ACTIVITIES.Z.minus(extent).lessOrEqual(maxCoordinate.intZ()));
+    }
+
+    /**
+     * Get the condition limiting the spatial key to the chunks of a box, so the
+     * world/spatial key index narrows the scan on both x and z. The coordinate
+     * conditions are still needed to trim the edge chunks to the box.
+     *
+     * @param minX The min x coordinate
+     * @param minZ The min z coordinate
+     * @param maxX The max x coordinate
+     * @param maxZ The max z coordinate
+     * @return The condition
+     */
+    protected Condition spatialKeyCondition(int minX, int minZ, int maxX, int maxZ) {
+        List<Condition> ranges = new ArrayList<>();
+        for (SpatialKey.Range range : SpatialKey.ranges(minX, minZ, maxX, maxZ)) {
+            ranges.add(PRISM_ACTIVITIES.SPATIAL_KEY.between(range.from(), range.to()));
+        }
+
+        return DSL.or(ranges);
+    }
+
     /**
      * Get all conditions for the query.
      *
@@ -785,13 +936,9 @@ public class SqlActivityQueryBuilder {
 
         // Locations
         if (query.coordinate() != null) {
-            conditions.add(PRISM_ACTIVITIES.X.equal(query.coordinate().intX()));
-            conditions.add(PRISM_ACTIVITIES.Y.equal(query.coordinate().intY()));
-            conditions.add(PRISM_ACTIVITIES.Z.equal(query.coordinate().intZ()));
+            conditions.add(locationCondition(query.coordinate(), query.coordinate()));
         } else if (query.minCoordinate() != null && query.maxCoordinate() != null) {
-            conditions.add(PRISM_ACTIVITIES.X.between(query.minCoordinate().intX(), query.maxCoordinate().intX()));
-            conditions.add(PRISM_ACTIVITIES.Y.between(query.minCoordinate().intY(), query.maxCoordinate().intY()));
-            conditions.add(PRISM_ACTIVITIES.Z.between(query.minCoordinate().intZ(), query.maxCoordinate().intZ()));
+            conditions.add(locationCondition(query.minCoordinate(), query.maxCoordinate()));
         }
 
         // Y coordinate (above)
@@ -30,14 +30,19 @@ import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAda
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.jooq.DSLContext;
+import org.jooq.DataType;
 import org.jooq.Field;
 import org.jooq.Index;
+import org.jooq.Query;
 import org.jooq.Table;
+import org.jooq.impl.DSL;
 import org.jooq.impl.SQLDataType;
 import org.jooq.types.UInteger;
+import org.prism_mc.prism.core.storage.SpatialKey;
 import org.prism_mc.prism.core.storage.dbo.Indexes;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 
@@ -47,7 +52,17 @@ public class SqlSchemaUpdater {
     /**
      * The current/latest schema version for fresh installations.
      */
-    public static final String CURRENT_SCHEMA_VERSION = "403";
+    public static final String CURRENT_SCHEMA_VERSION = "406";
+
+    /**
+     * The number of items hashed per query while backfilling item data hashes.
+     */
+    private static final int ITEM_HASH_BACKFILL_BATCH_SIZE = 1000;
+
+    /**
+     * The range of activity ids updated per query while backfilling spatial keys.
+     */
+    private static final int SPATIAL_KEY_BACKFILL_BATCH_SIZE = 50000;
 
     /**
      * The logger.
@@ -86,6 +101,21 @@ public class SqlSchemaUpdater {
             update402To403(dslContext);
             schemaVersion = "403";
         }
+
+        if ("403".equals(schemaVersion)) {
+            update403To404(dslContext, existingIndexes);
+            schemaVersion = "404";
+        }
+
+        if ("404".equals(schemaVersion)) {
+            update404To405(dslContext, existingIndexes);
+            schemaVersion = "405";
+        }
+
+        if ("405".equals(schemaVersion)) {
+            update405To406(dslContext);
+            schemaVersion = "406";
+        }
     }
 
     /**
@@ -282,6 +312,244 @@ public class SqlSchemaUpdater {
             .execute();
     }
 
+    /**
+     * Update schema from 403 to 404.
+     *
+     * @param dslContext The DSL context
+     * @param existingIndexes Existing index names keyed by table name
+     */
+    protected void update403To404(DSLContext dslContext, Map<String, List<String>> existingIndexes) {
+        loggingService.info("Updating schema from 403 to 404...");
+
+        addColumnIfNotExists(dslContext, PRISM_ITEMS, PRISM_ITEMS.DATA_HASH, SQLDataType.BIGINT);
+
+        backfillItemDataHashes(dslContext);
+
+        createUniqueIndexIfNotExists(
+            dslContext,
+            existingIndexes.getOrDefault(PRISM_ITEMS.getName(), new ArrayList<>()),
+            Indexes.PRISM_ITEMS_DATA_HASH,
+            PRISM_ITEMS,
+            PRISM_ITEMS.DATA_HASH
+        );
+
+        // Update the schema version
+        dslContext.update(PRISM_META).set(PRISM_META.V, "404").where(PRISM_META.K.eq("schema_ver")).execute();
+
+        loggingService.info("Schema updated to 404.");
+    }
+
+    /**
+     * Update schema from 404 to 405.
+     *
+     * @param dslContext The DSL context
+     * @param existingIndexes Existing index names keyed by table name
+     */
+    protected void update404To405(DSLContext dslContext, Map<String, List<String>> existingIndexes) {
+        loggingService.info("Updating schema from 404 to 405...");
+
+        addColumnIfNotExists(dslContext, PRISM_ACTIVITIES, PRISM_ACTIVITIES.SPATIAL_KEY, SQLDataType.BIGINT);
+
+        backfillSpatialKeys(dslContext);
+
+        // Built after the backfill, so it's written once instead of updated for every row
+        createIndexIfNotExists(
+            dslContext,
+            existingIndexes.getOrDefault(PRISM_ACTIVITIES.getName(), new ArrayList<>()),
+            Indexes.PRISM_ACTIVITIES_WORLD_SPATIAL_TIME,
+            PRISM_ACTIVITIES,
+            PRISM_ACTIVITIES.WORLD_ID,
+            PRISM_ACTIVITIES.SPATIAL_KEY,
+            PRISM_ACTIVITIES.TIMESTAMP
+        );
+
+        // Update the schema version
+        dslContext.update(PRISM_META).set(PRISM_META.V, "405").where(PRISM_META.K.eq("schema_ver")).execute();
+
+        loggingService.info("Schema updated to 405.");
+    }
+
+    /**
+     * Update schema from 405 to 406.
+     *
+     * <p>Adds the extent of block groups. Groups recorded before this keep
+     * their first member as the coordinate, and no extent.</p>
+     *
+     * @param dslContext The DSL context
+     */
+    protected void update405To406(DSLContext dslContext) {
+        loggingService.info("Updating schema from 405 to 406...");
+
+        addColumnIfNotExists(dslContext, PRISM_ACTIVITIES, PRISM_ACTIVITIES.EXTENT, SQLDataType.SMALLINT);
+
+        // Update the schema version
+        dslContext.update(PRISM_META).set(PRISM_META.V, "406").where(PRISM_META.K.eq("schema_ver")).execute();
+
+        loggingService.info("Schema updated to 406.");
+    }
+
+    /**
+     * Backfill the spatial key of existing activities.
+     *
+     * <p>Keys are computed in SQL, a range of activity ids at a time. Only
+     * portable integer math is used, so every database floors negative
+     * coordinates to the same chunk as {@link SpatialKey#of(int, int)}.</p>
+     *
+     * <p>Only activities without a key are updated, starting from the first
+     * of them, so a backfill interrupted by a restart picks up where it
+     * stopped.</p>
+     *
+     * @param dslContext The DSL context
+     */
+    protected void backfillSpatialKeys(DSLContext dslContext) {
+        loggingService.info("Backfilling activity spatial keys; this may take a while on large databases...");
+
+        var bounds = dslContext
+            .select(DSL.min(PRISM_ACTIVITIES.ACTIVITY_ID), DSL.max(PRISM_ACTIVITIES.ACTIVITY_ID))
+            .from(PRISM_ACTIVITIES)
+            .where(PRISM_ACTIVITIES.SPATIAL_KEY.isNull())
+            .fetchOne();
+
+        if (bounds == null || bounds.value1() == null) {
+            return;
+        }
+
+        long minActivityId = bounds.value1().longValue();
+        long maxActivityId = bounds.value2().longValue();
+
+        Field<Long> spatialKey = chunk(PRISM_ACTIVITIES.X)
+            .plus(SpatialKey.AXIS_OFFSET)
+            .times(SpatialKey.AXIS_MULTIPLIER)
+            .plus(chunk(PRISM_ACTIVITIES.Z))
+            .plus(SpatialKey.AXIS_OFFSET);
+
+        for (long first = minActivityId; first <= maxActivityId; first += SPATIAL_KEY_BACKFILL_BATCH_SIZE) {
+            dslContext
+                .update(PRISM_ACTIVITIES)
+                .set(PRISM_ACTIVITIES.SPATIAL_KEY, spatialKey)
+                .where(
+                    PRISM_ACTIVITIES.ACTIVITY_ID.between(
+                        UInteger.valueOf(first),
+                        UInteger.valueOf(Math.min(first + SPATIAL_KEY_BACKFILL_BATCH_SIZE - 1, maxActivityId))
+                    ),
+                    PRISM_ACTIVITIES.SPATIAL_KEY.isNull()
+                )
+                .execute();
+        }
+    }
+
+    /**
+     * The chunk of a block coordinate, floored towards negative infinity.
+     *
+     * @param coordinate The coordinate
+     * @return The chunk coordinate
+     */
+    private static Field<Long> chunk(Field<Integer> coordinate) {
+        Field<Integer> offset = coordinate
+            .mod(SpatialKey.CHUNK_SIZE)
+            .plus(SpatialKey.CHUNK_SIZE)
+            .mod(SpatialKey.CHUNK_SIZE);
+
+        return coordinate.minus(offset).div(SpatialKey.CHUNK_SIZE).cast(SQLDataType.BIGINT);
+    }
+
+    /**
+     * Backfill the data hash of existing items.
+     *
+     * <p>Hashes are computed here rather than in SQL so every database gets the
+     * same values, and compressed data is hashed decompressed. Items are walked
+     * in primary key order, and when several rows hold the same material and
+     * data the first is kept. Activities and airtags
+     * pointing at the rest are moved to it and the duplicates are deleted, so
+     * the unique index can be built.</p>
+     *
+     * @param dslContext The DSL context
+     */
+    protected void backfillItemDataHashes(DSLContext dslContext) {
+        loggingService.info("Backfilling item data hashes; this may take a while on large databases...");
+
+        Map<Long, UInteger> survivors = new HashMap<>();
+        UInteger lastItemId = UInteger.valueOf(0);
+        int duplicates = 0;
+
+        while (true) {
+            var items = dslContext
+                .select(PRISM_ITEMS.ITEM_ID, PRISM_ITEMS.MATERIAL, PRISM_ITEMS.DATA, PRISM_ITEMS.DATA_HASH)
+                .from(PRISM_ITEMS)
+                .where(PRISM_ITEMS.ITEM_ID.gt(lastItemId))
+                .orderBy(PRISM_ITEMS.ITEM_ID)
+                .limit(ITEM_HASH_BACKFILL_BATCH_SIZE)
+                .fetch();
+
+            if (items.isEmpty()) {
+                break;
+            }
+
+            List<Query> updates = new ArrayList<>(items.size());
+            Map<UInteger, UInteger> merges = new HashMap<>();
+            for (var item : items) {
+                lastItemId = item.value1();
+
+                long hash = SqlActivityBatch.itemDataHash(item.value2(), StoredDataCodec.decode(item.value3()));
+                UInteger survivor = survivors.putIfAbsent(hash, item.value1());
+                if (survivor != null) {
+                    merges.put(item.value1(), survivor);
+                    continue;
+                }
+
+                if (!Long.valueOf(hash).equals(item.value4())) {
+                    updates.add(
+                        dslContext
+                            .update(PRISM_ITEMS)
+                            .set(PRISM_ITEMS.DATA_HASH, hash)
+                            .where(PRISM_ITEMS.ITEM_ID.eq(item.value1()))
+                    );
+                }
+            }
+
+            if (!merges.isEmpty()) {
+                mergeDuplicateItems(dslContext, merges);
+                duplicates += merges.size();
+            }
+
+            if (!updates.isEmpty()) {
+                dslContext.batch(updates).execute();
+            }
+        }
+
+        if (duplicates > 0) {
+            loggingService.info("Merged {0} duplicate item records while backfilling data hashes.", duplicates);
+        }
+    }
+
+    /**
+     * Point activities and airtags at the surviving copy of each duplicate item, then delete the duplicates.
+     *
+     * @param dslContext The DSL context
+     * @param merges The surviving item id, by duplicate item id
+     */
+    private void mergeDuplicateItems(DSLContext dslContext, Map<UInteger, UInteger> merges) {
+        List<Query> queries = new ArrayList<>(merges.size() * 2 + 1);
+        for (var merge : merges.entrySet()) {
+            queries.add(
+                dslContext
+                    .update(PRISM_ACTIVITIES)
+                    .set(PRISM_ACTIVITIES.AFFECTED_ITEM_ID, merge.getValue())
+                    .where(PRISM_ACTIVITIES.AFFECTED_ITEM_ID.eq(merge.getKey()))
+            );
+            queries.add(
+                dslContext
+                    .update(PRISM_AIRTAGS)
+                    .set(PRISM_AIRTAGS.LATEST_ITEM_ID, merge.getValue())
+                    .where(PRISM_AIRTAGS.LATEST_ITEM_ID.eq(merge.getKey()))
+            );
+        }
+
+        queries.add(dslContext.deleteFrom(PRISM_ITEMS).where(PRISM_ITEMS.ITEM_ID.in(merges.keySet())));
+
+        dslContext.batch(queries).execute();
+    }
+
     /**
      * Drop an index only if the database currently reports it as present.
      *
@@ -324,4 +592,51 @@ public class SqlSchemaUpdater {
             existingIndexes.add(index.getName());
         }
     }
+
+    /**
+     * Create a unique index only if the database does not already report it as present.
+     *
+     * @param dslContext The DSL context
+     * @param existingIndexes The mutable list of existing index names for the table
+     * @param index The index to create
+     * @param table The table the index belongs to
+     * @param fields The columns the index covers
+     */
+    protected void createUniqueIndexIfNotExists(
+        DSLContext dslContext,
+        List<String> existingIndexes,
+        Index index,
+        Table<?> table,
+        Field<?>... fields
+    ) {
+        if (!existingIndexes.contains(index.getName())) {
+            dslContext.createUniqueIndex(index).on(table, fields).execute();
+            existingIndexes.add(index.getName());
+        }
+    }
+
+    /**
+     * Add a column only if the table doesn't already have it, so a migration
+     * interrupted after adding it can run again.
+     *
+     * <p>Checked through the table's metadata, not {@code ADD COLUMN IF NOT
+     * EXISTS}, which MySQL and SQLite don't support.</p>
+     *
+     * @param dslContext The DSL context
+     * @param table The table
+     * @param field The column to add
+     * @param type The column type
+     * @param <T> The column's java type
+     */
+    protected <T> void addColumnIfNotExists(DSLContext dslContext, Table<?> table, Field<T> field, DataType<T> type) {
+        boolean exists = dslContext
+            .meta()
+            .getTables(table.getName())
+            .stream()
+            .anyMatch(existing -> existing.field(field.getName()) != null);
+
+        if (!exists) {
+            dslContext.alterTable(table).addColumn(field, type).execute();
+        }
+    }
 }
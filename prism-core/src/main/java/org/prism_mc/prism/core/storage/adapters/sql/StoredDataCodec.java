@@ -0,0 +1,159 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses serialized item and custom data for storage.
+ *
+ * <p>Encoded values are the deflated UTF-8 text, primed with a preset
+ * dictionary of common SNBT fragments, base64 encoded behind a version
+ * marker. SNBT never starts with the marker, so stored values are decoded
+ * whether or not compression is currently enabled, and plain rows written
+ * before it was enabled stay readable.</p>
+ *
+ * <p>Base64 costs about a third over the deflated bytes but keeps the value
+ * in the existing text column on every dialect. Container and book data
+ * still ends up 50-90% smaller than the plain SNBT, see
+ * {@code StoredDataSizeBenchmark}.</p>
+ */
+public final class StoredDataCodec {
+
+    /**
+     * The marker of values deflated with the version 1 dictionary.
+     */
+    static final String DEFLATE_MARKER = "~d1:";
+
+    /**
+     * Values shorter than this are stored as-is, they rarely shrink.
+     */
+    static final int MIN_ENCODED_LENGTH = 256;
+
+    /**
+     * The preset dictionary. Deflate favors matches near the end of the
+     * dictionary, so the most common fragments come last. Changing this
+     * requires a new marker, existing values can only be read with the
+     * dictionary they were written with.
+     */
+    private static final byte[] DICTIONARY = (
+        "\"minecraft:written_book_content\":{pages:[{raw:\"\"}],title:{raw:\"\"},author:\"\",generation:0}" +
+        "\"minecraft:writable_book_content\":{pages:[{raw:\"\"}]}" +
+        "\"minecraft:potion_contents\":{potion:\"minecraft:\"}" +
+        "\"minecraft:firework\":{explosions:[{shape:\"\",colors:[I;]}],flight_duration:1b}" +
+        "\"minecraft:trim\":{material:\"minecraft:\",pattern:\"minecraft:\"}" +
+        "\"minecraft:attribute_modifiers\":[{type:\"minecraft:\",amount:,operation:\"add_value\",slot:\"\"}]" +
+        "\"minecraft:bundle_contents\":[]" +
+        "\"minecraft:dyed_color\":" +
+        "\"minecraft:custom_data\":{PublicBukkitValues:{\"prism:\"}}" +
+        "\"minecraft:lore\":[]" +
+        "\"minecraft:custom_name\":\"\"" +
+        "\"minecraft:repair_cost\":1" +
+        "\"minecraft:damage\":" +
+        "\"minecraft:stored_enchantments\":{\"minecraft:\":1}" +
+        "\"minecraft:enchantments\":{\"minecraft:sharpness\":5,\"minecraft:unbreaking\":3,\"minecraft:mending\":1}" +
+        "{Items:[{Slot:0b,count:64,id:\"minecraft:\"}],id:\"minecraft:chest\",x:0,y:64,z:0}" +
+        "\"minecraft:container\":[{item:{count:64,id:\"minecraft:\"},slot:0}]" +
+        "{DataVersion:,count:1,id:\"minecraft:shulker_box\",components:{\"minecraft:container\":[{item:" +
+        "{count:64,id:\"minecraft:\",components:{\"minecraft:" +
+        "},slot:1},{item:{count:64,id:\"minecraft:\"},slot:"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private StoredDataCodec() {}
+
+    /**
+     * Encode a value for storage, if it's large enough to compress and compresses well.
+     *
+     * @param data The value, or null
+     * @return The encoded value, or the value itself if encoding wouldn't make it smaller
+     */
+    public static String encode(String data) {
+        if (data == null || data.length() < MIN_ENCODED_LENGTH) {
+            return data;
+        }
+
+        byte[] raw = data.getBytes(StandardCharsets.UTF_8);
+
+        var deflater = new Deflater();
+        var out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(raw);
+            deflater.finish();
+
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        String encoded = DEFLATE_MARKER + Base64.getEncoder().encodeToString(out.toByteArray());
+
+        return encoded.length() < data.length() ? encoded : data;
+    }
+
+    /**
+     * Decode a stored value.
+     *
+     * @param stored The stored value, or null
+     * @return The value
+     * @throws IllegalArgumentException If the value is marked as encoded but is corrupt
+     */
+    public static String decode(String stored) {
+        if (stored == null || !stored.startsWith(DEFLATE_MARKER)) {
+            return stored;
+        }
+
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(DEFLATE_MARKER.length()));
+
+        var inflater = new Inflater();
+        var out = new ByteArrayOutputStream(compressed.length * 4);
+        try {
+            inflater.setInput(compressed);
+
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length > 0) {
+                    out.write(buffer, 0, length);
+                } else if (inflater.needsDictionary()) {
+                    inflater.setDictionary(DICTIONARY);
+                } else if (inflater.needsInput()) {
+                    throw new IllegalArgumentException("Stored data ends before the end of its compressed stream");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Stored data is not a valid compressed stream", e);
+        } finally {
+            inflater.end();
+        }
+
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
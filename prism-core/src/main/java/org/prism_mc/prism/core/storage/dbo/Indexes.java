@@ -74,6 +74,13 @@ public class Indexes {
         false
     );
 
+    public static final Index PRISM_ACTIVITIES_WORLD_SPATIAL_TIME = Internal.createIndex(
+        DSL.name("idx_prism_worldSpatialTime"),
+        PRISM_ACTIVITIES,
+        new OrderField[] { PRISM_ACTIVITIES.WORLD_ID, PRISM_ACTIVITIES.SPATIAL_KEY, PRISM_ACTIVITIES.TIMESTAMP },
+        false
+    );
+
     public static final Index PRISM_ACTIVITIES_ACTION_ID = Internal.createIndex(
         DSL.name("idx_prism_actionId"),
         PRISM_ACTIVITIES,
@@ -166,6 +173,13 @@ public class Indexes {
         false
     );
 
+    public static final Index PRISM_ITEMS_DATA_HASH = Internal.createIndex(
+        DSL.name("idx_prism_items_dataHash"),
+        PRISM_ITEMS,
+        new OrderField[] { PRISM_ITEMS.DATA_HASH },
+        true
+    );
+
     public static final Index PRISM_AIRTAGS_PLAYER_ID = Internal.createIndex(
         DSL.name("idx_prism_airtags_playerId"),
         PRISM_AIRTAGS,
@@ -22,42 +22,13 @@ package org.prism_mc.prism.core.storage.dbo.records;
 
 import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAdapter.PRISM_ACTIVITIES;
 
-import org.jooq.Field;
 import org.jooq.Record1;
-import org.jooq.Record22;
-import org.jooq.Row22;
 import org.jooq.impl.UpdatableRecordImpl;
 import org.jooq.types.UInteger;
 import org.jooq.types.UShort;
 
 @SuppressWarnings({ "all", "unchecked", "rawtypes" })
-public class PrismActivitiesRecord
-    extends UpdatableRecordImpl<PrismActivitiesRecord>
-    implements
-        Record22<
-            UInteger,
-            UInteger,
-            UInteger,
-            Integer,
-            Integer,
-            Integer,
-            UInteger,
-            UInteger,
-            UShort,
-            UInteger,
-            UInteger,
-            UInteger,
-            UInteger,
-            UInteger,
-            UInteger,
-            UInteger,
-            UInteger,
-            String,
-            String,
-            UShort,
-            String,
-            Boolean
-        > {
+public class PrismActivitiesRecord extends UpdatableRecordImpl<PrismActivitiesRecord> {
 
     private static final long serialVersionUID = 1L;
 
@@ -391,585 +362,43 @@ public class PrismActivitiesRecord
         return (Boolean) get(21);
     }
 
-    // -------------------------------------------------------------------------
-    // Primary key information
-    // -------------------------------------------------------------------------
-
-    @Override
-    public Record1<UInteger> key() {
-        return (Record1) super.key();
-    }
-
-    // -------------------------------------------------------------------------
-    // Record13 type implementation
-    // -------------------------------------------------------------------------
-
-    @Override
-    public Row22<
-        UInteger,
-        UInteger,
-        UInteger,
-        Integer,
-        Integer,
-        Integer,
-        UInteger,
-        UInteger,
-        UShort,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        String,
-        String,
-        UShort,
-        String,
-        Boolean
-    > fieldsRow() {
-        return (Row22) super.fieldsRow();
-    }
-
-    @Override
-    public Row22<
-        UInteger,
-        UInteger,
-        UInteger,
-        Integer,
-        Integer,
-        Integer,
-        UInteger,
-        UInteger,
-        UShort,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        String,
-        String,
-        UShort,
-        String,
-        Boolean
-    > valuesRow() {
-        return (Row22) super.valuesRow();
-    }
-
-    @Override
-    public Field<UInteger> field1() {
-        return PRISM_ACTIVITIES.ACTIVITY_ID;
-    }
-
-    @Override
-    public Field<UInteger> field2() {
-        return PRISM_ACTIVITIES.TIMESTAMP;
-    }
-
-    @Override
-    public Field<UInteger> field3() {
-        return PRISM_ACTIVITIES.WORLD_ID;
-    }
-
-    @Override
-    public Field<Integer> field4() {
-        return PRISM_ACTIVITIES.X;
-    }
-
-    @Override
-    public Field<Integer> field5() {
-        return PRISM_ACTIVITIES.Y;
-    }
-
-    @Override
-    public Field<Integer> field6() {
-        return PRISM_ACTIVITIES.Z;
-    }
-
-    @Override
-    public Field<UInteger> field7() {
-        return PRISM_ACTIVITIES.ACTION_ID;
-    }
-
-    @Override
-    public Field<UInteger> field8() {
-        return PRISM_ACTIVITIES.AFFECTED_ITEM_ID;
-    }
-
-    @Override
-    public Field<UShort> field9() {
-        return PRISM_ACTIVITIES.AFFECTED_ITEM_QUANTITY;
-    }
-
-    @Override
-    public Field<UInteger> field10() {
-        return PRISM_ACTIVITIES.AFFECTED_BLOCK_ID;
-    }
-
-    @Override
-    public Field<UInteger> field11() {
-        return PRISM_ACTIVITIES.REPLACED_BLOCK_ID;
-    }
-
-    @Override
-    public Field<UInteger> field12() {
-        return PRISM_ACTIVITIES.AFFECTED_ENTITY_TYPE_ID;
-    }
-
-    @Override
-    public Field<UInteger> field13() {
-        return PRISM_ACTIVITIES.AFFECTED_PLAYER_ID;
-    }
-
-    @Override
-    public Field<UInteger> field14() {
-        return PRISM_ACTIVITIES.CAUSE_ID;
-    }
-
-    @Override
-    public Field<UInteger> field15() {
-        return PRISM_ACTIVITIES.CAUSE_PLAYER_ID;
-    }
-
-    @Override
-    public Field<UInteger> field16() {
-        return PRISM_ACTIVITIES.CAUSE_ENTITY_TYPE_ID;
-    }
-
-    @Override
-    public Field<UInteger> field17() {
-        return PRISM_ACTIVITIES.CAUSE_BLOCK_ID;
-    }
-
-    @Override
-    public Field<String> field18() {
-        return PRISM_ACTIVITIES.DESCRIPTOR;
-    }
-
-    @Override
-    public Field<String> field19() {
-        return PRISM_ACTIVITIES.METADATA;
-    }
-
-    @Override
-    public Field<UShort> field20() {
-        return PRISM_ACTIVITIES.SERIALIZER_VERSION;
-    }
-
-    @Override
-    public Field<String> field21() {
-        return PRISM_ACTIVITIES.SERIALIZED_DATA;
-    }
-
-    @Override
-    public Field<Boolean> field22() {
-        return PRISM_ACTIVITIES.REVERSED;
-    }
-
-    @Override
-    public UInteger component1() {
-        return getActivityId();
-    }
-
-    @Override
-    public UInteger component2() {
-        return getTimestamp();
-    }
-
-    @Override
-    public UInteger component3() {
-        return getWorldId();
-    }
-
-    @Override
-    public Integer component4() {
-        return getX();
-    }
-
-    @Override
-    public Integer component5() {
-        return getY();
-    }
-
-    @Override
-    public Integer component6() {
-        return getZ();
-    }
-
-    @Override
-    public UInteger component7() {
-        return getActionId();
-    }
-
-    @Override
-    public UInteger component8() {
-        return getItemId();
-    }
-
-    @Override
-    public UShort component9() {
-        return getItemQuantity();
-    }
-
-    @Override
-    public UInteger component10() {
-        return getBlockId();
-    }
-
-    @Override
-    public UInteger component11() {
-        return getReplacedBlockId();
-    }
-
-    @Override
-    public UInteger component12() {
-        return getEntityTypeId();
-    }
-
-    @Override
-    public UInteger component13() {
-        return getAffectedPlayerId();
-    }
-
-    @Override
-    public UInteger component14() {
-        return getCauseId();
-    }
-
-    @Override
-    public UInteger component15() {
-        return getCausePlayerId();
-    }
-
-    @Override
-    public UInteger component16() {
-        return getCauseEntityTypeId();
-    }
-
-    @Override
-    public UInteger component17() {
-        return getCauseBlockId();
-    }
-
-    @Override
-    public String component18() {
-        return getDescriptor();
-    }
-
-    @Override
-    public String component19() {
-        return getMetadata();
-    }
-
-    @Override
-    public UShort component20() {
-        return getSerializerVersion();
-    }
-
-    @Override
-    public String component21() {
-        return getSerializedData();
-    }
-
-    @Override
-    public Boolean component22() {
-        return getReversed();
-    }
-
-    @Override
-    public UInteger value1() {
-        return getActivityId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value1(UInteger value) {
-        setActivityId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value2() {
-        return getTimestamp();
-    }
-
-    @Override
-    public PrismActivitiesRecord value2(UInteger value) {
-        setTimestamp(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value3() {
-        return getWorldId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value3(UInteger value) {
-        setWorldId(value);
-        return this;
-    }
-
-    @Override
-    public Integer value4() {
-        return getX();
-    }
-
-    @Override
-    public PrismActivitiesRecord value4(Integer value) {
-        setX(value);
-        return this;
-    }
-
-    @Override
-    public Integer value5() {
-        return getY();
-    }
-
-    @Override
-    public PrismActivitiesRecord value5(Integer value) {
-        setY(value);
-        return this;
-    }
-
-    @Override
-    public Integer value6() {
-        return getZ();
-    }
-
-    @Override
-    public PrismActivitiesRecord value6(Integer value) {
-        setZ(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value7() {
-        return getActionId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value7(UInteger value) {
-        setActionId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value8() {
-        return getItemId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value8(UInteger value) {
-        setItemId(value);
-        return this;
-    }
-
-    @Override
-    public UShort value9() {
-        return getItemQuantity();
-    }
-
-    @Override
-    public PrismActivitiesRecord value9(UShort value) {
-        setItemQuantity(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value10() {
-        return getBlockId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value10(UInteger value) {
-        setBlockId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value11() {
-        return getReplacedBlockId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value11(UInteger value) {
-        setReplacedBlockId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value12() {
-        return getEntityTypeId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value12(UInteger value) {
-        setEntityTypeId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value13() {
-        return getAffectedPlayerId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value13(UInteger value) {
-        setAffectedPlayerId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value14() {
-        return getCauseId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value14(UInteger value) {
-        setCauseId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value15() {
-        return getCausePlayerId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value15(UInteger value) {
-        setCausePlayerId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value16() {
-        return getCauseEntityTypeId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value16(UInteger value) {
-        setCauseEntityTypeId(value);
-        return this;
-    }
-
-    @Override
-    public UInteger value17() {
-        return getCauseBlockId();
-    }
-
-    @Override
-    public PrismActivitiesRecord value17(UInteger value) {
-        setCauseBlockId(value);
-        return this;
-    }
-
-    @Override
-    public String value18() {
-        return getDescriptor();
-    }
-
-    @Override
-    public PrismActivitiesRecord value18(String value) {
-        setDescriptor(value);
-        return this;
-    }
-
-    @Override
-    public String value19() {
-        return getMetadata();
-    }
-
-    @Override
-    public PrismActivitiesRecord value19(String value) {
-        setMetadata(value);
-        return this;
-    }
-
-    @Override
-    public UShort value20() {
-        return getSerializerVersion();
-    }
-
-    @Override
-    public PrismActivitiesRecord value20(UShort value) {
-        setSerializerVersion(value);
+    /**
+     * Setter for <code>prism_activities.spatial_key</code>.
+     */
+    public PrismActivitiesRecord setSpatialKey(Long value) {
+        set(22, value);
         return this;
     }
 
-    @Override
-    public String value21() {
-        return getSerializedData();
+    /**
+     * Getter for <code>prism_activities.spatial_key</code>.
+     */
+    public Long getSpatialKey() {
+        return (Long) get(22);
     }
 
-    @Override
-    public PrismActivitiesRecord value21(String value) {
-        setSerializedData(value);
+    /**
+     * Setter for <code>prism_activities.extent</code>.
+     */
+    public PrismActivitiesRecord setExtent(Short value) {
+        set(23, value);
         return this;
     }
 
-    @Override
-    public Boolean value22() {
-        return getReversed();
+    /**
+     * Getter for <code>prism_activities.extent</code>.
+     */
+    public Short getExtent() {
+        return (Short) get(23);
     }
 
-    @Override
-    public PrismActivitiesRecord value22(Boolean value) {
-        setReversed(value);
-        return this;
-    }
+    // -------------------------------------------------------------------------
+    // Primary key information
+    // -------------------------------------------------------------------------
 
     @Override
-    public PrismActivitiesRecord values(
-        UInteger value1,
-        UInteger value2,
-        UInteger value3,
-        Integer value4,
-        Integer value5,
-        Integer value6,
-        UInteger value7,
-        UInteger value8,
-        UShort value9,
-        UInteger value10,
-        UInteger value11,
-        UInteger value12,
-        UInteger value13,
-        UInteger value14,
-        UInteger value15,
-        UInteger value16,
-        UInteger value17,
-        String value18,
-        String value19,
-        UShort value20,
-        String value21,
-        Boolean value22
-    ) {
-        value1(value1);
-        value2(value2);
-        value3(value3);
-        value4(value4);
-        value5(value5);
-        value6(value6);
-        value7(value7);
-        value8(value8);
-        value9(value9);
-        value10(value10);
-        value11(value11);
-        value12(value12);
-        value13(value13);
-        value14(value14);
-        value15(value15);
-        value16(value16);
-        value17(value17);
-        value18(value18);
-        value19(value19);
-        value20(value20);
-        value21(value21);
-        value22(value22);
-        return this;
+    public Record1<UInteger> key() {
+        return (Record1) super.key();
     }
 
     // -------------------------------------------------------------------------
@@ -1008,7 +437,9 @@ public class PrismActivitiesRecord
         String metadata,
         UShort serializerVersion,
         String serializedData,
-        Boolean reversed
+        Boolean reversed,
+        Long spatialKey,
+        Short extent
     ) {
         super(PRISM_ACTIVITIES);
         setActivityId(activityId);
@@ -1033,5 +464,7 @@ public class PrismActivitiesRecord
         setSerializerVersion(serializerVersion);
         setSerializedData(serializedData);
         setReversed(reversed);
+        setSpatialKey(spatialKey);
+        setExtent(extent);
     }
 }
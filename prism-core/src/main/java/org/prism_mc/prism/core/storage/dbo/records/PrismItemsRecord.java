@@ -24,8 +24,8 @@ import static org.prism_mc.prism.core.storage.adapters.sql.AbstractSqlStorageAda
 
 import org.jooq.Field;
 import org.jooq.Record1;
-import org.jooq.Record4;
-import org.jooq.Row4;
+import org.jooq.Record5;
+import org.jooq.Row5;
 import org.jooq.impl.UpdatableRecordImpl;
 import org.jooq.types.UInteger;
 import org.jooq.types.UShort;
@@ -33,7 +33,7 @@ import org.jooq.types.UShort;
 @SuppressWarnings({ "all", "unchecked", "rawtypes" })
 public class PrismItemsRecord
     extends UpdatableRecordImpl<PrismItemsRecord>
-    implements Record4<UInteger, String, String, UInteger> {
+    implements Record5<UInteger, String, String, UInteger, Long> {
 
     private static final long serialVersionUID = 1L;
 
@@ -97,6 +97,21 @@ public class PrismItemsRecord
         return (UInteger) get(3);
     }
 
+    /**
+     * Setter for <code>prism_items.data_hash</code>.
+     */
+    public PrismItemsRecord setDataHash(Long value) {
+        set(4, value);
+        return this;
+    }
+
+    /**
+     * Getter for <code>prism_items.data_hash</code>.
+     */
+    public Long getDataHash() {
+        return (Long) get(4);
+    }
+
     // -------------------------------------------------------------------------
     // Primary key information
     // -------------------------------------------------------------------------
@@ -107,17 +122,17 @@ public class PrismItemsRecord
     }
 
     // -------------------------------------------------------------------------
-    // Record4 type implementation
+    // Record5 type implementation
     // -------------------------------------------------------------------------
 
     @Override
-    public Row4<UInteger, String, String, UInteger> fieldsRow() {
-        return (Row4) super.fieldsRow();
+    public Row5<UInteger, String, String, UInteger, Long> fieldsRow() {
+        return (Row5) super.fieldsRow();
     }
 
     @Override
-    public Row4<UInteger, String, String, UInteger> valuesRow() {
-        return (Row4) super.valuesRow();
+    public Row5<UInteger, String, String, UInteger, Long> valuesRow() {
+        return (Row5) super.valuesRow();
     }
 
     @Override
@@ -140,6 +155,11 @@ public class PrismItemsRecord
         return PRISM_ITEMS.AIRTAG_ID;
     }
 
+    @Override
+    public Field<Long> field5() {
+        return PRISM_ITEMS.DATA_HASH;
+    }
+
     @Override
     public UInteger component1() {
         return getItemId();
@@ -160,6 +180,11 @@ public class PrismItemsRecord
         return getAirtagId();
     }
 
+    @Override
+    public Long component5() {
+        return getDataHash();
+    }
+
     @Override
     public UInteger value1() {
         return getItemId();
@@ -205,11 +230,23 @@ public class PrismItemsRecord
     }
 
     @Override
-    public PrismItemsRecord values(UInteger value1, String value2, String value3, UInteger value4) {
+    public Long value5() {
+        return getDataHash();
+    }
+
+    @Override
+    public PrismItemsRecord value5(Long value) {
+        setDataHash(value);
+        return this;
+    }
+
+    @Override
+    public PrismItemsRecord values(UInteger value1, String value2, String value3, UInteger value4, Long value5) {
         value1(value1);
         value2(value2);
         value3(value3);
         value4(value4);
+        value5(value5);
         return this;
     }
 
@@ -227,11 +264,12 @@ public class PrismItemsRecord
     /**
      * Create a detached, initialised PrismItemsRecord.
      */
-    public PrismItemsRecord(UInteger itemId, String material, String data, UInteger airtagId) {
+    public PrismItemsRecord(UInteger itemId, String material, String data, UInteger airtagId, Long dataHash) {
         super(PRISM_ITEMS);
         setItemId(itemId);
         setMaterial(material);
         setData(data);
         setAirtagId(airtagId);
+        setDataHash(dataHash);
     }
 }
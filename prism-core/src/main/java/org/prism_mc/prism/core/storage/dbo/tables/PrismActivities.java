@@ -31,7 +31,6 @@ import org.jooq.Identity;
 import org.jooq.Index;
 import org.jooq.Name;
 import org.jooq.Record;
-import org.jooq.Row22;
 import org.jooq.Schema;
 import org.jooq.Table;
 import org.jooq.TableField;
@@ -288,6 +287,30 @@ public class PrismActivities extends TableImpl<PrismActivitiesRecord> {
         ""
     );
 
+    /**
+     * The column <code>prism_activities.spatial_key</code>.
+     *
+     * <p>The chunk of the x and z coordinates, packed by {@code SpatialKey}.</p>
+     */
+    public final TableField<PrismActivitiesRecord, Long> SPATIAL_KEY = createField(
+        DSL.name("spatial_key"),
+        SQLDataType.BIGINT,
+        this,
+        ""
+    );
+
+    /**
+     * The column <code>prism_activities.extent</code>.
+     *
+     * <p>How far a block group reaches from its coordinate, null for single blocks.</p>
+     */
+    public final TableField<PrismActivitiesRecord, Short> EXTENT = createField(
+        DSL.name("extent"),
+        SQLDataType.SMALLINT,
+        this,
+        ""
+    );
+
     private PrismActivities(String prefix, Name alias, Table<PrismActivitiesRecord> aliased) {
         this(prefix, alias, aliased, null);
     }
@@ -338,7 +361,8 @@ public class PrismActivities extends TableImpl<PrismActivitiesRecord> {
             Indexes.PRISM_ACTIVITIES_AFFECTED_BLOCK_ID,
             Indexes.PRISM_ACTIVITIES_REPLACED_BLOCK_ID,
             Indexes.PRISM_ACTIVITIES_WORLD_ACTION_TIME_COORDS,
-            Indexes.PRISM_ACTIVITIES_WORLD_TIME_COORDS
+            Indexes.PRISM_ACTIVITIES_WORLD_TIME_COORDS,
+            Indexes.PRISM_ACTIVITIES_WORLD_SPATIAL_TIME
         );
     }
 
@@ -468,32 +492,4 @@ public class PrismActivities extends TableImpl<PrismActivitiesRecord> {
     public PrismActivities rename(Name name) {
         return new PrismActivities(prefix, name, null);
     }
-
-    @Override
-    public Row22<
-        UInteger,
-        UInteger,
-        UInteger,
-        Integer,
-        Integer,
-        Integer,
-        UInteger,
-        UInteger,
-        UShort,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        UInteger,
-        String,
-        String,
-        UShort,
-        String,
-        Boolean
-    > fieldsRow() {
-        return (Row22) super.fieldsRow();
-    }
 }
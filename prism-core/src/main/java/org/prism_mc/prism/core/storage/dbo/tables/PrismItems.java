@@ -28,7 +28,7 @@ import org.jooq.ForeignKey;
 import org.jooq.Identity;
 import org.jooq.Name;
 import org.jooq.Record;
-import org.jooq.Row4;
+import org.jooq.Row5;
 import org.jooq.Schema;
 import org.jooq.Table;
 import org.jooq.TableField;
@@ -95,6 +95,16 @@ public class PrismItems extends TableImpl<PrismItemsRecord> {
         ""
     );
 
+    /**
+     * The column <code>prism_items.data_hash</code>.
+     */
+    public final TableField<PrismItemsRecord, Long> DATA_HASH = createField(
+        DSL.name("data_hash"),
+        SQLDataType.BIGINT,
+        this,
+        ""
+    );
+
     private PrismItems(String prefix, Name alias, Table<PrismItemsRecord> aliased) {
         this(prefix, alias, aliased, null);
     }
@@ -162,7 +172,7 @@ public class PrismItems extends TableImpl<PrismItemsRecord> {
     }
 
     @Override
-    public Row4<UInteger, String, String, UInteger> fieldsRow() {
-        return (Row4) super.fieldsRow();
+    public Row5<UInteger, String, String, UInteger, Long> fieldsRow() {
+        return (Row5) super.fieldsRow();
     }
 }
@@ -7,6 +7,8 @@ CREATE TABLE IF NOT EXISTS %prefix%activities
     x                                 Int32 CODEC(T64, ZSTD),
     y                                 Int32 CODEC(T64, ZSTD),
     z                                 Int32 CODEC(T64, ZSTD),
+    spatial_key                       Int64 MATERIALIZED (toInt64(floor(x / 16)) + 2097152) * 4194304 + toInt64(floor(z / 16)) + 2097152,
+    extent                            UInt8 DEFAULT 0,
     action                            LowCardinality(String),
     affected_material                 LowCardinality(String),
     affected_item_data                String CODEC(ZSTD),
@@ -37,6 +39,7 @@ CREATE TABLE IF NOT EXISTS %prefix%activities
     reversed                          UInt8 DEFAULT 0,
     INDEX idx_x x TYPE minmax GRANULARITY 4,
     INDEX idx_z z TYPE minmax GRANULARITY 4,
+    INDEX idx_spatial_key spatial_key TYPE bloom_filter GRANULARITY 4,
     INDEX idx_activity_id activity_id TYPE minmax GRANULARITY 4,
     INDEX idx_affected_item_airtag affected_item_airtag TYPE bloom_filter GRANULARITY 4,
     INDEX idx_cause_player cause_player TYPE bloom_filter GRANULARITY 4,
@@ -7,5 +7,5 @@ INSERT INTO %prefix%activities (
     cause, cause_player, cause_player_uuid,
     cause_entity_type, cause_entity_type_translation_key,
     cause_block_ns, cause_block_name, cause_block_translation_key,
-    descriptor, metadata, serializer_version, serialized_data, reversed
-) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    descriptor, metadata, serializer_version, serialized_data, reversed, extent
+) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS %prefix%id_leases
+(
+    sequence   LowCardinality(String),
+    first_id   UInt64,
+    last_id    UInt64,
+    claim      String,
+    claimed_at DateTime DEFAULT now()
+)
+ENGINE = MergeTree
+ORDER BY (sequence, first_id)
+SETTINGS enable_block_number_column = 1, enable_block_offset_column = 1
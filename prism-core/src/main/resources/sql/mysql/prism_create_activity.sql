@@ -34,7 +34,9 @@ CREATE PROCEDURE %prefix%create_activity (
     IN `p_serializedData` LONGTEXT,
     IN `p_descriptor` VARCHAR(255),
     IN `p_metadata` VARCHAR(255),
-    IN `p_affectedItemAirtag` CHAR(6)
+    IN `p_affectedItemAirtag` CHAR(6),
+    IN `p_extent` SMALLINT,
+    IN `p_affectedItemDataHash` BIGINT
 )
 BEGIN
     DECLARE v_affectedItemId INT DEFAULT NULL;
@@ -54,7 +56,7 @@ BEGIN
 
     -- Create the affected item
     IF `p_affectedItemMaterial` IS NOT NULL THEN
-        CALL %prefix%get_or_create_item(p_affectedItemMaterial, p_affectedItemData, p_affectedItemAirtag, v_affectedItemId);
+        CALL %prefix%get_or_create_item(p_affectedItemMaterial, p_affectedItemData, p_affectedItemAirtag, p_affectedItemDataHash, v_affectedItemId);
     END IF;
 
     -- Create the affected block
@@ -107,6 +109,7 @@ BEGIN
         `x`,
         `y`,
         `z`,
+        `spatial_key`,
         `action_id`,
         `affected_item_id`,
         `affected_item_quantity`,
@@ -121,13 +124,15 @@ BEGIN
         `descriptor`,
         `metadata`,
         `serializer_version`,
-        `serialized_data`
+        `serialized_data`,
+        `extent`
     ) VALUES (
         `p_timestamp`,
         v_worldId,
         `p_x`,
         `p_y`,
         `p_z`,
+        (FLOOR(`p_x` / 16) + 2097152) * 4194304 + FLOOR(`p_z` / 16) + 2097152,
         v_actionId,
         v_affectedItemId,
         `p_affectedItemQuantity`,
@@ -142,7 +147,8 @@ BEGIN
         `p_descriptor`,
         `p_metadata`,
         `p_serializerVersion`,
-        `p_serializedData`
+        `p_serializedData`,
+        `p_extent`
     );
 
     IF `p_affectedItemAirtag` IS NOT NULL AND v_affectedItemId IS NOT NULL THEN
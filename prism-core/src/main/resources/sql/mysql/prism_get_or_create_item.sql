@@ -1,18 +1,19 @@
 CREATE PROCEDURE %prefix%get_or_create_item
-(IN `materialKey` VARCHAR(45), IN `itemData` TEXT, IN `p_airtag` CHAR(6), OUT `itemId` INT)
+(IN `materialKey` VARCHAR(45), IN `itemData` TEXT, IN `p_airtag` CHAR(6), IN `p_dataHash` BIGINT, OUT `itemId` INT)
 BEGIN
     DECLARE v_airtagId INT DEFAULT NULL;
 
+    -- The hash of the material and uncompressed data, from SqlActivityBatch.itemDataHash
     SELECT item_id INTO `itemId` FROM
-        %prefix%items WHERE material = `materialKey` AND data = `itemData`;
+        %prefix%items WHERE data_hash = `p_dataHash` AND material = `materialKey`;
 
     IF `itemId` IS NULL THEN
         IF `p_airtag` IS NOT NULL THEN
             SELECT airtag_id INTO v_airtagId FROM %prefix%airtags WHERE airtag = `p_airtag`;
         END IF;
 
-        INSERT INTO %prefix%items (`material`, `data`, `airtag_id`)
-        VALUES (`materialKey`, `itemData`, v_airtagId);
+        INSERT INTO %prefix%items (`material`, `data`, `airtag_id`, `data_hash`)
+        VALUES (`materialKey`, `itemData`, v_airtagId, `p_dataHash`);
 
         SET `itemId` = LAST_INSERT_ID();
     END IF;
@@ -34,7 +34,9 @@ CREATE OR REPLACE FUNCTION %prefix%create_activity (
     p_serializedData TEXT,
     p_descriptor VARCHAR(255),
     p_metadata VARCHAR(255),
-    p_affectedItemAirtag CHAR(6)
+    p_affectedItemAirtag CHAR(6),
+    p_extent SMALLINT,
+    p_affectedItemDataHash BIGINT
 )
 RETURNS VOID AS $$
 DECLARE
@@ -56,7 +58,7 @@ BEGIN
 
      -- Get or create affected item
     IF p_affectedItemMaterial IS NOT NULL THEN
-        SELECT %prefix%get_or_create_item(p_affectedItemMaterial, p_affectedItemData, p_affectedItemAirtag) INTO v_affectedItemId;
+        SELECT %prefix%get_or_create_item(p_affectedItemMaterial, p_affectedItemData, p_affectedItemAirtag, p_affectedItemDataHash) INTO v_affectedItemId;
     END IF;
 
     -- Get or create affected block
@@ -110,6 +112,7 @@ BEGIN
         x,
         y,
         z,
+        spatial_key,
         action_id,
         affected_item_id,
         affected_item_quantity,
@@ -124,13 +127,15 @@ BEGIN
         descriptor,
         metadata,
         serializer_version,
-        serialized_data
+        serialized_data,
+        extent
     ) VALUES (
         p_timestamp,
         v_worldId,
         p_x,
         p_y,
         p_z,
+        (floor(p_x / 16.0)::bigint + 2097152) * 4194304 + floor(p_z / 16.0)::bigint + 2097152,
         v_actionId,
         v_affectedItemId,
         p_affectedItemQuantity,
@@ -145,7 +150,8 @@ BEGIN
         p_descriptor,
         p_metadata,
         p_serializerVersion,
-        p_serializedData
+        p_serializedData,
+        p_extent
     )
     RETURNING activity_id INTO v_activityId;
 
@@ -1,19 +1,25 @@
-CREATE OR REPLACE FUNCTION %prefix%get_or_create_item(materialKey VARCHAR(45), itemData TEXT, p_airtag CHAR(6))
+CREATE OR REPLACE FUNCTION %prefix%get_or_create_item(
+    materialKey VARCHAR(45),
+    itemData TEXT,
+    p_airtag CHAR(6),
+    p_dataHash BIGINT
+)
 RETURNS INTEGER AS $$
 DECLARE
     itemId INTEGER;
     v_airtagId INTEGER;
 BEGIN
+    -- The hash of the material and uncompressed data, from SqlActivityBatch.itemDataHash
     SELECT item_id INTO itemId FROM
-    %prefix%items WHERE material = materialKey AND data = itemData;
+    %prefix%items WHERE data_hash = p_dataHash AND material = materialKey;
 
     IF itemId IS NULL THEN
         IF p_airtag IS NOT NULL THEN
             SELECT airtag_id INTO v_airtagId FROM %prefix%airtags WHERE airtag = p_airtag;
         END IF;
 
-        INSERT INTO %prefix%items (material, data, airtag_id)
-        VALUES (materialKey, itemData, v_airtagId) RETURNING item_id INTO itemId;
+        INSERT INTO %prefix%items (material, data, airtag_id, data_hash)
+        VALUES (materialKey, itemData, v_airtagId, p_dataHash) RETURNING item_id INTO itemId;
     END IF;
 
     RETURN itemId;
@@ -0,0 +1,67 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class LongArrayBuilderTest {
+
+    @Test
+    void buildsAnEmptyArray() {
+        var builder = new LongArrayBuilder();
+
+        assertEquals(0, builder.size());
+        assertArrayEquals(new long[0], builder.toArray());
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        var builder = new LongArrayBuilder(2);
+        for (long value = 0; value < 5000; value++) {
+            builder.add(value * 31);
+        }
+
+        assertEquals(5000, builder.size());
+        assertArrayEquals(LongStream.range(0, 5000).map(value -> value * 31).toArray(), builder.toArray());
+    }
+
+    @Test
+    void growsFromAZeroCapacity() {
+        var builder = new LongArrayBuilder(0);
+        builder.add(Long.MIN_VALUE);
+        builder.add(Long.MAX_VALUE);
+
+        assertArrayEquals(new long[] { Long.MIN_VALUE, Long.MAX_VALUE }, builder.toArray());
+    }
+
+    @Test
+    void trimsTheArrayToTheValuesAdded() {
+        var builder = new LongArrayBuilder(10);
+        builder.add(1);
+        builder.add(2);
+
+        assertArrayEquals(new long[] { 1, 2 }, builder.toArray());
+    }
+}
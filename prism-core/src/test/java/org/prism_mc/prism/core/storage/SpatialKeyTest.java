@@ -0,0 +1,118 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpatialKeyTest {
+
+    /**
+     * The world border, in blocks from the origin.
+     */
+    private static final int WORLD_BORDER = 30_000_000;
+
+    private static boolean covered(List<SpatialKey.Range> ranges, long key) {
+        return ranges.stream().anyMatch(range -> key >= range.from() && key <= range.to());
+    }
+
+    @Test
+    void packsTheOriginChunkAtTheOffset() {
+        long offset = SpatialKey.AXIS_OFFSET;
+
+        assertEquals(offset * SpatialKey.AXIS_MULTIPLIER + offset, SpatialKey.of(0, 0));
+        assertEquals(SpatialKey.of(0, 0), SpatialKey.of(15, 15));
+    }
+
+    @Test
+    void floorsNegativeCoordinatesIntoTheirChunk() {
+        long offset = SpatialKey.AXIS_OFFSET;
+
+        assertEquals((offset - 1) * SpatialKey.AXIS_MULTIPLIER + (offset - 1), SpatialKey.of(-1, -1));
+        assertEquals(SpatialKey.of(-1, -1), SpatialKey.of(-16, -16));
+        assertNotEquals(SpatialKey.of(-16, -16), SpatialKey.of(-17, -16));
+        assertNotEquals(SpatialKey.of(-1, 0), SpatialKey.of(0, 0));
+    }
+
+    @Test
+    void splitsChunksAtBlockBoundaries() {
+        assertEquals(SpatialKey.of(16, 0), SpatialKey.of(31, 0));
+        assertNotEquals(SpatialKey.of(15, 0), SpatialKey.of(16, 0));
+        assertEquals(SpatialKey.of(0, 0) + 1, SpatialKey.of(0, 16));
+        assertEquals(SpatialKey.of(0, 0) + SpatialKey.AXIS_MULTIPLIER, SpatialKey.of(16, 0));
+    }
+
+    @Test
+    void keepsKeysPositiveAndOrderedOutToTheWorldBorder() {
+        long min = SpatialKey.of(-WORLD_BORDER, -WORLD_BORDER);
+        long max = SpatialKey.of(WORLD_BORDER, WORLD_BORDER);
+
+        assertTrue(min >= 0, "min key " + min);
+        assertTrue(SpatialKey.of(-WORLD_BORDER, WORLD_BORDER) < SpatialKey.of(-WORLD_BORDER + 16, -WORLD_BORDER));
+        assertTrue(SpatialKey.of(WORLD_BORDER, -WORLD_BORDER) > SpatialKey.of(WORLD_BORDER - 16, WORLD_BORDER));
+        assertTrue(max > min);
+    }
+
+    @Test
+    void coversABoxAcrossTheOriginWithOneRangePerChunkColumn() {
+        int minX = -20;
+        int minZ = -5;
+        int maxX = 40;
+        int maxZ = 17;
+
+        List<SpatialKey.Range> ranges = SpatialKey.ranges(minX, minZ, maxX, maxZ);
+
+        // Chunk columns -2 through 2
+        assertEquals(5, ranges.size());
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                assertTrue(covered(ranges, SpatialKey.of(x, z)), x + "," + z);
+            }
+        }
+        assertTrue(!covered(ranges, SpatialKey.of(minX, maxZ + 16)));
+        assertTrue(!covered(ranges, SpatialKey.of(minX - 16, minZ)));
+    }
+
+    @Test
+    void coversAWideBoxWithASingleRange() {
+        int width = SpatialKey.MAX_RANGES * SpatialKey.CHUNK_SIZE;
+
+        List<SpatialKey.Range> ranges = SpatialKey.ranges(-width, -1, width, 1);
+
+        assertEquals(1, ranges.size());
+        assertTrue(covered(ranges, SpatialKey.of(-width, -1)));
+        assertTrue(covered(ranges, SpatialKey.of(0, 0)));
+        assertTrue(covered(ranges, SpatialKey.of(width, 1)));
+    }
+
+    @Test
+    void listsEveryChunkKeyUpToTheLimit() {
+        assertEquals(
+            List.of(SpatialKey.of(-1, -1), SpatialKey.of(-1, 0), SpatialKey.of(0, -1), SpatialKey.of(0, 0)),
+            SpatialKey.keys(-1, -1, 0, 0, 4)
+        );
+        assertEquals(List.of(), SpatialKey.keys(-1, -1, 0, 0, 3));
+    }
+}
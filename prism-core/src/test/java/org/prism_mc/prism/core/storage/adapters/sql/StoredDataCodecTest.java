@@ -0,0 +1,101 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.core.storage.adapters.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class StoredDataCodecTest {
+
+    private static String chest(int slots) {
+        var snbt = new StringBuilder("{Items:[");
+        for (int slot = 0; slot < slots; slot++) {
+            if (slot > 0) {
+                snbt.append(',');
+            }
+            snbt.append("{Slot:").append(slot).append("b,count:64,id:\"minecraft:cobblestone\"}");
+        }
+
+        return snbt.append("],id:\"minecraft:chest\",x:0,y:64,z:0}").toString();
+    }
+
+    @Test
+    void passesNullThrough() {
+        assertNull(StoredDataCodec.encode(null));
+        assertNull(StoredDataCodec.decode(null));
+    }
+
+    @Test
+    void storesShortValuesAsIs() {
+        String value = "{id:\"minecraft:stone\",count:1}";
+
+        assertSame(value, StoredDataCodec.encode(value));
+        assertSame(value, StoredDataCodec.decode(value));
+    }
+
+    @Test
+    void storesValuesThatWouldNotShrinkAsIs() {
+        var random = new Random(1);
+        var builder = new StringBuilder();
+        while (builder.length() < StoredDataCodec.MIN_ENCODED_LENGTH * 2) {
+            builder.append((char) ('!' + random.nextInt(94)));
+        }
+        String value = builder.toString();
+
+        assertSame(value, StoredDataCodec.encode(value));
+    }
+
+    @Test
+    void roundTripsCompressibleValues() {
+        String value = chest(27);
+        String encoded = StoredDataCodec.encode(value);
+
+        assertTrue(encoded.startsWith(StoredDataCodec.DEFLATE_MARKER));
+        assertTrue(encoded.length() < value.length());
+        assertEquals(value, StoredDataCodec.decode(encoded));
+    }
+
+    @Test
+    void roundTripsNonAsciiText() {
+        String value = "{pages:[{raw:\"" + "Zażółć gęślą jaźń ☃ 雪だるま ".repeat(20) + "\"}]}";
+
+        assertEquals(value, StoredDataCodec.decode(StoredDataCodec.encode(value)));
+    }
+
+    @Test
+    void rejectsCorruptEncodedValues() {
+        String encoded = StoredDataCodec.encode(chest(27));
+        // Cut on a base64 block boundary, so only the compressed stream is incomplete
+        String truncated = encoded.substring(0, StoredDataCodec.DEFLATE_MARKER.length() + 8);
+
+        assertThrows(IllegalArgumentException.class, () -> StoredDataCodec.decode(truncated));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> StoredDataCodec.decode(StoredDataCodec.DEFLATE_MARKER + "AAAAAAAA")
+        );
+    }
+}
@@ -20,6 +20,8 @@
 
 package org.prism_mc.prism.loader.services.configuration;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Getter;
 import org.spongepowered.configurate.objectmapping.ConfigSerializable;
 import org.spongepowered.configurate.objectmapping.meta.Comment;
@@ -44,10 +46,22 @@ public class RecordingConfiguration {
         """
         Maximum number of activities that can be queued in memory. Acts as a safety cap
         to prevent out-of-memory errors when the database can't keep up. Activities that
-        exceed this limit are dropped. Set to 0 for unlimited (not recommended)."""
+        exceed this limit are dropped. Set to 0 for a queue of 1048576. At most 1073741824.
+        The queue's slots are allocated up front, rounded up to a power of two, at 4 bytes
+        each (8 on heaps over 32 GB): the default reserves about 512 KB, 0 about 4 MB.
+        That's only the slots, queued activities cost far more."""
     )
     private int queueMaxCapacity = 100000;
 
+    @Comment(
+        """
+        Maximum size (in megabytes) of the on-disk overflow for the recording queue. When the
+        queue is full, activities spill to files in the "spill" folder instead of being dropped,
+        and are recorded once the database catches up. Activities are only dropped once the
+        spill reaches this size. Set to 0 to disable spilling."""
+    )
+    private int spillMaxSizeMb = 1024;
+
     @Comment(
         """
         Number of parallel recording tasks that can drain the queue concurrently.
@@ -57,6 +71,33 @@ public class RecordingConfiguration {
     )
     private int parallelism = 1;
 
+    @Comment(
+        """
+        When enabled, the batch size, number of recording workers and delay between batches
+        are tuned continuously from how long database commits take and how full the queue is.
+        Batches and workers grow while commits stay under adaptiveTargetCommitMs and back off
+        quickly when they don't. Workers never exceed parallelism, and the delay never exceeds
+        the configured delay. When disabled, the storage batchMax, parallelism and delay are
+        used as-is. Use /pr status to see the current values."""
+    )
+    private boolean adaptive = false;
+
+    @Comment(
+        """
+        The commit time (in milliseconds) the adaptive controller aims to stay under. Commits
+        slower than this shrink the batch size and number of workers."""
+    )
+    private int adaptiveTargetCommitMs = 250;
+
+    @Comment("The smallest batch size the adaptive controller will use.")
+    private int adaptiveMinBatchSize = 100;
+
+    @Comment("The largest batch size the adaptive controller will use.")
+    private int adaptiveMaxBatchSize = 10000;
+
+    @Comment("The shortest delay (in ticks) between batches the adaptive controller will use.")
+    private long adaptiveMinDelay = 1;
+
     @Comment(
         """
         When enabled, certain high-frequency actions (e.g. hopper-insert, hopper-remove)
@@ -74,6 +115,58 @@ public class RecordingConfiguration {
     )
     private long aggregationInterval = 520;
 
+    @Comment(
+        """
+        When enabled, items moved between the same two containers (e.g. a chest and a hopper)
+        are merged into a single hopper-remove and hopper-insert record per interval, holding a
+        count of every item type moved. Rollbacks still return each item type. Lookups show one
+        row per record, under the most moved item type, and item type searches only match that
+        type. Items with custom names, enchantments or other data are always recorded individually."""
+    )
+    private boolean aggregateHopperFlows = false;
+
+    @Comment(
+        """
+        How long (in ticks) merged hopper flows are held before being flushed to the database.
+        Default is 1200 ticks (1 minute)."""
+    )
+    private long hopperFlowInterval = 1200;
+
+    @Comment(
+        """
+        When enabled, high-volume natural block changes (see blockAggregationActions) are merged
+        into a single record per cell and time window instead of one record per block. Each record
+        keeps every block it covers, so rollbacks and restores still change each block individually.
+        Lookups show one row per record, at the centre of its blocks. Radius and region queries
+        match a record when the area spanned by its blocks overlaps them. Rollbacks and restores
+        skip records that only partly overlap their area; widen the area to include them."""
+    )
+    private boolean aggregateBlockActions = false;
+
+    @Comment(
+        """
+        The block actions merged when aggregateBlockActions is enabled. An entry is either an
+        action, or an action and a named cause separated by a colon (e.g. block-break:decay
+        merges only leaves decaying, not blocks broken by players)."""
+    )
+    private List<String> blockAggregationActions = new ArrayList<>(
+        List.of("fluid-flow", "block-spread", "block-form", "block-break:decay")
+    );
+
+    @Comment(
+        """
+        The edge length (in blocks) of the cubic cells block changes are merged by. The default of 16
+        groups changes by chunk section, and is also the maximum."""
+    )
+    private int blockAggregationCellSize = 16;
+
+    @Comment(
+        """
+        How long (in ticks) merged block changes are held before being flushed to the database.
+        Default is 100 ticks (5 seconds)."""
+    )
+    private long blockAggregationInterval = 100;
+
     @Comment(
         """
         Write-ahead log mode for activity queue persistence. If the database is unavailable
@@ -98,6 +191,47 @@ public class RecordingConfiguration {
     )
     private int walFlushIntervalMs = 1000;
 
+    @Comment(
+        """
+        The on-disk format used for new WAL files.
+        Options:
+          binary - Compact length-prefixed records with a CRC32C checksum per record (default).
+                   Much cheaper to write than json and repeated strings are stored once.
+          json   - One JSON object per line. Human readable but slower and larger.
+        WAL files written in either format are always readable, so switching formats is safe
+        even when uncommitted entries remain on disk."""
+    )
+    private String walCodec = "binary";
+
+    @Comment(
+        """
+        The size (in megabytes) at which the WAL rolls over to a new segment file. Segments whose
+        activities are all committed to the database are deleted, so the WAL on disk stays around
+        this size even under constant load. Min: 1."""
+    )
+    private int walSegmentSizeMb = 64;
+
+    @Comment(
+        """
+        When WAL writes are forced to stable storage. Only applies when walMode is "always".
+        Database commits never wait on the WAL, whichever level is chosen.
+        Options:
+          sync     - Fsync after every flush (default). Nothing flushed is lost on power failure.
+          interval - Fsync at most once every walSyncIntervalMs. Up to that long of activity may
+                     be lost on power failure, but not on a server or JVM crash.
+          os       - Never fsync; the operating system writes data back on its own schedule.
+                     Cheapest on slow or networked disks.
+        Use /pr status to compare the flush and sync latency of each level on your hardware."""
+    )
+    private String walDurability = "sync";
+
+    @Comment(
+        """
+        The minimum time (in milliseconds) between WAL fsyncs when walDurability is "interval".
+        Default is 5000ms (5 seconds)."""
+    )
+    private int walSyncIntervalMs = 5000;
+
     /**
      * Get the parallelism value, clamped to [1, 4].
      *
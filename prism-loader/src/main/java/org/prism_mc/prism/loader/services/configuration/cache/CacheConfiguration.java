@@ -50,6 +50,24 @@ public class CacheConfiguration {
         new DurationConfiguration(5, TimeUnit.MINUTES)
     );
 
+    @Comment(
+        """
+        How many pages after the one shown are fetched in the background, so that paging
+        forward is served from the lookup results cache. Set to 0 to disable."""
+    )
+    private int lookupPrefetchPages = 2;
+
+    @Comment(
+        """
+        Pages of lookup results, per player and query. Paging through a lookup is served from
+        here instead of re-running the query. Entries are dropped when a rollback, restore or
+        undo touches the area they cover. A new lookup always runs the query."""
+    )
+    private CacheBuilderConfiguration lookupResults = new CacheBuilderConfiguration(
+        100,
+        new DurationConfiguration(2, TimeUnit.MINUTES)
+    );
+
     @Comment("Cache settings for default entity nbt data.")
     private CacheBuilderConfiguration nbtEntityDefaults = new CacheBuilderConfiguration(
         200,
@@ -88,4 +106,13 @@ public class CacheConfiguration {
 
     @Comment("Cache settings for world/primary keys.")
     private CacheBuilderConfiguration pkCacheWorld = new CacheBuilderConfiguration(20);
+
+    @Comment(
+        """
+        Save the primary keys of the hottest block data, item data, named cause and player
+        cache entries on shutdown, and load them back on startup so those caches are warm
+        from the first tick. Without a saved snapshot, the rows most referenced by recent
+        activities are loaded instead."""
+    )
+    private boolean pkCacheWarmStart = true;
 }
@@ -22,11 +22,36 @@ package org.prism_mc.prism.loader.services.configuration.storage;
 
 import lombok.Getter;
 import org.spongepowered.configurate.objectmapping.ConfigSerializable;
+import org.spongepowered.configurate.objectmapping.meta.Comment;
 
 @ConfigSerializable
 @Getter
 public class ClickhouseDataSourceConfiguration extends SqlDataSourceConfiguration {
 
+    @Comment(
+        """
+        The number of activity ids each server reserves at a time. Servers sharing
+        a database reserve separate ranges, so their ids never collide. Unused ids
+        in a range are skipped after a restart."""
+    )
+    private int idLeaseSize = 10000;
+
+    @Comment(
+        """
+        Write activities in ClickHouse's RowBinary format over the HTTP interface,
+        instead of binding every value through JDBC. Uses the host, port and
+        credentials above, so it's not used when a hikari.properties file is."""
+    )
+    private boolean rowBinaryInserts = true;
+
+    @Comment(
+        """
+        Have ClickHouse buffer RowBinary inserts and merge small batches into larger
+        parts (async_insert). Each batch still waits until its rows are written, so
+        failed batches are retried as usual. Useful when many small batches are written."""
+    )
+    private boolean asyncInserts = false;
+
     /**
      * Constructor.
      */
@@ -46,6 +46,31 @@ public class MysqlDataSourceConfiguration extends SqlDataSourceConfiguration {
     )
     private boolean useStoredProcedures = true;
 
+    @Comment(
+        """
+        How activities are written in bulk. When enabled, bulk writes are used instead of stored
+        procedures. Prism logs which write path is used during server startup.
+        Options:
+          disabled  - Stored procedures, or batched inserts if those are unavailable (default).
+          insert    - Multi-row inserts, each sized to fit max_allowed_packet.
+          load-data - A single LOAD DATA LOCAL INFILE per batch, streamed from memory. Usually
+                      the fastest, but requires local_infile=ON on the database server. Prism
+                      falls back to insert if it isn't.
+        Enable debug to see the time and rows per second of each batch."""
+    )
+    private String bulkInsertMode = "disabled";
+
+    @Comment(
+        """
+        Partition the activities table by month of the activity timestamp. Partitions are
+        created a few months ahead, and purges of everything older than a date drop whole
+        months instead of deleting rows, which is nearly instant and leaves no bloat.
+        Purges with other conditions still delete rows.
+        The table has no foreign keys, MySQL doesn't support them on partitioned tables.
+        Only applied when the activities table is first created. Existing tables are not converted."""
+    )
+    private boolean partitionActivities = false;
+
     /**
      * Constructor.
      */
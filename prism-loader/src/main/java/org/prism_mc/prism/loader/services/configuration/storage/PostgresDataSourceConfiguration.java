@@ -46,6 +46,24 @@ public class PostgresDataSourceConfiguration extends SqlDataSourceConfiguration
     )
     private boolean useStoredProcedures = true;
 
+    @Comment(
+        """
+        Write activities with postgres' binary COPY protocol. This is much faster than
+        stored procedures or batched inserts, and takes precedence over useStoredProcedures.
+        Prism falls back to the other methods if the activities table can't be copied into."""
+    )
+    private boolean useCopy = true;
+
+    @Comment(
+        """
+        Partition the activities table by month of the activity timestamp. Partitions are
+        created a few months ahead, and purges of everything older than a date drop whole
+        months instead of deleting rows, which is nearly instant and leaves no bloat.
+        Purges with other conditions still delete rows.
+        Only applied when the activities table is first created. Existing tables are not converted."""
+    )
+    private boolean partitionActivities = false;
+
     /**
      * Constructor.
      */
@@ -29,6 +29,17 @@ import org.spongepowered.configurate.objectmapping.meta.Comment;
 @Getter
 public class StorageConfiguration {
 
+    @Comment(
+        """
+        When enabled, large serialized item data and custom data (e.g. shulker
+        contents, books) are compressed before they're stored. Compressed and
+        plain values are both always readable, so this can be enabled or disabled
+        at any time, only newly recorded data is affected.
+        Applies to H2, MariaDB, MySQL, Postgres and SQLite. ClickHouse compresses
+        its columns itself."""
+    )
+    private boolean compressData = false;
+
     @Comment(
         """
         When enabled, worlds are identified by name instead of UUID.
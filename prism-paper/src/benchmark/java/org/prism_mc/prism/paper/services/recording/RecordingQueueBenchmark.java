@@ -0,0 +1,262 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.prism_mc.prism.api.activities.Activity;
+
+/**
+ * Measures recording queue throughput under producer contention.
+ *
+ * <p>Compares the {@link ActivityRingBuffer} against the queue it replaced: a
+ * {@link LinkedBlockingQueue} whose offers and drains, together with the WAL
+ * append, were serialized by a single ordering monitor in "always" WAL mode.
+ * Both sides append to a concurrent WAL buffer, which the consumer empties
+ * after every drain the way the flush thread does.</p>
+ *
+ * <p>Each trial starts every producer at once and ends when the consumer has
+ * drained everything they published. Producers retry when the queue is full
+ * rather than dropping, so both sides move the same number of activities.</p>
+ *
+ * <p>Run with {@code ./gradlew :prism-paper:benchmarkRecordingQueue}. Arguments
+ * are the activities per trial, the trials per case and the producer counts.</p>
+ */
+public final class RecordingQueueBenchmark {
+
+    /**
+     * The queue capacity, the default recording queue size.
+     */
+    private static final int CAPACITY = 1 << 16;
+
+    /**
+     * The most activities drained at a time, the default batch size.
+     */
+    private static final int DRAIN_MAX = 1000;
+
+    /**
+     * The activity every producer publishes. Only its identity is used.
+     */
+    private static final Activity ACTIVITY = Activity.builder().coordinate(0, 64, 0).build();
+
+    /**
+     * A recording queue under test.
+     */
+    private interface Target {
+        /**
+         * Offer an activity and append it to the WAL buffer.
+         *
+         * @param activity The activity
+         * @return True if the activity was accepted
+         */
+        boolean offer(Activity activity);
+
+        /**
+         * Drain activities and empty the WAL buffer.
+         *
+         * @param target The list to drain into
+         * @return The number of activities drained
+         */
+        int drain(List<Activity> target);
+    }
+
+    /**
+     * The current queue: one CAS per offer, no lock shared with producers.
+     */
+    private static final class RingTarget implements Target {
+
+        private final ActivityRingBuffer queue = new ActivityRingBuffer(CAPACITY);
+
+        private final ConcurrentLinkedQueue<Activity> wal = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public boolean offer(Activity activity) {
+            if (queue.publish(activity) < 0) {
+                return false;
+            }
+
+            wal.add(activity);
+            return true;
+        }
+
+        @Override
+        public int drain(List<Activity> target) {
+            queue.drainTo(target, DRAIN_MAX);
+            while (wal.poll() != null) {
+                // Flushed
+            }
+
+            return target.size();
+        }
+    }
+
+    /**
+     * The replaced queue: offers, WAL appends and drains under one monitor.
+     */
+    private static final class LockedTarget implements Target {
+
+        private final LinkedBlockingQueue<Activity> queue = new LinkedBlockingQueue<>(CAPACITY);
+
+        private final ConcurrentLinkedQueue<Activity> wal = new ConcurrentLinkedQueue<>();
+
+        private final Object orderingLock = new Object();
+
+        @Override
+        public boolean offer(Activity activity) {
+            synchronized (orderingLock) {
+                if (!queue.offer(activity)) {
+                    return false;
+                }
+
+                wal.add(activity);
+                return true;
+            }
+        }
+
+        @Override
+        public int drain(List<Activity> target) {
+            synchronized (orderingLock) {
+                queue.drainTo(target, DRAIN_MAX);
+            }
+
+            while (wal.poll() != null) {
+                // Flushed
+            }
+
+            return target.size();
+        }
+    }
+
+    private RecordingQueueBenchmark() {}
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The activities per trial, the trials per case, then the producer counts
+     * @throws InterruptedException If interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int activities = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int[] producerCounts = args.length > 2
+            ? Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 1, 8, 32 };
+
+        System.out.printf(
+            "%d activities per trial, best of %d trials, %d cpus%n",
+            activities,
+            trials,
+            Runtime.getRuntime().availableProcessors()
+        );
+        System.out.printf("%-10s %18s %18s %8s%n", "producers", "locked (M ops/s)", "ring (M ops/s)", "ratio");
+
+        for (int producers : producerCounts) {
+            // Warm both paths up before measuring
+            run(new LockedTarget(), producers, activities);
+            run(new RingTarget(), producers, activities);
+
+            long locked = Long.MAX_VALUE;
+            long ring = Long.MAX_VALUE;
+            for (int i = 0; i < trials; i++) {
+                locked = Math.min(locked, run(new LockedTarget(), producers, activities));
+                ring = Math.min(ring, run(new RingTarget(), producers, activities));
+            }
+
+            double lockedRate = activities * 1e3 / locked;
+            double ringRate = activities * 1e3 / ring;
+            System.out.printf(
+                Locale.ROOT,
+                "%-10d %18.2f %18.2f %7.2fx%n",
+                producers,
+                lockedRate,
+                ringRate,
+                ringRate / lockedRate
+            );
+        }
+    }
+
+    /**
+     * Run a single trial.
+     *
+     * @param target The queue
+     * @param producers The number of producer threads
+     * @param activities The total number of activities
+     * @return The elapsed time in nanoseconds
+     * @throws InterruptedException If interrupted
+     */
+    private static long run(Target target, int producers, int activities) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(producers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>(producers);
+        for (int p = 0; p < producers; p++) {
+            int count = activities / producers + (p < activities % producers ? 1 : 0);
+
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    while (!target.offer(ACTIVITY)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        ready.await();
+
+        List<Activity> drained = new ArrayList<>(DRAIN_MAX);
+        long begin = System.nanoTime();
+        start.countDown();
+
+        int remaining = activities;
+        while (remaining > 0) {
+            drained.clear();
+            int count = target.drain(drained);
+            if (count == 0) {
+                Thread.yield();
+            }
+
+            remaining -= count;
+        }
+
+        long elapsed = System.nanoTime() - begin;
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return elapsed;
+    }
+}
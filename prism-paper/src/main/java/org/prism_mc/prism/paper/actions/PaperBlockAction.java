@@ -61,6 +61,15 @@ public class PaperBlockAction extends PaperAction implements BlockAction {
 
     /**
      * The read/write nbt.
+     *
+     * <p>For new activities this is a copy of the tile entity's nbt, taken on
+     * the event thread while the block entity still exists. Only serializing
+     * the copy is left to the recording workers.</p>
+     *
+     * <p>Extracting the nbt can't be deferred like item stacks are. NBT-API
+     * reads a block state's nbt from the block entity in the world, not from
+     * the snapshot, and there's no public API to read a snapshot's nbt, so a
+     * worker would see whatever the block holds by then, or nothing.</p>
      */
     private ReadWriteNBT readWriteNbt;
 
@@ -136,6 +145,7 @@ public class PaperBlockAction extends PaperAction implements BlockAction {
             replacedBlockTranslationKey
         );
         if (blockState instanceof TileState && type.reversible()) {
+            // Copied now, the block entity may be changed or gone by the time a worker serializes it
             readWriteNbt = NBT.createNBTObject();
             NBT.get(blockState, readWriteNbt::mergeCompound);
         }
@@ -227,7 +237,7 @@ public class PaperBlockAction extends PaperAction implements BlockAction {
      *
      * @param nbtString The nbt string
      */
-    public void mergeCompound(String nbtString) {
+    public synchronized void mergeCompound(String nbtString) {
         if (readWriteNbt != null) {
             readWriteNbt.mergeCompound(NBT.parseNBT(nbtString));
 
@@ -237,7 +247,7 @@ public class PaperBlockAction extends PaperAction implements BlockAction {
     }
 
     @Override
-    public @Nullable String serializeCustomData() {
+    public synchronized @Nullable String serializeCustomData() {
         if (this.readWriteNbt == null) {
             return null;
         }
@@ -0,0 +1,315 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.actions;
+
+import de.tr7zw.nbtapi.NBT;
+import de.tr7zw.nbtapi.iface.ReadWriteNBT;
+import de.tr7zw.nbtapi.iface.ReadableNBT;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.Nullable;
+import org.prism_mc.prism.api.actions.types.ActionType;
+import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.util.Coordinate;
+
+/**
+ * A block action that stands for many block changes of the same type.
+ *
+ * <p>The block and replaced block of the group are those of its first member,
+ * so lookups show the group as a single row. The group is recorded at the
+ * {@link #centre() centre} of its members, with its {@link #extent() extent}
+ * so location queries match any group reaching into them. Every member is
+ * kept in the serialized custom data, and rollbacks and restores {@link
+ * #expand(Activity, boolean) expand} the group back into one activity per
+ * member.</p>
+ */
+public class PaperBlockGroupAction extends PaperBlockAction {
+
+    /**
+     * The custom data key that marks a serialized group, holding the format version.
+     */
+    private static final String GROUP_KEY = "prism:block-group";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The number of ints each member takes in the serialized member array.
+     */
+    private static final int MEMBER_INTS = 5;
+
+    /**
+     * A single block change in the group.
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @param blockData The block data
+     * @param replacedBlockData The replaced block data, if any
+     */
+    public record Member(int x, int y, int z, BlockData blockData, @Nullable BlockData replacedBlockData) {}
+
+    /**
+     * The members, in the order they were recorded.
+     */
+    @Getter
+    private final List<Member> members;
+
+    /**
+     * The min and max corners of the box holding every member.
+     */
+    private final int[][] bounds;
+
+    /**
+     * The serialized custom data.
+     */
+    private String serializedGroup;
+
+    /**
+     * Construct a block group action.
+     *
+     * @param type The action type
+     * @param members The members, in the order they were recorded
+     */
+    public PaperBlockGroupAction(ActionType type, List<Member> members) {
+        super(
+            type,
+            members.getFirst().blockData(),
+            translationKey(members.getFirst().blockData()),
+            members.getFirst().replacedBlockData(),
+            translationKey(members.getFirst().replacedBlockData())
+        );
+        this.members = Collections.unmodifiableList(members);
+        this.bounds = bounds(members);
+    }
+
+    /**
+     * Whether custom data holds a serialized group.
+     *
+     * @param nbt The custom data
+     * @return True if the custom data is a group
+     */
+    public static boolean isGroup(@Nullable ReadableNBT nbt) {
+        return nbt != null && nbt.hasTag(GROUP_KEY);
+    }
+
+    /**
+     * Read a group from its serialized custom data.
+     *
+     * @param type The action type
+     * @param nbt The custom data
+     * @return The group action
+     */
+    public static PaperBlockGroupAction fromNbt(ActionType type, ReadableNBT nbt) {
+        int version = nbt.getInteger(GROUP_KEY);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported block group format: " + version);
+        }
+
+        List<BlockData> palette = new ArrayList<>();
+        for (String blockData : nbt.getStringList("palette")) {
+            palette.add(Bukkit.createBlockData(blockData));
+        }
+
+        int[] min = nbt.getIntArray("min");
+        int[] packed = nbt.getIntArray("members");
+
+        List<Member> members = new ArrayList<>(packed.length / MEMBER_INTS);
+        for (int i = 0; i + MEMBER_INTS <= packed.length; i += MEMBER_INTS) {
+            int replacedIndex = packed[i + 4];
+
+            members.add(
+                new Member(
+                    min[0] + packed[i],
+                    min[1] + packed[i + 1],
+                    min[2] + packed[i + 2],
+                    palette.get(packed[i + 3]),
+                    replacedIndex >= 0 ? palette.get(replacedIndex) : null
+                )
+            );
+        }
+
+        return new PaperBlockGroupAction(type, members);
+    }
+
+    /**
+     * The smallest corner of the box holding every member.
+     *
+     * @return The min coordinate
+     */
+    public Coordinate minCoordinate() {
+        int[] min = bounds[0];
+        return new Coordinate(min[0], min[1], min[2]);
+    }
+
+    /**
+     * The largest corner of the box holding every member.
+     *
+     * @return The max coordinate
+     */
+    public Coordinate maxCoordinate() {
+        int[] max = bounds[1];
+        return new Coordinate(max[0], max[1], max[2]);
+    }
+
+    /**
+     * The centre of the box holding every member, the coordinate the group is recorded at.
+     *
+     * @return The centre coordinate
+     */
+    public Coordinate centre() {
+        return new Coordinate(centre(0), centre(1), centre(2));
+    }
+
+    @Override
+    public int extent() {
+        int extent = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            int centre = centre(axis);
+            extent = Math.max(extent, Math.max(centre - bounds[0][axis], bounds[1][axis] - centre));
+        }
+
+        return extent;
+    }
+
+    private int centre(int axis) {
+        return Math.floorDiv(bounds[0][axis] + bounds[1][axis], 2);
+    }
+
+    private static int[][] bounds(List<Member> members) {
+        int[] min = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE };
+        int[] max = { Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+
+        for (Member member : members) {
+            min[0] = Math.min(min[0], member.x());
+            min[1] = Math.min(min[1], member.y());
+            min[2] = Math.min(min[2], member.z());
+            max[0] = Math.max(max[0], member.x());
+            max[1] = Math.max(max[1], member.y());
+            max[2] = Math.max(max[2], member.z());
+        }
+
+        return new int[][] { min, max };
+    }
+
+    /**
+     * Expand a group activity into one activity per member.
+     *
+     * <p>Each expanded activity keeps the group's primary key, cause and
+     * timestamp, so marking any of them reversed marks the whole group. Only
+     * expand a group when every member is being modified.</p>
+     *
+     * @param activity The group activity
+     * @param newestFirst Whether to return the most recent members first
+     * @return The member activities
+     */
+    public List<Activity> expand(Activity activity, boolean newestFirst) {
+        List<Activity> expanded = new ArrayList<>(members.size());
+        for (Member member : members) {
+            var action = new PaperBlockAction(
+                type(),
+                member.blockData(),
+                translationKey(member.blockData()),
+                member.replacedBlockData(),
+                translationKey(member.replacedBlockData())
+            );
+
+            expanded.add(
+                new Activity(
+                    activity.primaryKey(),
+                    action,
+                    activity.world(),
+                    new Coordinate(member.x(), member.y(), member.z()),
+                    activity.cause(),
+                    activity.timestamp(),
+                    activity.reversed()
+                )
+            );
+        }
+
+        if (newestFirst) {
+            Collections.reverse(expanded);
+        }
+
+        return expanded;
+    }
+
+    @Override
+    public boolean hasCustomData() {
+        return true;
+    }
+
+    @Override
+    public synchronized String serializeCustomData() {
+        if (serializedGroup != null) {
+            return serializedGroup;
+        }
+
+        int[] min = bounds[0];
+
+        ReadWriteNBT nbt = NBT.createNBTObject();
+        nbt.setInteger(GROUP_KEY, FORMAT_VERSION);
+        nbt.setInteger("count", members.size());
+        nbt.setIntArray("min", min);
+        nbt.setIntArray("max", bounds[1]);
+
+        Map<String, Integer> paletteIndexes = new HashMap<>();
+        List<String> palette = new ArrayList<>();
+
+        int[] packed = new int[members.size() * MEMBER_INTS];
+        int i = 0;
+        for (Member member : members) {
+            packed[i++] = member.x() - min[0];
+            packed[i++] = member.y() - min[1];
+            packed[i++] = member.z() - min[2];
+            packed[i++] = paletteIndex(member.blockData(), paletteIndexes, palette);
+            packed[i++] = member.replacedBlockData() != null
+                ? paletteIndex(member.replacedBlockData(), paletteIndexes, palette)
+                : -1;
+        }
+
+        nbt.setIntArray("members", packed);
+
+        var paletteList = nbt.getStringList("palette");
+        for (String blockData : palette) {
+            paletteList.add(blockData);
+        }
+
+        serializedGroup = nbt.toString();
+        return serializedGroup;
+    }
+
+    private static int paletteIndex(BlockData blockData, Map<String, Integer> indexes, List<String> palette) {
+        return indexes.computeIfAbsent(blockData.getAsString(), key -> {
+            palette.add(key);
+            return palette.size() - 1;
+        });
+    }
+
+    private static @Nullable String translationKey(@Nullable BlockData blockData) {
+        return blockData != null ? blockData.getMaterial().getBlockTranslationKey() : null;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.actions;
+
+import static org.prism_mc.prism.paper.api.activities.PaperActivity.enumNameToString;
+
+import de.tr7zw.nbtapi.NBT;
+import de.tr7zw.nbtapi.iface.ReadWriteNBT;
+import de.tr7zw.nbtapi.iface.ReadableNBT;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import lombok.Getter;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.Nullable;
+import org.prism_mc.prism.api.actions.CustomData;
+import org.prism_mc.prism.api.actions.types.ActionType;
+import org.prism_mc.prism.api.activities.Activity;
+
+/**
+ * An item action that stands for many plain items moved between the same pair of containers.
+ *
+ * <p>The item of the flow is its most moved material, and the quantity is the
+ * total of every material, so lookups show the flow as a single row. Every
+ * material count is kept in the serialized custom data, and rollbacks
+ * {@link #expand(Activity) expand} the flow back into one activity per stack.</p>
+ */
+public class PaperItemFlowAction extends PaperItemStackAction implements CustomData {
+
+    /**
+     * The custom data key that marks a serialized flow, holding the format version.
+     */
+    private static final String FLOW_KEY = "prism:item-flow";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The most materials named in the descriptor.
+     */
+    private static final int DESCRIPTOR_MATERIALS = 3;
+
+    /**
+     * The number of items of one material in the flow.
+     *
+     * @param material The material
+     * @param count The number of items
+     */
+    public record Entry(Material material, int count) {}
+
+    /**
+     * The entries, most moved first.
+     */
+    @Getter
+    private final List<Entry> entries;
+
+    /**
+     * The total number of items.
+     */
+    private final int total;
+
+    /**
+     * The serialized custom data.
+     */
+    private String serializedFlow;
+
+    /**
+     * Construct an item flow action.
+     *
+     * @param type The action type
+     * @param entries The entries, most moved first
+     */
+    public PaperItemFlowAction(ActionType type, List<Entry> entries) {
+        super(type, new ItemStack(entries.getFirst().material()), total(entries), descriptor(entries));
+        this.entries = Collections.unmodifiableList(entries);
+        this.total = total(entries);
+    }
+
+    /**
+     * Whether custom data holds a serialized flow.
+     *
+     * @param nbt The custom data
+     * @return True if the custom data is a flow
+     */
+    public static boolean isFlow(@Nullable ReadableNBT nbt) {
+        return nbt != null && nbt.hasTag(FLOW_KEY);
+    }
+
+    /**
+     * Read a flow from its serialized custom data.
+     *
+     * @param type The action type
+     * @param nbt The custom data
+     * @return The flow action
+     */
+    public static PaperItemFlowAction fromNbt(ActionType type, ReadableNBT nbt) {
+        int version = nbt.getInteger(FLOW_KEY);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported item flow format: " + version);
+        }
+
+        List<String> materials = new ArrayList<>();
+        for (String material : nbt.getStringList("materials")) {
+            materials.add(material);
+        }
+
+        int[] counts = nbt.getIntArray("counts");
+
+        List<Entry> entries = new ArrayList<>(materials.size());
+        for (int i = 0; i < materials.size() && i < counts.length; i++) {
+            Material material = Material.matchMaterial(materials.get(i));
+            if (material != null) {
+                entries.add(new Entry(material, counts[i]));
+            }
+        }
+
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("Item flow has no known materials");
+        }
+
+        return new PaperItemFlowAction(type, entries);
+    }
+
+    /**
+     * Expand a flow activity into one activity per stack.
+     *
+     * <p>Each expanded activity keeps the flow's primary key, location, cause
+     * and timestamp, so marking any of them reversed marks the flow.</p>
+     *
+     * @param activity The flow activity
+     * @return The stack activities
+     */
+    public List<Activity> expand(Activity activity) {
+        List<Activity> expanded = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            int maxStackSize = Math.max(1, entry.material().getMaxStackSize());
+
+            int remaining = entry.count();
+            while (remaining > 0) {
+                int amount = Math.min(remaining, maxStackSize);
+                remaining -= amount;
+
+                var action = new PaperItemStackAction(type(), new ItemStack(entry.material(), amount), amount, null);
+
+                expanded.add(
+                    new Activity(
+                        activity.primaryKey(),
+                        action,
+                        activity.world(),
+                        activity.coordinate(),
+                        activity.cause(),
+                        activity.timestamp(),
+                        activity.reversed()
+                    )
+                );
+            }
+        }
+
+        return expanded;
+    }
+
+    @Override
+    public int quantity() {
+        return total;
+    }
+
+    @Override
+    public boolean hasCustomData() {
+        return true;
+    }
+
+    @Override
+    public synchronized String serializeCustomData() {
+        if (serializedFlow != null) {
+            return serializedFlow;
+        }
+
+        ReadWriteNBT nbt = NBT.createNBTObject();
+        nbt.setInteger(FLOW_KEY, FORMAT_VERSION);
+
+        int[] counts = new int[entries.size()];
+        var materials = nbt.getStringList("materials");
+        for (int i = 0; i < entries.size(); i++) {
+            materials.add(entries.get(i).material().name().toLowerCase(Locale.ENGLISH));
+            counts[i] = entries.get(i).count();
+        }
+
+        nbt.setIntArray("counts", counts);
+
+        serializedFlow = nbt.toString();
+        return serializedFlow;
+    }
+
+    private static int total(List<Entry> entries) {
+        int total = 0;
+        for (Entry entry : entries) {
+            total += entry.count();
+        }
+
+        return total;
+    }
+
+    private static String descriptor(List<Entry> entries) {
+        var descriptor = new StringBuilder();
+        for (int i = 0; i < entries.size() && i < DESCRIPTOR_MATERIALS; i++) {
+            if (i > 0) {
+                descriptor.append(", ");
+            }
+
+            descriptor.append(enumNameToString(entries.get(i).material().name()));
+        }
+
+        if (entries.size() > DESCRIPTOR_MATERIALS) {
+            descriptor.append(" and ").append(entries.size() - DESCRIPTOR_MATERIALS).append(" more");
+        }
+
+        return descriptor.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ItemFlowAction{type=%s,entries=%s}", type, entries);
+    }
+}
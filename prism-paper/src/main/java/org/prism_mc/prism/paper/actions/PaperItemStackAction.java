@@ -64,7 +64,13 @@ public class PaperItemStackAction extends PaperMaterialAction implements ItemAct
     /**
      * The read/write nbt.
      */
-    private final ReadWriteNBT readWriteNbt;
+    private ReadWriteNBT readWriteNbt;
+
+    /**
+     * A copy of the item stack taken at capture time, held until its nbt is first
+     * needed so the encoding happens on the recording worker.
+     */
+    private ItemStack capturedItemStack;
 
     /**
      * The serialized item nbt string.
@@ -93,8 +99,9 @@ public class PaperItemStackAction extends PaperMaterialAction implements ItemAct
     public PaperItemStackAction(ActionType type, ItemStack itemStack, int quantity, String descriptor) {
         super(type, itemStack.getType(), descriptor);
         this.itemStack = itemStack;
-        this.readWriteNbt = NBT.itemStackToNBT(itemStack);
-        this.readWriteNbt.removeKey("count");
+
+        // Copying is much cheaper than encoding and protects against later changes to the stack
+        this.capturedItemStack = itemStack.clone();
 
         if (quantity <= itemStack.getMaxStackSize()) {
             itemStack.setAmount(Integer.max(quantity, 1));
@@ -140,7 +147,13 @@ public class PaperItemStackAction extends PaperMaterialAction implements ItemAct
     }
 
     @Override
-    public String serializeItemData() {
+    public synchronized String serializeItemData() {
+        if (readWriteNbt == null) {
+            readWriteNbt = NBT.itemStackToNBT(capturedItemStack);
+            readWriteNbt.removeKey("count");
+            capturedItemStack = null;
+        }
+
         if (serializedItemData == null) {
             serializedItemData = readWriteNbt.toString();
         }
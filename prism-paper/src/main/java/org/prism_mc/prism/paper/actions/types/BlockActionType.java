@@ -34,6 +34,7 @@ import org.prism_mc.prism.api.actions.metadata.Metadata;
 import org.prism_mc.prism.api.actions.types.ActionResultType;
 import org.prism_mc.prism.api.actions.types.ActionType;
 import org.prism_mc.prism.paper.actions.PaperBlockAction;
+import org.prism_mc.prism.paper.actions.PaperBlockGroupAction;
 
 public class BlockActionType extends ActionType {
 
@@ -71,6 +72,10 @@ public class BlockActionType extends ActionType {
         ReadWriteNBT readWriteNbt = null;
         if (actionData.customData() != null && actionData.customDataVersion() > 0) {
             readWriteNbt = NBT.parseNBT(actionData.customData());
+
+            if (PaperBlockGroupAction.isGroup(readWriteNbt)) {
+                return PaperBlockGroupAction.fromNbt(this, readWriteNbt);
+            }
         }
 
         BlockData replacedBlockData = null;
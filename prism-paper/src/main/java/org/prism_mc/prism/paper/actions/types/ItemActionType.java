@@ -27,6 +27,7 @@ import org.prism_mc.prism.api.actions.Action;
 import org.prism_mc.prism.api.actions.ActionData;
 import org.prism_mc.prism.api.actions.types.ActionResultType;
 import org.prism_mc.prism.api.actions.types.ActionType;
+import org.prism_mc.prism.paper.actions.PaperItemFlowAction;
 import org.prism_mc.prism.paper.actions.PaperItemStackAction;
 
 public class ItemActionType extends ActionType {
@@ -68,6 +69,14 @@ public class ItemActionType extends ActionType {
 
     @Override
     public Action createAction(ActionData actionData) {
+        if (actionData.customData() != null && actionData.customDataVersion() > 0) {
+            var readWriteNbt = NBT.parseNBT(actionData.customData());
+
+            if (PaperItemFlowAction.isFlow(readWriteNbt)) {
+                return PaperItemFlowAction.fromNbt(this, readWriteNbt);
+            }
+        }
+
         ItemStack itemStack;
         if (actionData.itemData() != null) {
             itemStack = NBT.itemStackFromNBT(NBT.parseNBT(actionData.itemData()));
@@ -129,6 +129,11 @@ public class ReportCommand {
             var queue = recordingService.queue();
 
             messageService.recordingReportQueueHeader(sender, queue.size());
+            messageService.recordingReportQueueSpill(
+                sender,
+                recordingService.spilledCount(),
+                recordingService.spillDrainedCount()
+            );
 
             var counts = new HashMap<String, Integer>();
             for (var activity : queue) {
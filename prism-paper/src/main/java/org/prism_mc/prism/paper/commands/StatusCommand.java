@@ -34,6 +34,8 @@ import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
 import org.prism_mc.prism.paper.permissions.PrismPermissions;
 import org.prism_mc.prism.paper.services.messages.MessageService;
 import org.prism_mc.prism.paper.services.purge.PurgeService;
+import org.prism_mc.prism.paper.services.recording.RecordingController;
+import org.prism_mc.prism.paper.services.recording.wal.WalFlushMetrics;
 import org.prism_mc.prism.paper.services.recording.wal.WalService;
 import org.prism_mc.prism.paper.services.scoreboard.StatusScoreboardService;
 
@@ -60,6 +62,11 @@ public class StatusCommand {
      */
     private final RecordingService recordingService;
 
+    /**
+     * The recording controller.
+     */
+    private final RecordingController recordingController;
+
     /**
      * The status scoreboard service.
      */
@@ -87,6 +94,7 @@ public class StatusCommand {
      * @param messageService The message service
      * @param purgeService The purge service
      * @param recordingService The recording service
+     * @param recordingController The recording controller
      * @param statusScoreboardService The status scoreboard service
      * @param storageAdapter The storage adapter
      * @param version The prism version
@@ -98,6 +106,7 @@ public class StatusCommand {
         MessageService messageService,
         PurgeService purgeService,
         RecordingService recordingService,
+        RecordingController recordingController,
         StatusScoreboardService statusScoreboardService,
         StorageAdapter storageAdapter,
         @Named("version") String version,
@@ -107,6 +116,7 @@ public class StatusCommand {
         this.messageService = messageService;
         this.purgeService = purgeService;
         this.recordingService = recordingService;
+        this.recordingController = recordingController;
         this.statusScoreboardService = statusScoreboardService;
         this.storageAdapter = storageAdapter;
         this.version = version;
@@ -169,10 +179,34 @@ public class StatusCommand {
         int queueCapacity = configurationService.prismConfig().recording().queueMaxCapacity();
         messageService.statusQueue(sender, queueSize, queueCapacity);
 
+        RecordingController.Snapshot recording = recordingController.snapshot();
+        messageService.statusRecording(
+            sender,
+            recording.adaptive() ? "adaptive" : "fixed",
+            recording.batchSize(),
+            recording.workers(),
+            recording.delay(),
+            String.format("%.2f", recording.avgCommitMillis())
+        );
+
         // WAL
         String walMode = configurationService.prismConfig().recording().walMode();
         messageService.statusWal(sender, walMode);
 
+        WalFlushMetrics.Snapshot walMetrics = walService.flushMetrics();
+        if (walMetrics != null) {
+            messageService.statusWalFlush(
+                sender,
+                walService.durability().name().toLowerCase(),
+                walMetrics.flushes(),
+                String.format("%.2f", walMetrics.avgFlushMillis()),
+                String.format("%.2f", walMetrics.maxFlushMillis()),
+                walMetrics.syncs(),
+                String.format("%.2f", walMetrics.avgSyncMillis()),
+                String.format("%.2f", walMetrics.maxSyncMillis())
+            );
+        }
+
         // Purge
         StatusLabel purgeLabel = purgeService.queueFree() ? StatusLabel.INACTIVE : StatusLabel.ACTIVE;
         messageService.statusPurge(sender, purgeLabel);
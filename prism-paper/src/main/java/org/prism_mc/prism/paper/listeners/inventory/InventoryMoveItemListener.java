@@ -58,36 +58,62 @@ public class InventoryMoveItemListener extends AbstractListener implements Liste
      */
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onInventoryMoveItem(final InventoryMoveItemEvent event) {
-        if (event.getInitiator().getHolder() instanceof BlockState initiatorBlockState) {
-            if (
-                event.getSource().getHolder() instanceof BlockState sourceBlockState &&
-                !sourceBlockState.getType().equals(Material.HOPPER)
-            ) {
-                if (shouldRecordItem(configurationService.prismConfig().actions().hopperRemove(), event.getItem())) {
-                    recordItemActivity(
-                        PaperActionTypeRegistry.HOPPER_REMOVE,
-                        sourceBlockState.getLocation(),
-                        initiatorBlockState,
-                        event.getItem(),
-                        event.getItem().getAmount()
-                    );
-                }
-            }
+        // Holders are only read, so skip copying them into snapshots
+        if (!(event.getInitiator().getHolder(false) instanceof BlockState initiatorBlockState)) {
+            return;
+        }
+
+        var sourceBlockState = event.getSource().getHolder(false) instanceof BlockState blockState ? blockState : null;
+        var destBlockState = event.getDestination().getHolder(false) instanceof BlockState blockState
+            ? blockState
+            : null;
+
+        boolean recordRemove =
+            sourceBlockState != null &&
+            !sourceBlockState.getType().equals(Material.HOPPER) &&
+            shouldRecordItem(configurationService.prismConfig().actions().hopperRemove(), event.getItem());
+        boolean recordInsert =
+            destBlockState != null &&
+            !destBlockState.getType().equals(Material.HOPPER) &&
+            shouldRecordItem(configurationService.prismConfig().actions().hopperInsert(), event.getItem());
+
+        if (!recordRemove && !recordInsert) {
+            return;
+        }
+
+        if (
+            sourceBlockState != null &&
+            destBlockState != null &&
+            recordingService.addHopperFlow(
+                sourceBlockState,
+                destBlockState,
+                initiatorBlockState,
+                event.getItem(),
+                recordRemove,
+                recordInsert
+            )
+        ) {
+            return;
+        }
+
+        if (recordRemove) {
+            recordItemActivity(
+                PaperActionTypeRegistry.HOPPER_REMOVE,
+                sourceBlockState.getLocation(),
+                initiatorBlockState,
+                event.getItem(),
+                event.getItem().getAmount()
+            );
+        }
 
-            if (
-                event.getDestination().getHolder() instanceof BlockState destBlockState &&
-                !destBlockState.getType().equals(Material.HOPPER)
-            ) {
-                if (shouldRecordItem(configurationService.prismConfig().actions().hopperInsert(), event.getItem())) {
-                    recordItemActivity(
-                        PaperActionTypeRegistry.HOPPER_INSERT,
-                        destBlockState.getLocation(),
-                        initiatorBlockState,
-                        event.getItem(),
-                        event.getItem().getAmount()
-                    );
-                }
-            }
+        if (recordInsert) {
+            recordItemActivity(
+                PaperActionTypeRegistry.HOPPER_INSERT,
+                destBlockState.getLocation(),
+                initiatorBlockState,
+                event.getItem(),
+                event.getItem().getAmount()
+            );
         }
     }
 }
@@ -0,0 +1,282 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.lookup;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.prism_mc.prism.api.activities.AbstractActivity;
+import org.prism_mc.prism.api.activities.ActivityQuery;
+import org.prism_mc.prism.api.services.pagination.PartialListPaginationResult;
+import org.prism_mc.prism.api.util.Coordinate;
+import org.prism_mc.prism.core.services.cache.CacheService;
+import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
+import org.prism_mc.prism.loader.services.configuration.cache.CacheConfiguration;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+
+/**
+ * Caches pages of lookup results per viewer, so paging through a lookup doesn't re-run its query.
+ *
+ * <p>Pages are keyed by the viewer, the query without its paging and sharing
+ * options, and the page number. Modifications drop every page whose query
+ * could cover the area they changed.</p>
+ */
+@Singleton
+public class LookupResultCache {
+
+    /**
+     * A cached page.
+     *
+     * @param viewer The viewer
+     * @param query The normalized query
+     * @param page The page number
+     */
+    private record PageKey(String viewer, String query, int page) {}
+
+    /**
+     * A cached page and the query that produced it.
+     *
+     * @param query The query
+     * @param result The page of results
+     */
+    private record CachedPage(ActivityQuery query, PartialListPaginationResult<AbstractActivity> result) {}
+
+    /**
+     * The cached pages.
+     */
+    private final Cache<PageKey, CachedPage> cache;
+
+    /**
+     * Incremented on every invalidation, so a query that was running when
+     * the area it covers changed doesn't cache its result.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The number of pages to prefetch.
+     */
+    private final int prefetchPages;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheService The cache service
+     * @param configurationService The configuration service
+     * @param loggingService The logging service
+     */
+    @Inject
+    public LookupResultCache(
+        CacheService cacheService,
+        ConfigurationService configurationService,
+        LoggingService loggingService
+    ) {
+        CacheConfiguration cacheConfiguration = configurationService.prismConfig().cache();
+        this.prefetchPages = Math.max(0, cacheConfiguration.lookupPrefetchPages());
+
+        var cacheBuilder = Caffeine.newBuilder()
+            .maximumSize(cacheConfiguration.lookupResults().maxSize())
+            .evictionListener((key, value, cause) -> {
+                String msg = "Evicting lookup results from cache: Key: {0}, Removal Cause: {1}";
+                loggingService.debug(msg, key, cause);
+            })
+            .removalListener((key, value, cause) -> {
+                String msg = "Removing lookup results from cache: Key: {0}, Removal Cause: {1}";
+                loggingService.debug(msg, key, cause);
+            });
+
+        if (
+            cacheConfiguration.lookupResults().expiresAfterAccess() != null &&
+            cacheConfiguration.lookupResults().expiresAfterAccess().duration() != null
+        ) {
+            cacheBuilder.expireAfterAccess(
+                cacheConfiguration.lookupResults().expiresAfterAccess().duration(),
+                cacheConfiguration.lookupResults().expiresAfterAccess().timeUnit()
+            );
+        }
+
+        if (cacheConfiguration.recordStats()) {
+            cacheBuilder.recordStats();
+        }
+
+        cache = cacheBuilder.build();
+        cacheService.caches().put("lookupResultCache", cache);
+    }
+
+    /**
+     * The number of pages to fetch ahead of the one shown.
+     *
+     * @return The number of pages
+     */
+    public int prefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * The current generation. Read it before running a query and pass it to
+     * {@link #put(CommandSender, ActivityQuery, PartialListPaginationResult, long)}.
+     *
+     * @return The generation
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Get a cached page.
+     *
+     * @param viewer The viewer
+     * @param query The query of the page
+     * @return The page, or null if not cached
+     */
+    public PartialListPaginationResult<AbstractActivity> get(CommandSender viewer, ActivityQuery query) {
+        CachedPage cachedPage = cache.getIfPresent(key(viewer, query));
+
+        return cachedPage != null ? cachedPage.result() : null;
+    }
+
+    /**
+     * Cache a page, unless something was invalidated since its query started.
+     *
+     * @param viewer The viewer
+     * @param query The query of the page
+     * @param result The page of results
+     * @param generation The generation read before the query ran
+     */
+    public void put(
+        CommandSender viewer,
+        ActivityQuery query,
+        PartialListPaginationResult<AbstractActivity> result,
+        long generation
+    ) {
+        PageKey key = key(viewer, query);
+        cache.put(key, new CachedPage(query, result));
+
+        // An invalidation may have run between the check and the put
+        if (this.generation.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Drop every page cached for a viewer.
+     *
+     * @param viewer The viewer
+     */
+    public void invalidate(CommandSender viewer) {
+        String viewerKey = viewerKey(viewer);
+        cache.asMap().keySet().removeIf(key -> key.viewer().equals(viewerKey));
+    }
+
+    /**
+     * Drop every page whose query could include activities in the area of a modification.
+     *
+     * @param area The query of the modification
+     */
+    public void invalidate(ActivityQuery area) {
+        generation.incrementAndGet();
+
+        if (area == null) {
+            cache.invalidateAll();
+            return;
+        }
+
+        cache.asMap().values().removeIf(cachedPage -> overlaps(cachedPage.query(), area));
+    }
+
+    /**
+     * Whether two queries could match activities in the same place. Queries
+     * without a world or bounds could match anywhere.
+     *
+     * @param first The first query
+     * @param second The second query
+     * @return True if the queries may overlap
+     */
+    private static boolean overlaps(ActivityQuery first, ActivityQuery second) {
+        if (
+            first.worldUuid() != null && second.worldUuid() != null && !first.worldUuid().equals(second.worldUuid())
+        ) {
+            return false;
+        }
+
+        Coordinate[] firstBounds = bounds(first);
+        Coordinate[] secondBounds = bounds(second);
+        if (firstBounds == null || secondBounds == null) {
+            return true;
+        }
+
+        return (
+            firstBounds[0].intX() <= secondBounds[1].intX() &&
+            secondBounds[0].intX() <= firstBounds[1].intX() &&
+            firstBounds[0].intY() <= secondBounds[1].intY() &&
+            secondBounds[0].intY() <= firstBounds[1].intY() &&
+            firstBounds[0].intZ() <= secondBounds[1].intZ() &&
+            secondBounds[0].intZ() <= firstBounds[1].intZ()
+        );
+    }
+
+    /**
+     * Get the minimum and maximum coordinates a query is limited to.
+     *
+     * @param query The query
+     * @return The bounds, or null if the query isn't limited to an area
+     */
+    private static Coordinate[] bounds(ActivityQuery query) {
+        if (query.minCoordinate() != null && query.maxCoordinate() != null) {
+            return new Coordinate[] { query.minCoordinate(), query.maxCoordinate() };
+        } else if (query.coordinate() != null) {
+            return new Coordinate[] { query.coordinate(), query.coordinate() };
+        }
+
+        return null;
+    }
+
+    /**
+     * Build the key of a page. Paging and sharing options don't change which
+     * activities a query matches, so they're left out of the query.
+     *
+     * @param viewer The viewer
+     * @param query The query
+     * @return The key
+     */
+    private static PageKey key(CommandSender viewer, ActivityQuery query) {
+        String normalized = query
+            .toBuilder()
+            .offset(0)
+            .cursor(null)
+            .countTotal(true)
+            .shareWith(null)
+            .defaultsUsed(null)
+            .build()
+            .toString();
+
+        int page = query.limit() > 0 ? query.offset() / query.limit() + 1 : 1;
+
+        return new PageKey(viewerKey(viewer), normalized, page);
+    }
+
+    private static String viewerKey(CommandSender viewer) {
+        return viewer instanceof Player player ? player.getUniqueId().toString() : viewer.getName();
+    }
+}
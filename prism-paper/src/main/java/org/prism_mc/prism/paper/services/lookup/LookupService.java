@@ -33,6 +33,7 @@ import org.prism_mc.prism.api.activities.ActivityQuery;
 import org.prism_mc.prism.api.activities.GroupedActivity;
 import org.prism_mc.prism.api.services.pagination.ListPaginationResult;
 import org.prism_mc.prism.api.services.pagination.PaginationHandler;
+import org.prism_mc.prism.api.services.pagination.PartialListPaginationResult;
 import org.prism_mc.prism.api.storage.StorageAdapter;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 import org.prism_mc.prism.paper.PrismPaper;
@@ -43,6 +44,11 @@ import org.prism_mc.prism.paper.services.scheduling.PrismScheduler;
 @Singleton
 public class LookupService {
 
+    /**
+     * The lookup result cache.
+     */
+    private final LookupResultCache lookupResultCache;
+
     /**
      * The message service.
      */
@@ -71,6 +77,7 @@ public class LookupService {
     /**
      * Construct the lookup service.
      *
+     * @param lookupResultCache The lookup result cache
      * @param messageService The message service
      * @param storageAdapter The storage adapter
      * @param loggingService The logging service
@@ -79,12 +86,14 @@ public class LookupService {
      */
     @Inject
     public LookupService(
+        LookupResultCache lookupResultCache,
         MessageService messageService,
         StorageAdapter storageAdapter,
         LoggingService loggingService,
         PaginationService paginationService,
         PrismScheduler prismScheduler
     ) {
+        this.lookupResultCache = lookupResultCache;
         this.messageService = messageService;
         this.storageAdapter = storageAdapter;
         this.loggingService = loggingService;
@@ -99,17 +108,41 @@ public class LookupService {
      * @param query The activity query
      */
     public void lookup(CommandSender sender, ActivityQuery query) {
+        lookup(sender, query, PartialListPaginationResult.UNCOUNTED, false);
+    }
+
+    /**
+     * Performs an async storage query and displays the results to the command sender in a paginated chat view.
+     *
+     * <p>A new lookup always runs its query and replaces the sender's cached
+     * pages. Paging serves pages from the lookup result cache when it can.</p>
+     *
+     * @param sender The command sender
+     * @param query The activity query
+     * @param knownTotal The total results counted for an earlier page, used when the query doesn't count them
+     * @param paging Whether the query is for another page of an earlier lookup
+     */
+    private void lookup(CommandSender sender, ActivityQuery query, int knownTotal, boolean paging) {
         prismScheduler.runAsync(() -> {
             try {
-                var paginationResult = storageAdapter.queryActivitiesPaginated(query);
+                var paginationResult = paging ? lookupResultCache.get(sender, query) : null;
+                if (paginationResult == null) {
+                    if (!paging) {
+                        lookupResultCache.invalidate(sender);
+                    }
+
+                    paginationResult = fetchPage(sender, query, knownTotal);
+                }
 
                 showResults(sender, paginationResult, query, null);
+                prefetch(sender, query, paginationResult);
 
                 if (query.shareWith() != null) {
+                    var sharedResult = paginationResult;
                     prismScheduler.runGlobal(() -> {
                         Player recipient = Bukkit.getPlayerExact(query.shareWith());
                         if (recipient != null && !isSameSender(sender, recipient)) {
-                            showResults(recipient, paginationResult, query, sender.getName());
+                            showResults(recipient, sharedResult, query, sender.getName());
                         }
                     });
                 }
@@ -125,6 +158,95 @@ public class LookupService {
         });
     }
 
+    /**
+     * Query a page of results and cache it for the viewer.
+     *
+     * @param viewer The viewer
+     * @param query The activity query
+     * @param knownTotal The total results counted for an earlier page, used when the query doesn't count them
+     * @return The page of results
+     * @throws Exception Storage layer exception
+     */
+    private PartialListPaginationResult<AbstractActivity> fetchPage(
+        CommandSender viewer,
+        ActivityQuery query,
+        int knownTotal
+    ) throws Exception {
+        long generation = lookupResultCache.generation();
+
+        var paginationResult = storageAdapter.queryActivitiesPaginated(query);
+        if (!paginationResult.counted()) {
+            paginationResult = new PartialListPaginationResult<>(
+                paginationResult.results(),
+                knownTotal,
+                paginationResult.perPage(),
+                paginationResult.currentPage(),
+                paginationResult.nextCursor()
+            );
+        }
+
+        lookupResultCache.put(viewer, query, paginationResult, generation);
+
+        return paginationResult;
+    }
+
+    /**
+     * Fetch the pages after the one shown in the background, so paging forward is served from the cache.
+     *
+     * @param viewer The viewer
+     * @param query The activity query
+     * @param paginationResult The page of results shown
+     */
+    private void prefetch(
+        CommandSender viewer,
+        ActivityQuery query,
+        PartialListPaginationResult<AbstractActivity> paginationResult
+    ) {
+        if (lookupResultCache.prefetchPages() == 0 || !paginationResult.hasNextPage()) {
+            return;
+        }
+
+        prismScheduler.runAsync(() -> {
+            try {
+                var previous = paginationResult;
+                for (int i = 0; i < lookupResultCache.prefetchPages() && previous.hasNextPage(); i++) {
+                    ActivityQuery pageQuery = pageQuery(query, previous, previous.currentPage() + 1);
+
+                    var cached = lookupResultCache.get(viewer, pageQuery);
+                    previous = cached != null ? cached : fetchPage(viewer, pageQuery, previous.totalResults());
+                }
+            } catch (Exception ex) {
+                loggingService.handleException(ex);
+            }
+        });
+    }
+
+    /**
+     * Build the query for another page of results.
+     *
+     * <p>Paging is private to the viewer, so the share target is dropped: navigating
+     * pages must never re-broadcast to the other player. The total was counted for
+     * the first page, and the next page seeks past this one rather than skipping rows.</p>
+     *
+     * @param query The activity query
+     * @param paginationResult The current page of results
+     * @param page The page
+     * @return The query
+     */
+    private ActivityQuery pageQuery(
+        ActivityQuery query,
+        PartialListPaginationResult<AbstractActivity> paginationResult,
+        int page
+    ) {
+        return query
+            .toBuilder()
+            .offset(paginationResult.offsetForPage(page))
+            .cursor(page == paginationResult.currentPage() + 1 ? paginationResult.nextCursor() : null)
+            .countTotal(false)
+            .shareWith(null)
+            .build();
+    }
+
     /**
      * Render a page of results to a single viewer and cache the pagination handler for them so
      * they can page independently. The query runs once in {@link #lookup(CommandSender, ActivityQuery)};
@@ -138,23 +260,14 @@ public class LookupService {
      */
     private void showResults(
         CommandSender viewer,
-        ListPaginationResult<AbstractActivity> paginationResult,
+        PartialListPaginationResult<AbstractActivity> paginationResult,
         ActivityQuery query,
         String sharedBy
     ) {
         var paginationHandler = createPaginationHandler(
             viewer,
             paginationResult,
-            page -> {
-                // Paging is private to the viewer, so drop the share target: navigating pages
-                // must never re-broadcast to the other player.
-                final ActivityQuery newQuery = query
-                    .toBuilder()
-                    .offset(paginationResult.offsetForPage(page))
-                    .shareWith(null)
-                    .build();
-                lookup(viewer, newQuery);
-            },
+            page -> lookup(viewer, pageQuery(query, paginationResult, page), paginationResult.totalResults(), true),
             query,
             sharedBy
         );
@@ -350,6 +350,9 @@ public interface MessageService {
     @Message("prism.recording-report-queue-header")
     void recordingReportQueueHeader(CommandSender receiver, @Placeholder Integer size);
 
+    @Message("prism.recording-report-queue-spill")
+    void recordingReportQueueSpill(CommandSender receiver, @Placeholder Long spilled, @Placeholder Long drained);
+
     @Message("prism.recording-report-queue-entry")
     void recordingReportQueueEntry(CommandSender receiver, @Placeholder String action, @Placeholder Integer count);
 
@@ -452,9 +455,31 @@ public interface MessageService {
     @Message("prism.status.queue")
     void statusQueue(CommandSender receiver, @Placeholder Integer size, @Placeholder Integer capacity);
 
+    @Message("prism.status.recording")
+    void statusRecording(
+        CommandSender receiver,
+        @Placeholder String mode,
+        @Placeholder Integer batch,
+        @Placeholder Integer workers,
+        @Placeholder Long delay,
+        @Placeholder String commitavg
+    );
+
     @Message("prism.status.wal")
     void statusWal(CommandSender receiver, @Placeholder String mode);
 
+    @Message("prism.status.wal-flush")
+    void statusWalFlush(
+        CommandSender receiver,
+        @Placeholder String durability,
+        @Placeholder Long flushes,
+        @Placeholder String flushavg,
+        @Placeholder String flushmax,
+        @Placeholder Long syncs,
+        @Placeholder String syncavg,
+        @Placeholder String syncmax
+    );
+
     @Message("prism.status.purge")
     void statusPurge(CommandSender receiver, @Placeholder StatusLabel active);
 
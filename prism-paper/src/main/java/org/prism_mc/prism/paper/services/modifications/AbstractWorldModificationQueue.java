@@ -22,6 +22,7 @@ package org.prism_mc.prism.paper.services.modifications;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -42,12 +43,15 @@ import org.prism_mc.prism.api.services.modifications.ModificationQueueResult;
 import org.prism_mc.prism.api.services.modifications.ModificationResult;
 import org.prism_mc.prism.api.services.modifications.ModificationResultStatus;
 import org.prism_mc.prism.api.services.modifications.ModificationRuleset;
+import org.prism_mc.prism.api.services.modifications.ModificationSkipReason;
 import org.prism_mc.prism.api.services.modifications.UndoEntry;
 import org.prism_mc.prism.api.storage.StorageAdapter;
 import org.prism_mc.prism.api.util.Coordinate;
 import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
 import org.prism_mc.prism.loader.services.configuration.ModificationConfiguration;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
+import org.prism_mc.prism.paper.actions.PaperBlockGroupAction;
+import org.prism_mc.prism.paper.actions.PaperItemFlowAction;
 import org.prism_mc.prism.paper.services.messages.MessageService;
 import org.prism_mc.prism.paper.services.scheduling.PrismScheduler;
 import org.prism_mc.prism.paper.utils.BlockUtils;
@@ -525,17 +529,110 @@ public abstract class AbstractWorldModificationQueue implements ModificationQueu
                 return;
             }
 
+            List<ModificationResult> skippedGroups = new ArrayList<>();
+            List<Activity> expanded = expandGroups(batch, skippedGroups);
+
             prismScheduler.runGlobal(() -> {
                 if (cancelled) {
                     return;
                 }
+                countSkipped += skippedGroups.size();
+                results.addAll(skippedGroups);
                 modificationsQueue.clear();
-                modificationsQueue.addAll(batch);
+                modificationsQueue.addAll(expanded);
                 executeCurrentBatch();
             });
         });
     }
 
+    /**
+     * Expand block group activities into one activity per block, in the
+     * query's sort order, and item flow activities into one activity per
+     * stack.
+     *
+     * <p>Every member of a block group shares the group's primary key, so a
+     * group is only modified when all of its blocks are inside the query's
+     * area. Otherwise marking it reversed would cover blocks that were never
+     * changed, so it's skipped and must be modified by a query covering it.</p>
+     *
+     * @param batch The fetched activities
+     * @param skipped Collects the results of groups skipped for reaching outside the area
+     * @return The activities to modify
+     */
+    private List<Activity> expandGroups(List<Activity> batch, List<ModificationResult> skipped) {
+        if (batch.stream().noneMatch(AbstractWorldModificationQueue::isGroup)) {
+            return batch;
+        }
+
+        boolean newestFirst = query.sort().equals(ActivityQuery.Sort.DESCENDING);
+        Coordinate min = query.coordinate() != null ? query.coordinate() : query.minCoordinate();
+        Coordinate max = query.coordinate() != null ? query.coordinate() : query.maxCoordinate();
+
+        List<Activity> expanded = new ArrayList<>(batch.size());
+        for (Activity activity : batch) {
+            if (activity.action() instanceof PaperItemFlowAction flowAction) {
+                expanded.addAll(flowAction.expand(activity));
+                continue;
+            }
+
+            if (!(activity.action() instanceof PaperBlockGroupAction groupAction)) {
+                expanded.add(activity);
+                continue;
+            }
+
+            if (
+                min != null &&
+                max != null &&
+                (!contains(min, max, groupAction.minCoordinate()) || !contains(min, max, groupAction.maxCoordinate()))
+            ) {
+                skipped.add(
+                    ModificationResult.builder()
+                        .activity(activity)
+                        .skipped()
+                        .skipReason(ModificationSkipReason.PARTLY_OUTSIDE_AREA)
+                        .target(groupAction.blockContainer().translationKey())
+                        .build()
+                );
+                continue;
+            }
+
+            expanded.addAll(groupAction.expand(activity, newestFirst));
+        }
+
+        return expanded;
+    }
+
+    /**
+     * Whether a box contains a coordinate.
+     *
+     * @param min The min corner of the box
+     * @param max The max corner of the box
+     * @param coordinate The coordinate
+     * @return True if the coordinate is inside the box
+     */
+    private static boolean contains(Coordinate min, Coordinate max, Coordinate coordinate) {
+        return (
+            coordinate.intX() >= min.intX() &&
+            coordinate.intY() >= min.intY() &&
+            coordinate.intZ() >= min.intZ() &&
+            coordinate.intX() <= max.intX() &&
+            coordinate.intY() <= max.intY() &&
+            coordinate.intZ() <= max.intZ()
+        );
+    }
+
+    /**
+     * Whether an activity stands for many changes.
+     *
+     * @param activity The activity
+     * @return True if the activity is a block group or item flow
+     */
+    private static boolean isGroup(Activity activity) {
+        return (
+            activity.action() instanceof PaperBlockGroupAction || activity.action() instanceof PaperItemFlowAction
+        );
+    }
+
     /**
      * Hand the current in-memory batch to the modification executor. When the
      * executor finishes the batch, kick off another stream fetch — or finalize
@@ -631,7 +728,8 @@ public abstract class AbstractWorldModificationQueue implements ModificationQueu
             return;
         }
 
-        List<Long> snapshot = new ArrayList<>(pendingReversalKeys);
+        // Expanded block groups contribute their key once per block
+        List<Long> snapshot = new ArrayList<>(new LinkedHashSet<>(pendingReversalKeys));
         pendingReversalKeys.clear();
         boolean reversed = markReversedState();
 
@@ -61,6 +61,7 @@ import org.prism_mc.prism.core.services.cache.CacheService;
 import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
 import org.prism_mc.prism.loader.services.configuration.DefaultsConfiguration;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
+import org.prism_mc.prism.paper.services.lookup.LookupResultCache;
 import org.prism_mc.prism.paper.services.messages.MessageService;
 import org.prism_mc.prism.paper.services.scheduling.PrismScheduler;
 import org.prism_mc.prism.paper.utils.BlockUtils;
@@ -85,6 +86,11 @@ public class PaperModificationQueueService implements ModificationQueueService {
      */
     private final LoggingService loggingService;
 
+    /**
+     * The lookup result cache.
+     */
+    private final LookupResultCache lookupResultCache;
+
     /**
      * The message service.
      */
@@ -140,6 +146,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
      * @param cacheService The cache service
      * @param configurationService The configuration service
      * @param loggingService The logging service
+     * @param lookupResultCache The lookup result cache
      * @param messageService The message service
      * @param restoreFactory The restore factory
      * @param rollbackFactory The rollback factory
@@ -151,6 +158,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
         CacheService cacheService,
         ConfigurationService configurationService,
         LoggingService loggingService,
+        LookupResultCache lookupResultCache,
         MessageService messageService,
         RestoreFactory restoreFactory,
         RollbackFactory rollbackFactory,
@@ -159,6 +167,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
     ) {
         this.configurationService = configurationService;
         this.loggingService = loggingService;
+        this.lookupResultCache = lookupResultCache;
         this.messageService = messageService;
         this.restoreFactory = restoreFactory;
         this.rollbackFactory = rollbackFactory;
@@ -650,6 +659,9 @@ public class PaperModificationQueueService implements ModificationQueueService {
         queueResults.put(owner, result);
 
         if (result.mode().equals(ModificationQueueMode.COMPLETING)) {
+            // Cached lookups of the area no longer show its reversed state
+            lookupResultCache.invalidate(endedQueue.query());
+
             // Message the user with results
             if (owner instanceof CommandSender sender) {
                 messageService.modificationsAppliedSuccess(sender);
@@ -723,7 +735,9 @@ public class PaperModificationQueueService implements ModificationQueueService {
         int[] lastReportedPercent = { 0 };
         List<Long> appliedKeys = new ArrayList<>();
 
-        replayUndoBatch(sender, entries, 0, applied, skipped, appliedKeys, lastReportedPercent, undoOfRollback);
+        ActivityQuery area = queueResult.queue() != null ? queueResult.queue().query() : null;
+
+        replayUndoBatch(sender, area, entries, 0, applied, skipped, appliedKeys, lastReportedPercent, undoOfRollback);
     }
 
     /**
@@ -732,6 +746,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
      */
     private void replayUndoBatch(
         CommandSender sender,
+        ActivityQuery area,
         List<UndoEntry> entries,
         int cursor,
         int[] applied,
@@ -741,7 +756,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
         boolean undoOfRollback
     ) {
         if (cursor >= entries.size()) {
-            finishUndo(sender, applied[0], skipped[0], appliedKeys, undoOfRollback);
+            finishUndo(sender, area, applied[0], skipped[0], appliedKeys, undoOfRollback);
             return;
         }
 
@@ -828,6 +843,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
                 prismScheduler.runGlobal(() ->
                     replayUndoBatch(
                         sender,
+                        area,
                         entries,
                         end,
                         applied,
@@ -853,6 +869,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
      */
     private void finishUndo(
         CommandSender sender,
+        ActivityQuery area,
         int applied,
         int skipped,
         List<Long> appliedKeys,
@@ -868,6 +885,7 @@ public class PaperModificationQueueService implements ModificationQueueService {
             } catch (Exception e) {
                 loggingService.handleException(e);
             } finally {
+                lookupResultCache.invalidate(area);
                 undoInProgress.set(false);
             }
 
@@ -122,6 +122,20 @@ public class PaperPurgeQueue implements PurgeQueue {
         running = true;
 
         prismScheduler.runAsync(() -> {
+            // Purge in bulk where storage can, the cycles below delete whatever's left
+            for (ActivityQuery query : List.copyOf(purgeQueue)) {
+                try {
+                    int purged = storageAdapter.purgeActivities(query);
+                    if (purged > 0) {
+                        deleted += purged;
+
+                        loggingService.debug("Bulk purged about {0} activity records", purged);
+                    }
+                } catch (Exception e) {
+                    loggingService.handleException(e);
+                }
+            }
+
             Pair<Integer, Integer> keys = storageAdapter.getActivitiesPkBounds(purgeQueue.getFirst());
 
             loggingService.debug("Absolute purge lower/bound primary keys: {0}, {1}", keys.key(), keys.value());
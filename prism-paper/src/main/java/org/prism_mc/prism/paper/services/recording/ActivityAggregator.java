@@ -20,34 +20,53 @@
 
 package org.prism_mc.prism.paper.services.recording;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import org.bukkit.inventory.ItemStack;
 import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.activities.Cause;
+import org.prism_mc.prism.api.containers.BlockContainer;
+import org.prism_mc.prism.api.containers.EntityContainer;
+import org.prism_mc.prism.api.containers.IdentityContainer;
+import org.prism_mc.prism.core.storage.SpatialKey;
+import org.prism_mc.prism.paper.actions.PaperBlockAction;
+import org.prism_mc.prism.paper.actions.PaperBlockGroupAction;
 import org.prism_mc.prism.paper.actions.PaperItemStackAction;
 import org.prism_mc.prism.paper.api.activities.PaperActivity;
 
+/**
+ * Merges high-frequency activities before they reach the recording queue.
+ *
+ * <p>Every entry is held for the same minimum age, so entries become eligible
+ * for flushing in the order they were created. Each buffer keeps its entries
+ * in a creation-ordered expiry queue, and a flush only walks the expired
+ * prefix of that queue instead of scanning the whole buffer.</p>
+ */
 public class ActivityAggregator {
 
     /**
-     * Key for aggregation grouping.
+     * The most block changes merged into a single group.
      */
-    private record AggregationKey(String actionKey, UUID worldUuid, int x, int y, int z, String material) {}
+    static final int MAX_BLOCK_GROUP_SIZE = 4096;
 
     /**
      * An aggregation entry holding a template activity and accumulated quantity.
      */
     private static class AggregationEntry {
 
+        final AggregationKeys.Key key;
         final Activity templateActivity;
         final int maxStackSize;
         final AtomicInteger quantity;
         final long createdAt;
 
-        AggregationEntry(Activity activity, int initialQuantity, int maxStackSize) {
+        AggregationEntry(AggregationKeys.Key key, Activity activity, int initialQuantity, int maxStackSize) {
+            this.key = key;
             this.templateActivity = activity;
             this.maxStackSize = maxStackSize;
             this.quantity = new AtomicInteger(initialQuantity);
@@ -55,29 +74,103 @@ public class ActivityAggregator {
         }
     }
 
+    /**
+     * A block aggregation entry holding a template activity and every block change merged into it.
+     */
+    private static class BlockAggregationEntry {
+
+        final AggregationKeys.Key key;
+        final Activity templateActivity;
+        final List<PaperBlockGroupAction.Member> members = new ArrayList<>();
+        final long createdAt;
+
+        BlockAggregationEntry(AggregationKeys.Key key, Activity activity) {
+            this.key = key;
+            this.templateActivity = activity;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Packs item keys by location, and block keys by cell.
+     */
+    private final AggregationKeys keys = new AggregationKeys();
+
     /**
      * The aggregation buffer.
      */
-    private final ConcurrentHashMap<AggregationKey, AggregationEntry> buffer = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<AggregationKeys.Key, AggregationEntry> buffer = new ConcurrentHashMap<>();
+
+    /**
+     * Buffered entries in creation order. May hold entries that were already
+     * flushed for being full; those are skipped when they reach the head.
+     */
+    private final ConcurrentLinkedQueue<AggregationEntry> expiry = new ConcurrentLinkedQueue<>();
 
     /**
      * Entries that reached max stack size and are ready to flush immediately.
      */
     private final LinkedBlockingQueue<AggregationEntry> fullEntries = new LinkedBlockingQueue<>();
 
+    /**
+     * The block aggregation buffer.
+     */
+    private final ConcurrentHashMap<AggregationKeys.Key, BlockAggregationEntry> blockBuffer =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Buffered block entries in creation order.
+     */
+    private final ConcurrentLinkedQueue<BlockAggregationEntry> blockExpiry = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Block entries that reached the max group size and are ready to flush immediately.
+     */
+    private final LinkedBlockingQueue<BlockAggregationEntry> fullBlockEntries = new LinkedBlockingQueue<>();
+
+    /**
+     * Serializes walking the expiry queues, so an entry is never taken off a
+     * queue by one flush while another is deciding whether it has expired.
+     */
+    private final Object expiryLock = new Object();
+
     /**
      * The minimum age (in milliseconds) before an entry is eligible for flushing.
      */
     private final long minAgeMs;
 
+    /**
+     * The minimum age (in milliseconds) before a block entry is eligible for flushing.
+     */
+    private final long blockMinAgeMs;
+
+    /**
+     * The edge length (in blocks) of the cells block changes are grouped by.
+     */
+    private final int cellSize;
+
     /**
      * Construct an aggregator.
      *
      * @param minAgeTicks The minimum age in ticks before entries are flushed
      */
     public ActivityAggregator(long minAgeTicks) {
+        this(minAgeTicks, minAgeTicks, 16);
+    }
+
+    /**
+     * Construct an aggregator.
+     *
+     * @param minAgeTicks The minimum age in ticks before entries are flushed
+     * @param blockMinAgeTicks The minimum age in ticks before block entries are flushed
+     * @param cellSize The edge length (in blocks) of the cells block changes are grouped by
+     */
+    public ActivityAggregator(long minAgeTicks, long blockMinAgeTicks, int cellSize) {
         // Convert ticks to milliseconds (1 tick = 50ms)
         this.minAgeMs = minAgeTicks * 50;
+        this.blockMinAgeMs = blockMinAgeTicks * 50;
+        // Keeps every group within the extent location queries widen their box by
+        this.cellSize = Math.clamp(cellSize, 1, SpatialKey.MAX_EXTENT * 2);
     }
 
     /**
@@ -89,25 +182,30 @@ public class ActivityAggregator {
     public void aggregate(Activity activity) {
         PaperItemStackAction action = (PaperItemStackAction) activity.action();
 
-        AggregationKey key = new AggregationKey(
-            action.type().key(),
+        AggregationKeys.Key key = keys.key(
             activity.worldUuid(),
+            action.type().key(),
+            action.material(),
             activity.coordinate().intX(),
             activity.coordinate().intY(),
-            activity.coordinate().intZ(),
-            action.material().name()
+            activity.coordinate().intZ()
         );
 
         buffer.compute(key, (k, existing) -> {
             if (existing == null) {
-                return new AggregationEntry(activity, action.quantity(), action.itemStack().getMaxStackSize());
+                var entry = new AggregationEntry(k, activity, action.quantity(), action.itemStack().getMaxStackSize());
+                expiry.offer(entry);
+                return entry;
             }
 
             int newTotal = existing.quantity.get() + action.quantity();
             if (newTotal > existing.maxStackSize) {
                 // Entry is full — flush it and start a new one
                 fullEntries.offer(existing);
-                return new AggregationEntry(activity, action.quantity(), existing.maxStackSize);
+
+                var entry = new AggregationEntry(k, activity, action.quantity(), existing.maxStackSize);
+                expiry.offer(entry);
+                return entry;
             }
 
             existing.quantity.addAndGet(action.quantity());
@@ -115,6 +213,77 @@ public class ActivityAggregator {
         });
     }
 
+    /**
+     * Aggregate a block activity into the block buffer. Block changes of the same
+     * action and cause in the same cell are merged into a single group. When a
+     * group reaches the max group size, it is flushed to the pending queue and a
+     * new group begins.
+     *
+     * @param activity The activity to aggregate
+     */
+    public void aggregateBlock(Activity activity) {
+        PaperBlockAction action = (PaperBlockAction) activity.action();
+
+        int x = activity.coordinate().intX();
+        int y = activity.coordinate().intY();
+        int z = activity.coordinate().intZ();
+
+        AggregationKeys.Key key = keys.key(
+            activity.worldUuid(),
+            action.type().key(),
+            causeKey(activity.cause()),
+            Math.floorDiv(x, cellSize),
+            Math.floorDiv(y, cellSize),
+            Math.floorDiv(z, cellSize)
+        );
+
+        var member = new PaperBlockGroupAction.Member(
+            x,
+            y,
+            z,
+            action.blockContainer().blockData(),
+            action.replacedBlockContainer() != null ? action.replacedBlockContainer().blockData() : null
+        );
+
+        blockBuffer.compute(key, (k, existing) -> {
+            if (existing != null && existing.members.size() >= MAX_BLOCK_GROUP_SIZE) {
+                // Entry is full — flush it and start a new one
+                fullBlockEntries.offer(existing);
+                existing = null;
+            }
+
+            if (existing == null) {
+                existing = new BlockAggregationEntry(k, activity);
+                blockExpiry.offer(existing);
+            }
+
+            existing.members.add(member);
+            return existing;
+        });
+    }
+
+    /**
+     * Describe a cause so that activities with the same cause share a group.
+     *
+     * @param cause The cause
+     * @return The cause key
+     */
+    private static String causeKey(Cause cause) {
+        if (cause == null || cause.container() == null) {
+            return "";
+        }
+
+        if (cause.container() instanceof BlockContainer blockContainer) {
+            return "block:" + blockContainer.blockNamespace() + ":" + blockContainer.blockName();
+        } else if (cause.container() instanceof EntityContainer entityContainer) {
+            return "entity:" + entityContainer.serializeEntityType();
+        } else if (cause.container() instanceof IdentityContainer identityContainer) {
+            return "identity:" + identityContainer.uuid();
+        }
+
+        return cause.container().getClass().getName() + ":" + cause.container();
+    }
+
     /**
      * Flush full entries and aged entries into the recording queue.
      *
@@ -124,24 +293,27 @@ public class ActivityAggregator {
         // Drain entries that hit max stack size
         drainFullEntries(sink);
 
-        // Flush aged entries from the buffer
+        // Flush aged entries, which are always a prefix of the expiry queue
         long now = System.currentTimeMillis();
-        for (AggregationKey key : buffer.keySet()) {
-            AggregationEntry entry = buffer.get(key);
-            if (entry == null) {
-                continue;
-            }
+        synchronized (expiryLock) {
+            AggregationEntry entry;
+            while ((entry = expiry.peek()) != null && now - entry.createdAt >= minAgeMs) {
+                expiry.poll();
 
-            if (now - entry.createdAt < minAgeMs) {
-                continue;
+                // Entries that filled up were already flushed and replaced
+                if (buffer.remove(entry.key, entry)) {
+                    sink.accept(buildAggregatedActivity(entry));
+                }
             }
 
-            entry = buffer.remove(key);
-            if (entry == null) {
-                continue;
-            }
+            BlockAggregationEntry blockEntry;
+            while ((blockEntry = blockExpiry.peek()) != null && now - blockEntry.createdAt >= blockMinAgeMs) {
+                blockExpiry.poll();
 
-            sink.accept(buildAggregatedActivity(entry));
+                if (blockBuffer.remove(blockEntry.key, blockEntry)) {
+                    sink.accept(buildBlockGroupActivity(blockEntry));
+                }
+            }
         }
     }
 
@@ -153,7 +325,8 @@ public class ActivityAggregator {
     public void flushAll(Consumer<Activity> sink) {
         drainFullEntries(sink);
 
-        for (AggregationKey key : buffer.keySet()) {
+        // Expiry queue entries left behind are skipped by the next flush
+        for (AggregationKeys.Key key : buffer.keySet()) {
             AggregationEntry entry = buffer.remove(key);
             if (entry == null) {
                 continue;
@@ -161,6 +334,15 @@ public class ActivityAggregator {
 
             sink.accept(buildAggregatedActivity(entry));
         }
+
+        for (AggregationKeys.Key key : blockBuffer.keySet()) {
+            BlockAggregationEntry entry = blockBuffer.remove(key);
+            if (entry == null) {
+                continue;
+            }
+
+            sink.accept(buildBlockGroupActivity(entry));
+        }
     }
 
     /**
@@ -173,6 +355,11 @@ public class ActivityAggregator {
         while ((entry = fullEntries.poll()) != null) {
             sink.accept(buildAggregatedActivity(entry));
         }
+
+        BlockAggregationEntry blockEntry;
+        while ((blockEntry = fullBlockEntries.poll()) != null) {
+            sink.accept(buildBlockGroupActivity(blockEntry));
+        }
     }
 
     /**
@@ -203,4 +390,28 @@ public class ActivityAggregator {
             .cause(template.cause())
             .build();
     }
+
+    /**
+     * Build an activity from a block aggregation entry. A group with a single
+     * member is recorded as the original activity.
+     *
+     * @param entry The block aggregation entry
+     * @return The aggregated activity
+     */
+    private Activity buildBlockGroupActivity(BlockAggregationEntry entry) {
+        Activity template = entry.templateActivity;
+        if (entry.members.size() == 1) {
+            return template;
+        }
+
+        var action = new PaperBlockGroupAction(template.action().type(), entry.members);
+
+        return PaperActivity.builder()
+            .action(action)
+            .world(template.world())
+            .coordinate(action.centre())
+            .cause(template.cause())
+            .timestamp(template.timestamp())
+            .build();
+    }
 }
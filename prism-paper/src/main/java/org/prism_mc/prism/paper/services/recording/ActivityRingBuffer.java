@@ -0,0 +1,235 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
+
+/**
+ * A bounded multi-producer, single-consumer ring buffer for the recording queue.
+ *
+ * <p>Producers claim a sequence number with a single compare-and-set and then
+ * publish the activity into the slot for that sequence. The sequence is the
+ * activity's position in the queue and is also used as its WAL sequence, so
+ * queue order and WAL order agree without a shared lock.</p>
+ *
+ * <p>Consumers drain contiguous runs of published slots in sequence order.
+ * Recording workers may run in parallel, so draining is serialized by a lock
+ * that producers never touch.</p>
+ */
+@Singleton
+public class ActivityRingBuffer extends AbstractQueue<Activity> {
+
+    /**
+     * The capacity used when the configured capacity is 0 (unlimited).
+     */
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * The largest supported capacity, the largest power of two an int array can hold.
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private final AtomicReferenceArray<Activity> slots;
+    private final int mask;
+    private final long capacity;
+
+    /**
+     * The next sequence to claim.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next sequence to drain. Only written while holding the consumer lock.
+     */
+    private volatile long head;
+
+    private final Object consumerLock = new Object();
+
+    /**
+     * Construct the ring buffer from the configured queue capacity.
+     *
+     * @param configurationService The configuration service
+     */
+    @Inject
+    public ActivityRingBuffer(ConfigurationService configurationService) {
+        this(configurationService.prismConfig().recording().queueMaxCapacity());
+    }
+
+    /**
+     * Construct a ring buffer.
+     *
+     * <p>Every slot is allocated up front, the capacity rounded up to a power
+     * of two.</p>
+     *
+     * @param capacity The maximum number of queued activities, or 0 for the default
+     * @throws IllegalArgumentException If the capacity is negative or above {@link #MAX_CAPACITY}
+     */
+    public ActivityRingBuffer(int capacity) {
+        if (capacity < 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(
+                String.format("Recording queue capacity must be between 0 and %d, got %d", MAX_CAPACITY, capacity)
+            );
+        }
+
+        this.capacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+
+        int size = Integer.highestOneBit((int) this.capacity);
+        if (size < this.capacity) {
+            size <<= 1;
+        }
+
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Claim a sequence for the activity and publish it.
+     *
+     * @param activity The activity
+     * @return The activity's sequence, or -1 if the buffer is full
+     */
+    public long publish(Activity activity) {
+        if (activity == null) {
+            throw new NullPointerException();
+        }
+
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                return -1;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        // The capacity check guarantees the slot's previous occupant was drained
+        slots.set(index(sequence), activity);
+        return sequence;
+    }
+
+    /**
+     * Drain up to {@code max} activities in sequence order.
+     *
+     * <p>Draining stops early at a slot whose producer has claimed its
+     * sequence but not yet published, so the drained activities always hold
+     * the contiguous sequences starting at the returned value.</p>
+     *
+     * @param target The collection to add drained activities to
+     * @param max The maximum number of activities to drain
+     * @return The sequence of the first drained activity
+     */
+    public long drainTo(Collection<? super Activity> target, int max) {
+        synchronized (consumerLock) {
+            long first = head;
+            long sequence = first;
+
+            while (sequence - first < max) {
+                int index = index(sequence);
+                Activity activity = slots.get(index);
+                if (activity == null) {
+                    break;
+                }
+
+                slots.lazySet(index, null);
+                target.add(activity);
+                sequence++;
+            }
+
+            head = sequence;
+            return first;
+        }
+    }
+
+    @Override
+    public boolean offer(Activity activity) {
+        return publish(activity) >= 0;
+    }
+
+    @Override
+    public Activity poll() {
+        List<Activity> drained = new ArrayList<>(1);
+        drainTo(drained, 1);
+
+        return drained.isEmpty() ? null : drained.getFirst();
+    }
+
+    @Override
+    public Activity peek() {
+        synchronized (consumerLock) {
+            return slots.get(index(head));
+        }
+    }
+
+    /**
+     * The number of queued activities, including those still being published.
+     *
+     * @return The queue size
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, tail.get() - head));
+    }
+
+    /**
+     * The maximum number of queued activities.
+     *
+     * @return The capacity
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Iterate over a snapshot of the published activities. The iterator
+     * doesn't support removal.
+     *
+     * @return The iterator
+     */
+    @Override
+    public Iterator<Activity> iterator() {
+        long from = head;
+        long to = tail.get();
+
+        List<Activity> snapshot = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, Math.max(0, to - from)));
+        for (long sequence = from; sequence < to; sequence++) {
+            Activity activity = slots.get(index(sequence));
+            if (activity != null) {
+                snapshot.add(activity);
+            }
+        }
+
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.storage.ActivityBatch;
+import org.prism_mc.prism.api.storage.StorageAdapter;
+import org.prism_mc.prism.api.storage.wal.WalRecord;
+import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
+import org.prism_mc.prism.loader.services.logging.LoggingService;
+import org.prism_mc.prism.paper.services.recording.wal.WalCodec;
+import org.prism_mc.prism.paper.services.recording.wal.WalReader;
+import org.prism_mc.prism.paper.services.recording.wal.WalSegment;
+import org.prism_mc.prism.paper.services.recording.wal.WalService;
+import org.prism_mc.prism.paper.services.recording.wal.WalWriter;
+
+/**
+ * An overflow tier for the recording queue.
+ *
+ * <p>Activities that don't fit in the queue are serialized with the WAL
+ * serializer and appended to segment files in the {@code spill} directory.
+ * Recording workers drain the segments back into the database, oldest first,
+ * once the queue has room again. Segments left over from a previous run are
+ * drained the same way.</p>
+ */
+@Singleton
+public class ActivitySpill {
+
+    private final Path spillDir;
+    private final LoggingService loggingService;
+    private final ConfigurationService configurationService;
+    private final WalService walService;
+    private final WalReader walReader = new WalReader();
+
+    /**
+     * Guards swapping the current writer. Only held briefly.
+     */
+    private final Object writerLock = new Object();
+
+    /**
+     * Guards the reader. Held by a recording worker while it drains a batch.
+     */
+    private final Object drainLock = new Object();
+
+    private volatile WalWriter writer;
+    private WalReader.SegmentReader reader;
+    private volatile boolean pending;
+
+    /**
+     * The bytes held by sealed segments that haven't been fully drained.
+     */
+    private final AtomicLong sealedBytes = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+
+    /**
+     * Construct the spill.
+     *
+     * @param dataPath The plugin data directory
+     * @param loggingService The logging service
+     * @param configurationService The configuration service
+     * @param walService The WAL service
+     */
+    @Inject
+    public ActivitySpill(
+        Path dataPath,
+        LoggingService loggingService,
+        ConfigurationService configurationService,
+        WalService walService
+    ) {
+        this.spillDir = dataPath.resolve("spill");
+        this.loggingService = loggingService;
+        this.configurationService = configurationService;
+        this.walService = walService;
+
+        try {
+            for (WalSegment segment : WalSegment.list(spillDir)) {
+                sealedBytes.addAndGet(Files.size(segment.path()));
+                pending = true;
+            }
+        } catch (IOException e) {
+            loggingService.handleException(e);
+        }
+
+        if (pending) {
+            loggingService.info("Found spilled activities from a previous run, they will be recorded shortly.");
+        }
+    }
+
+    /**
+     * The maximum size of the spill on disk.
+     *
+     * @return The maximum size in bytes, or 0 if spilling is disabled
+     */
+    private long maxBytes() {
+        return Math.max(0, configurationService.prismConfig().recording().spillMaxSizeMb()) * 1024L * 1024L;
+    }
+
+    /**
+     * Spill an activity to disk.
+     *
+     * @param activity The activity
+     * @return True if the activity was spilled, false if the spill is disabled or full
+     */
+    public boolean spill(Activity activity) {
+        long maxBytes = maxBytes();
+        if (maxBytes == 0 || sizeOnDisk() >= maxBytes) {
+            return false;
+        }
+
+        WalRecord record;
+        try {
+            record = walService.serialize(activity);
+        } catch (Exception e) {
+            loggingService.handleException(e);
+            return false;
+        }
+
+        synchronized (writerLock) {
+            if (writer == null) {
+                try {
+                    writer = newWriter();
+                    writer.initialize();
+                } catch (IOException e) {
+                    writer = null;
+                    loggingService.handleException(e);
+                    return false;
+                }
+            }
+
+            writer.append(record);
+            pending = true;
+        }
+
+        if (spilled.getAndIncrement() == 0) {
+            loggingService.warn("Recording queue is full, spilling activities to disk until the database catches up.");
+        }
+
+        return true;
+    }
+
+    /**
+     * Create a writer for a new spill segment.
+     *
+     * @return The writer
+     */
+    private WalWriter newWriter() {
+        var recordingConfig = configurationService.prismConfig().recording();
+
+        return new WalWriter(
+            spillDir,
+            WalCodec.forName(recordingConfig.walCodec()),
+            Math.max(1024 * 1024, recordingConfig.walSegmentSizeMb() * 1024L * 1024L),
+            WalWriter.Durability.OS,
+            0,
+            loggingService
+        );
+    }
+
+    /**
+     * Flush spilled activities to disk.
+     */
+    public void flush() {
+        WalWriter current;
+        synchronized (writerLock) {
+            current = writer;
+        }
+
+        if (current != null) {
+            current.flush();
+        }
+    }
+
+    /**
+     * Whether there are spilled activities waiting to be drained.
+     *
+     * @return True if the spill isn't empty
+     */
+    public boolean hasPending() {
+        return pending;
+    }
+
+    /**
+     * Record the oldest spilled activities into the database.
+     *
+     * <p>The segment checkpoint only advances after the batch commits, so a
+     * failed batch is retried on the next drain.</p>
+     *
+     * @param storageAdapter The storage adapter
+     * @param batchMax The maximum number of activities to record
+     * @return The number of activities recorded
+     * @throws Exception If the batch fails to commit
+     */
+    public int drain(StorageAdapter storageAdapter, int batchMax) throws Exception {
+        synchronized (drainLock) {
+            if (!pending) {
+                return 0;
+            }
+
+            if (reader == null) {
+                reader = openNext();
+                if (reader == null) {
+                    return 0;
+                }
+            }
+
+            List<WalRecord> records = new ArrayList<>(batchMax);
+            boolean exhausted = false;
+
+            try {
+                while (records.size() < batchMax) {
+                    WalRecord record = reader.next();
+                    if (record == null) {
+                        exhausted = true;
+                        break;
+                    }
+
+                    records.add(record);
+                }
+
+                if (!records.isEmpty()) {
+                    ActivityBatch batch = storageAdapter.createActivityBatch();
+                    batch.startBatch();
+
+                    for (WalRecord record : records) {
+                        batch.addFromWalRecord(record);
+                    }
+
+                    batch.commitBatch();
+                    reader.segment().writeCheckpoint(reader.checkpoint());
+                    drained.addAndGet(records.size());
+                }
+            } catch (Exception e) {
+                // Reopen from the checkpoint so the batch is read again
+                closeReader();
+                throw e;
+            }
+
+            if (exhausted) {
+                WalSegment segment = reader.segment();
+                closeReader();
+
+                long size = Files.size(segment.path());
+                segment.delete();
+                sealedBytes.addAndGet(-size);
+            }
+
+            return records.size();
+        }
+    }
+
+    /**
+     * Seal the current writer and open the oldest spill segment.
+     *
+     * @return The segment reader, or null if the spill is empty
+     * @throws IOException If the segment cannot be opened
+     */
+    private WalReader.SegmentReader openNext() throws IOException {
+        WalWriter sealed;
+        synchronized (writerLock) {
+            sealed = writer;
+            writer = null;
+        }
+
+        if (sealed != null) {
+            sealed.close();
+            sealedBytes.addAndGet(sealed.bytesWritten());
+        }
+
+        List<WalSegment> segments;
+        synchronized (writerLock) {
+            segments = WalSegment.list(spillDir);
+
+            // A writer opened since the seal owns the newest segment
+            if (writer != null && !segments.isEmpty()) {
+                segments.removeLast();
+            }
+
+            if (segments.isEmpty()) {
+                if (writer == null) {
+                    pending = false;
+                }
+
+                return null;
+            }
+        }
+
+        return walReader.open(segments.getFirst(), loggingService);
+    }
+
+    private void closeReader() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            loggingService.handleException(e);
+        }
+
+        reader = null;
+    }
+
+    /**
+     * The approximate size of the spill on disk.
+     *
+     * @return The size in bytes
+     */
+    private long sizeOnDisk() {
+        WalWriter current = writer;
+        return sealedBytes.get() + (current != null ? current.bytesWritten() : 0);
+    }
+
+    /**
+     * The number of activities spilled to disk since startup.
+     *
+     * @return The spilled count
+     */
+    public long spilledCount() {
+        return spilled.get();
+    }
+
+    /**
+     * The number of spilled activities recorded into the database since startup.
+     *
+     * @return The drained count
+     */
+    public long drainedCount() {
+        return drained.get();
+    }
+
+    /**
+     * Flush and close the current writer. Anything still spilled is drained on the next start.
+     */
+    public void close() {
+        WalWriter current;
+        synchronized (writerLock) {
+            current = writer;
+            writer = null;
+        }
+
+        if (current != null) {
+            current.close();
+            sealedBytes.addAndGet(current.bytesWritten());
+        }
+    }
+}
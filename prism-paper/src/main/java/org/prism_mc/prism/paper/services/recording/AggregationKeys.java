@@ -0,0 +1,121 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Packs aggregation keys into primitives.
+ *
+ * <p>A key is two longs: the interned ids of its world, action and subject
+ * (e.g. a material), and a packed block position. Interned ids are only
+ * stable for the life of the instance and are never persisted.</p>
+ */
+final class AggregationKeys {
+
+    /**
+     * A packed aggregation key.
+     *
+     * @param ids The interned world, action and subject ids
+     * @param position The packed block position
+     */
+    record Key(long ids, long position) {}
+
+    /**
+     * A packed aggregation key for a pair of block positions.
+     *
+     * @param world The interned world id
+     * @param first The first packed block position
+     * @param second The second packed block position
+     */
+    record PairKey(int world, long first, long second) {}
+
+    private final Interner worlds = new Interner();
+    private final Interner actions = new Interner();
+    private final Interner subjects = new Interner();
+
+    /**
+     * Build a key.
+     *
+     * @param world The world
+     * @param action The action
+     * @param subject The subject, e.g. a material
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @return The key
+     */
+    Key key(Object world, Object action, Object subject, int x, int y, int z) {
+        long ids =
+            ((long) (worlds.intern(world) & 0xFFFF) << 48) |
+            ((long) (actions.intern(action) & 0xFFFF) << 32) |
+            (subjects.intern(subject) & 0xFFFFFFFFL);
+
+        return new Key(ids, packPosition(x, y, z));
+    }
+
+    /**
+     * Build a key for a pair of block positions.
+     *
+     * @param world The world
+     * @param x1 The first x coordinate
+     * @param y1 The first y coordinate
+     * @param z1 The first z coordinate
+     * @param x2 The second x coordinate
+     * @param y2 The second y coordinate
+     * @param z2 The second z coordinate
+     * @return The key
+     */
+    PairKey pairKey(Object world, int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new PairKey(worlds.intern(world), packPosition(x1, y1, z1), packPosition(x2, y2, z2));
+    }
+
+    /**
+     * Pack a block position into a long, using 26 bits for x and z and 12 for y.
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @return The packed position
+     */
+    static long packPosition(int x, int y, int z) {
+        return (((long) x & 0x3FFFFFF) << 38) | (((long) z & 0x3FFFFFF) << 12) | ((long) y & 0xFFF);
+    }
+
+    /**
+     * Maps values to small sequential ids.
+     */
+    private static final class Interner {
+
+        private final ConcurrentHashMap<Object, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        int intern(Object value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = ids.computeIfAbsent(value, v -> nextId.getAndIncrement());
+            }
+
+            return id;
+        }
+    }
+}
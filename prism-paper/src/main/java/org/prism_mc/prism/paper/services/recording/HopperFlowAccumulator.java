@@ -0,0 +1,399 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockState;
+import org.bukkit.inventory.ItemStack;
+import org.prism_mc.prism.api.actions.types.ActionType;
+import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.activities.Cause;
+import org.prism_mc.prism.paper.actions.PaperItemFlowAction;
+import org.prism_mc.prism.paper.actions.PaperItemStackAction;
+import org.prism_mc.prism.paper.actions.types.PaperActionTypeRegistry;
+import org.prism_mc.prism.paper.api.activities.PaperActivity;
+
+/**
+ * Merges items moved between the same pair of containers.
+ *
+ * <p>Each pair keeps a count per material, and is recorded once per interval
+ * as a hopper-remove at the source and a hopper-insert at the destination,
+ * whichever of the two are enabled. Only plain items are accepted, items with
+ * meta are always recorded individually.</p>
+ */
+public class HopperFlowAccumulator {
+
+    /**
+     * The most items merged into a single flow. The quantity column is an unsigned short.
+     */
+    static final int MAX_FLOW_QUANTITY = 65535;
+
+    /**
+     * Materials by ordinal.
+     */
+    private static final Material[] MATERIALS = Material.values();
+
+    /**
+     * A flow entry holding the pair of containers and the items moved between them.
+     */
+    private static class FlowEntry {
+
+        final AggregationKeys.PairKey key;
+        final UUID worldUuid;
+        final String worldName;
+        final Location source;
+        final Location destination;
+        final Cause cause;
+        final MaterialCounts counts = new MaterialCounts();
+        boolean recordRemove;
+        boolean recordInsert;
+        int total;
+        final long createdAt;
+
+        FlowEntry(AggregationKeys.PairKey key, Location source, Location destination, Cause cause) {
+            this.key = key;
+            this.worldUuid = source.getWorld().getUID();
+            this.worldName = source.getWorld().getName();
+            this.source = source;
+            this.destination = destination;
+            this.cause = cause;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Packs keys by source and destination position.
+     */
+    private final AggregationKeys keys = new AggregationKeys();
+
+    /**
+     * The flow buffer.
+     */
+    private final ConcurrentHashMap<AggregationKeys.PairKey, FlowEntry> buffer = new ConcurrentHashMap<>();
+
+    /**
+     * Buffered entries in creation order.
+     */
+    private final ConcurrentLinkedQueue<FlowEntry> expiry = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Entries that reached the max flow quantity and are ready to flush immediately.
+     */
+    private final LinkedBlockingQueue<FlowEntry> fullEntries = new LinkedBlockingQueue<>();
+
+    /**
+     * Serializes walking the expiry queue.
+     */
+    private final Object expiryLock = new Object();
+
+    /**
+     * The minimum age (in milliseconds) before an entry is eligible for flushing.
+     */
+    private final long minAgeMs;
+
+    /**
+     * Construct a hopper flow accumulator.
+     *
+     * @param minAgeTicks The minimum age in ticks before entries are flushed
+     */
+    public HopperFlowAccumulator(long minAgeTicks) {
+        // Convert ticks to milliseconds (1 tick = 50ms)
+        this.minAgeMs = minAgeTicks * 50;
+    }
+
+    /**
+     * Add items moved from one container to another.
+     *
+     * @param source The source container
+     * @param destination The destination container
+     * @param initiator The block that moved the items
+     * @param itemStack The items
+     * @param recordRemove Whether to record a hopper-remove at the source
+     * @param recordInsert Whether to record a hopper-insert at the destination
+     */
+    public void accumulate(
+        BlockState source,
+        BlockState destination,
+        BlockState initiator,
+        ItemStack itemStack,
+        boolean recordRemove,
+        boolean recordInsert
+    ) {
+        int ordinal = itemStack.getType().ordinal();
+        int amount = itemStack.getAmount();
+
+        AggregationKeys.PairKey key = keys.pairKey(
+            source.getWorld().getUID(),
+            source.getX(),
+            source.getY(),
+            source.getZ(),
+            destination.getX(),
+            destination.getY(),
+            destination.getZ()
+        );
+
+        buffer.compute(key, (k, existing) -> {
+            if (existing != null && existing.total + amount > MAX_FLOW_QUANTITY) {
+                // Entry is full — flush it and start a new one
+                fullEntries.offer(existing);
+                existing = null;
+            }
+
+            if (existing == null) {
+                existing = new FlowEntry(
+                    k,
+                    source.getLocation(),
+                    destination.getLocation(),
+                    PaperActivity.toCause(initiator)
+                );
+                expiry.offer(existing);
+            }
+
+            existing.counts.add(ordinal, amount);
+            existing.total += amount;
+            existing.recordRemove |= recordRemove;
+            existing.recordInsert |= recordInsert;
+            return existing;
+        });
+    }
+
+    /**
+     * Flush full entries and aged entries into the recording queue.
+     *
+     * @param filter The filter each material must pass to be recorded
+     * @param sink The consumer to receive flushed activities
+     */
+    public void flush(Predicate<Activity> filter, Consumer<Activity> sink) {
+        drainFullEntries(filter, sink);
+
+        long now = System.currentTimeMillis();
+        synchronized (expiryLock) {
+            FlowEntry entry;
+            while ((entry = expiry.peek()) != null && now - entry.createdAt >= minAgeMs) {
+                expiry.poll();
+
+                // Entries that filled up were already flushed and replaced
+                if (buffer.remove(entry.key, entry)) {
+                    emit(entry, filter, sink);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush all entries regardless of age. Used during shutdown.
+     *
+     * @param filter The filter each material must pass to be recorded
+     * @param sink The consumer to receive flushed activities
+     */
+    public void flushAll(Predicate<Activity> filter, Consumer<Activity> sink) {
+        drainFullEntries(filter, sink);
+
+        // Expiry queue entries left behind are skipped by the next flush
+        for (AggregationKeys.PairKey key : buffer.keySet()) {
+            FlowEntry entry = buffer.remove(key);
+            if (entry == null) {
+                continue;
+            }
+
+            emit(entry, filter, sink);
+        }
+    }
+
+    /**
+     * Drain all full entries to the consumer.
+     *
+     * @param filter The filter each material must pass to be recorded
+     * @param sink The consumer to receive flushed activities
+     */
+    private void drainFullEntries(Predicate<Activity> filter, Consumer<Activity> sink) {
+        FlowEntry entry;
+        while ((entry = fullEntries.poll()) != null) {
+            emit(entry, filter, sink);
+        }
+    }
+
+    /**
+     * Build the activities of a flow entry.
+     *
+     * @param entry The flow entry
+     * @param filter The filter each material must pass to be recorded
+     * @param sink The consumer to receive flushed activities
+     */
+    private void emit(FlowEntry entry, Predicate<Activity> filter, Consumer<Activity> sink) {
+        if (entry.recordRemove) {
+            emit(entry, PaperActionTypeRegistry.HOPPER_REMOVE, entry.source, filter, sink);
+        }
+
+        if (entry.recordInsert) {
+            emit(entry, PaperActionTypeRegistry.HOPPER_INSERT, entry.destination, filter, sink);
+        }
+    }
+
+    /**
+     * Build the activity of a flow entry for one side of the pair. Filters are
+     * checked per material, and a flow of a single stack is recorded as a plain
+     * item activity.
+     *
+     * @param entry The flow entry
+     * @param type The action type
+     * @param location The location of the container
+     * @param filter The filter each material must pass to be recorded
+     * @param sink The consumer to receive flushed activities
+     */
+    private void emit(
+        FlowEntry entry,
+        ActionType type,
+        Location location,
+        Predicate<Activity> filter,
+        Consumer<Activity> sink
+    ) {
+        List<PaperItemFlowAction.Entry> entries = new ArrayList<>(entry.counts.size());
+        PaperItemStackAction single = null;
+
+        for (PaperItemFlowAction.Entry flowEntry : entry.counts.entries()) {
+            int amount = Math.min(flowEntry.count(), flowEntry.material().getMaxStackSize());
+            var action = new PaperItemStackAction(type, new ItemStack(flowEntry.material(), amount), amount, null);
+
+            if (filter.test(activity(entry, action, location))) {
+                entries.add(flowEntry);
+                single = action;
+            }
+        }
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        if (entries.size() == 1 && entries.getFirst().count() == single.quantity()) {
+            sink.accept(activity(entry, single, location));
+        } else {
+            sink.accept(activity(entry, new PaperItemFlowAction(type, entries), location));
+        }
+    }
+
+    private static Activity activity(FlowEntry entry, PaperItemStackAction action, Location location) {
+        return PaperActivity.builder()
+            .action(action)
+            .world(entry.worldUuid, entry.worldName)
+            .coordinate(location.getX(), location.getY(), location.getZ())
+            .cause(entry.cause)
+            .build();
+    }
+
+    /**
+     * Counts items by material ordinal, in an open addressing map of primitives.
+     */
+    private static final class MaterialCounts {
+
+        /**
+         * Material ordinals plus one, so that zero marks an empty slot.
+         */
+        private int[] keys = new int[8];
+
+        private int[] counts = new int[8];
+
+        private int size;
+
+        /**
+         * Add items of a material.
+         *
+         * @param ordinal The material ordinal
+         * @param count The number of items
+         */
+        void add(int ordinal, int count) {
+            int slot = slot(keys, ordinal + 1);
+            if (keys[slot] == 0) {
+                keys[slot] = ordinal + 1;
+                size++;
+            }
+
+            counts[slot] += count;
+
+            if (size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        /**
+         * The number of materials.
+         *
+         * @return The size
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Copy the counts, most moved first.
+         *
+         * @return The entries
+         */
+        List<PaperItemFlowAction.Entry> entries() {
+            List<PaperItemFlowAction.Entry> entries = new ArrayList<>(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    entries.add(new PaperItemFlowAction.Entry(MATERIALS[keys[i] - 1], counts[i]));
+                }
+            }
+
+            entries.sort(Comparator.comparingInt(PaperItemFlowAction.Entry::count).reversed());
+            return entries;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+    }
+}
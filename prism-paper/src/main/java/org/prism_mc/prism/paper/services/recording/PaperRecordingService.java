@@ -23,21 +23,26 @@ package org.prism_mc.prism.paper.services.recording;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.time.Duration;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.bukkit.GameMode;
+import org.bukkit.block.BlockState;
+import org.bukkit.inventory.ItemStack;
 import org.prism_mc.prism.api.actions.BlockAction;
 import org.prism_mc.prism.api.actions.ItemAction;
 import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.containers.StringContainer;
 import org.prism_mc.prism.api.services.recording.RecordingService;
 import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
+import org.prism_mc.prism.paper.actions.PaperBlockAction;
+import org.prism_mc.prism.paper.actions.PaperBlockGroupAction;
 import org.prism_mc.prism.paper.api.activities.PaperActivity;
 import org.prism_mc.prism.paper.api.containers.PaperBlockContainer;
 import org.prism_mc.prism.paper.api.containers.PaperPlayerContainer;
 import org.prism_mc.prism.paper.services.filters.PaperFilterService;
 import org.prism_mc.prism.paper.services.recording.wal.WalService;
 import org.prism_mc.prism.paper.services.scheduling.PrismScheduler;
+import org.prism_mc.prism.paper.utils.ItemUtils;
 import org.prism_mc.prism.paper.utils.TagLib;
 
 @Singleton
@@ -81,13 +86,23 @@ public class PaperRecordingService implements RecordingService {
     /**
      * Queue of activities.
      */
-    private final LinkedBlockingQueue<Activity> queue;
+    private final ActivityRingBuffer queue;
+
+    /**
+     * The on-disk overflow for the queue.
+     */
+    private final ActivitySpill spill;
 
     /**
      * The activity aggregator.
      */
     private final ActivityAggregator aggregator;
 
+    /**
+     * The hopper flow accumulator.
+     */
+    private final HopperFlowAccumulator hopperFlows;
+
     /**
      * Count of activities dropped due to a full queue since the last drain.
      */
@@ -99,9 +114,9 @@ public class PaperRecordingService implements RecordingService {
     private final AtomicInteger activeWorkers = new AtomicInteger();
 
     /**
-     * Maximum number of parallel recording workers.
+     * The batch size and latency controller.
      */
-    private final int parallelism;
+    private final RecordingController controller;
 
     /**
      * The drain mode.
@@ -120,6 +135,10 @@ public class PaperRecordingService implements RecordingService {
      * @param loggingService The logging service
      * @param recordingTask The recording task
      * @param walService The WAL service
+     * @param prismScheduler The scheduler
+     * @param queue The recording queue
+     * @param spill The on-disk overflow for the queue
+     * @param controller The batch size and latency controller
      */
     @Inject
     public PaperRecordingService(
@@ -128,7 +147,10 @@ public class PaperRecordingService implements RecordingService {
         LoggingService loggingService,
         RecordingTask recordingTask,
         WalService walService,
-        PrismScheduler prismScheduler
+        PrismScheduler prismScheduler,
+        ActivityRingBuffer queue,
+        ActivitySpill spill,
+        RecordingController controller
     ) {
         this.configurationService = configurationService;
         this.filterService = filterService;
@@ -136,11 +158,16 @@ public class PaperRecordingService implements RecordingService {
         this.recordingTask = recordingTask;
         this.prismScheduler = prismScheduler;
         this.walService = walService;
-        this.parallelism = configurationService.prismConfig().recording().parallelism();
-        this.aggregator = new ActivityAggregator(configurationService.prismConfig().recording().aggregationInterval());
-
-        int capacity = configurationService.prismConfig().recording().queueMaxCapacity();
-        this.queue = capacity > 0 ? new LinkedBlockingQueue<>(capacity) : new LinkedBlockingQueue<>();
+        this.controller = controller;
+        var recordingConfig = configurationService.prismConfig().recording();
+        this.aggregator = new ActivityAggregator(
+            recordingConfig.aggregationInterval(),
+            recordingConfig.blockAggregationInterval(),
+            recordingConfig.blockAggregationCellSize()
+        );
+        this.hopperFlows = new HopperFlowAccumulator(recordingConfig.hopperFlowInterval());
+        this.queue = queue;
+        this.spill = spill;
 
         queueNextRecording(recordingTask);
     }
@@ -186,6 +213,11 @@ public class PaperRecordingService implements RecordingService {
             return true;
         }
 
+        if (blockAggregatable(activity)) {
+            aggregator.aggregateBlock(activity);
+            return true;
+        }
+
         if (!offerToQueue(activity)) {
             return false;
         }
@@ -193,6 +225,73 @@ public class PaperRecordingService implements RecordingService {
         return true;
     }
 
+    /**
+     * Merge items moved between two containers into their hopper flow.
+     *
+     * <p>Filters are checked per material when the flow is flushed. Items with
+     * meta (including airtagged items) are never merged.</p>
+     *
+     * @param source The source container
+     * @param destination The destination container
+     * @param initiator The block that moved the items
+     * @param itemStack The items
+     * @param recordRemove Whether to record a hopper-remove at the source
+     * @param recordInsert Whether to record a hopper-insert at the destination
+     * @return True if the items were merged, false if they should be recorded individually
+     */
+    public boolean addHopperFlow(
+        BlockState source,
+        BlockState destination,
+        BlockState initiator,
+        ItemStack itemStack,
+        boolean recordRemove,
+        boolean recordInsert
+    ) {
+        if (
+            !configurationService.prismConfig().recording().aggregateHopperFlows() ||
+            !ItemUtils.isValidItem(itemStack) ||
+            itemStack.hasItemMeta()
+        ) {
+            return false;
+        }
+
+        hopperFlows.accumulate(source, destination, initiator, itemStack, recordRemove, recordInsert);
+        return true;
+    }
+
+    /**
+     * Whether the activity is a block change that should be merged into a block group.
+     *
+     * <p>Blocks with custom data (e.g. tile entities) are always recorded individually.
+     * An action is merged when it's configured on its own, or together with its named
+     * cause (e.g. {@code block-break:decay}).</p>
+     *
+     * @param activity The activity
+     * @return True if the activity should be aggregated
+     */
+    private boolean blockAggregatable(Activity activity) {
+        var recordingConfig = configurationService.prismConfig().recording();
+
+        if (
+            !recordingConfig.aggregateBlockActions() ||
+            !(activity.action() instanceof PaperBlockAction blockAction) ||
+            blockAction instanceof PaperBlockGroupAction ||
+            blockAction.hasCustomData()
+        ) {
+            return false;
+        }
+
+        var actions = recordingConfig.blockAggregationActions();
+        String actionKey = blockAction.type().key();
+
+        return (
+            actions.contains(actionKey) ||
+            (activity.cause() != null &&
+                activity.cause().container() instanceof StringContainer namedCause &&
+                actions.contains(actionKey + ":" + namedCause.value()))
+        );
+    }
+
     /**
      * Whether the activity's affected item carries an airtag.
      *
@@ -210,31 +309,23 @@ public class PaperRecordingService implements RecordingService {
     /**
      * Offer an activity to the queue and write it to the WAL if enabled.
      *
+     * <p>The queue sequence doubles as the WAL sequence, so concurrent
+     * producers (e.g. Folia region threads) never need a shared lock to keep
+     * the WAL in queue order.</p>
+     *
+     * <p>When the queue is full the activity spills to disk instead. Spilled
+     * activities are recorded straight from disk and never enter the WAL.</p>
+     *
      * @param activity The activity
      * @return True if the activity was accepted
      */
     private boolean offerToQueue(Activity activity) {
-        // In always mode the queue offer and WAL append must happen as a unit so
-        // the WAL file order matches the queue order; otherwise concurrent
-        // producers (e.g. Folia region threads) can interleave them and break the
-        // positional checkpoint. Other modes have no such ordering constraint.
-        if (walService.isAlwaysMode()) {
-            synchronized (walService.orderingLock()) {
-                return offerAndAppend(activity);
+        long sequence = queue.publish(activity);
+        if (sequence < 0) {
+            if (spill.spill(activity)) {
+                return true;
             }
-        }
 
-        return offerAndAppend(activity);
-    }
-
-    /**
-     * Offer the activity to the queue and, if accepted, append it to the WAL.
-     *
-     * @param activity The activity
-     * @return True if the activity was accepted
-     */
-    private boolean offerAndAppend(Activity activity) {
-        if (!queue.offer(activity)) {
             if (droppedActivities.getAndIncrement() == 0) {
                 loggingService.warn(
                     "Recording queue is full ({0}), dropping activities. The database may not be keeping up.",
@@ -245,7 +336,7 @@ public class PaperRecordingService implements RecordingService {
             return false;
         }
 
-        walService.append(activity);
+        walService.append(activity, sequence);
         return true;
     }
 
@@ -264,9 +355,20 @@ public class PaperRecordingService implements RecordingService {
         return droppedActivities.getAndSet(0);
     }
 
+    @Override
+    public long spilledCount() {
+        return spill.spilledCount();
+    }
+
+    @Override
+    public long spillDrainedCount() {
+        return spill.drainedCount();
+    }
+
     @Override
     public void flushAggregator() {
         aggregator.flush(activity -> offerToQueue(activity));
+        hopperFlows.flush(filterService::shouldRecord, activity -> offerToQueue(activity));
     }
 
     /**
@@ -279,6 +381,7 @@ public class PaperRecordingService implements RecordingService {
      */
     public void flushAggregatorAll() {
         aggregator.flushAll(activity -> offerToQueue(activity));
+        hopperFlows.flushAll(filterService::shouldRecord, activity -> offerToQueue(activity));
     }
 
     /**
@@ -295,6 +398,7 @@ public class PaperRecordingService implements RecordingService {
         long deadline = System.nanoTime() + timeout.toNanos();
 
         aggregator.flushAll(activity -> offerToQueue(activity));
+        hopperFlows.flushAll(filterService::shouldRecord, activity -> offerToQueue(activity));
 
         loggingService.info("Draining {0} queued activities (timeout: {1}s)...", queue.size(), timeout.toSeconds());
 
@@ -316,18 +420,17 @@ public class PaperRecordingService implements RecordingService {
     }
 
     @Override
-    public LinkedBlockingQueue<Activity> queue() {
+    public ActivityRingBuffer queue() {
         return queue;
     }
 
     @Override
     public void queueNextRecording(Runnable recordingTask) {
-        long delay = configurationService.prismConfig().recording().delay();
-        scheduleWorkers(delay);
+        scheduleWorkers(controller.delay());
     }
 
     /**
-     * Schedule recording workers up to the configured parallelism.
+     * Schedule recording workers up to the controller's worker count.
      *
      * @param delay The delay in ticks before starting each worker
      */
@@ -336,9 +439,10 @@ public class PaperRecordingService implements RecordingService {
             return;
         }
 
+        int workers = controller.workers();
         while (true) {
             int current = activeWorkers.get();
-            if (current >= parallelism) {
+            if (current >= workers) {
                 break;
             }
 
@@ -354,5 +458,6 @@ public class PaperRecordingService implements RecordingService {
     @Override
     public void stop() {
         recordMode = RecordMode.STOPPED;
+        spill.close();
     }
 }
@@ -0,0 +1,230 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
+import org.prism_mc.prism.loader.services.configuration.RecordingConfiguration;
+
+/**
+ * Tunes the recording batch size, worker count and inter-batch delay.
+ *
+ * <p>Uses additive increase, multiplicative decrease. While commits stay under
+ * the target latency and the queue has a backlog, the batch size grows by the
+ * minimum batch size, workers are added one at a time and the delay shortens
+ * one tick at a time. A commit over the target, or a failed commit, halves the
+ * batch size, drops a worker and doubles the delay. Once the queue is caught
+ * up, workers and delay drift back towards their resting values.</p>
+ *
+ * <p>The average commit time trails the batch size, so after a slow commit
+ * backs off, further slow commits are ignored until the average has had a
+ * window of commits to reflect the smaller batches, or has recovered under
+ * the target.</p>
+ *
+ * <p>When adaptive recording is disabled the configured values are returned
+ * unchanged, but commit latency is still tracked for the status report.</p>
+ */
+@Singleton
+public class RecordingController {
+
+    /**
+     * The weight of the newest commit in the average commit time.
+     */
+    private static final double SMOOTHING = 0.25;
+
+    /**
+     * The commits after a back-off before slow commits can back off again. By
+     * then the commits from before the back-off weigh about a tenth of the average.
+     */
+    private static final int BACK_OFF_WINDOW = 8;
+
+    private final ConfigurationService configurationService;
+
+    private int batchSize;
+    private int workers;
+    private long delay;
+    private double avgCommitNanos;
+    private long commits;
+
+    /**
+     * Commits since the last back-off, or -1 if the average has recovered since.
+     */
+    private int commitsSinceBackOff = -1;
+
+    /**
+     * The current controller values.
+     *
+     * @param adaptive Whether the values are being tuned
+     * @param batchSize The maximum number of activities per batch
+     * @param workers The maximum number of parallel recording workers
+     * @param delay The delay (in ticks) between batches
+     * @param avgCommitMillis The smoothed commit time
+     */
+    public record Snapshot(boolean adaptive, int batchSize, int workers, long delay, double avgCommitMillis) {}
+
+    /**
+     * Construct the controller.
+     *
+     * @param configurationService The configuration service
+     */
+    @Inject
+    public RecordingController(ConfigurationService configurationService) {
+        this.configurationService = configurationService;
+
+        RecordingConfiguration config = config();
+        this.batchSize = clampBatchSize(configurationService.storageConfig().primaryDataSource().batchMax());
+        this.workers = 1;
+        this.delay = maxDelay(config);
+    }
+
+    private RecordingConfiguration config() {
+        return configurationService.prismConfig().recording();
+    }
+
+    /**
+     * The maximum number of activities to record per batch.
+     *
+     * @return The batch size
+     */
+    public synchronized int batchSize() {
+        if (!config().adaptive()) {
+            return Math.max(1, configurationService.storageConfig().primaryDataSource().batchMax());
+        }
+
+        batchSize = clampBatchSize(batchSize);
+        return batchSize;
+    }
+
+    /**
+     * The maximum number of parallel recording workers.
+     *
+     * @return The worker count
+     */
+    public synchronized int workers() {
+        RecordingConfiguration config = config();
+        if (!config.adaptive()) {
+            return config.parallelism();
+        }
+
+        workers = Math.max(1, Math.min(config.parallelism(), workers));
+        return workers;
+    }
+
+    /**
+     * The delay (in ticks) before the next batch.
+     *
+     * @return The delay
+     */
+    public synchronized long delay() {
+        RecordingConfiguration config = config();
+        if (!config.adaptive()) {
+            return config.delay();
+        }
+
+        delay = clampDelay(config, delay);
+        return delay;
+    }
+
+    /**
+     * Record a successful batch commit.
+     *
+     * @param count The number of activities committed
+     * @param commitNanos The time spent in the commit
+     * @param queueDepth The number of activities still queued afterward
+     */
+    public synchronized void recordCommit(int count, long commitNanos, int queueDepth) {
+        avgCommitNanos = commits == 0 ? commitNanos : avgCommitNanos + (commitNanos - avgCommitNanos) * SMOOTHING;
+        commits++;
+
+        RecordingConfiguration config = config();
+        if (!config.adaptive()) {
+            return;
+        }
+
+        if (avgCommitNanos > config.adaptiveTargetCommitMs() * 1_000_000d) {
+            // Until the window passes, slow commits are still the last back-off taking effect
+            if (commitsSinceBackOff < 0 || ++commitsSinceBackOff >= BACK_OFF_WINDOW) {
+                backOff(config);
+            }
+
+            return;
+        }
+
+        commitsSinceBackOff = -1;
+
+        if (queueDepth > 0 && count >= batchSize) {
+            // A full batch with more waiting, the database is keeping up so push harder
+            batchSize = clampBatchSize(batchSize + Math.max(1, config.adaptiveMinBatchSize()));
+            delay = clampDelay(config, delay - 1);
+
+            if (queueDepth >= (long) batchSize * workers) {
+                workers = Math.min(config.parallelism(), workers + 1);
+            }
+        } else if (queueDepth == 0) {
+            delay = clampDelay(config, delay + 1);
+            workers = Math.max(1, workers - 1);
+        }
+    }
+
+    /**
+     * Record a failed batch commit.
+     */
+    public synchronized void recordFailure() {
+        RecordingConfiguration config = config();
+        if (config.adaptive()) {
+            backOff(config);
+        }
+    }
+
+    private void backOff(RecordingConfiguration config) {
+        commitsSinceBackOff = 0;
+        batchSize = clampBatchSize(batchSize / 2);
+        workers = Math.max(1, workers - 1);
+        delay = clampDelay(config, Math.max(1, delay * 2));
+    }
+
+    private int clampBatchSize(int size) {
+        RecordingConfiguration config = config();
+        int min = Math.max(1, config.adaptiveMinBatchSize());
+        int max = Math.max(min, config.adaptiveMaxBatchSize());
+
+        return Math.max(min, Math.min(max, size));
+    }
+
+    private long clampDelay(RecordingConfiguration config, long ticks) {
+        long min = Math.max(0, config.adaptiveMinDelay());
+        return Math.max(min, Math.min(maxDelay(config), ticks));
+    }
+
+    private long maxDelay(RecordingConfiguration config) {
+        return Math.max(Math.max(0, config.adaptiveMinDelay()), config.delay());
+    }
+
+    /**
+     * Copy the current values.
+     *
+     * @return The snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(config().adaptive(), batchSize(), workers(), delay(), avgCommitNanos / 1_000_000d);
+    }
+}
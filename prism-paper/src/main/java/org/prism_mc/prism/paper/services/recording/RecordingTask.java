@@ -27,17 +27,11 @@ import org.prism_mc.prism.api.activities.Activity;
 import org.prism_mc.prism.api.services.recording.RecordingService;
 import org.prism_mc.prism.api.storage.ActivityBatch;
 import org.prism_mc.prism.api.storage.StorageAdapter;
-import org.prism_mc.prism.loader.services.configuration.storage.StorageConfiguration;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 import org.prism_mc.prism.paper.services.recording.wal.WalService;
 
 public class RecordingTask implements Runnable {
 
-    /**
-     * The storage config.
-     */
-    private final StorageConfiguration storageConfig;
-
     /**
      * The storage adapter.
      */
@@ -58,28 +52,49 @@ public class RecordingTask implements Runnable {
      */
     private final WalService walService;
 
+    /**
+     * The recording queue.
+     */
+    private final ActivityRingBuffer queue;
+
+    /**
+     * The on-disk overflow for the queue.
+     */
+    private final ActivitySpill spill;
+
+    /**
+     * The batch size and latency controller.
+     */
+    private final RecordingController controller;
+
     /**
      * Construct a new recording task.
      *
-     * @param storageConfig The storage config
      * @param storageAdapter The storage adapter
      * @param recordingService The recording service
      * @param loggingService The logging service
      * @param walService The WAL service
+     * @param queue The recording queue
+     * @param spill The on-disk overflow for the queue
+     * @param controller The batch size and latency controller
      */
     @Inject
     public RecordingTask(
-        StorageConfiguration storageConfig,
         StorageAdapter storageAdapter,
         RecordingService recordingService,
         LoggingService loggingService,
-        WalService walService
+        WalService walService,
+        ActivityRingBuffer queue,
+        ActivitySpill spill,
+        RecordingController controller
     ) {
-        this.storageConfig = storageConfig;
         this.storageAdapter = storageAdapter;
         this.recordingService = recordingService;
         this.loggingService = loggingService;
         this.walService = walService;
+        this.queue = queue;
+        this.spill = spill;
+        this.controller = controller;
     }
 
     @Override
@@ -87,9 +102,7 @@ public class RecordingTask implements Runnable {
         save();
 
         // Schedule the next recording
-        recordingService.queueNextRecording(
-            new RecordingTask(storageConfig, storageAdapter, recordingService, loggingService, walService)
-        );
+        recordingService.queueNextRecording(toNew());
     }
 
     /**
@@ -101,6 +114,8 @@ public class RecordingTask implements Runnable {
         // Reset the drop counter so we only track drops during this cycle
         recordingService.resetDroppedCount();
 
+        spill.flush();
+
         try {
             saveOrThrow();
         } catch (Exception e) {
@@ -121,25 +136,13 @@ public class RecordingTask implements Runnable {
      * @throws Exception If the batch commit fails
      */
     public void saveOrThrow() throws Exception {
-        if (!recordingService.queue().isEmpty()) {
-            int batchMax = storageConfig.primaryDataSource().batchMax();
+        if (!queue.isEmpty()) {
+            int batchMax = controller.batchSize();
 
+            // Drained activities hold contiguous queue sequences, which is all
+            // the WAL needs to track the batch, even with parallel workers
             List<Activity> drained = new ArrayList<>(batchMax);
-            long walBatchId;
-
-            // In always mode the drain and WAL batch registration must be atomic
-            // so the batch id order matches the WAL file order; otherwise, with
-            // parallelism > 1, two workers can register batch ids out of drain
-            // order and the positional checkpoint mis-skips records on replay.
-            if (walService.isAlwaysMode()) {
-                synchronized (walService.orderingLock()) {
-                    recordingService.queue().drainTo(drained, batchMax);
-                    walBatchId = drained.isEmpty() ? -1 : walService.startBatch(drained.size());
-                }
-            } else {
-                recordingService.queue().drainTo(drained, batchMax);
-                walBatchId = walService.startBatch(drained.size());
-            }
+            long firstSequence = queue.drainTo(drained, batchMax);
 
             if (!drained.isEmpty()) {
                 try {
@@ -150,15 +153,23 @@ public class RecordingTask implements Runnable {
                         batch.add(activity);
                     }
 
+                    long start = System.nanoTime();
                     batch.commitBatch();
+                    controller.recordCommit(drained.size(), System.nanoTime() - start, queue.size());
                 } catch (Exception e) {
-                    walService.writeFailedBatch(drained);
+                    controller.recordFailure();
+                    walService.writeFailedBatch(drained, firstSequence);
                     throw e;
                 }
 
-                walService.commitBatch(walBatchId);
+                walService.commitBatch(firstSequence, drained.size());
             }
         }
+
+        // Record spilled activities once the queue has room again
+        if (spill.hasPending() && queue.size() < queue.capacity() / 2) {
+            spill.drain(storageAdapter, controller.batchSize());
+        }
     }
 
     /**
@@ -167,6 +178,14 @@ public class RecordingTask implements Runnable {
      * @return The recording task
      */
     public RecordingTask toNew() {
-        return new RecordingTask(storageConfig, storageAdapter, recordingService, loggingService, walService);
+        return new RecordingTask(
+            storageAdapter,
+            recordingService,
+            loggingService,
+            walService,
+            queue,
+            spill,
+            controller
+        );
     }
 }
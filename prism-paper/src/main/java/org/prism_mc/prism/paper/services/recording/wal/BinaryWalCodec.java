@@ -0,0 +1,503 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import org.prism_mc.prism.api.storage.wal.WalRecord;
+
+/**
+ * A compact binary WAL format.
+ *
+ * <p>The file is a sequence of frames. Each frame is a varint payload length,
+ * a big-endian CRC32C of the payload, then the payload itself. The first byte
+ * of the payload is the frame type.</p>
+ *
+ * <p>Integers are written as (zigzag) varints. Low-cardinality strings such as
+ * world, action, block and player identifiers are interned: the first use
+ * writes the value along with its table index, later uses write only the
+ * index. Because definitions carry their index, skipping a corrupt frame can
+ * never shift the indexes of later definitions.</p>
+ *
+ * <p>A reset frame clears the table. Every encoder writes a reset frame
+ * before its first record, so appending to an existing file never depends
+ * on the table of a previous writer.</p>
+ */
+public class BinaryWalCodec implements WalCodec {
+
+    /**
+     * Frame type that clears the string table.
+     */
+    private static final byte FRAME_RESET = 1;
+
+    /**
+     * Frame type holding a single record.
+     */
+    private static final byte FRAME_RECORD = 2;
+
+    /**
+     * String tag for a null value.
+     */
+    private static final int STRING_NULL = 0;
+
+    /**
+     * String tag for a value that is not added to the table.
+     */
+    private static final int STRING_LITERAL = 1;
+
+    /**
+     * String tag for a value that is added to the table.
+     */
+    private static final int STRING_DEFINE = 2;
+
+    /**
+     * Tags at or above this value reference a table index.
+     */
+    private static final int STRING_REFERENCE = 3;
+
+    /**
+     * Maximum interned strings before the table is reset.
+     */
+    private static final int MAX_TABLE_SIZE = 8192;
+
+    /**
+     * Upper bound on a frame payload, used to detect a corrupt length prefix.
+     */
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public String extension() {
+        return "bin";
+    }
+
+    @Override
+    public Encoder encoder(OutputStream out) {
+        return new BinaryEncoder(out);
+    }
+
+    @Override
+    public Decoder decoder(InputStream in) {
+        return new BinaryDecoder(in);
+    }
+
+    /**
+     * Writes binary frames.
+     */
+    private static class BinaryEncoder implements Encoder {
+
+        private final OutputStream out;
+        private final Map<String, Integer> table = new HashMap<>();
+        private final CRC32C crc = new CRC32C();
+        private byte[] buf = new byte[512];
+        private int pos;
+        private boolean needsReset = true;
+
+        BinaryEncoder(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(WalRecord record) throws IOException {
+            if (needsReset || table.size() >= MAX_TABLE_SIZE) {
+                table.clear();
+                pos = 0;
+                writeByte(FRAME_RESET);
+                writeFrame();
+                needsReset = false;
+            }
+
+            pos = 0;
+            writeByte(FRAME_RECORD);
+            writeVarLong(record.getSequence());
+            writeVarLong(record.getTimestamp());
+            writeVarInt(zigzag(record.getX()));
+            writeVarInt(zigzag(record.getY()));
+            writeVarInt(zigzag(record.getZ()));
+            writeString(record.getWorldUuid(), true);
+            writeString(record.getWorldName(), true);
+            writeString(record.getActionKey(), true);
+            writeString(record.getDescriptor(), false);
+
+            writeString(record.getCauseType(), true);
+            writeString(record.getCausePlayerUuid(), true);
+            writeString(record.getCausePlayerName(), true);
+            writeString(record.getCauseBlockNamespace(), true);
+            writeString(record.getCauseBlockName(), true);
+            writeString(record.getCauseBlockData(), true);
+            writeString(record.getCauseBlockTranslationKey(), true);
+            writeString(record.getCauseEntityType(), true);
+            writeString(record.getCauseEntityTranslationKey(), true);
+            writeString(record.getCauseString(), true);
+
+            writeString(record.getEntityType(), true);
+            writeString(record.getEntityTranslationKey(), true);
+
+            writeString(record.getItemMaterial(), true);
+            writeString(record.getItemData(), false);
+            writeVarInt(zigzag(record.getItemQuantity()));
+            writeString(record.getItemAirtag(), false);
+
+            writeString(record.getBlockNamespace(), true);
+            writeString(record.getBlockName(), true);
+            writeString(record.getBlockData(), true);
+            writeString(record.getBlockTranslationKey(), true);
+
+            writeString(record.getReplacedBlockNamespace(), true);
+            writeString(record.getReplacedBlockName(), true);
+            writeString(record.getReplacedBlockData(), true);
+            writeString(record.getReplacedBlockTranslationKey(), true);
+
+            writeString(record.getAffectedPlayerUuid(), true);
+            writeString(record.getAffectedPlayerName(), true);
+
+            writeString(record.getMetadata(), false);
+            writeVarInt(zigzag(record.getSerializerVersion()));
+            writeString(record.getSerializedData(), false);
+            writeVarInt(record.getExtent());
+
+            writeFrame();
+        }
+
+        /**
+         * Write the buffered payload as a frame.
+         *
+         * @throws IOException If writing fails
+         */
+        private void writeFrame() throws IOException {
+            crc.reset();
+            crc.update(buf, 0, pos);
+            int checksum = (int) crc.getValue();
+
+            int length = pos;
+            while ((length & ~0x7F) != 0) {
+                out.write((length & 0x7F) | 0x80);
+                length >>>= 7;
+            }
+            out.write(length);
+
+            out.write(checksum >>> 24);
+            out.write(checksum >>> 16);
+            out.write(checksum >>> 8);
+            out.write(checksum);
+            out.write(buf, 0, pos);
+        }
+
+        private void writeString(String value, boolean intern) {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+
+            if (intern) {
+                Integer index = table.get(value);
+                if (index != null) {
+                    writeVarInt(STRING_REFERENCE + index);
+                    return;
+                }
+
+                int next = table.size();
+                table.put(value, next);
+                writeVarInt(STRING_DEFINE);
+                writeVarInt(next);
+            } else {
+                writeVarInt(STRING_LITERAL);
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            buf[pos++] = value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        private static int zigzag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+    }
+
+    /**
+     * Reads binary frames.
+     */
+    private static class BinaryDecoder implements Decoder {
+
+        private final InputStream in;
+        private final CRC32C crc = new CRC32C();
+        private final byte[] checksumBytes = new byte[4];
+        private String[] table = new String[64];
+        private byte[] buf = new byte[512];
+        private int pos;
+        private int limit;
+
+        BinaryDecoder(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public WalRecord next() throws IOException {
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    return null;
+                }
+
+                int length = readFrameLength(first);
+                if (length <= 0 || length > MAX_FRAME_LENGTH) {
+                    // A bad length prefix leaves no way to find the next frame
+                    throw new EOFException("Invalid WAL frame length " + length);
+                }
+
+                int checksum = readIntFully();
+                if (buf.length < length) {
+                    buf = new byte[Math.max(length, buf.length * 2)];
+                }
+                readFully(buf, length);
+
+                crc.reset();
+                crc.update(buf, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    throw new CorruptRecordException("WAL frame checksum mismatch");
+                }
+
+                pos = 0;
+                limit = length;
+                byte type = buf[pos++];
+                if (type == FRAME_RESET) {
+                    Arrays.fill(table, null);
+                    continue;
+                }
+
+                if (type != FRAME_RECORD) {
+                    throw new CorruptRecordException("Unknown WAL frame type " + type);
+                }
+
+                try {
+                    return readRecord();
+                } catch (IndexOutOfBoundsException e) {
+                    throw new CorruptRecordException("Malformed WAL record");
+                }
+            }
+        }
+
+        private WalRecord readRecord() throws CorruptRecordException {
+            WalRecord record = new WalRecord();
+            record.setSequence(readVarLong());
+            record.setTimestamp(readVarLong());
+            record.setX(unzigzag(readVarInt()));
+            record.setY(unzigzag(readVarInt()));
+            record.setZ(unzigzag(readVarInt()));
+            record.setWorldUuid(readString());
+            record.setWorldName(readString());
+            record.setActionKey(readString());
+            record.setDescriptor(readString());
+
+            record.setCauseType(readString());
+            record.setCausePlayerUuid(readString());
+            record.setCausePlayerName(readString());
+            record.setCauseBlockNamespace(readString());
+            record.setCauseBlockName(readString());
+            record.setCauseBlockData(readString());
+            record.setCauseBlockTranslationKey(readString());
+            record.setCauseEntityType(readString());
+            record.setCauseEntityTranslationKey(readString());
+            record.setCauseString(readString());
+
+            record.setEntityType(readString());
+            record.setEntityTranslationKey(readString());
+
+            record.setItemMaterial(readString());
+            record.setItemData(readString());
+            record.setItemQuantity(unzigzag(readVarInt()));
+            record.setItemAirtag(readString());
+
+            record.setBlockNamespace(readString());
+            record.setBlockName(readString());
+            record.setBlockData(readString());
+            record.setBlockTranslationKey(readString());
+
+            record.setReplacedBlockNamespace(readString());
+            record.setReplacedBlockName(readString());
+            record.setReplacedBlockData(readString());
+            record.setReplacedBlockTranslationKey(readString());
+
+            record.setAffectedPlayerUuid(readString());
+            record.setAffectedPlayerName(readString());
+
+            record.setMetadata(readString());
+            record.setSerializerVersion((short) unzigzag(readVarInt()));
+            record.setSerializedData(readString());
+
+            // Records written before block groups carried an extent end here
+            if (pos < limit) {
+                record.setExtent(readVarInt());
+            }
+
+            if (pos != limit) {
+                throw new CorruptRecordException("Trailing bytes in WAL record");
+            }
+
+            return record;
+        }
+
+        private String readString() throws CorruptRecordException {
+            int tag = readVarInt();
+            if (tag == STRING_NULL) {
+                return null;
+            }
+
+            if (tag >= STRING_REFERENCE) {
+                int index = tag - STRING_REFERENCE;
+                if (index >= table.length || table[index] == null) {
+                    throw new CorruptRecordException("Unknown WAL string reference " + index);
+                }
+
+                return table[index];
+            }
+
+            int index = tag == STRING_DEFINE ? readVarInt() : -1;
+            if (tag == STRING_DEFINE && (index < 0 || index > MAX_FRAME_LENGTH)) {
+                throw new CorruptRecordException("Malformed WAL string index");
+            }
+
+            int length = readVarInt();
+            if (length < 0 || pos + length > limit) {
+                throw new CorruptRecordException("Malformed WAL string");
+            }
+
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+
+            if (index >= 0) {
+                if (index >= table.length) {
+                    table = Arrays.copyOf(table, Math.max(index + 1, table.length * 2));
+                }
+
+                table[index] = value;
+            }
+
+            return value;
+        }
+
+        private int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (pos >= limit || shift > 63) {
+                    throw new IndexOutOfBoundsException();
+                }
+
+                b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return value;
+        }
+
+        private int readFrameLength(int first) throws IOException {
+            int value = first & 0x7F;
+            int shift = 7;
+            int b = first;
+            while ((b & 0x80) != 0) {
+                if (shift > 28) {
+                    return -1;
+                }
+
+                b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Truncated WAL frame length");
+                }
+
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+
+            return value;
+        }
+
+        private int readIntFully() throws IOException {
+            readFully(checksumBytes, 4);
+
+            return (
+                ((checksumBytes[0] & 0xFF) << 24) |
+                ((checksumBytes[1] & 0xFF) << 16) |
+                ((checksumBytes[2] & 0xFF) << 8) |
+                (checksumBytes[3] & 0xFF)
+            );
+        }
+
+        private void readFully(byte[] target, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                int n = in.read(target, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("Truncated WAL frame");
+                }
+
+                read += n;
+            }
+        }
+
+        private static int unzigzag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.prism_mc.prism.api.storage.wal.WalRecord;
+
+/**
+ * The original WAL format: one JSON object per line.
+ *
+ * <p>Kept so WAL files written by older versions can still be replayed.</p>
+ */
+public class JsonWalCodec implements WalCodec {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public String extension() {
+        return "jsonl";
+    }
+
+    @Override
+    public Encoder encoder(OutputStream out) {
+        return record -> {
+            out.write(objectMapper.writeValueAsBytes(record));
+            out.write('\n');
+        };
+    }
+
+    @Override
+    public Decoder decoder(InputStream in) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        return () -> {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    return objectMapper.readValue(line, WalRecord.class);
+                } catch (IOException e) {
+                    throw new CorruptRecordException(e.getMessage());
+                }
+            }
+
+            return null;
+        };
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A tiny memory-mapped file holding the commit position of the always-mode writer.
+ *
+ * <p>The position is updated in place on every commit instead of rewriting a
+ * checkpoint file. Writes to the mapping survive a JVM crash as soon as they
+ * are made; they reach stable storage when {@link #force()} is called or when
+ * the OS writes the page back.</p>
+ *
+ * <p>The file holds two slots that are written alternately. Each slot carries
+ * a generation and a checksum, so a torn write of one slot falls back to the
+ * previous position in the other.</p>
+ */
+class WalCheckpointSlot {
+
+    static final String FILE = "wal.slot";
+
+    private static final int SLOT_SIZE = 32;
+    private static final long CHECKSUM_SEED = 0x5052534D57414C31L;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long generation;
+
+    /**
+     * The segment and commit position held by a slot.
+     *
+     * @param segmentIndex The segment index
+     * @param committed The sequence below which every record in that segment is committed
+     * @param generation The write generation
+     */
+    record Position(long segmentIndex, long committed, long generation) {}
+
+    private WalCheckpointSlot(FileChannel channel, MappedByteBuffer buffer, long generation) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.generation = generation;
+    }
+
+    /**
+     * Open (creating if needed) the slot file in the WAL directory.
+     *
+     * @param walDir The WAL directory
+     * @return The slot
+     * @throws IOException If the file cannot be mapped
+     */
+    static WalCheckpointSlot open(Path walDir) throws IOException {
+        Position position = read(walDir);
+
+        FileChannel channel = FileChannel.open(
+            walDir.resolve(FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SLOT_SIZE * 2);
+
+        return new WalCheckpointSlot(channel, buffer, position != null ? position.generation() : 0);
+    }
+
+    /**
+     * Read the latest valid position from the slot file.
+     *
+     * @param walDir The WAL directory
+     * @return The position, or null if there is no valid slot
+     * @throws IOException If the file cannot be read
+     */
+    static Position read(Path walDir) throws IOException {
+        Path file = walDir.resolve(FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < SLOT_SIZE * 2) {
+            return null;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        Position first = readSlot(data, 0);
+        Position second = readSlot(data, SLOT_SIZE);
+
+        if (first == null) {
+            return second;
+        }
+
+        if (second == null) {
+            return first;
+        }
+
+        return first.generation() >= second.generation() ? first : second;
+    }
+
+    /**
+     * Update the position in place.
+     *
+     * @param segmentIndex The segment index
+     * @param committed The sequence below which every record in that segment is committed
+     */
+    void write(long segmentIndex, long committed) {
+        generation++;
+        int offset = (int) (generation & 1) * SLOT_SIZE;
+
+        buffer.putLong(offset, segmentIndex);
+        buffer.putLong(offset + 8, committed);
+        buffer.putLong(offset + 16, generation);
+        buffer.putLong(offset + 24, checksum(segmentIndex, committed, generation));
+    }
+
+    /**
+     * Force the mapped slot to stable storage.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Force the slot and close the file channel.
+     *
+     * @throws IOException If the channel cannot be closed
+     */
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private static Position readSlot(ByteBuffer data, int offset) {
+        long segmentIndex = data.getLong(offset);
+        long committed = data.getLong(offset + 8);
+        long generation = data.getLong(offset + 16);
+
+        if (generation <= 0 || data.getLong(offset + 24) != checksum(segmentIndex, committed, generation)) {
+            return null;
+        }
+
+        return new Position(segmentIndex, committed, generation);
+    }
+
+    private static long checksum(long segmentIndex, long committed, long generation) {
+        long hash = CHECKSUM_SEED;
+        hash = (hash ^ segmentIndex) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ committed) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ generation) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import org.prism_mc.prism.api.storage.wal.WalRecord;
+
+/**
+ * Encodes and decodes WAL records to and from a WAL file.
+ *
+ * <p>Each codec owns its own file extension, so the format of an existing
+ * WAL segment is known without inspecting its contents.</p>
+ */
+public interface WalCodec {
+    /**
+     * All known codecs, in detection order.
+     */
+    List<WalCodec> CODECS = List.of(new BinaryWalCodec(), new JsonWalCodec());
+
+    /**
+     * The codec name, as used in the configuration.
+     *
+     * @return The name
+     */
+    String name();
+
+    /**
+     * The file extension of WAL segments this codec reads and writes.
+     *
+     * @return The file extension
+     */
+    String extension();
+
+    /**
+     * Create an encoder writing to the given stream.
+     *
+     * @param out The output stream
+     * @return The encoder
+     */
+    Encoder encoder(OutputStream out);
+
+    /**
+     * Create a decoder reading from the given stream.
+     *
+     * @param in The input stream
+     * @return The decoder
+     */
+    Decoder decoder(InputStream in);
+
+    /**
+     * Get a codec by its configured name, falling back to the binary codec.
+     *
+     * @param name The codec name
+     * @return The codec
+     */
+    static WalCodec forName(String name) {
+        for (WalCodec codec : CODECS) {
+            if (codec.name().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+
+        return CODECS.getFirst();
+    }
+
+    /**
+     * Get a codec by its file extension.
+     *
+     * @param extension The file extension
+     * @return The codec, or null if the extension is unknown
+     */
+    static WalCodec forExtension(String extension) {
+        for (WalCodec codec : CODECS) {
+            if (codec.extension().equals(extension)) {
+                return codec;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes records to a single WAL file. Not thread-safe.
+     */
+    interface Encoder {
+        /**
+         * Encode a record into the underlying stream.
+         *
+         * @param record The record
+         * @throws IOException If writing fails
+         */
+        void write(WalRecord record) throws IOException;
+    }
+
+    /**
+     * Reads records from a single WAL file. Not thread-safe.
+     */
+    interface Decoder {
+        /**
+         * Decode the next record.
+         *
+         * @return The record, or null at the end of the file
+         * @throws CorruptRecordException If the next record is corrupt but can be skipped
+         * @throws java.io.EOFException If the file ends with a partially written record
+         * @throws IOException If reading fails
+         */
+        WalRecord next() throws IOException;
+    }
+
+    /**
+     * Thrown when a single record fails validation. The decoder remains
+     * positioned at the following record, so reading may continue.
+     */
+    class CorruptRecordException extends IOException {
+
+        /**
+         * Construct a new exception.
+         *
+         * @param message The message
+         */
+        public CorruptRecordException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+/**
+ * Latency counters for the WAL flush thread.
+ *
+ * <p>Flush time covers encoding and writing buffered records to the OS. Sync
+ * time covers the fsync, which depends on the configured durability level.</p>
+ */
+public class WalFlushMetrics {
+
+    private long flushes;
+    private long records;
+    private long totalFlushNanos;
+    private long maxFlushNanos;
+    private long syncs;
+    private long totalSyncNanos;
+    private long maxSyncNanos;
+
+    /**
+     * A point-in-time copy of the counters.
+     *
+     * @param flushes The number of flushes that wrote records
+     * @param records The number of records written
+     * @param avgFlushMillis The average flush time
+     * @param maxFlushMillis The slowest flush time
+     * @param syncs The number of fsyncs
+     * @param avgSyncMillis The average fsync time
+     * @param maxSyncMillis The slowest fsync time
+     */
+    public record Snapshot(
+        long flushes,
+        long records,
+        double avgFlushMillis,
+        double maxFlushMillis,
+        long syncs,
+        double avgSyncMillis,
+        double maxSyncMillis
+    ) {}
+
+    /**
+     * Record a flush.
+     *
+     * @param recordCount The number of records written
+     * @param flushNanos The time spent writing
+     */
+    synchronized void recordFlush(int recordCount, long flushNanos) {
+        flushes++;
+        records += recordCount;
+        totalFlushNanos += flushNanos;
+        maxFlushNanos = Math.max(maxFlushNanos, flushNanos);
+    }
+
+    /**
+     * Record an fsync.
+     *
+     * @param syncNanos The time spent syncing
+     */
+    synchronized void recordSync(long syncNanos) {
+        syncs++;
+        totalSyncNanos += syncNanos;
+        maxSyncNanos = Math.max(maxSyncNanos, syncNanos);
+    }
+
+    /**
+     * Copy the current counters.
+     *
+     * @return The snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(
+            flushes,
+            records,
+            flushes > 0 ? totalFlushNanos / (flushes * 1_000_000d) : 0,
+            maxFlushNanos / 1_000_000d,
+            syncs,
+            syncs > 0 ? totalSyncNanos / (syncs * 1_000_000d) : 0,
+            maxSyncNanos / 1_000_000d
+        );
+    }
+}
@@ -20,12 +20,13 @@
 
 package org.prism_mc.prism.paper.services.recording.wal;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.prism_mc.prism.api.storage.wal.WalRecord;
@@ -36,12 +37,8 @@ import org.prism_mc.prism.loader.services.logging.LoggingService;
  */
 public class WalReader {
 
-    private static final String WAL_FILE = "wal.jsonl";
-    private static final String CHECKPOINT_FILE = "wal.checkpoint";
     private static final String CLEAN_MARKER_FILE = "wal.clean";
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     /**
      * Check whether the previous shutdown was clean.
      *
@@ -53,75 +50,186 @@ public class WalReader {
     }
 
     /**
-     * Check whether a WAL file exists in the directory.
+     * List the WAL segments in the directory, oldest first.
      *
      * @param walDir The WAL directory
-     * @return True if a WAL file exists
+     * @param loggingService The logging service
+     * @return The segments, or empty if none
      */
-    public boolean walFileExists(Path walDir) {
-        return Files.exists(walDir.resolve(WAL_FILE));
+    public List<WalSegment> segments(Path walDir, LoggingService loggingService) {
+        try {
+            return WalSegment.list(walDir);
+        } catch (IOException e) {
+            loggingService.handleException(e);
+            return Collections.emptyList();
+        }
     }
 
     /**
-     * Read uncommitted records from the WAL directory.
+     * Open a segment for streaming its uncommitted records.
+     *
+     * @param segment The segment
+     * @param loggingService The logging service
+     * @return The segment reader, which skips the committed records
+     * @throws IOException If the segment cannot be opened
+     */
+    public SegmentReader open(WalSegment segment, LoggingService loggingService) throws IOException {
+        long committed = Math.max(readCheckpoint(segment, loggingService), readSlot(segment, loggingService));
+        return new SegmentReader(segment, committed, loggingService);
+    }
+
+    /**
+     * Count the uncommitted records across all segments without holding them in memory.
      *
      * @param walDir The WAL directory
      * @param loggingService The logging service
-     * @return The list of uncommitted records, or empty if none
+     * @return The number of uncommitted records
      */
-    public List<WalRecord> readUncommitted(Path walDir, LoggingService loggingService) {
-        Path walFile = walDir.resolve(WAL_FILE);
-        if (!Files.exists(walFile)) {
-            return Collections.emptyList();
+    public long countUncommitted(Path walDir, LoggingService loggingService) {
+        long count = 0;
+        for (WalSegment segment : segments(walDir, loggingService)) {
+            try (SegmentReader reader = open(segment, loggingService)) {
+                while (reader.next() != null) {
+                    count++;
+                }
+            } catch (IOException e) {
+                loggingService.handleException(e);
+            }
         }
 
-        long committed = readCheckpoint(walDir, loggingService);
+        return count;
+    }
 
-        List<WalRecord> allRecords = new ArrayList<>();
+    /**
+     * Read the checkpoint value from a segment's checkpoint file.
+     *
+     * @param segment The segment
+     * @param loggingService The logging service
+     * @return The checkpoint value, or 0 if no checkpoint exists
+     */
+    private long readCheckpoint(WalSegment segment, LoggingService loggingService) {
         try {
-            List<String> lines = Files.readAllLines(walFile, StandardCharsets.UTF_8);
-            for (String line : lines) {
-                if (line.isBlank()) {
-                    continue;
-                }
+            return segment.readCheckpoint();
+        } catch (IOException | NumberFormatException e) {
+            loggingService.warn("Failed to read WAL checkpoint, assuming 0: {0}", e.getMessage());
+            return 0;
+        }
+    }
 
-                try {
-                    allRecords.add(objectMapper.readValue(line, WalRecord.class));
-                } catch (IOException e) {
-                    loggingService.warn("Skipping corrupt WAL entry: {0}", e.getMessage());
-                }
+    /**
+     * Read the commit position the checkpoint slot holds for a segment.
+     *
+     * <p>The slot only tracks the oldest live segment of the always-mode
+     * writer; every other segment relies on its checkpoint file.</p>
+     *
+     * @param segment The segment
+     * @param loggingService The logging service
+     * @return The commit position, or 0 if the slot doesn't cover the segment
+     */
+    private long readSlot(WalSegment segment, LoggingService loggingService) {
+        try {
+            WalCheckpointSlot.Position position = WalCheckpointSlot.read(segment.path().getParent());
+            if (position != null && position.segmentIndex() == segment.index()) {
+                return position.committed();
             }
         } catch (IOException e) {
-            loggingService.handleException(e);
-            return Collections.emptyList();
-        }
-
-        if (committed >= allRecords.size()) {
-            return Collections.emptyList();
+            loggingService.warn("Failed to read WAL checkpoint slot, ignoring it: {0}", e.getMessage());
         }
 
-        return allRecords.subList((int) committed, allRecords.size());
+        return 0;
     }
 
     /**
-     * Read the checkpoint value from the checkpoint file.
-     *
-     * @param walDir The WAL directory
-     * @param loggingService The logging service
-     * @return The committed count, or 0 if no checkpoint exists
+     * Streams the uncommitted records of a single segment.
      */
-    private long readCheckpoint(Path walDir, LoggingService loggingService) {
-        Path checkpointFile = walDir.resolve(CHECKPOINT_FILE);
-        if (!Files.exists(checkpointFile)) {
-            return 0;
+    public static class SegmentReader implements Closeable {
+
+        private final WalSegment segment;
+        private final long committed;
+        private final LoggingService loggingService;
+        private final InputStream in;
+        private final WalCodec.Decoder decoder;
+        private long position;
+        private long checkpoint;
+
+        /**
+         * Open a reader over the segment.
+         *
+         * @param segment The segment
+         * @param committed The segment's commit position
+         * @param loggingService The logging service
+         * @throws IOException If the segment cannot be opened
+         */
+        SegmentReader(WalSegment segment, long committed, LoggingService loggingService) throws IOException {
+            this.segment = segment;
+            this.committed = committed;
+            this.checkpoint = committed;
+            this.loggingService = loggingService;
+            this.in = new BufferedInputStream(Files.newInputStream(segment.path()), 64 * 1024);
+            this.decoder = segment.codec().decoder(in);
         }
 
-        try {
-            String content = Files.readString(checkpointFile, StandardCharsets.UTF_8).trim();
-            return Long.parseLong(content);
-        } catch (IOException | NumberFormatException e) {
-            loggingService.warn("Failed to read WAL checkpoint, assuming 0: {0}", e.getMessage());
-            return 0;
+        /**
+         * Read the next uncommitted record, skipping committed and corrupt ones.
+         *
+         * @return The record, or null at the end of the segment
+         * @throws IOException If reading fails
+         */
+        public WalRecord next() throws IOException {
+            while (true) {
+                try {
+                    WalRecord record = decoder.next();
+                    if (record == null) {
+                        return null;
+                    }
+
+                    position++;
+                    if (segment.legacy()) {
+                        if (position <= committed) {
+                            continue;
+                        }
+
+                        checkpoint = position;
+                    } else {
+                        if (record.getSequence() < committed) {
+                            continue;
+                        }
+
+                        checkpoint = record.getSequence() + 1;
+                    }
+
+                    return record;
+                } catch (WalCodec.CorruptRecordException e) {
+                    loggingService.warn("Skipping corrupt WAL entry: {0}", e.getMessage());
+                } catch (EOFException e) {
+                    // A crash mid-flush can leave a partial record at the tail
+                    loggingService.warn("Ignoring truncated WAL entry: {0}", e.getMessage());
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * The commit position to checkpoint once every record returned so far is committed.
+         *
+         * @return The checkpoint value
+         */
+        public long checkpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * The segment being read.
+         *
+         * @return The segment
+         */
+        public WalSegment segment() {
+            return segment;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
         }
     }
 }
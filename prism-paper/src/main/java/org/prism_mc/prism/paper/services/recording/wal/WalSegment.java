@@ -0,0 +1,160 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A single WAL segment file and its checkpoint file.
+ *
+ * <p>Segments are named {@code wal-<index>.<extension>} and are replayed in
+ * index order. Records within a segment are in sequence order and the
+ * checkpoint file holds a sequence below which every record is already
+ * committed. The single-file WAL written by older versions
+ * ({@code wal.<extension>} with {@code wal.checkpoint}) is treated as a
+ * segment that sorts before all others; its checkpoint holds how many
+ * leading records are committed.</p>
+ *
+ * @param index The segment index, or -1 for a legacy single-file WAL
+ * @param path The segment file
+ * @param checkpoint The checkpoint file
+ * @param codec The codec the segment was written with
+ */
+public record WalSegment(long index, Path path, Path checkpoint, WalCodec codec) {
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("wal-(\\d+)\\.(\\w+)");
+    private static final String LEGACY_CHECKPOINT_FILE = "wal.checkpoint";
+
+    /**
+     * Create a new segment descriptor.
+     *
+     * @param walDir The WAL directory
+     * @param index The segment index
+     * @param codec The codec
+     * @return The segment
+     */
+    public static WalSegment of(Path walDir, long index, WalCodec codec) {
+        String base = String.format("wal-%016d", index);
+        return new WalSegment(
+            index,
+            walDir.resolve(base + "." + codec.extension()),
+            walDir.resolve(base + ".checkpoint"),
+            codec
+        );
+    }
+
+    /**
+     * List all segments in the WAL directory, oldest first.
+     *
+     * @param walDir The WAL directory
+     * @return The segments
+     * @throws IOException If the directory cannot be listed
+     */
+    public static List<WalSegment> list(Path walDir) throws IOException {
+        List<WalSegment> segments = new ArrayList<>();
+        if (!Files.isDirectory(walDir)) {
+            return segments;
+        }
+
+        for (WalCodec codec : WalCodec.CODECS) {
+            Path legacy = walDir.resolve("wal." + codec.extension());
+            if (Files.exists(legacy)) {
+                segments.add(new WalSegment(-1, legacy, walDir.resolve(LEGACY_CHECKPOINT_FILE), codec));
+            }
+        }
+
+        try (Stream<Path> files = Files.list(walDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_PATTERN.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+
+                WalCodec codec = WalCodec.forExtension(matcher.group(2));
+                if (codec != null) {
+                    segments.add(of(walDir, Long.parseLong(matcher.group(1)), codec));
+                }
+            }
+        }
+
+        segments.sort(Comparator.comparingLong(WalSegment::index));
+        return segments;
+    }
+
+    /**
+     * Whether this is the single-file WAL of an older version.
+     *
+     * @return True if the checkpoint is a record count rather than a sequence
+     */
+    public boolean legacy() {
+        return index < 0;
+    }
+
+    /**
+     * Read the commit position of this segment.
+     *
+     * @return The checkpoint value, or 0 if no checkpoint exists
+     * @throws IOException If the checkpoint cannot be read
+     * @throws NumberFormatException If the checkpoint is malformed
+     */
+    public long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+
+        return Long.parseLong(Files.readString(checkpoint, StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * Record the commit position of this segment.
+     *
+     * @param committed The checkpoint value
+     * @throws IOException If the checkpoint cannot be written
+     */
+    public void writeCheckpoint(long committed) throws IOException {
+        Files.writeString(
+            checkpoint,
+            Long.toString(committed),
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        );
+    }
+
+    /**
+     * Delete the segment file and its checkpoint.
+     *
+     * @throws IOException If a file cannot be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(checkpoint);
+    }
+}
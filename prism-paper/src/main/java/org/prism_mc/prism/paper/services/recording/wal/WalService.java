@@ -27,8 +27,8 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -79,14 +79,6 @@ public class WalService {
     private ScheduledFuture<?> flushTask;
     private boolean initialized;
 
-    /**
-     * Guards the (queue offer + WAL append) and (queue drain + WAL startBatch)
-     * pairs so the WAL file order, queue/drain order, and batch-id order stay
-     * aligned. Only used in "always" mode, where the checkpoint is positional
-     * and would otherwise mis-skip records under concurrent producers/drainers.
-     */
-    private final Object orderingLock = new Object();
-
     /**
      * Construct the WAL service.
      *
@@ -128,14 +120,53 @@ public class WalService {
     }
 
     /**
-     * The lock callers hold to keep queue offer/drain ordered with respect to
-     * WAL append/startBatch. Only meaningful in "always" mode; see
-     * {@link #orderingLock}.
+     * The codec used for new WAL files.
+     *
+     * @return The configured WAL codec
+     */
+    private WalCodec codec() {
+        return WalCodec.forName(configurationService.prismConfig().recording().walCodec());
+    }
+
+    /**
+     * Create a writer for a new WAL segment using the configured codec and segment size.
+     *
+     * @return The WAL writer
+     */
+    private WalWriter newWriter() {
+        var recordingConfig = configurationService.prismConfig().recording();
+        long segmentMaxBytes = recordingConfig.walSegmentSizeMb() * 1024L * 1024L;
+
+        return new WalWriter(
+            walDir,
+            codec(),
+            Math.max(1024 * 1024, segmentMaxBytes),
+            durability(),
+            Math.max(0, recordingConfig.walSyncIntervalMs()),
+            loggingService
+        );
+    }
+
+    /**
+     * The durability level of the always-mode writer.
+     *
+     * @return The configured durability level
+     */
+    public WalWriter.Durability durability() {
+        return WalWriter.Durability.forName(configurationService.prismConfig().recording().walDurability());
+    }
+
+    /**
+     * The flush latency counters of the always-mode writer.
      *
-     * @return The ordering lock
+     * @return The flush metrics, or null if the always-mode writer isn't running
      */
-    public Object orderingLock() {
-        return orderingLock;
+    public WalFlushMetrics.Snapshot flushMetrics() {
+        if (!initialized || !isAlwaysMode()) {
+            return null;
+        }
+
+        return walWriter.metrics().snapshot();
     }
 
     /**
@@ -161,7 +192,7 @@ public class WalService {
      */
     private void initializeAlwaysMode() {
         try {
-            walWriter = new WalWriter(walDir, loggingService);
+            walWriter = newWriter();
             walWriter.initialize();
             initialized = true;
 
@@ -178,7 +209,12 @@ public class WalService {
                 TimeUnit.MILLISECONDS
             );
 
-            loggingService.info("WAL initialized (always mode, flush interval: {0}ms)", flushInterval);
+            loggingService.info(
+                "WAL initialized (always mode, {0} codec, {1} durability, flush interval: {2}ms)",
+                codec().name(),
+                durability().name().toLowerCase(),
+                flushInterval
+            );
         } catch (IOException e) {
             loggingService.handleException(e);
             loggingService.error("Failed to initialize WAL, continuing without write-ahead log");
@@ -190,72 +226,74 @@ public class WalService {
      * Serialize an activity to a WAL record and append it to the buffer.
      * Only active in "always" mode; no-op in "on-demand" mode.
      *
+     * <p>The sequence is the activity's position in the recording queue, so
+     * the WAL is written in queue order without any shared lock.</p>
+     *
      * @param activity The activity to write
+     * @param sequence The activity's queue sequence
      */
-    public void append(Activity activity) {
+    public void append(Activity activity, long sequence) {
         if (!initialized || !isAlwaysMode()) {
             return;
         }
 
         try {
-            WalRecord record = serialize(activity);
-            walWriter.append(record);
+            walWriter.append(serialize(activity), sequence);
         } catch (Exception e) {
+            walWriter.skip(sequence);
             loggingService.handleException(e);
         }
     }
 
     /**
-     * Register a new batch that is about to be committed to the database.
+     * Mark a drained batch as committed after a successful database write.
      * Only active in "always" mode.
      *
-     * @param entryCount The number of entries in this batch
-     * @return The batch ID, or -1 if not applicable
+     * @param firstSequence The queue sequence of the first activity in the batch
+     * @param count The number of activities in the batch
      */
-    public long startBatch(int entryCount) {
+    public void commitBatch(long firstSequence, int count) {
         if (!initialized || !isAlwaysMode()) {
-            return -1;
-        }
-
-        return walWriter.startBatch(entryCount);
-    }
-
-    /**
-     * Mark a batch as committed after a successful database write.
-     * Only active in "always" mode.
-     *
-     * @param batchId The batch ID from {@link #startBatch(int)}
-     */
-    public void commitBatch(long batchId) {
-        if (!initialized || !isAlwaysMode() || batchId < 0) {
             return;
         }
 
-        walWriter.commitBatch(batchId);
+        walWriter.commitBatch(firstSequence, count);
     }
 
     /**
      * Write a batch of activities to the WAL after a database commit failure.
-     * Used by "on-demand" mode to capture failed batches that have already
-     * been drained from the queue.
+     *
+     * <p>In "on-demand" mode this captures failed batches that have already
+     * been drained from the queue. In "always" mode the batch is already in the
+     * WAL, but an uncommitted range would hold the checkpoint back and keep every
+     * later segment on disk until a restart. The batch is copied to a segment of
+     * its own instead, which is replayed on the next start, and its range is
+     * committed so the checkpoint moves past it.</p>
      *
      * @param activities The activities that failed to commit
+     * @param firstSequence The queue sequence of the first activity in the batch
      */
-    public void writeFailedBatch(List<Activity> activities) {
+    public void writeFailedBatch(List<Activity> activities, long firstSequence) {
         if (!initialized || activities.isEmpty()) {
             return;
         }
 
-        // In always mode, these activities are already in the WAL
-        if (isAlwaysMode()) {
+        if (!writeActivitiesToWal(activities)) {
             return;
         }
 
-        writeActivitiesToWal(activities);
-        loggingService.warn(
-            "Database commit failed, {0} activities saved to disk for replay on next start.",
-            activities.size()
-        );
+        if (isAlwaysMode()) {
+            walWriter.commitBatch(firstSequence, activities.size());
+            loggingService.warn(
+                "Database commit failed, {0} activities moved to a separate WAL segment for replay on next start.",
+                activities.size()
+            );
+        } else {
+            loggingService.warn(
+                "Database commit failed, {0} activities saved to disk for replay on next start.",
+                activities.size()
+            );
+        }
     }
 
     /**
@@ -264,7 +302,7 @@ public class WalService {
      *
      * @param queue The recording queue to drain
      */
-    public void writeRemainingQueue(LinkedBlockingQueue<Activity> queue) {
+    public void writeRemainingQueue(Queue<Activity> queue) {
         if (!initialized || queue.isEmpty()) {
             return;
         }
@@ -275,7 +313,10 @@ public class WalService {
         }
 
         List<Activity> remaining = new ArrayList<>();
-        queue.drainTo(remaining);
+        Activity activity;
+        while ((activity = queue.poll()) != null) {
+            remaining.add(activity);
+        }
 
         if (!remaining.isEmpty()) {
             writeActivitiesToWal(remaining);
@@ -286,10 +327,11 @@ public class WalService {
      * Serialize and write a list of activities to the WAL file immediately.
      *
      * @param activities The activities to write
+     * @return True if the activities were written
      */
-    private void writeActivitiesToWal(List<Activity> activities) {
+    private boolean writeActivitiesToWal(List<Activity> activities) {
         try {
-            WalWriter onDemandWriter = new WalWriter(walDir, loggingService);
+            WalWriter onDemandWriter = newWriter();
             onDemandWriter.initialize();
 
             for (Activity activity : activities) {
@@ -298,9 +340,13 @@ public class WalService {
 
             onDemandWriter.flush();
             onDemandWriter.close();
+
+            return true;
         } catch (IOException e) {
             loggingService.handleException(e);
             loggingService.error("Failed to write activities to WAL");
+
+            return false;
         }
     }
 
@@ -328,6 +374,11 @@ public class WalService {
      * shutdown marker. Since activities are continuously written to disk,
      * the WAL provides a complete record suitable for crash recovery.</p>
      *
+     * <p>Segments are streamed oldest first and committed in batches of at
+     * most {@code batchMax} records. The segment checkpoint advances after
+     * every batch and a segment is deleted once fully replayed, so a replay
+     * that fails part way resumes where it stopped.</p>
+     *
      * @param storageAdapter The storage adapter to replay into
      */
     public void replayUncommitted(StorageAdapter storageAdapter) {
@@ -336,53 +387,97 @@ public class WalService {
         }
 
         WalReader reader = new WalReader();
+        List<WalSegment> segments = reader.segments(walDir, loggingService);
 
-        if (!reader.walFileExists(walDir)) {
+        if (segments.isEmpty()) {
             cleanupFiles();
             return;
         }
 
         if (!isAlwaysMode() && !reader.wasCleanShutdown(walDir)) {
-            List<WalRecord> uncommitted = reader.readUncommitted(walDir, loggingService);
+            long uncommitted = reader.countUncommitted(walDir, loggingService);
             loggingService.warn(
                 "Discarding {0} WAL entries due to unclean shutdown. " +
                 "World state may have reverted to last auto-save, " +
                 "so these activities cannot be safely replayed.",
-                uncommitted.size()
+                uncommitted
             );
             cleanupFiles();
             return;
         }
 
-        List<WalRecord> uncommitted = reader.readUncommitted(walDir, loggingService);
+        int batchSize = Math.max(1, configurationService.storageConfig().primaryDataSource().batchMax());
+        long recovered = 0;
 
-        if (uncommitted.isEmpty()) {
-            cleanupFiles();
-            return;
+        for (WalSegment segment : segments) {
+            try (WalReader.SegmentReader segmentReader = reader.open(segment, loggingService)) {
+                recovered += replaySegment(storageAdapter, segmentReader, batchSize);
+            } catch (Exception e) {
+                loggingService.handleException(e);
+                loggingService.error(
+                    "WAL replay failed (database may be unavailable) after recovering {0} activities; " +
+                    "keeping the remaining WAL entries for retry on next start.",
+                    recovered
+                );
+                return;
+            }
+
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                loggingService.handleException(e);
+            }
         }
 
-        loggingService.info("Replaying {0} uncommitted WAL entries...", uncommitted.size());
+        if (recovered > 0) {
+            loggingService.info("WAL replay complete, {0} activities recovered", recovered);
+        }
 
-        try {
-            ActivityBatch batch = storageAdapter.createActivityBatch();
-            batch.startBatch();
+        cleanupFiles();
+    }
 
-            for (WalRecord record : uncommitted) {
-                batch.addFromWalRecord(record);
+    /**
+     * Stream the uncommitted records of a segment into the database in bounded batches.
+     *
+     * @param storageAdapter The storage adapter
+     * @param segmentReader The segment reader
+     * @param batchSize The maximum records per batch
+     * @return The number of records replayed
+     * @throws Exception If a batch fails to commit
+     */
+    private long replaySegment(StorageAdapter storageAdapter, WalReader.SegmentReader segmentReader, int batchSize)
+        throws Exception {
+        List<WalRecord> pending = new ArrayList<>(batchSize);
+        long replayed = 0;
+
+        WalRecord record;
+        do {
+            record = segmentReader.next();
+            if (record != null) {
+                pending.add(record);
             }
 
-            batch.commitBatch();
-            loggingService.info("WAL replay complete, {0} activities recovered", uncommitted.size());
+            if (pending.size() >= batchSize || (record == null && !pending.isEmpty())) {
+                if (replayed == 0) {
+                    loggingService.info("Replaying uncommitted WAL entries from {0}...", segmentReader.segment().path());
+                }
 
-            // Only remove the WAL once the records are safely in the database.
-            cleanupFiles();
-        } catch (Exception e) {
-            loggingService.handleException(e);
-            loggingService.error(
-                "WAL replay failed (database may be unavailable); keeping {0} WAL entries for retry on next start.",
-                uncommitted.size()
-            );
-        }
+                ActivityBatch batch = storageAdapter.createActivityBatch();
+                batch.startBatch();
+
+                for (WalRecord walRecord : pending) {
+                    batch.addFromWalRecord(walRecord);
+                }
+
+                batch.commitBatch();
+                segmentReader.segment().writeCheckpoint(segmentReader.checkpoint());
+
+                replayed += pending.size();
+                pending.clear();
+            }
+        } while (record != null);
+
+        return replayed;
     }
 
     /**
@@ -416,7 +511,7 @@ public class WalService {
      * Write the clean shutdown marker file.
      */
     private void writeCleanMarker() {
-        WalWriter markerWriter = walWriter != null ? walWriter : new WalWriter(walDir, loggingService);
+        WalWriter markerWriter = walWriter != null ? walWriter : newWriter();
         markerWriter.writeCleanMarker();
     }
 
@@ -427,7 +522,7 @@ public class WalService {
         if (walWriter != null) {
             walWriter.cleanup();
         } else {
-            WalWriter tempWriter = new WalWriter(walDir, loggingService);
+            WalWriter tempWriter = newWriter();
             tempWriter.cleanup();
         }
     }
@@ -438,7 +533,7 @@ public class WalService {
      * @param activity The activity
      * @return The WAL record
      */
-    WalRecord serialize(Activity activity) {
+    public WalRecord serialize(Activity activity) {
         WalRecord.WalRecordBuilder builder = WalRecord.builder()
             .timestamp(activity.timestamp())
             .x(activity.coordinate().intX())
@@ -523,7 +618,8 @@ public class WalService {
                 .blockNamespace(blockAction.blockContainer().blockNamespace())
                 .blockName(blockAction.blockContainer().blockName())
                 .blockData(blockAction.blockContainer().serializeBlockData())
-                .blockTranslationKey(blockAction.blockContainer().translationKey());
+                .blockTranslationKey(blockAction.blockContainer().translationKey())
+                .extent(blockAction.extent());
 
             if (blockAction.replacedBlockContainer() != null) {
                 builder
@@ -20,244 +20,558 @@
 
 package org.prism_mc.prism.paper.services.recording.wal;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import org.prism_mc.prism.api.storage.wal.WalRecord;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 
 /**
- * Manages buffered, append-only writing of WAL records to a JSONL file.
+ * Manages buffered, append-only writing of WAL records to rolling segment files.
+ *
+ * <p>Each writer starts a new segment and rolls over to another once the
+ * current one reaches the configured size. Segments whose records are all
+ * committed are deleted, so the WAL stays bounded even under constant load.</p>
+ *
+ * <p>Positions in the WAL are record sequences. Records may be appended out
+ * of order by concurrent producers; they are written in sequence order, so
+ * every sequence must eventually be either appended or {@link #skip(long) skipped}.</p>
+ *
+ * <p>Commits are grouped: {@link #commitBatch(long, int)} only advances the commit
+ * position and never waits on disk I/O. The position is written to a
+ * memory-mapped {@link WalCheckpointSlot} and made durable together with the
+ * segment data according to the {@link Durability} level.</p>
  */
 public class WalWriter {
 
-    static final String WAL_FILE = "wal.jsonl";
-    static final String CHECKPOINT_FILE = "wal.checkpoint";
     static final String CLEAN_MARKER_FILE = "wal.clean";
 
+    /**
+     * When buffered records are forced to stable storage.
+     */
+    public enum Durability {
+        /**
+         * Fsync on every flush.
+         */
+        SYNC,
+
+        /**
+         * Fsync at most once per sync interval.
+         */
+        INTERVAL,
+
+        /**
+         * Never fsync explicitly; the OS writes pages back on its own schedule.
+         */
+        OS;
+
+        /**
+         * Get a durability level by its configured name, falling back to {@link #SYNC}.
+         *
+         * @param name The name
+         * @return The durability level
+         */
+        public static Durability forName(String name) {
+            for (Durability durability : values()) {
+                if (durability.name().equalsIgnoreCase(name)) {
+                    return durability;
+                }
+            }
+
+            return SYNC;
+        }
+    }
+
     private final Path walDir;
+    private final WalCodec codec;
+    private final long segmentMaxBytes;
+    private final Durability durability;
+    private final long syncIntervalNanos;
     private final LoggingService loggingService;
-    private final ObjectMapper objectMapper;
+    private final WalFlushMetrics metrics = new WalFlushMetrics();
     private final ConcurrentLinkedQueue<WalRecord> buffer = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> skipped = new ConcurrentLinkedQueue<>();
     private final AtomicLong nextSequence = new AtomicLong(0);
-    private final AtomicLong totalWritten = new AtomicLong(0);
 
     /**
-     * Tracks in-flight batches for out-of-order commit support.
-     * Key is the batch ID, value is the entry count and committed status.
+     * Guards commit tracking. Never held while doing disk I/O.
      */
-    private final TreeMap<Long, BatchInfo> pendingBatches = new TreeMap<>();
-    private long nextBatchId;
-    private long contiguousCommitted;
+    private final Object commitLock = new Object();
+
+    /**
+     * Committed sequence ranges that are not yet contiguous with the commit
+     * position. Key is the first sequence, value is the range length.
+     */
+    private final TreeMap<Long, Integer> committedRanges = new TreeMap<>();
+    private volatile long contiguousCommitted;
+
+    /**
+     * Guards the segment files, the checkpoint slot and the flush path.
+     */
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    /**
+     * Segments that still hold uncommitted records, oldest first. The last
+     * segment is the one currently being written.
+     */
+    private final ArrayDeque<SegmentInfo> segments = new ArrayDeque<>();
+    private long nextSegmentIndex;
+
+    /**
+     * Records and skipped sequences that arrived ahead of a missing sequence.
+     */
+    private final PriorityQueue<WalRecord> reorder = new PriorityQueue<>(
+        Comparator.comparingLong(WalRecord::getSequence)
+    );
+    private final Set<Long> skippedSequences = new HashSet<>();
+
+    /**
+     * The next sequence to write. Every lower sequence is written or skipped.
+     */
+    private volatile long writtenThrough;
 
     private FileOutputStream fileOutputStream;
-    private BufferedWriter writer;
+    private CountingOutputStream writer;
+    private WalCodec.Encoder encoder;
+    private WalCheckpointSlot checkpointSlot;
+    private long slotSegmentIndex = -1;
+    private long slotCommitted = -1;
+    private boolean unsynced;
+    private long lastSyncNanos = System.nanoTime();
+    private long closedSegmentBytes;
+    private volatile long bytesWritten;
 
     /**
      * Construct a new WAL writer.
      *
      * @param walDir The WAL directory
+     * @param codec The codec used for new segments
+     * @param segmentMaxBytes The size at which a segment is rolled over
+     * @param durability When written records are forced to stable storage
+     * @param syncIntervalMs The minimum time between fsyncs in {@link Durability#INTERVAL} mode
      * @param loggingService The logging service
      */
-    public WalWriter(Path walDir, LoggingService loggingService) {
+    public WalWriter(
+        Path walDir,
+        WalCodec codec,
+        long segmentMaxBytes,
+        Durability durability,
+        long syncIntervalMs,
+        LoggingService loggingService
+    ) {
         this.walDir = walDir;
+        this.codec = codec;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.durability = durability;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
         this.loggingService = loggingService;
-        this.objectMapper = new ObjectMapper();
     }
 
     /**
-     * Initialize the writer, creating the WAL directory and file if needed.
+     * Initialize the writer, creating the WAL directory and a new segment.
+     *
+     * <p>Existing segments are left untouched; they keep their own checkpoints
+     * and are replayed on the next start.</p>
      *
      * @throws IOException If directory or file creation fails
      */
     public void initialize() throws IOException {
         Files.createDirectories(walDir);
 
-        openWriter();
+        for (WalSegment segment : WalSegment.list(walDir)) {
+            nextSegmentIndex = Math.max(nextSegmentIndex, segment.index() + 1);
+        }
+
+        openSegment();
     }
 
     /**
-     * Open (or reopen) the append writer over a {@link FileOutputStream} so the
-     * underlying file descriptor is reachable for {@link FileOutputStream#getFD()}
-     * syncs in {@link #flush()}.
+     * Open a new segment over a {@link FileOutputStream} so the underlying file
+     * descriptor is reachable for {@link FileOutputStream#getFD()} syncs.
+     *
+     * <p>The segment file is created atomically, so writers sharing the
+     * directory never append to the same segment.</p>
      *
      * @throws IOException If the file cannot be opened
      */
-    private void openWriter() throws IOException {
-        fileOutputStream = new FileOutputStream(walDir.resolve(WAL_FILE).toFile(), true);
-        writer = new BufferedWriter(new OutputStreamWriter(fileOutputStream, StandardCharsets.UTF_8));
+    private void openSegment() throws IOException {
+        WalSegment segment;
+        while (true) {
+            segment = WalSegment.of(walDir, nextSegmentIndex++, codec);
+            try {
+                Files.createFile(segment.path());
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // Another writer claimed this index first
+            }
+        }
+
+        segments.addLast(new SegmentInfo(segment, writtenThrough));
+
+        fileOutputStream = new FileOutputStream(segment.path().toFile(), true);
+        writer = new CountingOutputStream(new BufferedOutputStream(fileOutputStream, 64 * 1024));
+        encoder = codec.encoder(writer);
+    }
+
+    /**
+     * Flush, sync and close the current segment. Sealed segments are always
+     * synced regardless of the durability level.
+     *
+     * @throws IOException If the segment cannot be written
+     */
+    private void closeSegment() throws IOException {
+        writer.flush();
+        sync();
+        writer.close();
+        closedSegmentBytes += writer.count();
+        writer = null;
+    }
+
+    /**
+     * Force the current segment and the checkpoint slot to stable storage.
+     *
+     * @throws IOException If the sync fails
+     */
+    private void sync() throws IOException {
+        long start = System.nanoTime();
+
+        // Force the bytes to stable storage so records survive an OS crash or
+        // power loss, not just a JVM crash.
+        fileOutputStream.getFD().sync();
+        if (checkpointSlot != null) {
+            checkpointSlot.force();
+        }
+
+        lastSyncNanos = System.nanoTime();
+        unsynced = false;
+        metrics.recordSync(lastSyncNanos - start);
     }
 
     /**
-     * Assign a sequence number to the record and add it to the write buffer.
+     * Assign the next sequence number to the record and add it to the write buffer.
+     *
+     * <p>Don't mix with {@link #append(WalRecord, long)} on the same writer.</p>
      *
      * @param record The WAL record to append
      * @return The assigned sequence number
      */
     public long append(WalRecord record) {
         long seq = nextSequence.getAndIncrement();
-        record.setSequence(seq);
-        buffer.add(record);
+        append(record, seq);
         return seq;
     }
 
     /**
-     * Flush the buffer to disk.
+     * Add a record with a sequence assigned by the caller to the write buffer.
+     *
+     * @param record The WAL record to append
+     * @param sequence The record's sequence
      */
-    public synchronized void flush() {
-        if (writer == null || buffer.isEmpty()) {
-            return;
-        }
+    public void append(WalRecord record, long sequence) {
+        record.setSequence(sequence);
+        buffer.add(record);
+    }
 
-        List<WalRecord> toWrite = new ArrayList<>();
-        WalRecord record;
-        while ((record = buffer.poll()) != null) {
-            toWrite.add(record);
-        }
+    /**
+     * Give up a caller-assigned sequence that will never be appended, so the
+     * records after it aren't held back.
+     *
+     * @param sequence The sequence
+     */
+    public void skip(long sequence) {
+        skipped.add(sequence);
+    }
 
-        if (toWrite.isEmpty()) {
-            return;
-        }
+    /**
+     * Flush the buffer to disk, rolling over to a new segment whenever the
+     * current one reaches the maximum size, then sync according to the
+     * durability level and release committed segments.
+     */
+    public void flush() {
+        flush(false);
+    }
 
+    /**
+     * Flush the buffer to disk.
+     *
+     * @param force Whether to write past missing sequences instead of holding records back
+     */
+    private void flush(boolean force) {
+        ioLock.lock();
         try {
-            for (WalRecord rec : toWrite) {
-                writer.write(objectMapper.writeValueAsString(rec));
-                writer.newLine();
+            if (writer == null) {
+                return;
+            }
+
+            long start = System.nanoTime();
+
+            WalRecord record;
+            while ((record = buffer.poll()) != null) {
+                reorder.add(record);
+            }
+
+            Long sequence;
+            while ((sequence = skipped.poll()) != null) {
+                skippedSequences.add(sequence);
+            }
+
+            int written = writeInOrder(force);
+
+            if (written > 0) {
+                writer.flush();
+                bytesWritten = closedSegmentBytes + writer.count();
+                unsynced = true;
+                metrics.recordFlush(written, System.nanoTime() - start);
+            }
+
+            if (unsynced && syncDue()) {
+                sync();
             }
-            writer.flush();
-            // Force the bytes to stable storage so records survive an OS crash or
-            // power loss, not just a JVM crash.
-            fileOutputStream.getFD().sync();
-            totalWritten.addAndGet(toWrite.size());
+
+            releaseCommittedSegments();
         } catch (IOException e) {
             loggingService.handleException(e);
+        } finally {
+            ioLock.unlock();
         }
     }
 
     /**
-     * Register a new batch that has been drained from the queue and is
-     * about to be committed to the database. Returns a batch ID that
-     * must be passed to {@link #commitBatch(long)} after the DB commit.
+     * Write the reordered records in sequence order, stopping at the first
+     * sequence that hasn't been appended yet. Must hold the io lock.
      *
-     * @param entryCount The number of entries in this batch
-     * @return The batch ID
+     * @param force Whether to write past missing sequences
+     * @return The number of records written
+     * @throws IOException If the segment cannot be written
      */
-    public synchronized long startBatch(int entryCount) {
-        long batchId = nextBatchId++;
-        pendingBatches.put(batchId, new BatchInfo(entryCount, false));
-        return batchId;
+    private int writeInOrder(boolean force) throws IOException {
+        int written = 0;
+
+        while (true) {
+            if (skippedSequences.remove(writtenThrough)) {
+                writtenThrough++;
+                segments.getLast().end = writtenThrough;
+                continue;
+            }
+
+            WalRecord record = reorder.peek();
+            if (record == null || (record.getSequence() > writtenThrough && !force)) {
+                return written;
+            }
+
+            reorder.poll();
+            encoder.write(record);
+            writtenThrough = Math.max(writtenThrough, record.getSequence() + 1);
+            segments.getLast().end = writtenThrough;
+            written++;
+
+            if (writer.count() >= segmentMaxBytes) {
+                closeSegment();
+                openSegment();
+            }
+        }
+    }
+
+    /**
+     * Whether written data should be synced now.
+     *
+     * @return True if a sync is due
+     */
+    private boolean syncDue() {
+        return switch (durability) {
+            case SYNC -> true;
+            case INTERVAL -> System.nanoTime() - lastSyncNanos >= syncIntervalNanos;
+            case OS -> false;
+        };
     }
 
     /**
-     * Mark a batch as committed and advance the checkpoint through
-     * all contiguous committed batches from the start.
+     * Mark a range of sequences as committed to the database and advance the
+     * commit position through every contiguous committed range.
      *
-     * <p>Supports out-of-order commits: if batch 2 commits before
-     * batch 1, the checkpoint won't advance until batch 1 also commits.</p>
+     * <p>Ranges may commit out of order: if a later range commits first, the
+     * position won't advance until the ranges before it also commit.</p>
      *
-     * @param batchId The batch ID from {@link #startBatch(int)}
+     * <p>This never waits on disk I/O. If the flush thread is busy the
+     * checkpoint is updated on its next pass, which groups the commits of
+     * every recording worker into a single checkpoint update.</p>
+     *
+     * @param firstSequence The first sequence in the range
+     * @param count The number of sequences in the range
      */
-    public synchronized void commitBatch(long batchId) {
-        BatchInfo info = pendingBatches.get(batchId);
-        if (info == null) {
+    public void commitBatch(long firstSequence, int count) {
+        if (count <= 0) {
             return;
         }
 
-        // Flush the buffer first so totalWritten reflects every appended record
-        // before we evaluate the truncate condition below. Without this,
-        // contiguousCommitted (advanced on DB commit) can exceed totalWritten
-        // (advanced only by the periodic flush) while committed records still
-        // sit unflushed in the buffer — truncate() would then fire, reset the
-        // checkpoint, and those records would later be re-flushed without a
-        // checkpoint and replayed as duplicates on the next crash.
-        flush();
-
-        info.committed = true;
-
-        // Advance through contiguous committed batches from the front
-        while (!pendingBatches.isEmpty()) {
-            var firstEntry = pendingBatches.firstEntry();
-            if (!firstEntry.getValue().committed) {
-                break;
+        synchronized (commitLock) {
+            committedRanges.put(firstSequence, count);
+
+            long committed = contiguousCommitted;
+            Map.Entry<Long, Integer> range;
+            while ((range = committedRanges.firstEntry()) != null && range.getKey() <= committed) {
+                committed = Math.max(committed, range.getKey() + range.getValue());
+                committedRanges.pollFirstEntry();
             }
 
-            contiguousCommitted += firstEntry.getValue().entryCount;
-            pendingBatches.pollFirstEntry();
+            contiguousCommitted = committed;
         }
 
-        writeCheckpointFile(contiguousCommitted);
-
-        if (contiguousCommitted >= totalWritten.get() && pendingBatches.isEmpty()) {
-            truncate();
+        if (ioLock.tryLock()) {
+            try {
+                releaseCommittedSegments();
+            } finally {
+                ioLock.unlock();
+            }
         }
     }
 
     /**
-     * Write the committed count to the checkpoint file.
+     * Delete every closed segment whose records are all committed and update
+     * the checkpoint slot for the oldest remaining segment. Must hold the io lock.
+     *
+     * <p>The commit position can run ahead of what has been flushed, since a
+     * batch can commit to the database before the flush thread writes it. The
+     * checkpoint is clamped to the written sequences; the rest are covered once
+     * they are in a segment.</p>
      *
-     * @param committed The committed count
+     * <p>The slot holds a sequence rather than a record count: every record in
+     * the segment below it is committed.</p>
      */
-    private void writeCheckpointFile(long committed) {
+    private void releaseCommittedSegments() {
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        long committed = Math.min(contiguousCommitted, writtenThrough);
+        if (committed == 0 && checkpointSlot == null) {
+            return;
+        }
+
         try {
-            Files.writeString(
-                walDir.resolve(CHECKPOINT_FILE),
-                Long.toString(committed),
-                StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING
-            );
+            // Delete sealed segments before moving the slot past them
+            while (segments.size() > 1 && committed >= segments.getFirst().end) {
+                segments.pollFirst().segment.delete();
+            }
+
+            SegmentInfo head = segments.getFirst();
+            if (head.segment.index() == slotSegmentIndex && committed == slotCommitted) {
+                return;
+            }
+
+            if (checkpointSlot == null) {
+                checkpointSlot = openCheckpointSlot();
+            }
+
+            checkpointSlot.write(head.segment.index(), committed);
+            slotSegmentIndex = head.segment.index();
+            slotCommitted = committed;
         } catch (IOException e) {
             loggingService.handleException(e);
         }
     }
 
     /**
-     * Truncate the WAL file and reset counters when all entries are committed.
+     * Open the checkpoint slot. A position left by a previous writer is first
+     * copied into its segment's checkpoint file so it isn't lost when the slot
+     * is reused.
+     *
+     * @return The checkpoint slot
+     * @throws IOException If the slot cannot be opened
      */
-    private synchronized void truncate() {
-        try {
-            if (writer != null) {
-                writer.close();
+    private WalCheckpointSlot openCheckpointSlot() throws IOException {
+        WalCheckpointSlot.Position previous = WalCheckpointSlot.read(walDir);
+        if (previous != null && previous.committed() > 0) {
+            for (WalSegment segment : WalSegment.list(walDir)) {
+                if (segment.index() == previous.segmentIndex() && readCheckpoint(segment) < previous.committed()) {
+                    segment.writeCheckpoint(previous.committed());
+                }
             }
+        }
 
-            Files.deleteIfExists(walDir.resolve(WAL_FILE));
-            Files.deleteIfExists(walDir.resolve(CHECKPOINT_FILE));
-
-            totalWritten.set(0);
-            contiguousCommitted = 0;
-            nextBatchId = 0;
-            nextSequence.set(0);
+        return WalCheckpointSlot.open(walDir);
+    }
 
-            openWriter();
-        } catch (IOException e) {
-            loggingService.handleException(e);
+    /**
+     * Read a segment's checkpoint file, treating a malformed one as empty.
+     *
+     * @param segment The segment
+     * @return The checkpoint value
+     * @throws IOException If the checkpoint cannot be read
+     */
+    private long readCheckpoint(WalSegment segment) throws IOException {
+        try {
+            return segment.readCheckpoint();
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
     /**
-     * Force flush and close the writer.
+     * The number of bytes this writer has flushed across all of its segments.
+     *
+     * @return The bytes written
      */
-    public synchronized void close() {
-        flush();
+    public long bytesWritten() {
+        return bytesWritten;
+    }
 
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                loggingService.handleException(e);
+    /**
+     * Latency counters of this writer's flushes.
+     *
+     * @return The flush metrics
+     */
+    public WalFlushMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Force flush, sync and close the writer. The current segment is deleted
+     * if all of its records are committed.
+     *
+     * <p>Records still waiting on a missing sequence are written anyway, since
+     * nothing will append it once the writer closes.</p>
+     */
+    public void close() {
+        flush(true);
+
+        ioLock.lock();
+        try {
+            if (writer != null) {
+                closeSegment();
+
+                SegmentInfo current = segments.getLast();
+                if (contiguousCommitted >= current.end || current.end == current.start) {
+                    segments.pollLast().segment.delete();
+                }
+            }
+
+            if (checkpointSlot != null) {
+                checkpointSlot.close();
+                checkpointSlot = null;
             }
-            writer = null;
+        } catch (IOException e) {
+            loggingService.handleException(e);
+        } finally {
+            ioLock.unlock();
         }
     }
 
@@ -282,12 +596,15 @@ public class WalWriter {
     }
 
     /**
-     * Clean up WAL files. Called after successful replay or when no data remains.
+     * Clean up all WAL files. Called after successful replay or when no data remains.
      */
     public void cleanup() {
         try {
-            Files.deleteIfExists(walDir.resolve(WAL_FILE));
-            Files.deleteIfExists(walDir.resolve(CHECKPOINT_FILE));
+            for (WalSegment segment : WalSegment.list(walDir)) {
+                segment.delete();
+            }
+
+            Files.deleteIfExists(walDir.resolve(WalCheckpointSlot.FILE));
             Files.deleteIfExists(walDir.resolve(CLEAN_MARKER_FILE));
         } catch (IOException e) {
             loggingService.handleException(e);
@@ -295,16 +612,46 @@ public class WalWriter {
     }
 
     /**
-     * Tracks the state of a single batch for out-of-order commit support.
+     * Tracks the range of sequences written to a segment.
+     */
+    private static class SegmentInfo {
+
+        final WalSegment segment;
+        final long start;
+        long end;
+
+        SegmentInfo(WalSegment segment, long start) {
+            this.segment = segment;
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    /**
+     * Counts the bytes written to the current segment.
      */
-    private static class BatchInfo {
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
 
-        final int entryCount;
-        boolean committed;
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
 
-        BatchInfo(int entryCount, boolean committed) {
-            this.entryCount = entryCount;
-            this.committed = committed;
+        long count() {
+            return count;
         }
     }
 }
@@ -35,6 +35,7 @@ import org.prism_mc.prism.api.actions.ItemAction;
 import org.prism_mc.prism.api.actions.MaterialAction;
 import org.prism_mc.prism.api.activities.AbstractActivity;
 import org.prism_mc.prism.api.activities.Activity;
+import org.prism_mc.prism.api.activities.ActivityCursor;
 import org.prism_mc.prism.api.activities.ActivityQuery;
 import org.prism_mc.prism.api.activities.Cause;
 import org.prism_mc.prism.api.activities.GroupedActivity;
@@ -274,17 +275,37 @@ public class ActivitiesHandler extends ApiHandler {
             }
         }
 
+        // Ungrouped lookups page faster by passing the previous response's nextCursor
+        if (params.containsKey("cursor")) {
+            try {
+                ActivityCursor.decode(params.get("cursor"));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "Invalid cursor");
+                return;
+            }
+
+            builder.cursor(params.get("cursor"));
+        }
+
+        // Clients paging through results they've already counted can skip counting
+        if (params.containsKey("count")) {
+            builder.countTotal(Boolean.parseBoolean(params.get("count")));
+        }
+
         PartialListPaginationResult<AbstractActivity> result = storageAdapter.queryActivitiesPaginated(builder.build());
 
         List<Map<String, Object>> activities = new ArrayList<>();
-        for (AbstractActivity abstractActivity : result.results()) {
+        for (AbstractActivity abstractActivity : result.currentPageResults()) {
             activities.add(serializeActivity(abstractActivity));
         }
 
         Map<String, Object> response = new HashMap<>();
         response.put("activities", activities);
-        response.put("totalResults", result.totalResults());
+        if (result.counted()) {
+            response.put("totalResults", result.totalResults());
+        }
         response.put("hasNextPage", result.hasNextPage());
+        response.put("nextCursor", result.nextCursor());
         response.put("count", activities.size());
 
         sendJson(exchange, 200, response);
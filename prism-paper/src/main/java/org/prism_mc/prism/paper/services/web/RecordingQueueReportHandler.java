@@ -67,6 +67,8 @@ public class RecordingQueueReportHandler extends ApiHandler {
         response.put("queueSize", recordingService.queue().size());
         response.put("queueCapacity", queueMaxCapacity);
         response.put("droppedCount", recordingService.droppedCount());
+        response.put("spilledCount", recordingService.spilledCount());
+        response.put("spillDrainedCount", recordingService.spillDrainedCount());
 
         // Action type breakdown from queue snapshot
         Map<String, Integer> actionBreakdown = new HashMap<>();
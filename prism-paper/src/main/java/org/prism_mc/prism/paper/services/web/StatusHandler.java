@@ -32,6 +32,7 @@ import org.prism_mc.prism.api.storage.StorageConnectionStatus;
 import org.prism_mc.prism.api.storage.World;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 import org.prism_mc.prism.paper.services.purge.PurgeService;
+import org.prism_mc.prism.paper.services.recording.RecordingController;
 
 public class StatusHandler extends ApiHandler {
 
@@ -65,6 +66,11 @@ public class StatusHandler extends ApiHandler {
      */
     private final RecordingService recordingService;
 
+    /**
+     * The recording controller.
+     */
+    private final RecordingController recordingController;
+
     /**
      * The purge service.
      */
@@ -87,6 +93,7 @@ public class StatusHandler extends ApiHandler {
      * @param walMode The write-ahead log mode
      * @param storageAdapter The storage adapter
      * @param recordingService The recording service
+     * @param recordingController The recording controller
      * @param purgeService The purge service
      * @param defaultActivityRange The default relative time range the web UI should pre-apply
      */
@@ -100,6 +107,7 @@ public class StatusHandler extends ApiHandler {
         String walMode,
         StorageAdapter storageAdapter,
         RecordingService recordingService,
+        RecordingController recordingController,
         PurgeService purgeService,
         String defaultActivityRange
     ) {
@@ -110,6 +118,7 @@ public class StatusHandler extends ApiHandler {
         this.walMode = walMode;
         this.storageAdapter = storageAdapter;
         this.recordingService = recordingService;
+        this.recordingController = recordingController;
         this.purgeService = purgeService;
         this.defaultActivityRange = defaultActivityRange;
     }
@@ -141,6 +150,15 @@ public class StatusHandler extends ApiHandler {
         connection.put("awaiting", connectionStatus.threadsAwaitingConnection());
         response.put("connection", connection);
 
+        RecordingController.Snapshot recordingSnapshot = recordingController.snapshot();
+        Map<String, Object> recording = new HashMap<>();
+        recording.put("adaptive", recordingSnapshot.adaptive());
+        recording.put("batchSize", recordingSnapshot.batchSize());
+        recording.put("workers", recordingSnapshot.workers());
+        recording.put("delay", recordingSnapshot.delay());
+        recording.put("avgCommitMillis", recordingSnapshot.avgCommitMillis());
+        response.put("recording", recording);
+
         sendJson(exchange, 200, response);
     }
 }
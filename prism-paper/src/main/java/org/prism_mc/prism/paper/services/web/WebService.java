@@ -34,6 +34,7 @@ import org.prism_mc.prism.loader.services.configuration.ConfigurationService;
 import org.prism_mc.prism.loader.services.configuration.WebConfiguration;
 import org.prism_mc.prism.loader.services.logging.LoggingService;
 import org.prism_mc.prism.paper.services.purge.PurgeService;
+import org.prism_mc.prism.paper.services.recording.RecordingController;
 
 @Singleton
 public class WebService {
@@ -63,6 +64,11 @@ public class WebService {
      */
     private final PurgeService purgeService;
 
+    /**
+     * The recording controller.
+     */
+    private final RecordingController recordingController;
+
     /**
      * The plugin version.
      */
@@ -81,6 +87,7 @@ public class WebService {
      * @param recordingService The recording service
      * @param loggingService The logging service
      * @param purgeService The purge service
+     * @param recordingController The recording controller
      * @param version The plugin version
      */
     @Inject
@@ -90,6 +97,7 @@ public class WebService {
         RecordingService recordingService,
         LoggingService loggingService,
         PurgeService purgeService,
+        RecordingController recordingController,
         @Named("version") String version
     ) {
         this.configurationService = configurationService;
@@ -97,6 +105,7 @@ public class WebService {
         this.recordingService = recordingService;
         this.loggingService = loggingService;
         this.purgeService = purgeService;
+        this.recordingController = recordingController;
         this.version = version;
     }
 
@@ -220,6 +229,7 @@ public class WebService {
                     walMode,
                     storageAdapter,
                     recordingService,
+                    recordingController,
                     purgeService,
                     config.defaultActivityRange()
                 )
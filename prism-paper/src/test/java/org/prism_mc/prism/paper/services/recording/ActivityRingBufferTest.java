@@ -0,0 +1,125 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.prism_mc.prism.api.activities.Activity;
+
+class ActivityRingBufferTest {
+
+    private static Activity activity(int x) {
+        return Activity.builder().coordinate(x, 64, 0).build();
+    }
+
+    @Test
+    void rejectsOutOfRangeCapacities() {
+        assertThrows(IllegalArgumentException.class, () -> new ActivityRingBuffer(-1));
+        assertThrows(IllegalArgumentException.class, () -> new ActivityRingBuffer(ActivityRingBuffer.MAX_CAPACITY + 1));
+    }
+
+    @Test
+    void usesTheDefaultCapacityForZero() {
+        assertEquals(ActivityRingBuffer.DEFAULT_CAPACITY, new ActivityRingBuffer(0).capacity());
+    }
+
+    @Test
+    void rejectsPublishesOnceFull() {
+        // Not a power of two, so the slots are rounded up past the capacity
+        var buffer = new ActivityRingBuffer(3);
+
+        assertEquals(0, buffer.publish(activity(0)));
+        assertEquals(1, buffer.publish(activity(1)));
+        assertEquals(2, buffer.publish(activity(2)));
+        assertEquals(-1, buffer.publish(activity(3)));
+        assertFalse(buffer.offer(activity(3)));
+        assertEquals(3, buffer.size());
+
+        assertEquals(0, buffer.poll().coordinate().intX());
+        assertEquals(3, buffer.publish(activity(3)));
+        assertEquals(3, buffer.size());
+    }
+
+    @Test
+    void drainsInPublishOrderAcrossWraparound() {
+        var buffer = new ActivityRingBuffer(4);
+
+        List<Activity> published = new ArrayList<>();
+        List<Activity> drained = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                var activity = activity(round * 3 + i);
+                assertTrue(buffer.offer(activity));
+                published.add(activity);
+            }
+
+            assertEquals(round * 3L, buffer.drainTo(drained, Integer.MAX_VALUE));
+        }
+
+        assertEquals(published.size(), drained.size());
+        for (int i = 0; i < published.size(); i++) {
+            assertSame(published.get(i), drained.get(i));
+        }
+        assertEquals(0, buffer.size());
+        assertNull(buffer.peek());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void drainsNoMoreThanTheMax() {
+        var buffer = new ActivityRingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.publish(activity(i));
+        }
+
+        List<Activity> drained = new ArrayList<>();
+        assertEquals(0, buffer.drainTo(drained, 2));
+        assertEquals(2, drained.size());
+        assertEquals(2, buffer.drainTo(drained, 2));
+        assertEquals(4, buffer.drainTo(drained, 2));
+        assertEquals(5, drained.size());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void iteratesPendingActivitiesWithoutDraining() {
+        var buffer = new ActivityRingBuffer(2);
+        var first = activity(0);
+        var second = activity(1);
+        buffer.publish(first);
+        buffer.publish(second);
+
+        var iterator = buffer.iterator();
+        assertSame(first, iterator.next());
+        assertSame(second, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertSame(first, buffer.peek());
+        assertEquals(2, buffer.size());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * prism
+ *
+ * Copyright (c) 2022 M Botsko (viveleroi)
+ *                    Contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.prism_mc.prism.paper.services.recording.wal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.prism_mc.prism.api.storage.wal.WalRecord;
+
+class BinaryWalCodecTest {
+
+    private final WalCodec codec = new BinaryWalCodec();
+
+    private static WalRecord record(long sequence, String actionKey, String serializedData) {
+        return WalRecord.builder()
+            .sequence(sequence)
+            .timestamp(1_700_000_000_000L + sequence)
+            .x(-30_000_000)
+            .y(-64)
+            .z(29_999_999)
+            .worldUuid("3f6f1c9e-2b9a-4d6e-9c55-0e3a6d1f7b21")
+            .worldName("world")
+            .actionKey(actionKey)
+            .causeType("player")
+            .causePlayerUuid("8667ba71-b85a-4004-af54-457a9734eed7")
+            .causePlayerName("Steve")
+            .blockNamespace("minecraft")
+            .blockName("stone")
+            .itemQuantity(64)
+            .serializerVersion((short) 1)
+            .serializedData(serializedData)
+            .extent(3)
+            .build();
+    }
+
+    private byte[] encode(WalRecord... records) throws IOException {
+        var out = new ByteArrayOutputStream();
+        var encoder = codec.encoder(out);
+        for (WalRecord record : records) {
+            encoder.write(record);
+        }
+
+        return out.toByteArray();
+    }
+
+    @Test
+    void roundTripsRecordsSharingInternedStrings() throws IOException {
+        WalRecord first = record(1, "block-break", "{Items:[]}");
+        WalRecord second = record(2, "block-break", null);
+        WalRecord third = record(3, "block-place", "");
+
+        var decoder = codec.decoder(new ByteArrayInputStream(encode(first, second, third)));
+
+        assertEquals(first, decoder.next());
+        assertEquals(second, decoder.next());
+        assertEquals(third, decoder.next());
+        assertNull(decoder.next());
+    }
+
+    @Test
+    void returnsNullForAnEmptyFile() throws IOException {
+        assertNull(codec.decoder(new ByteArrayInputStream(new byte[0])).next());
+    }
+
+    @Test
+    void skipsARecordWhosePayloadFailsItsChecksum() throws IOException {
+        WalRecord first = record(1, "block-break", null);
+        WalRecord second = record(2, "block-break", "corrupted");
+        WalRecord third = record(3, "block-break", null);
+
+        int firstLength = encode(first).length;
+        int secondLength = encode(first, second).length - firstLength;
+
+        byte[] bytes = encode(first, second, third);
+        // The last byte of a frame is always payload, after the length and checksum
+        bytes[firstLength + secondLength - 1] ^= 0x55;
+
+        var decoder = codec.decoder(new ByteArrayInputStream(bytes));
+
+        assertEquals(first, decoder.next());
+        assertThrows(WalCodec.CorruptRecordException.class, decoder::next);
+        assertEquals(third, decoder.next());
+        assertNull(decoder.next());
+    }
+
+    @Test
+    void rejectsARecordCutOffMidFrame() throws IOException {
+        WalRecord first = record(1, "block-break", null);
+        byte[] bytes = encode(first, record(2, "block-break", null));
+
+        var decoder = codec.decoder(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)));
+
+        assertEquals(first, decoder.next());
+        assertThrows(EOFException.class, decoder::next);
+    }
+
+    @Test
+    void rejectsARecordCutOffInsideItsHeader() throws IOException {
+        WalRecord first = record(1, "block-break", null);
+        int firstLength = encode(first).length;
+        byte[] bytes = encode(first, record(2, "block-break", null));
+
+        // Ends within the length and checksum, before any payload
+        var decoder = codec.decoder(new ByteArrayInputStream(Arrays.copyOf(bytes, firstLength + 2)));
+
+        assertEquals(first, decoder.next());
+        assertThrows(EOFException.class, decoder::next);
+    }
+}
@@ -46,8 +46,11 @@ export interface ActivityResult {
 
 export interface ActivitiesResponse {
   activities: ActivityResult[];
-  totalResults: number;
+  /** Omitted when the request passed count=false. */
+  totalResults?: number;
   hasNextPage: boolean;
+  /** Seeks to the next page of ungrouped results. Null for grouped results or on the last page. */
+  nextCursor: string | null;
   count: number;
 }
 
@@ -55,6 +58,8 @@ export interface QueueReportResponse {
   queueSize: number;
   queueCapacity: number;
   droppedCount: number;
+  spilledCount: number;
+  spillDrainedCount: number;
   actionBreakdown: Record<string, number>;
 }
 
@@ -67,6 +72,16 @@ export interface ConnectionStatus {
   awaiting: number;
 }
 
+export interface RecordingStatus {
+  /** Whether batch size, workers and delay are being tuned from commit latency. */
+  adaptive: boolean;
+  batchSize: number;
+  workers: number;
+  /** Delay between batches, in ticks. */
+  delay: number;
+  avgCommitMillis: number;
+}
+
 export interface StatusResponse {
   version: string;
   serverBrand: string;
@@ -78,6 +93,7 @@ export interface StatusResponse {
   walMode: string;
   purgeActive: boolean;
   connection: ConnectionStatus;
+  recording: RecordingStatus;
   /** Default relative time range the UI pre-applies as a "since" filter. Empty to apply none. */
   defaultActivityRange: string;
   /** First recorded world id the UI pre-applies as a "world" filter. Null if no worlds exist. */
@@ -111,6 +127,8 @@ export interface ActivityQueryParams {
   reversed?: boolean;
   limit?: number;
   offset?: number;
+  cursor?: string;
+  count?: boolean;
   sort?: "asc" | "desc";
   grouped?: boolean;
   excludeAction?: string;
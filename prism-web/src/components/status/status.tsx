@@ -31,6 +31,11 @@ export function StatusDropdown() {
               value={`${data.connection.active} active / ${data.connection.idle} idle / ${data.connection.total} of ${data.connection.max}`}
             />
             {data.connection.awaiting > 0 && <Row label="Awaiting" value={String(data.connection.awaiting)} />}
+            <Row
+              label="Recording"
+              value={`${data.recording.adaptive ? "Adaptive" : "Fixed"}: ${data.recording.batchSize} / ${data.recording.workers} workers / ${data.recording.delay} ticks`}
+            />
+            <Row label="Commit Avg" value={`${data.recording.avgCommitMillis.toFixed(2)}ms`} />
             <Row label="WAL" value={data.walMode} />
             <Row label="Purge" value={data.purgeActive ? "Active" : "Inactive"} last />
           </div>
@@ -330,6 +330,15 @@ export function ActivitiesPage() {
     enabled: seeded,
   });
 
+  // Only the first page of a search is counted, later pages reuse its total.
+  const [totalResults, setTotalResults] = useState(0);
+
+  useEffect(() => {
+    if (data?.totalResults !== undefined) {
+      setTotalResults(data.totalResults);
+    }
+  }, [data]);
+
   const handleSubmit = (e: FormEvent) => {
     e.preventDefault();
     setOffset(0);
@@ -340,18 +349,19 @@ export function ActivitiesPage() {
 
   // Paging keeps the executed query (filters + limit) fixed and only moves the
   // offset, so editing the form without searching can't desync the page math.
+  // The next page seeks past this one when the server offers a cursor.
   const handlePrev = () => {
     const activeLimit = queryParams.limit ?? 100;
     const newOffset = Math.max(0, (queryParams.offset ?? 0) - activeLimit);
     setOffset(newOffset);
-    setQueryParams({ ...queryParams, offset: newOffset });
+    setQueryParams({ ...queryParams, offset: newOffset, cursor: undefined, count: false });
   };
 
   const handleNext = () => {
     const activeLimit = queryParams.limit ?? 100;
     const newOffset = (queryParams.offset ?? 0) + activeLimit;
     setOffset(newOffset);
-    setQueryParams({ ...queryParams, offset: newOffset });
+    setQueryParams({ ...queryParams, offset: newOffset, cursor: data?.nextCursor ?? undefined, count: false });
   };
 
   const addFilter = (key: string) => {
@@ -399,7 +409,7 @@ export function ActivitiesPage() {
 
   const activeLimit = queryParams.limit ?? 100;
   const page = Math.floor((queryParams.offset ?? 0) / activeLimit) + 1;
-  const totalPages = data ? Math.ceil(data.totalResults / activeLimit) : 0;
+  const totalPages = data ? Math.ceil(totalResults / activeLimit) : 0;
 
   const unusedFilters = AVAILABLE_FILTERS.filter((f) => !activeFilters.includes(f.key));
   const groupedUnusedFilters = unusedFilters.reduce<Record<string, FilterDef[]>>((acc, f) => {
@@ -621,7 +631,7 @@ export function ActivitiesPage() {
       {data && (
         <>
           <p className="text-sm text-muted-foreground mb-3">
-            Showing {data.count} of {data.totalResults} results
+            Showing {data.count} of {totalResults} results
           </p>
           <Card>
             <CardContent className="p-0">
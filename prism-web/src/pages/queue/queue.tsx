@@ -38,6 +38,14 @@ export function QueuePage() {
                   <div className="text-2xl font-bold text-brand">{data.droppedCount}</div>
                   <div className="text-xs text-muted-foreground mt-1">Dropped</div>
                 </div>
+                <div className="text-center">
+                  <div className="text-2xl font-bold text-brand">{data.spilledCount}</div>
+                  <div className="text-xs text-muted-foreground mt-1">Spilled</div>
+                </div>
+                <div className="text-center">
+                  <div className="text-2xl font-bold text-brand">{data.spillDrainedCount}</div>
+                  <div className="text-xs text-muted-foreground mt-1">Spill Drained</div>
+                </div>
               </div>
             </CardContent>
           </Card>